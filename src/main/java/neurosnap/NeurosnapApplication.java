@@ -1,13 +1,24 @@
 package neurosnap;
 
+import neurosnap.service.WarmupService;
+import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class NeurosnapApplication {
 
 	public static void main(String[] args) {
 		SpringApplication.run(NeurosnapApplication.class, args);
 	}
 
+	/** Warms the JIT before readiness flips to ACCEPTING_TRAFFIC (runners complete before the app is "ready"). */
+	@Bean
+	public ApplicationRunner jitWarmup(WarmupService warmupService) {
+		return args -> warmupService.warmUp();
+	}
+
 }
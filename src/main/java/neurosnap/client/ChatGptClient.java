@@ -1,29 +1,81 @@
 package neurosnap.client;
 
+import com.squareup.okhttp.Call;
 import com.squareup.okhttp.MediaType;
 import com.squareup.okhttp.OkHttpClient;
 import com.squareup.okhttp.Request;
 import com.squareup.okhttp.RequestBody;
 import com.squareup.okhttp.Response;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+@Slf4j
 @Service
 public class ChatGptClient
 {
     private static final String API_KEY = "";
     private static final String API_URL = "https://api.openai.com/v1/chat/completions";
+    private static final String MODEL = "gpt-4o";
+    public static final int DEFAULT_MAX_TOKENS = 2000;
+    private static final long MAX_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis( 120 );
     private final OkHttpClient client = new OkHttpClient();
+    private final ObservationRegistry observationRegistry;
+    private final MeterRegistry meterRegistry;
+    private final LlmRateLimiter rateLimiter;
+    private final int maxRateLimitRetries;
+
+    public ChatGptClient( ObservationRegistry observationRegistry, MeterRegistry meterRegistry, LlmRateLimiter rateLimiter,
+            @Value( "${neurosnap.llm.ratelimit.max-retries:2}" ) int maxRateLimitRetries )
+    {
+        this.observationRegistry = observationRegistry;
+        this.meterRegistry = meterRegistry;
+        this.rateLimiter = rateLimiter;
+        this.maxRateLimitRetries = Math.max( 0, maxRateLimitRetries );
+    }
 
     public String sendPrompt(String prompt) throws IOException {
+        return sendPrompt(prompt, DEFAULT_MAX_TOKENS);
+    }
+
+    public String sendPrompt(String prompt, int maxTokens) throws IOException {
+        return sendPrompt(prompt, maxTokens, Deadline.none());
+    }
 
-        client.setReadTimeout( 120, TimeUnit.SECONDS );
-        client.setConnectTimeout( 120, TimeUnit.SECONDS );
-        client.setWriteTimeout( 120, TimeUnit.SECONDS );
+    public String sendPrompt(String prompt, int maxTokens, Deadline deadline) throws IOException {
+        return sendPrompt(prompt, maxTokens, LlmLane.INTERACTIVE, deadline);
+    }
+
+    /**
+     * Sends the prompt within the request's deadline: timeouts are capped by the remaining budget and
+     * the HTTP call is cancelled as soon as the deadline is cancelled (client gone or out of time).
+     * Each attempt is paced by {@link LlmRateLimiter} (prompt estimate + maxTokens), queued on the
+     * caller's lane; a 429 is retried up to {@code max-retries} times after the provider's Retry-After.
+     *
+     * @return the model's JSON answer, or null when the answer holds no JSON block
+     * @throws LlmRateLimitedException when the last retry was still answered 429
+     * @throws DeadlineExceededException when the call was abandoned; counted in neurosnap.llm.call.abandoned
+     * @throws IOException when the call failed or the provider answered with another error status
+     */
+    public String sendPrompt(String prompt, int maxTokens, LlmLane lane, Deadline deadline) throws IOException {
+
+        deadline.check();
+        long timeoutMillis = Math.max( 1, deadline.clampMillis( MAX_TIMEOUT_MILLIS ) );
+        // Per-call copy: timeouts differ per request, connection pool is shared.
+        OkHttpClient client = this.client.clone();
+        client.setReadTimeout( timeoutMillis, TimeUnit.MILLISECONDS );
+        client.setConnectTimeout( timeoutMillis, TimeUnit.MILLISECONDS );
+        client.setWriteTimeout( timeoutMillis, TimeUnit.MILLISECONDS );
 
 //        String payload = String.format( "{\"model\":\"%s\",\"messages\":[{\"role\":\"system\",\"content\":\"Rewrite to ≤120 chars, clear, factual, friendly, no new numbers.\"},{\"role\":\"user\",\"content\":%s}],\"max_tokens\":60}",
 //                "gpt-4o", toJson(prompt));
@@ -36,13 +88,13 @@ public class ChatGptClient
 //                .build();
 
         JSONObject json = new JSONObject();
-        json.put("model", "gpt-4o"); // Use the appropriate model
+        json.put("model", MODEL); // Use the appropriate model
         json.put("messages", new JSONObject[]{
                 new JSONObject()
                         .put("role", "user")
                         .put("content", prompt)
         });
-        json.put("max_tokens",2000); // Adjust as needed
+        json.put("max_tokens",maxTokens); // Adjust as needed
 
 
         // Create request body
@@ -58,36 +110,85 @@ public class ChatGptClient
                 .addHeader("Content-Type", "application/json")
                 .build();
 
-        System.out.println("chat gpt request : " + request.toString());
-        String responseContent = null;
-        try {
-            Response response = client.newCall( request ).execute();
-            if (!response.isSuccessful()) {
-                    System.out.println("Something went wrong 1");
+        log.debug( "LLM request {}", request );
+        Observation observation = Observation.createNotStarted( "neurosnap.llm.call", observationRegistry )
+                .lowCardinalityKeyValue( "model", MODEL )
+                .lowCardinalityKeyValue( "status", "NO_RESPONSE" )
+                .highCardinalityKeyValue( "prompt.chars", String.valueOf( prompt.length() ) )
+                .highCardinalityKeyValue( "max.tokens", String.valueOf( maxTokens ) )
+                .start();
+        long start = System.nanoTime();
+        long estimatedTokens = LlmRateLimiter.estimateTokens( prompt ) + maxTokens;
+        long reservedTokens = 0;
+        AtomicReference<Call> current = new AtomicReference<>();
+        try ( Observation.Scope scope = observation.openScope(); Deadline.Registration cancel = deadline.onCancel( () -> {
+            Call call = current.get();
+            if ( call != null ) call.cancel();
+        } ) ) {
+            Response response;
+            long pauseMillis;
+            for ( int attempt = 0; ; attempt++ ) {
+                reservedTokens = rateLimiter.acquire( lane, estimatedTokens, deadline );
+                Call call = client.newCall( request );
+                current.set( call );
+                deadline.check(); // cancelled before the call was visible to the listener
+                response = call.execute();
+                pauseMillis = rateLimiter.onResponse( response.code(), response::header );
+                if ( response.code() == 429 ) {
+                    // Rejected calls do not count against the token budget.
+                    rateLimiter.settle( reservedTokens, 0 );
+                    reservedTokens = 0;
+                }
+                if ( response.code() != 429 || attempt >= maxRateLimitRetries ) break;
+                response.body().close();
+            }
+            observation.lowCardinalityKeyValue( "status", String.valueOf( response.code() ) );
+            String finalResp = response.body().string();
+            log.debug( "LLM response {}: {}", response.code(), finalResp );
+            if ( response.code() == 429 ) {
+                throw new LlmRateLimitedException( TimeUnit.MILLISECONDS.toSeconds( pauseMillis + 999 ),
+                        "Upstream LLM still rate limited after " + maxRateLimitRetries + " retries" );
+            }
+            if ( !response.isSuccessful() ) {
+                throw new IOException( "Upstream LLM call failed with status " + response.code() );
             }
-                String finalResp = response.body().string();
-                System.out.println("RESPONSE BODY START : " + finalResp);
-                System.out.println("RESPONSE BODY END : " );
 
             JSONObject jsonResponse = new JSONObject( finalResp );
-            responseContent = jsonResponse
+            JSONObject usage = jsonResponse.optJSONObject( "usage" );
+            if ( usage != null ) {
+                rateLimiter.settle( reservedTokens, usage.optLong( "total_tokens", reservedTokens ) );
+                reservedTokens = 0;
+            }
+            String responseContent = jsonResponse
                     .getJSONArray( "choices" )
                     .getJSONObject( 0 )
                     .getJSONObject( "message" )
                     .getString( "content" );
 
-
-            System.out.println( "Response: " + responseContent );
-            responseContent = responseContent.substring( responseContent.indexOf( "```json" ), responseContent.lastIndexOf( "```" ) );
-            responseContent = responseContent.replace( "```json", "" ).replace( "```", "" );
-
-
-            return responseContent;
+            int open = responseContent.indexOf( "```json" );
+            int close = responseContent.lastIndexOf( "```" );
+            if ( open < 0 || close <= open ) {
+                log.debug( "LLM answer holds no JSON block" );
+                return null;
+            }
+            return responseContent.substring( open + "```json".length(), close );
         } catch ( Exception e ) {
-            System.out.println("Something went wrong " + e.getMessage());
+            observation.error( e );
+            if ( deadline.isExpired() ) {
+                observation.lowCardinalityKeyValue( "status", "CANCELLED" );
+                Deadline.Reason reason = deadline.reason();
+                Timer.builder( "neurosnap.llm.call.abandoned" )
+                        .description( "Upstream LLM calls cancelled by their request's deadline, and the time spent on them" )
+                        .tag( "reason", reason.name().toLowerCase() )
+                        .register( meterRegistry )
+                        .record( System.nanoTime() - start, TimeUnit.NANOSECONDS );
+                throw new DeadlineExceededException( reason, "Upstream LLM call abandoned: " + reason );
+            }
+            if ( e instanceof IOException io ) throw io;
+            throw new IOException( "Upstream LLM answer could not be read: " + e.getMessage(), e );
+        } finally {
+            observation.stop();
         }
-
-        return responseContent;
     }
 
     private String toJson(String s){ return "\""+ s.replace("\"", "\\\"") +"\""; }
@@ -0,0 +1,176 @@
+package neurosnap.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Time budget and cancellation signal of one request, handed from the endpoint down to the upstream LLM call.
+ *
+ * The endpoint creates it from the client's timeout (or its default) and cancels it when the budget
+ * runs out or the client goes away. Everything below reads {@link #remainingMillis()} for its own
+ * waits and timeouts, and whatever holds a cancellable resource (an in-flight HTTP call, a queued
+ * scheduler slot) registers {@link #onCancel} to let go of it.
+ *
+ * Notes:
+ * - Passing the expiry time alone does not fire listeners; the owner of the request calls cancel().
+ * - {@link #none()} never expires and cannot be cancelled (background work, tests, warm-up).
+ * - {@link #unbounded()} never expires but can be cancelled (a caller without a time budget who can still go away).
+ */
+public final class Deadline
+{
+    public enum Reason
+    {
+        DEADLINE_EXCEEDED,      // the client's time budget ran out
+        CLIENT_DISCONNECTED     // the client closed the connection or cancelled the call
+    }
+
+    private static final Deadline NONE = new Deadline( 0, true );
+
+    private final long expiresAtNanos;
+    private final boolean unbounded;
+    private final List<Runnable> listeners = new ArrayList<>();     // guarded by itself
+    private volatile Reason cancelled;
+
+    private Deadline( long expiresAtNanos, boolean unbounded )
+    {
+        this.expiresAtNanos = expiresAtNanos;
+        this.unbounded = unbounded;
+    }
+
+    public static Deadline none()
+    {
+        return NONE;
+    }
+
+    /** No time limit, but {@link #cancel} still stops the work. */
+    public static Deadline unbounded()
+    {
+        return new Deadline( 0, true );
+    }
+
+    public static Deadline afterMillis( long millis )
+    {
+        return new Deadline( System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( Math.max( 0, millis ) ), false );
+    }
+
+    /**
+     * Deadline for work shared by several requests (a batched upstream call): it lasts as long as the
+     * latest member and is cancelled only once every member has been cancelled.
+     */
+    public static Deadline latestOf( Collection<Deadline> members )
+    {
+        long latest = Long.MIN_VALUE;
+        boolean unbounded = false;
+        for ( Deadline member : members ) {
+            if ( member == NONE ) return NONE;
+            if ( member.unbounded ) unbounded = true;
+            else latest = Math.max( latest, member.expiresAtNanos );
+        }
+        Deadline shared = new Deadline( unbounded ? 0 : latest, unbounded );
+        AtomicInteger live = new AtomicInteger( members.size() );
+        for ( Deadline member : members ) {
+            member.onCancel( () -> {
+                if ( live.decrementAndGet() == 0 ) shared.cancel( member.reason() );
+            } );
+        }
+        return shared;
+    }
+
+    /** True for {@link #none()} and {@link #unbounded()}: no time limit (cancellation may still apply). */
+    public boolean isUnbounded()
+    {
+        return unbounded;
+    }
+
+    /** Milliseconds left, 0 once expired or cancelled; Long.MAX_VALUE without a time limit. */
+    public long remainingMillis()
+    {
+        if ( cancelled != null ) return 0;
+        if ( unbounded ) return Long.MAX_VALUE;
+        return Math.max( 0, TimeUnit.NANOSECONDS.toMillis( expiresAtNanos - System.nanoTime() ) );
+    }
+
+    /** {@code millis} capped by the remaining budget. */
+    public long clampMillis( long millis )
+    {
+        return Math.min( millis, remainingMillis() );
+    }
+
+    public boolean isExpired()
+    {
+        return cancelled != null || ( !unbounded && System.nanoTime() - expiresAtNanos >= 0 );
+    }
+
+    /** Why the work should stop, or null while the budget lasts. */
+    public Reason reason()
+    {
+        Reason reason = cancelled;
+        if ( reason != null ) return reason;
+        return isExpired() ? Reason.DEADLINE_EXCEEDED : null;
+    }
+
+    /** Throws when the deadline has passed or the request was cancelled. */
+    public void check() throws DeadlineExceededException
+    {
+        if ( isExpired() ) {
+            throw new DeadlineExceededException( reason(), "Request abandoned before completion" );
+        }
+    }
+
+    /**
+     * Cancels the request and runs the registered listeners on the calling thread. Only the first call counts.
+     *
+     * @return true if this call cancelled the request, false if it already was (or cannot be)
+     */
+    public boolean cancel( Reason reason )
+    {
+        if ( this == NONE ) return false;
+        List<Runnable> toRun;
+        synchronized ( listeners ) {
+            if ( cancelled != null ) return false;
+            cancelled = reason;
+            toRun = new ArrayList<>( listeners );
+            listeners.clear();
+        }
+        for ( Runnable listener : toRun ) {
+            try {
+                listener.run();
+            } catch ( RuntimeException e ) {
+                // One failing listener must not keep the others from releasing their resources.
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs {@code listener} when the request is cancelled (immediately if it already is).
+     * Close the returned registration once the guarded resource is released.
+     */
+    public Registration onCancel( Runnable listener )
+    {
+        if ( this == NONE ) return () -> {};
+        synchronized ( listeners ) {
+            if ( cancelled == null ) {
+                listeners.add( listener );
+                return () -> {
+                    synchronized ( listeners ) {
+                        listeners.remove( listener );
+                    }
+                };
+            }
+        }
+        listener.run();
+        return () -> {};
+    }
+
+    /** Handle for a cancel listener; close() deregisters it. */
+    @FunctionalInterface
+    public interface Registration extends AutoCloseable
+    {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,22 @@
+package neurosnap.client;
+
+import java.io.IOException;
+import lombok.Getter;
+
+/**
+ * Thrown when work for a request is abandoned because its {@link Deadline} passed or its client went away.
+ *
+ * An IOException, so it travels through the existing upstream-call signatures; the endpoints map it to
+ * 504 (REST) or DEADLINE_EXCEEDED / CANCELLED (gRPC).
+ */
+@Getter
+public class DeadlineExceededException extends IOException
+{
+    private final Deadline.Reason reason;
+
+    public DeadlineExceededException( Deadline.Reason reason, String message )
+    {
+        super( message );
+        this.reason = reason == null ? Deadline.Reason.DEADLINE_EXCEEDED : reason;
+    }
+}
@@ -0,0 +1,355 @@
+package neurosnap.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Micro-batching dispatcher in front of {@link ChatGptClient}.
+ *
+ * Callers hand in the shared instructions (goals, rules, formulas) and their own persona section.
+ * Requests with identical shared instructions that arrive within {@code window-millis}
+ * (or until {@code max-size} requests are waiting) are packed into one completion:
+ * shared instructions once, then one labelled section per request (R1, R2, ...).
+ * The model answers with one JSON object keyed by label, which is split back out to each caller.
+ *
+ * Threading: the first caller of a batch is its leader. It waits for the window, sends the
+ * batch on its own thread and completes everybody's future, so no extra threads are needed and
+ * the added latency is bounded by the window.
+ *
+ * A request whose part is missing or unparseable in the batch answer falls back to its own
+ * single-request completion; so does every request of a batch whose upstream call failed for any
+ * reason other than a deadline or an exhausted provider rate limit (retrying those one by one would
+ * only add load).
+ *
+ * Requests are only batched within one {@link LlmLane}; every upstream call holds an
+ * {@link LlmScheduler} slot of that lane.
+ *
+ * Deadlines: each caller waits at most until its own {@link Deadline}. A batched upstream call runs
+ * under {@link Deadline#latestOf} its members, so it is cancelled only when every caller has given up;
+ * callers that are already gone when the batch closes are left out of the prompt
+ * (neurosnap.llm.dispatch.abandoned).
+ *
+ * Tracing: every caller gets a neurosnap.llm.dispatch span tagged with its batch role. The upstream
+ * neurosnap.llm.call span sits under the leader's trace only; followers carry the batch size.
+ */
+@Slf4j
+@Service
+public class LlmBatchDispatcher
+{
+    /** Output budget per packed request, and the model's cap for one completion. */
+    private static final int TOKENS_PER_REQUEST = ChatGptClient.DEFAULT_MAX_TOKENS;
+    private static final int MAX_OUTPUT_TOKENS = 16000;
+
+    private final ChatGptClient chatGptClient;
+    private final LlmScheduler llmScheduler;
+    private final ObservationRegistry observationRegistry;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxBatchSize;
+
+    /** Open batches by lane and shared instructions; guarded by itself. */
+    private final Map<BatchKey, Batch> openBatches = new HashMap<>();
+
+    private final Counter upstreamCalls;
+    private final Counter requests;
+    private final Counter fallbacks;
+    private final Counter abandoned;
+    private final DistributionSummary batchSize;
+
+    public LlmBatchDispatcher( ChatGptClient chatGptClient, LlmScheduler llmScheduler, MeterRegistry meterRegistry, ObservationRegistry observationRegistry,
+            @Value( "${neurosnap.llm.batch.enabled:true}" ) boolean enabled,
+            @Value( "${neurosnap.llm.batch.window-millis:15}" ) long windowMillis,
+            @Value( "${neurosnap.llm.batch.max-size:6}" ) int maxBatchSize )
+    {
+        this.chatGptClient = chatGptClient;
+        this.llmScheduler = llmScheduler;
+        this.observationRegistry = observationRegistry;
+        this.enabled = enabled;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos( windowMillis );
+        this.maxBatchSize = Math.max( 1, Math.min( maxBatchSize, MAX_OUTPUT_TOKENS / TOKENS_PER_REQUEST ) );
+
+        this.upstreamCalls = meterRegistry.counter( "neurosnap.llm.dispatch.upstream.calls" );
+        this.requests = meterRegistry.counter( "neurosnap.llm.dispatch.requests" );
+        this.fallbacks = meterRegistry.counter( "neurosnap.llm.dispatch.fallbacks" );
+        this.abandoned = meterRegistry.counter( "neurosnap.llm.dispatch.abandoned" );
+        this.batchSize = DistributionSummary.builder( "neurosnap.llm.dispatch.batch.size" )
+                .description( "Requests packed into one upstream completion" )
+                .register( meterRegistry );
+    }
+
+    /**
+     * Returns the model's JSON answer for one persona section.
+     */
+    public String complete( String sharedInstructions, String section ) throws Exception
+    {
+        return complete( sharedInstructions, section, LlmLane.INTERACTIVE );
+    }
+
+    /**
+     * Returns the model's JSON answer for one persona section, scheduled on the given lane.
+     */
+    public String complete( String sharedInstructions, String section, LlmLane lane ) throws Exception
+    {
+        return complete( sharedInstructions, section, lane, Deadline.none() );
+    }
+
+    /**
+     * Returns the model's JSON answer for one persona section, scheduled on the given lane within the caller's deadline.
+     */
+    public String complete( String sharedInstructions, String section, LlmLane lane, Deadline deadline ) throws Exception
+    {
+        requests.increment();
+        Observation observation = Observation.createNotStarted( "neurosnap.llm.dispatch", observationRegistry )
+                .lowCardinalityKeyValue( "lane", lane.name().toLowerCase() )
+                .lowCardinalityKeyValue( "batch.role", "single" )
+                .lowCardinalityKeyValue( "fallback", "false" )
+                .start();
+        try ( Observation.Scope scope = observation.openScope() ) {
+            return complete( new BatchKey( lane, sharedInstructions ), section, deadline, observation );
+        } catch ( Exception e ) {
+            observation.error( e );
+            throw e;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    private String complete( BatchKey key, String section, Deadline deadline, Observation observation ) throws Exception
+    {
+        if ( !enabled || maxBatchSize == 1 ) {
+            return sendSingle( key, section, deadline );
+        }
+
+        Item item = new Item( section, deadline );
+        Batch batch;
+        boolean leader = false;
+        synchronized ( openBatches ) {
+            batch = openBatches.get( key );
+            if ( batch == null ) {
+                batch = new Batch( key, System.nanoTime() + windowNanos );
+                openBatches.put( key, batch );
+                leader = true;
+            }
+            batch.items.add( item );
+            if ( batch.items.size() >= maxBatchSize ) {
+                close( batch );
+            }
+        }
+
+        observation.lowCardinalityKeyValue( "batch.role", leader ? "leader" : "follower" );
+        if ( leader ) {
+            boolean interrupted = awaitClose( batch );
+            try {
+                dispatch( batch );
+            } finally {
+                // Deferred so the followers' upstream call is not failed by the leader's interrupt.
+                if ( interrupted ) Thread.currentThread().interrupt();
+            }
+        }
+
+        String result = await( item );
+        observation.highCardinalityKeyValue( "batch.size", String.valueOf( batch.items.size() ) );
+        if ( result == null ) {
+            fallbacks.increment();
+            observation.lowCardinalityKeyValue( "fallback", "true" );
+            return sendSingle( key, section, deadline );
+        }
+        return result;
+    }
+
+    /** Waits for the item's part of the batch answer, but no longer than its caller's deadline. */
+    private String await( Item item ) throws Exception
+    {
+        Deadline deadline = item.deadline;
+        try ( Deadline.Registration cancel = deadline.onCancel( () -> item.future.completeExceptionally(
+                new DeadlineExceededException( deadline.reason(), "Caller left before its batch was answered" ) ) ) ) {
+            return deadline.isUnbounded()
+                    ? item.future.get()
+                    : item.future.get( deadline.remainingMillis(), TimeUnit.MILLISECONDS );
+        } catch ( ExecutionException e ) {
+            if ( e.getCause() instanceof Exception cause ) throw cause;
+            throw e;
+        } catch ( TimeoutException e ) {
+            throw new DeadlineExceededException( Deadline.Reason.DEADLINE_EXCEEDED, "Caller left before its batch was answered" );
+        }
+    }
+
+    /**
+     * Waits until the batch is full or its window has passed; the batch is always closed on return.
+     *
+     * @return whether the leader was interrupted; the caller restores the flag after dispatching
+     */
+    private boolean awaitClose( Batch batch )
+    {
+        boolean interrupted = false;
+        synchronized ( openBatches ) {
+            long remaining;
+            try {
+                while ( !batch.closed && ( remaining = batch.deadlineNanos - System.nanoTime() ) > 0 ) {
+                    TimeUnit.NANOSECONDS.timedWait( openBatches, remaining );
+                }
+            } catch ( InterruptedException e ) {
+                // Dispatch what we have; other callers are waiting on this thread.
+                interrupted = true;
+            }
+            if ( !batch.closed ) {
+                close( batch );
+            }
+        }
+        return interrupted;
+    }
+
+    /** Must hold the openBatches lock. */
+    private void close( Batch batch )
+    {
+        openBatches.remove( batch.key, batch );
+        batch.closed = true;
+        openBatches.notifyAll();
+    }
+
+    private void dispatch( Batch batch )
+    {
+        List<Item> items = new ArrayList<>( batch.items.size() );
+        for ( Item item : batch.items ) {
+            if ( item.deadline.isExpired() ) {
+                abandoned.increment();
+                item.future.completeExceptionally( new DeadlineExceededException( item.deadline.reason(), "Caller left before its batch was sent" ) );
+            } else {
+                items.add( item );
+            }
+        }
+        if ( items.isEmpty() ) return;
+        batchSize.record( items.size() );
+        if ( items.size() == 1 ) {
+            Item item = items.get( 0 );
+            try {
+                item.future.complete( sendSingle( batch.key, item.section, item.deadline ) );
+            } catch ( Exception e ) {
+                item.future.completeExceptionally( e );
+            }
+            return;
+        }
+
+        try {
+            List<Deadline> deadlines = new ArrayList<>( items.size() );
+            for ( Item item : items ) deadlines.add( item.deadline );
+            Deadline shared = Deadline.latestOf( deadlines );
+
+            String prompt = batchPrompt( batch.key.sharedInstructions(), items );
+            String response;
+            try ( LlmScheduler.Slot slot = llmScheduler.acquire( batch.key.lane(), shared ) ) {
+                upstreamCalls.increment();
+                response = chatGptClient.sendPrompt( prompt, Math.min( MAX_OUTPUT_TOKENS, TOKENS_PER_REQUEST * items.size() ),
+                        batch.key.lane(), shared );
+            }
+            JsonNode root = response == null ? null : parse( response );
+            if ( response == null ) {
+                log.warn( "No JSON block in LLM answer for batch of {}, falling back to single requests", items.size() );
+            }
+            for ( int i = 0; i < items.size(); i++ ) {
+                JsonNode part = root == null ? null : root.get( label( i ) );
+                items.get( i ).future.complete( part != null && part.isObject() ? mapper.writeValueAsString( part ) : null );
+            }
+        } catch ( DeadlineExceededException | LlmRateLimitedException e ) {
+            for ( Item item : items ) {
+                item.future.completeExceptionally( e );
+            }
+        } catch ( Exception e ) {
+            // Each caller retries on its own (null = fallback) instead of sharing one failure.
+            log.warn( "Batched LLM call for {} requests failed, falling back to single requests: {}", items.size(), e.getMessage() );
+            for ( Item item : items ) {
+                item.future.complete( null );
+            }
+        }
+    }
+
+    private String sendSingle( BatchKey key, String section, Deadline deadline ) throws IOException, InterruptedException
+    {
+        try ( LlmScheduler.Slot slot = llmScheduler.acquire( key.lane(), deadline ) ) {
+            upstreamCalls.increment();
+            return chatGptClient.sendPrompt( key.sharedInstructions() + section, ChatGptClient.DEFAULT_MAX_TOKENS, key.lane(), deadline );
+        }
+    }
+
+    private JsonNode parse( String response )
+    {
+        try {
+            return mapper.readTree( response );
+        } catch ( IOException e ) {
+            log.warn( "Could not parse batched LLM response, falling back to single requests: {}", e.getMessage() );
+            return null;
+        }
+    }
+
+    private String batchPrompt( String sharedInstructions, List<Item> items )
+    {
+        StringBuilder prompt = new StringBuilder( sharedInstructions.length() + items.size() * 4096 );
+        prompt.append( sharedInstructions )
+                .append( "You will answer " ).append( items.size() )
+                .append( " independent requests below. Apply all instructions above to each request separately.\n\n" );
+        for ( int i = 0; i < items.size(); i++ ) {
+            prompt.append( "=== REQUEST " ).append( label( i ) ).append( " ===\n" )
+                    .append( items.get( i ).section )
+                    .append( "\n\n" );
+        }
+        prompt.append( "RETURN FORMAT: a single JSON object in one ```json block whose keys are the request labels (" );
+        for ( int i = 0; i < items.size(); i++ ) {
+            prompt.append( i == 0 ? "" : ", " ).append( '"' ).append( label( i ) ).append( '"' );
+        }
+        prompt.append( ") and whose values are the OUTPUT FORMAT object of that request.\n" );
+        return prompt.toString();
+    }
+
+    private static String label( int index )
+    {
+        return "R" + ( index + 1 );
+    }
+
+    private record BatchKey( LlmLane lane, String sharedInstructions ) {}
+
+    private static final class Batch
+    {
+        private final BatchKey key;
+        private final long deadlineNanos;
+        private final List<Item> items = new ArrayList<>();
+        private boolean closed;
+
+        private Batch( BatchKey key, long deadlineNanos )
+        {
+            this.key = key;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    private static final class Item
+    {
+        private final String section;
+        private final Deadline deadline;
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        private Item( String section, Deadline deadline )
+        {
+            this.section = section;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package neurosnap.client;
+
+/**
+ * Priority lane for LLM-bound work, see {@link LlmScheduler}.
+ *
+ * - INTERACTIVE: UI calls; default when no lane is given.
+ * - BATCH: scripted back-office runs.
+ * - SPECULATIVE: prefetch and other work nobody is waiting on yet.
+ */
+public enum LlmLane
+{
+    INTERACTIVE,
+    BATCH,
+    SPECULATIVE;
+
+    /** Parses a header value; null/blank means INTERACTIVE. */
+    public static LlmLane from( String v )
+    {
+        if ( v == null || v.isBlank() )
+            return INTERACTIVE;
+        String s = v.trim().toUpperCase();
+        switch ( s )
+        {
+            case "INTERACTIVE":
+                return INTERACTIVE;
+            case "BATCH":
+                return BATCH;
+            case "SPECULATIVE":
+                return SPECULATIVE;
+            default:
+                throw new IllegalArgumentException( "Unsupported lane: " + v );
+        }
+    }
+}
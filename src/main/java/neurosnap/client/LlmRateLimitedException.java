@@ -0,0 +1,22 @@
+package neurosnap.client;
+
+import java.io.IOException;
+import lombok.Getter;
+
+/**
+ * Thrown when the provider still answers 429 after {@link ChatGptClient} used up its retries.
+ *
+ * An IOException, so it travels through the existing upstream-call signatures; the endpoints map it to
+ * 503 (REST) or UNAVAILABLE (gRPC) with the provider's Retry-After.
+ */
+@Getter
+public class LlmRateLimitedException extends IOException
+{
+    private final long retryAfterSeconds;
+
+    public LlmRateLimitedException( long retryAfterSeconds, String message )
+    {
+        super( message );
+        this.retryAfterSeconds = Math.max( 1, retryAfterSeconds );
+    }
+}
@@ -0,0 +1,332 @@
+package neurosnap.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.InterruptedIOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Paces upstream LLM calls under the provider's requests-per-minute and tokens-per-minute limits.
+ *
+ * Each call reserves one request and its estimated tokens (prompt estimate + max_tokens) from two
+ * budgets that refill continuously at limit / 60 s. Callers queue by {@link LlmLane} (INTERACTIVE
+ * before BATCH before SPECULATIVE, FIFO within a lane); the head waits until both budgets cover it,
+ * so a burst is spread out instead of drawing 429s. The budgets hold at most
+ * {@code burst-seconds} worth of refill, which keeps the send rate smooth after an idle period.
+ *
+ * Notes:
+ * - Provider headers (x-ratelimit-limit-*, x-ratelimit-remaining-*) correct the local view after
+ *   every response: the limits are taken over and the budgets never exceed what the provider reports.
+ * - A 429 pauses all callers until Retry-After (retry-after-ms, Retry-After, else the reset header,
+ *   else one second); {@link ChatGptClient} then retries the call.
+ * - Reservations are settled against the usage the provider reports, so unused max_tokens go back.
+ * - A waiter leaves the queue when its {@link Deadline} passes or is cancelled.
+ * - Callers already hold their {@link LlmScheduler} slot here, so ordering by lane keeps a queue of
+ *   batch or speculative calls from holding interactive ones back.
+ *
+ * Metrics:
+ * - neurosnap.llm.ratelimit.remaining{budget=requests|tokens}, neurosnap.llm.ratelimit.limit{budget=...}
+ * - neurosnap.llm.ratelimit.wait (time queued), neurosnap.llm.ratelimit.queued
+ * - neurosnap.llm.ratelimit.throttled (429 responses)
+ */
+@Slf4j
+@Service
+public class LlmRateLimiter
+{
+    private static final Pattern DURATION_PART = Pattern.compile( "(\\d+(?:\\.\\d+)?)(ms|h|m|s)" );
+    private static final long DEFAULT_PAUSE_MILLIS = 1000;
+
+    private final Object lock = new Object();
+
+    private final boolean enabled;
+    private final double burstSeconds;
+    private final Budget requests;
+    private final Budget tokens;
+    private final ArrayDeque<Object>[] waiters;
+    private long pausedUntilNanos = System.nanoTime();
+
+    private final Timer waitTimer;
+    private final Counter throttled;
+
+    public LlmRateLimiter( MeterRegistry meterRegistry,
+            @Value( "${neurosnap.llm.ratelimit.enabled:true}" ) boolean enabled,
+            @Value( "${neurosnap.llm.ratelimit.requests-per-minute:500}" ) long requestsPerMinute,
+            @Value( "${neurosnap.llm.ratelimit.tokens-per-minute:30000}" ) long tokensPerMinute,
+            @Value( "${neurosnap.llm.ratelimit.burst-seconds:10}" ) double burstSeconds )
+    {
+        this.enabled = enabled;
+        this.burstSeconds = Math.max( 1, burstSeconds );
+        this.requests = new Budget( requestsPerMinute );
+        this.tokens = new Budget( tokensPerMinute );
+        @SuppressWarnings( "unchecked" )
+        ArrayDeque<Object>[] queues = new ArrayDeque[LlmLane.values().length];
+        Arrays.setAll( queues, i -> new ArrayDeque<>() );
+        this.waiters = queues;
+
+        for ( String name : new String[] { "requests", "tokens" } ) {
+            Budget budget = name.equals( "requests" ) ? requests : tokens;
+            Gauge.builder( "neurosnap.llm.ratelimit.remaining", budget, b -> { synchronized ( lock ) { return b.available( System.nanoTime() ); } } )
+                    .description( "Upstream budget left to spend now (local view, corrected by provider headers)" )
+                    .tag( "budget", name ).register( meterRegistry );
+            Gauge.builder( "neurosnap.llm.ratelimit.limit", budget, b -> { synchronized ( lock ) { return b.perMinute; } } )
+                    .tag( "budget", name ).register( meterRegistry );
+        }
+        for ( LlmLane lane : LlmLane.values() ) {
+            Gauge.builder( "neurosnap.llm.ratelimit.queued", waiters[lane.ordinal()], w -> { synchronized ( lock ) { return w.size(); } } )
+                    .tag( "lane", lane.name().toLowerCase() ).register( meterRegistry );
+        }
+        this.waitTimer = Timer.builder( "neurosnap.llm.ratelimit.wait" )
+                .description( "Time spent queued for upstream request/token budget" )
+                .register( meterRegistry );
+        this.throttled = meterRegistry.counter( "neurosnap.llm.ratelimit.throttled" );
+    }
+
+    /** Rough token count of a prompt (~4 characters per token for English and JSON). */
+    public static long estimateTokens( String prompt )
+    {
+        return prompt == null ? 0 : ( prompt.length() + 3 ) / 4;
+    }
+
+    /**
+     * Blocks until one request and {@code estimatedTokens} fit the budgets, then reserves them.
+     * Queued as {@link LlmLane#INTERACTIVE}.
+     *
+     * @return the tokens reserved, to pass to {@link #settle}
+     */
+    public long acquire( long estimatedTokens, Deadline deadline ) throws InterruptedIOException, DeadlineExceededException
+    {
+        return acquire( LlmLane.INTERACTIVE, estimatedTokens, deadline );
+    }
+
+    /**
+     * Blocks until one request and {@code estimatedTokens} fit the budgets, then reserves them. A waiter
+     * only proceeds when no higher-priority lane has anyone queued.
+     *
+     * @return the tokens reserved, to pass to {@link #settle}
+     */
+    public long acquire( LlmLane lane, long estimatedTokens, Deadline deadline ) throws InterruptedIOException, DeadlineExceededException
+    {
+        if ( !enabled ) return 0;
+        long start = System.nanoTime();
+        Object waiter = new Object();
+        ArrayDeque<Object> queue = waiters[lane.ordinal()];
+        try ( Deadline.Registration wakeUp = deadline.onCancel( this::wakeUp ) ) {
+            synchronized ( lock ) {
+                queue.add( waiter );
+                try {
+                    while ( true ) {
+                        if ( deadline.isExpired() ) {
+                            throw new DeadlineExceededException( deadline.reason(), "Gave up waiting for upstream rate limit budget" );
+                        }
+                        long now = System.nanoTime();
+                        long waitNanos = Long.MAX_VALUE;
+                        if ( head() == waiter ) {
+                            waitNanos = Math.max( pausedUntilNanos - now,
+                                    Math.max( requests.nanosUntil( 1, now ), tokens.nanosUntil( estimatedTokens, now ) ) );
+                            if ( waitNanos <= 0 ) {
+                                requests.take( 1, now );
+                                tokens.take( estimatedTokens, now );
+                                break;
+                            }
+                        }
+                        // 0 = until notified: not at the head, or nothing to wait out but the queue.
+                        long waitMillis = waitNanos == Long.MAX_VALUE ? 0 : Math.max( 1, TimeUnit.NANOSECONDS.toMillis( waitNanos ) );
+                        if ( !deadline.isUnbounded() ) {
+                            waitMillis = Math.max( 1, waitMillis == 0 ? deadline.remainingMillis() : deadline.clampMillis( waitMillis ) );
+                        }
+                        lock.wait( waitMillis );
+                    }
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException( "Interrupted waiting for upstream rate limit budget" );
+                } finally {
+                    queue.remove( waiter );
+                    lock.notifyAll();
+                }
+            }
+        }
+        waitTimer.record( System.nanoTime() - start, TimeUnit.NANOSECONDS );
+        return estimatedTokens;
+    }
+
+    /** Corrects a reservation once the provider reported the tokens actually used (0 when the call was rejected). */
+    public void settle( long reservedTokens, long usedTokens )
+    {
+        if ( !enabled ) return;
+        synchronized ( lock ) {
+            tokens.give( reservedTokens - usedTokens, System.nanoTime() );
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Applies the provider's rate limit headers from a response; on 429 pauses every caller until the
+     * provider's retry time.
+     *
+     * @return milliseconds the caller should wait before retrying (0 unless {@code status} is 429)
+     */
+    public long onResponse( int status, Function<String, String> header )
+    {
+        if ( !enabled ) return 0;
+        long now = System.nanoTime();
+        long pauseMillis = 0;
+        synchronized ( lock ) {
+            requests.sync( parseLong( header.apply( "x-ratelimit-limit-requests" ) ),
+                    parseLong( header.apply( "x-ratelimit-remaining-requests" ) ), now );
+            tokens.sync( parseLong( header.apply( "x-ratelimit-limit-tokens" ) ),
+                    parseLong( header.apply( "x-ratelimit-remaining-tokens" ) ), now );
+            if ( status == 429 ) {
+                throttled.increment();
+                pauseMillis = retryAfterMillis( header );
+                pausedUntilNanos = Math.max( pausedUntilNanos, now + TimeUnit.MILLISECONDS.toNanos( pauseMillis ) );
+                log.warn( "Upstream rate limited (429), pausing LLM calls for {} ms", pauseMillis );
+            }
+            lock.notifyAll();
+        }
+        return pauseMillis;
+    }
+
+    /** First waiter of the highest-priority lane with anyone queued. Guarded by the lock. */
+    private Object head()
+    {
+        for ( ArrayDeque<Object> queue : waiters ) {
+            if ( !queue.isEmpty() ) return queue.peek();
+        }
+        return null;
+    }
+
+    private void wakeUp()
+    {
+        synchronized ( lock ) {
+            lock.notifyAll();
+        }
+    }
+
+    private static long retryAfterMillis( Function<String, String> header )
+    {
+        long millis = parseLong( header.apply( "retry-after-ms" ) );
+        if ( millis >= 0 ) return millis;
+        String retryAfter = header.apply( "Retry-After" );
+        if ( retryAfter != null ) {
+            long seconds = parseLong( retryAfter );
+            if ( seconds >= 0 ) return TimeUnit.SECONDS.toMillis( seconds );
+            try {
+                ZonedDateTime at = ZonedDateTime.parse( retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME );
+                return Math.max( 0, at.toInstant().toEpochMilli() - System.currentTimeMillis() );
+            } catch ( Exception e ) {
+                // fall through to the reset headers
+            }
+        }
+        long reset = Math.max( parseDuration( header.apply( "x-ratelimit-reset-requests" ) ),
+                parseDuration( header.apply( "x-ratelimit-reset-tokens" ) ) );
+        return reset > 0 ? reset : DEFAULT_PAUSE_MILLIS;
+    }
+
+    /** Non-negative integer value, or -1 when absent or not a number. */
+    private static long parseLong( String value )
+    {
+        if ( value == null ) return -1;
+        try {
+            return Math.max( -1, (long) Double.parseDouble( value.trim() ) );
+        } catch ( NumberFormatException e ) {
+            return -1;
+        }
+    }
+
+    /** Provider reset durations such as "20ms", "1s", "6m0s", "1h2m3.5s"; -1 when absent or unparseable. */
+    static long parseDuration( String value )
+    {
+        if ( value == null || value.isBlank() ) return -1;
+        Matcher m = DURATION_PART.matcher( value.trim() );
+        double millis = 0;
+        int end = 0;
+        while ( m.find() ) {
+            if ( m.start() != end ) return -1;
+            double amount = Double.parseDouble( m.group( 1 ) );
+            millis += switch ( m.group( 2 ) ) {
+                case "ms" -> amount;
+                case "s" -> amount * 1000;
+                case "m" -> amount * 60_000;
+                default -> amount * 3_600_000;
+            };
+            end = m.end();
+        }
+        return end == value.trim().length() && end > 0 ? (long) Math.ceil( millis ) : -1;
+    }
+
+    /** One continuously refilling budget. Guarded by the limiter's lock. */
+    private final class Budget
+    {
+        private long perMinute;
+        private double available;
+        private long refilledNanos;
+
+        Budget( long perMinute )
+        {
+            this.perMinute = Math.max( 1, perMinute );
+            this.available = capacity();
+            this.refilledNanos = System.nanoTime();
+        }
+
+        private double capacity()
+        {
+            return Math.max( 1, perMinute * burstSeconds / 60 );
+        }
+
+        private void refill( long now )
+        {
+            available = Math.min( capacity(), available + ( now - refilledNanos ) * perMinute / 60e9 );
+            refilledNanos = now;
+        }
+
+        double available( long now )
+        {
+            refill( now );
+            return Math.max( 0, available );
+        }
+
+        /**
+         * Nanoseconds until {@code amount} can be taken. A reservation larger than the burst waits for a
+         * full budget and leaves it in debt, which later callers wait out.
+         */
+        long nanosUntil( long amount, long now )
+        {
+            refill( now );
+            double needed = Math.min( amount, capacity() ) - available;
+            return needed <= 0 ? 0 : (long) Math.ceil( needed * 60e9 / perMinute );
+        }
+
+        void take( long amount, long now )
+        {
+            refill( now );
+            available -= amount;
+        }
+
+        void give( long amount, long now )
+        {
+            refill( now );
+            available = Math.min( capacity(), available + amount );
+        }
+
+        /** Adopts the provider's limit and never believes in more budget than the provider reports. */
+        void sync( long limit, long remaining, long now )
+        {
+            refill( now );
+            if ( limit > 0 ) perMinute = limit;
+            if ( remaining >= 0 ) available = Math.min( available, remaining );
+            available = Math.min( available, capacity() );
+        }
+    }
+}
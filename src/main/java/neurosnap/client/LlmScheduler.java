@@ -0,0 +1,216 @@
+package neurosnap.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Priority scheduler for upstream LLM calls: every call to {@link ChatGptClient} holds a slot.
+ *
+ * Slots are limited globally ({@code max-concurrency}) and per lane ({@code <lane>.max-concurrency}).
+ * When a slot frees up it goes to:
+ *  1. the oldest INTERACTIVE waiter, if interactive is under its cap (interactive work jumps ahead
+ *     of everything already queued in the lower lanes),
+ *  2. otherwise BATCH or SPECULATIVE by weighted share (stride scheduling on {@code <lane>.weight}).
+ *
+ * Keeping the batch and speculative caps below the global limit leaves headroom, so a large bulk
+ * run queues behind its own cap instead of occupying every connection.
+ *
+ * A waiter leaves the queue when its request's {@link Deadline} passes or is cancelled
+ * (neurosnap.llm.scheduler.abandoned), so a slot is never handed to a caller that is already gone.
+ */
+@Service
+public class LlmScheduler
+{
+    private final Object lock = new Object();
+
+    private final int maxConcurrency;
+    private final Map<LlmLane, Lane> lanes = new EnumMap<>( LlmLane.class );
+    private int inFlight;
+
+    public LlmScheduler( MeterRegistry meterRegistry,
+            @Value( "${neurosnap.llm.scheduler.max-concurrency:8}" ) int maxConcurrency,
+            @Value( "${neurosnap.llm.scheduler.interactive.max-concurrency:8}" ) int interactiveCap,
+            @Value( "${neurosnap.llm.scheduler.batch.max-concurrency:4}" ) int batchCap,
+            @Value( "${neurosnap.llm.scheduler.batch.weight:3}" ) int batchWeight,
+            @Value( "${neurosnap.llm.scheduler.speculative.max-concurrency:2}" ) int speculativeCap,
+            @Value( "${neurosnap.llm.scheduler.speculative.weight:1}" ) int speculativeWeight )
+    {
+        this.maxConcurrency = Math.max( 1, maxConcurrency );
+        lanes.put( LlmLane.INTERACTIVE, new Lane( interactiveCap, 1 ) );
+        lanes.put( LlmLane.BATCH, new Lane( batchCap, batchWeight ) );
+        lanes.put( LlmLane.SPECULATIVE, new Lane( speculativeCap, speculativeWeight ) );
+
+        for ( Map.Entry<LlmLane, Lane> entry : lanes.entrySet() ) {
+            String tag = entry.getKey().name().toLowerCase();
+            Lane lane = entry.getValue();
+            Gauge.builder( "neurosnap.llm.scheduler.queued", lane, l -> { synchronized ( lock ) { return l.waiters.size(); } } )
+                    .tag( "lane", tag ).register( meterRegistry );
+            Gauge.builder( "neurosnap.llm.scheduler.in.flight", lane, l -> { synchronized ( lock ) { return l.inFlight; } } )
+                    .tag( "lane", tag ).register( meterRegistry );
+            lane.waitTimer = Timer.builder( "neurosnap.llm.scheduler.wait" )
+                    .description( "Time spent queued for an upstream LLM slot" )
+                    .tag( "lane", tag )
+                    .register( meterRegistry );
+            lane.abandoned = meterRegistry.counter( "neurosnap.llm.scheduler.abandoned", "lane", tag );
+        }
+    }
+
+    /**
+     * Blocks until the lane gets a slot or the deadline ends. Close the returned slot when the upstream call is done.
+     */
+    public Slot acquire( LlmLane lane, Deadline deadline ) throws InterruptedException, DeadlineExceededException
+    {
+        long start = System.nanoTime();
+        Lane l = lanes.get( lane );
+        Waiter waiter = new Waiter();
+        try ( Deadline.Registration wakeUp = deadline.onCancel( this::wakeUp ) ) {
+            synchronized ( lock ) {
+                if ( l.waiters.isEmpty() ) {
+                    // Re-entering after idling: no credit for the time the lane was not competing.
+                    l.pass = Math.max( l.pass, minBackloggedPass() );
+                }
+                l.waiters.add( waiter );
+                dispatch();
+                try {
+                    while ( !waiter.granted ) {
+                        if ( deadline.isExpired() ) {
+                            l.waiters.remove( waiter );
+                            l.abandoned.increment();
+                            throw new DeadlineExceededException( deadline.reason(), "Gave up waiting for an upstream LLM slot" );
+                        }
+                        if ( deadline.isUnbounded() ) {
+                            lock.wait();
+                        } else {
+                            lock.wait( Math.max( 1, deadline.remainingMillis() ) );
+                        }
+                    }
+                } catch ( InterruptedException e ) {
+                    if ( waiter.granted ) {
+                        release( l );
+                    } else {
+                        l.waiters.remove( waiter );
+                    }
+                    throw e;
+                }
+            }
+        }
+        l.waitTimer.record( System.nanoTime() - start, TimeUnit.NANOSECONDS );
+        return new Slot( l );
+    }
+
+    private void wakeUp()
+    {
+        synchronized ( lock ) {
+            lock.notifyAll();
+        }
+    }
+
+    /** Must hold the lock. */
+    private void dispatch()
+    {
+        boolean granted = false;
+        while ( inFlight < maxConcurrency ) {
+            Lane next = next();
+            if ( next == null ) break;
+            next.waiters.poll().granted = true;
+            next.inFlight++;
+            next.pass += 1.0 / next.weight;
+            inFlight++;
+            granted = true;
+        }
+        if ( granted ) {
+            lock.notifyAll();
+        }
+    }
+
+    /** Must hold the lock. */
+    private Lane next()
+    {
+        Lane interactive = lanes.get( LlmLane.INTERACTIVE );
+        if ( interactive.isRunnable() ) {
+            return interactive;
+        }
+        Lane best = null;
+        for ( LlmLane lane : new LlmLane[] { LlmLane.BATCH, LlmLane.SPECULATIVE } ) {
+            Lane candidate = lanes.get( lane );
+            if ( candidate.isRunnable() && ( best == null || candidate.pass < best.pass ) ) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /** Must hold the lock. */
+    private double minBackloggedPass()
+    {
+        double min = Double.MAX_VALUE;
+        for ( Lane lane : lanes.values() ) {
+            if ( !lane.waiters.isEmpty() ) min = Math.min( min, lane.pass );
+        }
+        return min == Double.MAX_VALUE ? 0 : min;
+    }
+
+    private void release( Lane lane )
+    {
+        synchronized ( lock ) {
+            lane.inFlight--;
+            inFlight--;
+            dispatch();
+        }
+    }
+
+    /** A held upstream slot; release with close(). */
+    public final class Slot implements AutoCloseable
+    {
+        private final Lane lane;
+        private boolean closed;
+
+        private Slot( Lane lane )
+        {
+            this.lane = lane;
+        }
+
+        @Override
+        public void close()
+        {
+            if ( closed ) return;
+            closed = true;
+            release( lane );
+        }
+    }
+
+    private static final class Lane
+    {
+        private final int cap;
+        private final int weight;
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private int inFlight;
+        private double pass;
+        private Timer waitTimer;
+        private Counter abandoned;
+
+        private Lane( int cap, int weight )
+        {
+            this.cap = Math.max( 1, cap );
+            this.weight = Math.max( 1, weight );
+        }
+
+        boolean isRunnable()
+        {
+            return !waiters.isEmpty() && inFlight < cap;
+        }
+    }
+
+    private static final class Waiter
+    {
+        private boolean granted;
+    }
+}
@@ -0,0 +1,33 @@
+package neurosnap.config;
+
+import io.micrometer.context.ContextSnapshotFactory;
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tracing setup on top of Spring Boot's OpenTelemetry auto-configuration.
+ *
+ * Spans come from Micrometer Observations (see the neurosnap.* observations in the controller,
+ * services and LLM client). Export targets:
+ * - OTLP to a local collector when management.otlp.tracing.endpoint is set (auto-configured),
+ * - the application log when neurosnap.tracing.logging-exporter=true (below; on in the "dev" profile only).
+ */
+@Configuration
+public class TracingConfiguration
+{
+    @Bean
+    @ConditionalOnProperty( name = "neurosnap.tracing.logging-exporter", havingValue = "true" )
+    public LoggingSpanExporter loggingSpanExporter()
+    {
+        return LoggingSpanExporter.create();
+    }
+
+    /** Captures the current observation/trace so work handed to other threads stays in the caller's trace. */
+    @Bean
+    public ContextSnapshotFactory contextSnapshotFactory()
+    {
+        return ContextSnapshotFactory.builder().build();
+    }
+}
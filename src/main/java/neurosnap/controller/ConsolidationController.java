@@ -0,0 +1,71 @@
+package neurosnap.controller;
+
+import java.util.Map;
+import java.util.UUID;
+import neurosnap.client.Deadline;
+import neurosnap.dto.ConsolidationRequest;
+import neurosnap.dto.ConsolidationResult;
+import neurosnap.service.ClusterService;
+import neurosnap.service.ConsolidationService;
+import org.apache.coyote.BadRequestException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/neurosnap/api/v1/refi")
+@CrossOrigin(origins = "http://localhost:5173")
+public class ConsolidationController
+{
+    private final ConsolidationService consolidationService;
+    private final ClusterService clusterService;
+
+    public ConsolidationController( ConsolidationService consolidationService, ClusterService clusterService )
+    {
+        this.consolidationService = consolidationService;
+        this.clusterService = clusterService;
+    }
+
+    /**
+     * Picks which of the persona's existing loans to roll into one refinance (min interest or min EMI).
+     * With a partitioned book the call is relayed to the node holding the persona.
+     */
+    @PostMapping("/consolidate")
+    public ResponseEntity<?> consolidate( @RequestBody ConsolidationRequest request,
+            @RequestHeader( value = "persona-id", required = false ) final String personaId,
+            @RequestHeader( value = ClusterService.FORWARDED_HEADER, required = false ) final String forwardedBy )
+    {
+        String owner = forwardedBy == null ? clusterService.shardOwner( personaId ) : null;
+        if ( owner != null ) {
+            try
+            {
+                return clusterService.forward( owner, ClusterService.CONSOLIDATE_PATH, request, personaId, Deadline.none() ).toResponseEntity();
+            } catch ( Exception e ) {
+                return ResponseEntity.status( HttpStatus.SERVICE_UNAVAILABLE )
+                        .header( HttpHeaders.RETRY_AFTER, "1" )
+                        .body( Map.of("error", Map.of(
+                                "code", "OWNER_UNAVAILABLE",
+                                "message", "Persona owner " + owner + " is unreachable: " + e.getMessage(),
+                                "requestId", UUID.randomUUID().toString()
+                        )));
+            }
+        }
+        try
+        {
+            ConsolidationResult result = consolidationService.optimize( personaId, request );
+            return ResponseEntity.ok( result );
+        } catch ( BadRequestException e ) {
+            return ResponseEntity.badRequest().body( Map.of("error", Map.of(
+                    "code", "VALIDATION_ERROR",
+                    "message", e.getMessage(),
+                    "requestId", UUID.randomUUID().toString()
+            )));
+        }
+    }
+}
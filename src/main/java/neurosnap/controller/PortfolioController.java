@@ -0,0 +1,60 @@
+package neurosnap.controller;
+
+import java.util.Map;
+import java.util.UUID;
+import neurosnap.dto.PortfolioSimulationRequest;
+import neurosnap.dto.PortfolioSimulationResult;
+import neurosnap.service.ClusterService;
+import neurosnap.service.PortfolioSimulationService;
+import org.apache.coyote.BadRequestException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/neurosnap/api/v1/refi/portfolio")
+@CrossOrigin(origins = "http://localhost:5173")
+public class PortfolioController
+{
+    private final PortfolioSimulationService portfolioSimulationService;
+    private final ClusterService clusterService;
+
+    public PortfolioController( PortfolioSimulationService portfolioSimulationService, ClusterService clusterService )
+    {
+        this.portfolioSimulationService = portfolioSimulationService;
+        this.clusterService = clusterService;
+    }
+
+    /**
+     * Runs the whole-book simulation; an empty body uses the default grid. Rejected with 409 when this node
+     * only holds a partition of the book.
+     */
+    @PostMapping("/simulate")
+    public ResponseEntity<?> simulate( @RequestBody(required = false) PortfolioSimulationRequest request )
+    {
+        if ( clusterService.isPartitionedLoading() ) {
+            return ResponseEntity.status( HttpStatus.CONFLICT ).body( Map.of("error", Map.of(
+                    "code", "PARTITIONED_BOOK",
+                    "message", "/portfolio/simulate needs the whole persona book, but this node only holds its own partition "
+                            + "(neurosnap.cluster.partitioned-loading=true).",
+                    "requestId", UUID.randomUUID().toString()
+            )));
+        }
+        try
+        {
+            PortfolioSimulationResult result = portfolioSimulationService.simulate(
+                    request != null ? request : PortfolioSimulationRequest.builder().build() );
+            return ResponseEntity.ok( result );
+        } catch ( BadRequestException e ) {
+            return ResponseEntity.badRequest().body( Map.of("error", Map.of(
+                    "code", "VALIDATION_ERROR",
+                    "message", e.getMessage(),
+                    "requestId", UUID.randomUUID().toString()
+            )));
+        }
+    }
+}
@@ -1,17 +1,52 @@
 package neurosnap.controller;
 
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
-import neurosnap.dto.Persona;
-import neurosnap.dto.RecommendOptionsResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import neurosnap.client.Deadline;
+import neurosnap.client.DeadlineExceededException;
+import neurosnap.client.LlmRateLimitedException;
+import neurosnap.client.LlmLane;
+import neurosnap.dto.CohortQuery;
+import neurosnap.dto.CohortQueryResult;
 import neurosnap.dto.RecommendRequest;
+import neurosnap.service.AdmissionRejectedException;
+import neurosnap.service.ClusterService;
+import neurosnap.service.IdempotencyConflictException;
+import neurosnap.service.IdempotencyStore;
+import neurosnap.service.PersonaImportService;
+import neurosnap.service.PersonaIndexService;
+import neurosnap.service.PersonaReaderService;
+import neurosnap.service.RecommendationGateway;
 import neurosnap.service.RecommendationService;
+import neurosnap.service.RulesReaderService;
+import neurosnap.service.SpeculativePrefetchService;
 import neurosnap.util.RefiInputValidator;
+import neurosnap.util.ResponseBytes;
 import org.apache.coyote.BadRequestException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -19,7 +54,10 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 @SuppressWarnings("SpringJavaInjectionPointsAutowiringInspection")
 @RestController
@@ -30,20 +68,118 @@ public class RecommendationController
 
     private final RecommendationService recommendationService;
     private final  RefiInputValidator refiInputValidator;
+    private final RecommendationGateway recommendationGateway;
+    private final IdempotencyStore idempotencyStore;
+    private final ObjectMapper objectMapper;
+    private final PersonaIndexService personaIndexService;
+    private final PersonaReaderService personaReaderService;
+    private final RulesReaderService rulesReaderService;
+    private final SpeculativePrefetchService speculativePrefetchService;
+    private final PersonaImportService personaImportService;
+    private final ObservationRegistry observationRegistry;
+    private final ClusterService clusterService;
+    private final MeterRegistry meterRegistry;
 
-    public RecommendationController(RecommendationService recommendationService, RefiInputValidator refiInputValidator)
+    /** /recommend runs off the servlet thread so a deadline or a dropped connection can end it early. */
+    private final ExecutorService recommendExecutor;
+    private final AsyncTaskExecutor recommendTaskExecutor;
+    private final long defaultTimeoutMillis;
+    private final long maxTimeoutMillis;
+
+    /** /personas pages: default and largest page size. */
+    private static final int DEFAULT_PERSONAS_PAGE = 500;
+    private static final int MAX_PERSONAS_PAGE = 5_000;
+
+    /** Pre-serialized static payload; built on first use. */
+    private volatile ResponseBytes exampleBytes;
+
+    /** The last /personas page served, valid only while the book is at {@code version}. */
+    private final AtomicReference<PersonasPage> personasPage = new AtomicReference<>();
+
+    public RecommendationController(RecommendationService recommendationService, RefiInputValidator refiInputValidator,
+            RecommendationGateway recommendationGateway, IdempotencyStore idempotencyStore, ObjectMapper objectMapper,
+            PersonaIndexService personaIndexService, PersonaReaderService personaReaderService,
+            RulesReaderService rulesReaderService, SpeculativePrefetchService speculativePrefetchService, PersonaImportService personaImportService,
+            ObservationRegistry observationRegistry, ClusterService clusterService,
+            ContextSnapshotFactory contextSnapshotFactory, MeterRegistry meterRegistry,
+            @Value( "${neurosnap.deadline.recommend-millis:60000}" ) long defaultTimeoutMillis,
+            @Value( "${neurosnap.deadline.max-millis:120000}" ) long maxTimeoutMillis)
     {
         this.recommendationService = recommendationService;
         this.refiInputValidator = refiInputValidator;
+        this.recommendationGateway = recommendationGateway;
+        this.idempotencyStore = idempotencyStore;
+        this.objectMapper = objectMapper;
+        this.personaIndexService = personaIndexService;
+        this.personaReaderService = personaReaderService;
+        this.rulesReaderService = rulesReaderService;
+        this.speculativePrefetchService = speculativePrefetchService;
+        this.personaImportService = personaImportService;
+        this.observationRegistry = observationRegistry;
+        this.clusterService = clusterService;
+        this.meterRegistry = meterRegistry;
+        this.defaultTimeoutMillis = Math.max( 1, defaultTimeoutMillis );
+        this.maxTimeoutMillis = Math.max( this.defaultTimeoutMillis, maxTimeoutMillis );
+        // Admission control bounds the in-flight work; threads are created on demand like servlet threads.
+        this.recommendExecutor = ContextExecutorService.wrap( Executors.newCachedThreadPool( r -> {
+            Thread t = new Thread( r, "recommend" );
+            t.setDaemon( true );
+            return t;
+        } ), contextSnapshotFactory );
+        this.recommendTaskExecutor = new TaskExecutorAdapter( recommendExecutor );
     }
 
+    @PreDestroy
+    public void shutdown()
+    {
+        recommendExecutor.shutdownNow();
+    }
+
+    /**
+     * Runs under the client's deadline (Neurosnap-Timeout-Millis, default neurosnap.deadline.recommend-millis).
+     * When it passes the client gets 504 DEADLINE_EXCEEDED and the in-flight upstream LLM call is cancelled
+     * (neurosnap.recommend.abandoned{reason=deadline_exceeded}).
+     *
+     * Tomcat does not notice a client that hangs up while nothing is being written, so a dropped
+     * connection is not detected here: the deadline is what bounds abandoned work. The error hook only
+     * covers errors the container reports for the async request itself.
+     */
     @PostMapping("/recommend")
-    public ResponseEntity<?> recommendOptions(@RequestBody RecommendRequest request,
-            @RequestHeader( value = "persona-id", required = false ) final String personaId)
+    public WebAsyncTask<ResponseEntity<?>> recommendOptions(@RequestBody RecommendRequest request,
+            @RequestHeader( value = "persona-id", required = false ) final String personaId,
+            @RequestHeader( value = "Idempotency-Key", required = false ) final String idempotencyKey,
+            @RequestHeader( value = "Neurosnap-Lane", required = false ) final String laneHeader,
+            @RequestHeader( value = "Neurosnap-Timeout-Millis", required = false ) final String timeoutHeader,
+            @RequestHeader( value = ClusterService.FORWARDED_HEADER, required = false ) final String forwardedBy,
+            @RequestHeader( value = HttpHeaders.ACCEPT_ENCODING, required = false ) final String acceptEncoding)
     {
+        final List<String> headerErrors = new ArrayList<>();
+        final Deadline deadline = deadline( timeoutHeader, headerErrors );
 
+        WebAsyncTask<ResponseEntity<?>> task = new WebAsyncTask<>( Math.max( 1, deadline.remainingMillis() ), recommendTaskExecutor,
+                () -> Observation.createNotStarted( "neurosnap.recommend", observationRegistry )
+                        .lowCardinalityKeyValue( "idempotent", String.valueOf( idempotencyKey != null && !idempotencyKey.isBlank() ) )
+                        .highCardinalityKeyValue( "persona.id", String.valueOf( personaId ) )
+                        .observe( () -> recommend( request, personaId, idempotencyKey, laneHeader, forwardedBy, acceptEncoding, deadline,
+                                headerErrors ) ) );
+        task.onTimeout( () -> {
+            abandon( deadline, Deadline.Reason.DEADLINE_EXCEEDED );
+            return deadlineExceeded( Deadline.Reason.DEADLINE_EXCEEDED );
+        } );
+        task.onError( () -> {
+            // The container gave up on the request (e.g. a failed async dispatch): nobody left to answer.
+            abandon( deadline, Deadline.Reason.CLIENT_DISCONNECTED );
+            return null;
+        } );
+        return task;
+    }
 
+    private ResponseEntity<?> recommend(RecommendRequest request, String personaId, String idempotencyKey, String laneHeader,
+            String forwardedBy, String acceptEncoding, Deadline deadline, List<String> headerErrors)
+    {
         List<String> errors = refiInputValidator.validate(request, personaId);
+        errors.addAll( headerErrors );
+        final LlmLane lane = lane( laneHeader, errors );
 
         if (!errors.isEmpty()) {
             // Return HTTP 400 with the error list
@@ -58,10 +194,216 @@ public class RecommendationController
             )));
         }
 
+        // Persona affinity: another node owns this persona, let it answer (forwarded calls are always served here).
+        String owner = forwardedBy == null ? clusterService.remoteOwner( personaId ) : null;
+        if ( owner != null ) {
+            ResponseEntity<?> forwarded = forward( owner, request, personaId, idempotencyKey, laneHeader, deadline );
+            if ( forwarded != null ) {
+                return forwarded;
+            }
+        }
+
+        try
+        {
+            if ( idempotencyKey == null || idempotencyKey.isBlank() ) {
+                return ResponseEntity.ok( recommendationGateway.recommend( request, personaId, lane, deadline ) );
+            }
+
+            // Retries with the same key get the first call's bytes back, so numbers and requestId never change.
+            IdempotencyStore.Result result = idempotencyStore.execute( personaId + ":" + idempotencyKey, String.valueOf( request ),
+                    () -> ResponseBytes.of( objectMapper.writeValueAsBytes( recommendationGateway.recommend( request, personaId, lane, deadline ) ) ) );
+            return result.body().toResponseEntity( ResponseEntity.ok()
+                    .header( "Idempotent-Replayed", String.valueOf( result.replayed() ) ), acceptEncoding );
+        } catch ( BadRequestException e ) {
+            return ResponseEntity.badRequest().body( Map.of("error", Map.of(
+                    "code", "VALIDATION_ERROR",
+                    "message", e.getMessage(),
+                    "requestId", UUID.randomUUID().toString()
+            )));
+        }
+        catch ( AdmissionRejectedException e )
+        {
+            return rejected( e );
+        }
+        catch ( IdempotencyConflictException e )
+        {
+            return ResponseEntity.unprocessableEntity().body( Map.of("error", Map.of(
+                    "code", "IDEMPOTENCY_KEY_REUSED",
+                    "message", e.getMessage(),
+                    "requestId", UUID.randomUUID().toString()
+            )));
+        }
+        catch ( DeadlineExceededException e )
+        {
+            abandon( deadline, e.getReason() );
+            return deadlineExceeded( e.getReason() );
+        }
+        catch ( LlmRateLimitedException e )
+        {
+            return upstreamRateLimited( e );
+        }
+        catch ( Exception e )
+        {
+            throw new RuntimeException( e );
+        }
+    }
+
+    /**
+     * Relays the owner's answer as-is. When the owner is unreachable the request is served locally
+     * if this node has the persona, otherwise 503; returns null for "serve locally".
+     */
+    private ResponseEntity<?> forward(String owner, RecommendRequest request, String personaId, String idempotencyKey, String lane,
+            Deadline deadline)
+    {
+        try
+        {
+            return clusterService.forward( owner, request, personaId, idempotencyKey, lane, deadline ).toResponseEntity();
+        }
+        catch ( DeadlineExceededException e )
+        {
+            abandon( deadline, e.getReason() );
+            return deadlineExceeded( e.getReason() );
+        }
+        catch ( Exception e )
+        {
+            if ( clusterService.loadsLocally( personaId ) ) {
+                return null;
+            }
+            return ownerUnavailable( owner, e );
+        }
+    }
+
+    /** Relays a persona-scoped call to the node holding the persona; 503 when it is unreachable. */
+    private ResponseEntity<?> relay(String owner, String path, Object body, String personaId)
+    {
+        try
+        {
+            return clusterService.forward( owner, path, body, personaId, Deadline.afterMillis( defaultTimeoutMillis ) ).toResponseEntity();
+        }
+        catch ( Exception e )
+        {
+            return ownerUnavailable( owner, e );
+        }
+    }
+
+    private static ResponseEntity<?> ownerUnavailable( String owner, Exception e )
+    {
+        return ResponseEntity.status( HttpStatus.SERVICE_UNAVAILABLE )
+                .header( HttpHeaders.RETRY_AFTER, "1" )
+                .body( Map.of("error", Map.of(
+                        "code", "OWNER_UNAVAILABLE",
+                        "message", "Persona owner " + owner + " is unreachable: " + e.getMessage(),
+                        "requestId", UUID.randomUUID().toString()
+                )));
+    }
+
+    /** Whole-book endpoints are not answered from one shard of a partitioned book. */
+    private static ResponseEntity<?> partitionedBook( String endpoint )
+    {
+        return ResponseEntity.status( HttpStatus.CONFLICT ).body( Map.of("error", Map.of(
+                "code", "PARTITIONED_BOOK",
+                "message", endpoint + " needs the whole persona book, but this node only holds its own partition "
+                        + "(neurosnap.cluster.partitioned-loading=true).",
+                "requestId", UUID.randomUUID().toString()
+        )));
+    }
+
+    /** Lane from the Neurosnap-Lane header (interactive when absent); an unknown value becomes a validation error. */
+    private static LlmLane lane( String header, List<String> errors )
+    {
+        try {
+            return LlmLane.from( header );
+        } catch ( IllegalArgumentException e ) {
+            errors.add( e.getMessage() );
+            return LlmLane.INTERACTIVE;
+        }
+    }
+
+    /**
+     * Deadline from the Neurosnap-Timeout-Millis header (endpoint default when absent, capped at the maximum);
+     * a bad value becomes a validation error.
+     */
+    private Deadline deadline( String header, List<String> errors )
+    {
+        long millis = defaultTimeoutMillis;
+        if ( header != null && !header.isBlank() ) {
+            try {
+                millis = Long.parseLong( header.trim() );
+            } catch ( NumberFormatException e ) {
+                millis = -1;
+            }
+            if ( millis <= 0 ) {
+                errors.add( "Neurosnap-Timeout-Millis must be a positive number of milliseconds: " + header );
+                millis = defaultTimeoutMillis;
+            }
+        }
+        return Deadline.afterMillis( Math.min( millis, maxTimeoutMillis ) );
+    }
+
+    /** Cancels the request's remaining work; counted once per request, by whichever reason came first. */
+    private void abandon( Deadline deadline, Deadline.Reason reason )
+    {
+        if ( deadline.cancel( reason ) ) {
+            meterRegistry.counter( "neurosnap.recommend.abandoned", "reason", reason.name().toLowerCase() ).increment();
+        }
+    }
+
+    private static ResponseEntity<?> deadlineExceeded( Deadline.Reason reason )
+    {
+        return ResponseEntity.status( HttpStatus.GATEWAY_TIMEOUT ).body( Map.of("error", Map.of(
+                "code", reason.name(),
+                "message", "The request did not complete within its deadline.",
+                "requestId", UUID.randomUUID().toString()
+        )));
+    }
+
+    /** 503 while the model provider keeps answering 429; Retry-After is the provider's. */
+    private static ResponseEntity<?> upstreamRateLimited( LlmRateLimitedException e )
+    {
+        return ResponseEntity.status( HttpStatus.SERVICE_UNAVAILABLE )
+                .header( HttpHeaders.RETRY_AFTER, String.valueOf( e.getRetryAfterSeconds() ) )
+                .body( Map.of("error", Map.of(
+                        "code", "UPSTREAM_RATE_LIMITED",
+                        "message", e.getMessage(),
+                        "requestId", UUID.randomUUID().toString()
+                )));
+    }
+
+    /** 429 for rate limits, 503 when the in-flight limit is reached; both tell the client when to come back. */
+    private ResponseEntity<?> rejected( AdmissionRejectedException e )
+    {
+        HttpStatus status = e.getReason() == AdmissionRejectedException.Reason.OVER_CAPACITY
+                ? HttpStatus.SERVICE_UNAVAILABLE
+                : HttpStatus.TOO_MANY_REQUESTS;
+        return ResponseEntity.status( status )
+                .header( HttpHeaders.RETRY_AFTER, String.valueOf( e.getRetryAfterSeconds() ) )
+                .body( Map.of("error", Map.of(
+                        "code", e.getReason().name(),
+                        "message", e.getMessage(),
+                        "requestId", UUID.randomUUID().toString()
+                )));
+    }
+
+    /**
+     * Lightweight hint sent by the UI when a persona is selected; precomputes its likely
+     * /recommend results in the background. Always returns 202.
+     */
+    @PostMapping("/warm")
+    public ResponseEntity<?> warm(@RequestHeader( value = "persona-id", required = false ) final String personaId,
+            @RequestHeader( value = ClusterService.FORWARDED_HEADER, required = false ) final String forwardedBy)
+    {
+        if (personaId == null || personaId.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("errors", List.of("persona-id header is required")));
+        }
+        // Partitioned book: only the owner has the persona (and runs its /recommend calls).
+        String owner = forwardedBy == null ? clusterService.shardOwner( personaId ) : null;
+        if ( owner != null ) {
+            return relay( owner, ClusterService.WARM_PATH, null, personaId );
+        }
         try
         {
-            RecommendOptionsResponse response = recommendationService.getRecommendations( request, personaId );
-            return ResponseEntity.ok( response );
+            int scheduled = speculativePrefetchService.warm( personaId );
+            return ResponseEntity.accepted().body( Map.of( "scheduled", scheduled ) );
         } catch ( BadRequestException e ) {
             return ResponseEntity.badRequest().body( Map.of("error", Map.of(
                     "code", "VALIDATION_ERROR",
@@ -75,9 +417,11 @@ public class RecommendationController
         }
     }
 
+    /** The example plans are static: serialized and gzipped once, then written straight to the response. */
     @PostMapping("/example")
     public ResponseEntity<?> examples(@RequestBody RecommendRequest request,
-            @RequestHeader( value = "persona-id", required = false ) final String personaId) throws Exception
+            @RequestHeader( value = "persona-id", required = false ) final String personaId,
+            HttpServletRequest httpRequest, HttpServletResponse httpResponse) throws Exception
     {
 
 
@@ -90,14 +434,100 @@ public class RecommendationController
                     .body(Map.of("errors", errors));
         }
 
-        RecommendOptionsResponse response = recommendationService.getExamples(request, personaId);
-        return ResponseEntity.ok(response);
+        ResponseBytes example = exampleBytes;
+        if ( example == null ) {
+            example = ResponseBytes.of( objectMapper.writeValueAsBytes( recommendationService.getExamples( request, personaId ) ) );
+            exampleBytes = example;
+        }
+        example.writeTo( httpRequest, httpResponse );
+        return null;
     }
 
+    /**
+     * One page of the persona book in book order ({@code offset}, {@code limit} up to 5000, default 500).
+     * The body stays a JSON array; X-Total-Count carries the book size and a Link header (rel="next")
+     * points at the following page. The whole book is never serialized at once.
+     *
+     * The last page served is kept pre-serialized (conditional GETs get 304) and tagged with the book
+     * version it was built from; it is only stored if the book did not change while it was built.
+     */
     @GetMapping("/personas")
-    public ResponseEntity<?> personas() throws Exception
+    public ResponseEntity<?> personas(@RequestParam( value = "offset", defaultValue = "0" ) final int offset,
+            @RequestParam( value = "limit", defaultValue = "" + DEFAULT_PERSONAS_PAGE ) final int limit,
+            HttpServletRequest httpRequest, HttpServletResponse httpResponse) throws Exception
+    {
+        if ( clusterService.isPartitionedLoading() ) {
+            return partitionedBook( "/personas" );
+        }
+        if ( offset < 0 || limit < 1 || limit > MAX_PERSONAS_PAGE ) {
+            return ResponseEntity.badRequest().body(Map.of("error", Map.of(
+                    "code", "VALIDATION_ERROR",
+                    "message", "offset must be >= 0 and limit between 1 and " + MAX_PERSONAS_PAGE + ".",
+                    "requestId", UUID.randomUUID().toString()
+            )));
+        }
+
+        long version = personaReaderService.bookVersion();
+        PersonasPage page = personasPage.get();
+        if ( page == null || page.version() != version || page.offset() != offset || page.limit() != limit ) {
+            PersonasPage built = new PersonasPage( version, offset, limit, personaReaderService.size(),
+                    ResponseBytes.of( objectMapper.writeValueAsBytes( recommendationService.getPersonas( offset, limit ) ) ) );
+            if ( personaReaderService.bookVersion() == version ) {
+                personasPage.compareAndSet( page, built );
+            }
+            page = built;
+        }
+
+        httpResponse.setHeader( "X-Total-Count", String.valueOf( page.total() ) );
+        if ( (long) offset + limit < page.total() ) {
+            httpResponse.setHeader( HttpHeaders.LINK, "<" + ServletUriComponentsBuilder.fromRequest( httpRequest )
+                    .replaceQueryParam( "offset", offset + limit )
+                    .replaceQueryParam( "limit", limit )
+                    .toUriString() + ">; rel=\"next\"" );
+        }
+        page.body().writeTo( httpRequest, httpResponse );
+        return null;
+    }
+
+    private record PersonasPage( long version, int offset, int limit, int total, ResponseBytes body ) {}
+
+    @PostMapping("/personas/cohort")
+    public ResponseEntity<?> cohort(@RequestBody CohortQuery query)
     {
-        List<Persona> response = recommendationService.getPersonas();
+        if ( clusterService.isPartitionedLoading() ) {
+            return partitionedBook( "/personas/cohort" );
+        }
+        CohortQueryResult response = personaIndexService.query(query);
         return ResponseEntity.ok(response);
     }
+
+    /** Re-reads persona.xlsx; indexes are rebuilt from the new book. */
+    @PostMapping("/personas/reload")
+    public ResponseEntity<?> reloadPersonas()
+    {
+        int personas = personaReaderService.reload();
+        return ResponseEntity.ok(Map.of("personas", personas));
+    }
+
+    /** Re-reads the rule workbooks; cached results are invalidated only where the rows they used changed. */
+    @PostMapping("/rules/reload")
+    public ResponseEntity<?> reloadRules() throws Exception
+    {
+        int changed = rulesReaderService.reload();
+        return ResponseEntity.ok(Map.of("changedRuleSets", changed));
+    }
+
+    /**
+     * Streams a CSV (text/csv) or NDJSON (application/x-ndjson) body of personas and upserts them by
+     * personaId in batches; invalid rows are reported and skipped.
+     */
+    @PostMapping(value = "/personas/import", consumes = { "text/csv", MediaType.APPLICATION_NDJSON_VALUE })
+    public ResponseEntity<?> importPersonas(InputStream body,
+            @RequestHeader( HttpHeaders.CONTENT_TYPE ) final String contentType) throws Exception
+    {
+        PersonaImportService.Format format = MediaType.APPLICATION_NDJSON.isCompatibleWith( MediaType.parseMediaType( contentType ) )
+                ? PersonaImportService.Format.NDJSON
+                : PersonaImportService.Format.CSV;
+        return ResponseEntity.ok(personaImportService.importPersonas(body, format));
+    }
 }
@@ -0,0 +1,44 @@
+package neurosnap.controller;
+
+import java.util.Map;
+import java.util.UUID;
+import neurosnap.dto.ScenarioRequest;
+import neurosnap.dto.ScenarioResponse;
+import neurosnap.service.ScenarioService;
+import org.apache.coyote.BadRequestException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/neurosnap/api/v1/refi")
+@CrossOrigin(origins = "http://localhost:5173")
+public class ScenarioController
+{
+    private final ScenarioService scenarioService;
+
+    public ScenarioController( ScenarioService scenarioService )
+    {
+        this.scenarioService = scenarioService;
+    }
+
+    /** Evaluates many prepayment / rate / tenure variations of one base plan in a single call. */
+    @PostMapping("/scenarios")
+    public ResponseEntity<?> scenarios( @RequestBody ScenarioRequest request )
+    {
+        try
+        {
+            ScenarioResponse response = scenarioService.evaluate( request );
+            return ResponseEntity.ok( response );
+        } catch ( BadRequestException e ) {
+            return ResponseEntity.badRequest().body( Map.of("error", Map.of(
+                    "code", "VALIDATION_ERROR",
+                    "message", e.getMessage(),
+                    "requestId", UUID.randomUUID().toString()
+            )));
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package neurosnap.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * CohortQuery selects personas by indexed attributes. All filters are optional and ANDed.
+ *
+ * Example: eligible personas with creditScore >= 700, MEDIUM income and DISCIPLINED history
+ *   { "eligible": true, "minCreditScore": 700, "incomeBand": "MEDIUM", "paymentHistory": "DISCIPLINED" }
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CohortQuery
+{
+    /** LOW | MEDIUM | HIGH */
+    private String incomeBand;
+
+    /** DISCIPLINED | MOSTLY_DISCIPLINED | IRREGULAR */
+    private String paymentHistory;
+
+    /** Inclusive lower bound on credit score. */
+    private Integer minCreditScore;
+
+    /** Inclusive upper bound on credit score. */
+    private Integer maxCreditScore;
+
+    /** true = pending <= loan/2 (min tenure served), false = not yet eligible. */
+    private Boolean eligible;
+
+    /** Exact bank name. */
+    private String bankName;
+
+    /** Index of the first persona id to return. */
+    private int offset;
+
+    /** Maximum persona ids to return (count is always the full cohort size). */
+    @Builder.Default
+    private int limit = 50;
+}
@@ -0,0 +1,27 @@
+package neurosnap.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * CohortQueryResult returns the size of a cohort and one page of its persona ids.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CohortQueryResult
+{
+    /** Total number of personas matching the query. */
+    private long count;
+
+    private int offset;
+
+    private int limit;
+
+    /** Persona ids for [offset, offset + limit), in persona book order. */
+    private List<String> personaIds;
+}
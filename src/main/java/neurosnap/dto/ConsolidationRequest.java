@@ -0,0 +1,57 @@
+package neurosnap.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * ConsolidationRequest asks which of the persona's existing loans to roll into one refinance.
+ *
+ * Example: { "tenure": 12, "objective": "MIN_EMI" }
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConsolidationRequest
+{
+    /** Tenure of the consolidated loan in months (1–12). */
+    private int tenure;
+
+    /** What to minimize; MIN_INTEREST when omitted. */
+    private Objective objective;
+
+    public enum Objective
+    {
+        /** Total interest still to be paid over all loans. */
+        MIN_INTEREST,
+        /** Total monthly payment over all loans. */
+        MIN_EMI;
+
+        @JsonCreator
+        public static Objective from( String v )
+        {
+            if ( v == null || v.isBlank() )
+                return MIN_INTEREST;
+            String s = v.trim().toUpperCase();
+            switch ( s )
+            {
+                case "MIN_INTEREST":
+                    return MIN_INTEREST;
+                case "MIN_EMI":
+                    return MIN_EMI;
+                default:
+                    throw new IllegalArgumentException( "Unsupported objective: " + v );
+            }
+        }
+
+        @JsonValue
+        public String toJson()
+        {
+            return name();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package neurosnap.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * ConsolidationResult is the best set of loans to roll into one refinance, and its effect.
+ *
+ * "Before" figures cover all existing loans as they are; "after" figures cover the loans that are
+ * kept plus the new consolidated loan. When no selection beats the current loans, consolidated is
+ * empty and beneficial is false.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConsolidationResult
+{
+    private String personaId;
+
+    private ConsolidationRequest.Objective objective;
+
+    /** Loans rolled into the refinance. */
+    private List<String> consolidatedLoanIds;
+
+    /** Eligible loans that stay as they are. */
+    private List<String> keptLoanIds;
+
+    /** Loans that could not be consolidated, with the reason. */
+    private List<Skipped> skipped;
+
+    /** Refinance amount to request: pending of the consolidated loans + fees, whole USD, at least 300. */
+    private long loanAmount;
+
+    /** Amount financed after fees (USD). */
+    private double principal;
+
+    /** APR of the new loan (%). */
+    private double interestRate;
+
+    /** Tenure of the new loan (months). */
+    private int tenure;
+
+    /** EMI of the new loan (USD). */
+    private double emi;
+
+    /** Sum of the monthly payments before / after (USD). */
+    private double monthlyPaymentBefore;
+    private double monthlyPaymentAfter;
+
+    /** Interest still to be paid over all loans before / after (USD); "after" includes the refinance fees. */
+    private double totalInterestBefore;
+    private double totalInterestAfter;
+
+    /** True when the selection improves the objective. */
+    private boolean beneficial;
+
+    /** Dynamic-programming cells evaluated (bounded by loans × amount cap in dollars). */
+    private long searchStates;
+
+    private long elapsedMicros;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Skipped
+    {
+        private String loanId;
+        private String reason;
+    }
+}
@@ -0,0 +1,41 @@
+package neurosnap.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * ExistingLoan is one open obligation of a persona (see {@link Persona#getExistingLoans()}).
+ *
+ * Notes:
+ * - Same meaning and units as the persona's single-loan existing* fields.
+ * - Synthetic data only, like the rest of the persona.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExistingLoan
+{
+    /** Identifier of the loan within the persona (e.g., "CARD_1"); generated when absent. */
+    private String loanId;
+
+    /** Lender name (synthetic). */
+    private String lender;
+
+    /** Original loan amount taken (USD). */
+    private double loanAmount;
+
+    /** Pending (outstanding) balance (USD). */
+    private double pendingAmount;
+
+    /** Interest rate (annual %). */
+    private double interestRate;
+
+    /** Current monthly EMI (USD). */
+    private double emi;
+
+    /** Remaining tenure (months). */
+    private int remainingTenure;
+}
@@ -1,5 +1,6 @@
 package neurosnap.dto;
 
+import java.util.List;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -77,4 +78,10 @@ public class Persona {
     /** Income */
     private double incomeAmt;
 
+    /**
+     * All open loans, for customers with several obligations. Null or empty means the single loan
+     * described by the existing* fields above (spreadsheet personas).
+     */
+    private List<ExistingLoan> existingLoans;
+
 }
@@ -0,0 +1,54 @@
+package neurosnap.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * PersonaImportResult summarises one bulk persona import.
+ *
+ * Notes:
+ * - Rejected rows are skipped; the rest of the stream is still applied.
+ * - Only the first rejections are listed in {@code errors}; {@code rejected} is the full count.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PersonaImportResult
+{
+    /** Rows applied (inserted + updated). */
+    private long accepted;
+
+    /** Valid rows owned by another node of a partitioned cluster; not applied here. */
+    private long skipped;
+
+    /** Rows that failed parsing or validation. */
+    private long rejected;
+
+    /** Accepted rows whose personaId was new. */
+    private long inserted;
+
+    /** Accepted rows that replaced an existing persona. */
+    private long updated;
+
+    private long elapsedMillis;
+
+    /** Rows processed (accepted + skipped + rejected) per second. */
+    private double rowsPerSecond;
+
+    private List<RowError> errors;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class RowError
+    {
+        /** 1-based line number in the uploaded body. */
+        private long line;
+
+        private String message;
+    }
+}
@@ -0,0 +1,36 @@
+package neurosnap.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * PortfolioSimulationRequest describes the scenario grid for a whole-book refinance simulation.
+ *
+ * Every persona is evaluated for every loan amount in
+ * [minLoanAmount, maxLoanAmount] (stepping by loanAmountStep) and every tenure in tenures.
+ * Defaults cover the full 300–5000 USD range in $50 steps and tenures 6 and 12.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortfolioSimulationRequest
+{
+    /** Smallest loan amount in the grid (USD, >= 300). */
+    @Builder.Default
+    private long minLoanAmount = 300;
+
+    /** Largest loan amount in the grid (USD, <= 5000). */
+    @Builder.Default
+    private long maxLoanAmount = 5000;
+
+    /** Step between loan amounts (USD, > 0). */
+    @Builder.Default
+    private long loanAmountStep = 50;
+
+    /** Tenures in months to evaluate (each 1–12). */
+    @Builder.Default
+    private int[] tenures = { 6, 12 };
+}
@@ -0,0 +1,75 @@
+package neurosnap.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * PortfolioSimulationResult aggregates a whole-book refinance simulation.
+ *
+ * Totals are summed over eligible scenarios only; segments break the same numbers
+ * down by income band and base APR (as priced by the persona's rule set).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortfolioSimulationResult
+{
+    /** Number of personas in the book. */
+    private int personas;
+
+    /** Number of (persona, loanAmount, tenure) scenarios evaluated. */
+    private long scenarios;
+
+    /** Scenarios that pass the min-tenure and minimum-amount rules. */
+    private long eligibleScenarios;
+
+    /** eligibleScenarios / scenarios (0–1). */
+    private double eligibilityRate;
+
+    /** Interest paid over all eligible plans (USD). */
+    private double totalInterest;
+
+    /** Cash disbursed to customers over all eligible plans (USD). */
+    private double totalDisbursement;
+
+    /** Savings versus the existing loans over all eligible plans (USD). */
+    private double totalSavings;
+
+    /** Wall-clock time spent in the simulation (ms). */
+    private long elapsedMillis;
+
+    /** Breakdown by income band and base APR. */
+    private List<Segment> segments;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Segment
+    {
+        /** LOW | MEDIUM | HIGH | UNKNOWN */
+        private String incomeBand;
+
+        /** PRIME | NEAR_PRIME | SUBPRIME when the APR is a built-in tier rate, CUSTOM otherwise. */
+        private String tier;
+
+        /** Base APR (%) of the personas in this segment. */
+        private double apr;
+
+        private long scenarios;
+
+        private long eligibleScenarios;
+
+        private double eligibilityRate;
+
+        private double totalInterest;
+
+        private double totalDisbursement;
+
+        private double totalSavings;
+    }
+}
@@ -0,0 +1,45 @@
+package neurosnap.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * ScenarioRequest describes one base plan and a set of what-if variations of it.
+ *
+ * Scenarios are sent column-wise: index i of every array belongs to scenario i.
+ * Omitted columns default to "no change". All provided columns must have the same length.
+ *
+ * Example (two scenarios: $500 extra in month 3, and 1 point lower rate over 9 months):
+ *   { "principal": 2890, "annualRate": 16, "tenure": 12,
+ *     "extraPayments": [500, 0], "extraPaymentMonths": [3, 0],
+ *     "rateDeltas": [0, -1], "tenureDeltas": [0, -3] }
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScenarioRequest
+{
+    /** Base plan principal (USD). */
+    private double principal;
+
+    /** Base plan APR (%). */
+    private double annualRate;
+
+    /** Base plan tenure (months). */
+    private int tenure;
+
+    /** One-off prepayment per scenario (USD). */
+    private double[] extraPayments;
+
+    /** Month (1-based) in which the prepayment is made; 0 = none. */
+    private int[] extraPaymentMonths;
+
+    /** APR change per scenario (percentage points). */
+    private double[] rateDeltas;
+
+    /** Tenure change per scenario (months). */
+    private int[] tenureDeltas;
+}
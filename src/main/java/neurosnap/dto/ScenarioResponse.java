@@ -0,0 +1,41 @@
+package neurosnap.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * ScenarioResponse returns the base plan and the outcome of every scenario, column-wise
+ * (index i of every array belongs to scenario i of the request).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScenarioResponse
+{
+    /** Base plan EMI (USD). */
+    private double baseEmi;
+
+    /** Base plan total interest (USD). */
+    private double baseTotalInterest;
+
+    /** Number of scenarios evaluated. */
+    private int count;
+
+    /** EMI per scenario (USD). */
+    private double[] emi;
+
+    /** Months until the loan is closed per scenario. */
+    private int[] tenure;
+
+    /** Total interest per scenario (USD). */
+    private double[] totalInterest;
+
+    /** Interest saved versus the base plan per scenario (USD, negative = costs more). */
+    private double[] savings;
+
+    /** Time spent computing all scenarios (microseconds). */
+    private long elapsedMicros;
+}
@@ -0,0 +1,56 @@
+package neurosnap.dto.rules;
+
+import java.util.Collections;
+import java.util.Map;
+import lombok.Getter;
+import neurosnap.util.CompiledFormula;
+
+/**
+ * RuleSet is one lender's complete, immutable set of rules as loaded from a rules workbook.
+ *
+ * Notes:
+ * - "default" is the global rules.xlsx; other names are tenant (bank) slugs.
+ * - rulesJson is the prompt form of the rules, serialized once at load time.
+ * - version is a short content hash of rulesJson and formula sources, so derived results can be keyed by rule version.
+ * - formulas holds the optional "Formulas" sheet (e.g. baseApr, confidence), compiled once at load time.
+ */
+@Getter
+public class RuleSet
+{
+    private final String name;
+    private final Map<String, GoalRule> goalRules;
+    private final Map<String, ConfidenceRule> confidenceRules;
+    private final Map<String, IncomeRule> incomeRules;
+    private final Map<String, PaymentHistoryRule> paymentHistoryRules;
+    private final Map<String, AprScoreRule> aprScoreRules;
+    private final Map<String, CompiledFormula> formulas;
+    private final String rulesJson;
+    private final String version;
+
+    public RuleSet( String name,
+            Map<String, GoalRule> goalRules,
+            Map<String, ConfidenceRule> confidenceRules,
+            Map<String, IncomeRule> incomeRules,
+            Map<String, PaymentHistoryRule> paymentHistoryRules,
+            Map<String, AprScoreRule> aprScoreRules,
+            Map<String, CompiledFormula> formulas,
+            String rulesJson,
+            String version )
+    {
+        this.name = name;
+        this.goalRules = Collections.unmodifiableMap( goalRules );
+        this.confidenceRules = Collections.unmodifiableMap( confidenceRules );
+        this.incomeRules = Collections.unmodifiableMap( incomeRules );
+        this.paymentHistoryRules = Collections.unmodifiableMap( paymentHistoryRules );
+        this.aprScoreRules = Collections.unmodifiableMap( aprScoreRules );
+        this.formulas = Collections.unmodifiableMap( formulas );
+        this.rulesJson = rulesJson;
+        this.version = version;
+    }
+
+    /** Compiled formula by name (e.g. "baseApr"), or null when the workbook does not define it. */
+    public CompiledFormula getFormula( String name )
+    {
+        return formulas.get( name );
+    }
+}
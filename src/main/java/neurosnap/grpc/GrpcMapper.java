@@ -0,0 +1,98 @@
+package neurosnap.grpc;
+
+import neurosnap.grpc.proto.GoalType;
+import neurosnap.grpc.proto.Persona;
+import neurosnap.grpc.proto.RecommendOption;
+import neurosnap.grpc.proto.RecommendOptionsResponse;
+import neurosnap.grpc.proto.RecommendRequest;
+import neurosnap.grpc.proto.RepaymentFrequency;
+
+/**
+ * Converts between the REST DTOs (neurosnap.dto) and their Protobuf mirrors (neurosnap.grpc.proto).
+ * Protobuf setters reject null, so absent strings become "".
+ */
+final class GrpcMapper
+{
+    private GrpcMapper()
+    {
+    }
+
+    static neurosnap.dto.RecommendRequest toDto( RecommendRequest request )
+    {
+        return neurosnap.dto.RecommendRequest.builder()
+                .loanAmount( request.getLoanAmount() )
+                .tenure( request.getTenure() )
+                .frequency( switch ( request.getFrequency() ) {
+                    case MONTHLY -> neurosnap.dto.RecommendRequest.RepaymentFrequency.MONTHLY;
+                    case BIWEEKLY -> neurosnap.dto.RecommendRequest.RepaymentFrequency.BIWEEKLY;
+                    default -> null;
+                } )
+                .build();
+    }
+
+    static RecommendOptionsResponse toProto( neurosnap.dto.RecommendOptionsResponse response )
+    {
+        RecommendOptionsResponse.Builder builder = RecommendOptionsResponse.newBuilder()
+                .setPersonaId( text( response.getPersonaId() ) )
+                .setModelVersion( text( response.getModelVersion() ) )
+                .setRequestId( text( response.getRequestId() ) )
+                .setDemoMode( response.isDemoMode() );
+        if ( response.getRecommendations() != null ) {
+            for ( neurosnap.dto.RecommendOption option : response.getRecommendations() ) {
+                if ( option != null ) builder.addRecommendations( toProto( option ) );
+            }
+        }
+        return builder.build();
+    }
+
+    static RecommendOption toProto( neurosnap.dto.RecommendOption option )
+    {
+        return RecommendOption.newBuilder()
+                .setPlanId( text( option.getPlanId() ) )
+                .setGoal( option.getGoal() == null ? GoalType.GOAL_TYPE_UNSPECIFIED : GoalType.valueOf( option.getGoal().name() ) )
+                .setEmi( option.getEmi() )
+                .setTenure( option.getTenure() )
+                .setInterestRate( option.getInterestRate() )
+                .setSavingsPerMonth( option.getSavingsPerMonth() )
+                .setTotalSavings( option.getTotalSavings() )
+                .setBreakEvenMonths( option.getBreakEvenMonths() )
+                .setConfidence( option.getConfidence() )
+                .setBest( option.isBest() )
+                .setReason( text( option.getReason() ) )
+                .setTotalLoanAmount( option.getTotalLoanAmount() )
+                .setDisburseAmount( option.getDisburseAmount() )
+                .setPrincipal( option.getPrincipal() )
+                .build();
+    }
+
+    static Persona toProto( neurosnap.dto.Persona persona )
+    {
+        return Persona.newBuilder()
+                .setPersonaId( text( persona.getPersonaId() ) )
+                .setPersonaName( text( persona.getPersonaName() ) )
+                .setIncome( text( persona.getIncome() ) )
+                .setPaymentBehavior( text( persona.getPaymentBehavior() ) )
+                .setRefiExperience( text( persona.getRefiExperience() ) )
+                .setCreditScore( persona.getCreditScore() )
+                .setExistingLoanAmount( persona.getExistingLoanAmount() )
+                .setExistingInterestRate( persona.getExistingInterestRate() )
+                .setExistingPendingAmount( persona.getExistingPendingAmount() )
+                .setPaymentHistory( text( persona.getPaymentHistory() ) )
+                .setDob( text( persona.getDob() ) )
+                .setSsn( persona.getSsn() )
+                .setMobileNumber( persona.getMobileNumber() )
+                .setVerificationCode( persona.getVerificationCode() )
+                .setExistingTenure( persona.getExistingTenure() )
+                .setExistingEmi( persona.getExistingEmi() )
+                .setBankName( text( persona.getBankName() ) )
+                .setCardNumber( persona.getCardNumber() )
+                .setMinimumRefinanceAmt( persona.getMinimumRefinanceAmt() )
+                .setIncomeAmt( persona.getIncomeAmt() )
+                .build();
+    }
+
+    private static String text( String value )
+    {
+        return value == null ? "" : value;
+    }
+}
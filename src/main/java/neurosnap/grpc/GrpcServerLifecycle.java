@@ -0,0 +1,89 @@
+package neurosnap.grpc;
+
+import io.grpc.Grpc;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.Server;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import neurosnap.service.ClusterService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the internal gRPC (HTTP/2) server next to Tomcat, started and stopped with the Spring context.
+ *
+ * Notes:
+ * - Only created when {@code neurosnap.grpc.enabled=true} (off by default).
+ * - {@code neurosnap.grpc.port} is per instance; 0 binds a free port, see {@link #getPort()}.
+ * - Refuses to start with a partitioned persona book: the gRPC calls are served from the local
+ *   book only and would miss personas owned by other nodes.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty( name = "neurosnap.grpc.enabled", havingValue = "true" )
+public class GrpcServerLifecycle implements SmartLifecycle
+{
+    private final RecommendationGrpcService recommendationGrpcService;
+    private final int port;
+
+    private volatile Server server;
+
+    public GrpcServerLifecycle( RecommendationGrpcService recommendationGrpcService, ClusterService clusterService,
+            @Value( "${neurosnap.grpc.port:9090}" ) int port )
+    {
+        if ( clusterService.isPartitionedLoading() ) {
+            throw new IllegalStateException( "neurosnap.grpc.enabled=true is not supported with "
+                    + "neurosnap.cluster.partitioned-loading=true: gRPC calls only see this node's partition" );
+        }
+        this.recommendationGrpcService = recommendationGrpcService;
+        this.port = port;
+    }
+
+    @Override
+    public void start()
+    {
+        try {
+            server = Grpc.newServerBuilderForPort( port, InsecureServerCredentials.create() )
+                    .addService( recommendationGrpcService )
+                    .build()
+                    .start();
+            log.info( "gRPC server listening on port {}", server.getPort() );
+        } catch ( IOException e ) {
+            throw new UncheckedIOException( "Could not start gRPC server on port " + port, e );
+        }
+    }
+
+    @Override
+    public void stop()
+    {
+        Server running = server;
+        if ( running == null ) return;
+        running.shutdown();
+        try {
+            if ( !running.awaitTermination( 10, TimeUnit.SECONDS ) ) {
+                running.shutdownNow();
+            }
+        } catch ( InterruptedException e ) {
+            running.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        server = null;
+    }
+
+    /** The bound port while running (the actual port when configured with 0), else -1. */
+    public int getPort()
+    {
+        Server running = server;
+        return running != null ? running.getPort() : -1;
+    }
+
+    @Override
+    public boolean isRunning()
+    {
+        return server != null;
+    }
+}
@@ -0,0 +1,220 @@
+package neurosnap.grpc;
+
+import io.grpc.Context;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import neurosnap.client.Deadline;
+import neurosnap.client.DeadlineExceededException;
+import neurosnap.client.LlmRateLimitedException;
+import neurosnap.client.LlmLane;
+import neurosnap.grpc.proto.BatchRecommendRequest;
+import neurosnap.grpc.proto.BatchRecommendResponse;
+import neurosnap.grpc.proto.Persona;
+import neurosnap.grpc.proto.PersonaRequest;
+import neurosnap.grpc.proto.RecommendError;
+import neurosnap.grpc.proto.RecommendOptionsResponse;
+import neurosnap.grpc.proto.RecommendRequest;
+import neurosnap.grpc.proto.RecommendResult;
+import neurosnap.grpc.proto.RecommendationGrpc;
+import neurosnap.service.AdmissionRejectedException;
+import neurosnap.service.PersonaReaderService;
+import neurosnap.service.RecommendationGateway;
+import neurosnap.util.RefiInputValidator;
+import org.apache.coyote.BadRequestException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * gRPC face of the recommendation API for internal callers.
+ *
+ * Uses the same validator, gateway (prefetch + admission control) and services as the REST
+ * controller; only the wire format differs. Batch entries run concurrently so they can share
+ * upstream LLM batches.
+ *
+ * The gRPC call's deadline (unary default neurosnap.deadline.recommend-millis when the client sets
+ * none) is passed down to the LLM call, and a cancelled call cancels the upstream work.
+ */
+@Slf4j
+@Service
+public class RecommendationGrpcService extends RecommendationGrpc.RecommendationImplBase
+{
+    static final Metadata.Key<String> RETRY_AFTER = Metadata.Key.of( "retry-after", Metadata.ASCII_STRING_MARSHALLER );
+
+    private final RecommendationGateway recommendationGateway;
+    private final RefiInputValidator refiInputValidator;
+    private final PersonaReaderService personaReaderService;
+    private final ObservationRegistry observationRegistry;
+    private final int maxBatchSize;
+    private final long defaultTimeoutMillis;
+    private final ExecutorService batchExecutor;
+
+    public RecommendationGrpcService( RecommendationGateway recommendationGateway, RefiInputValidator refiInputValidator,
+            PersonaReaderService personaReaderService, ObservationRegistry observationRegistry,
+            ContextSnapshotFactory contextSnapshotFactory,
+            @Value( "${neurosnap.grpc.batch.max-size:50}" ) int maxBatchSize,
+            @Value( "${neurosnap.grpc.batch.threads:8}" ) int batchThreads,
+            @Value( "${neurosnap.deadline.recommend-millis:60000}" ) long defaultTimeoutMillis )
+    {
+        this.recommendationGateway = recommendationGateway;
+        this.refiInputValidator = refiInputValidator;
+        this.personaReaderService = personaReaderService;
+        this.observationRegistry = observationRegistry;
+        this.maxBatchSize = maxBatchSize;
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+        // Batch entries run as children of the batch's trace.
+        this.batchExecutor = ContextExecutorService.wrap( Executors.newFixedThreadPool( batchThreads ), contextSnapshotFactory );
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        batchExecutor.shutdownNow();
+    }
+
+    @Override
+    public void recommend( RecommendRequest request, StreamObserver<RecommendOptionsResponse> responseObserver )
+    {
+        Deadline deadline = deadline( false );
+        try {
+            neurosnap.dto.RecommendOptionsResponse response = Observation.createNotStarted( "neurosnap.grpc.recommend", observationRegistry )
+                    .highCardinalityKeyValue( "persona.id", request.getPersonaId() )
+                    .observeChecked( () -> recommendOne( request, LlmLane.INTERACTIVE, deadline ) );
+            responseObserver.onNext( GrpcMapper.toProto( response ) );
+            responseObserver.onCompleted();
+        } catch ( Exception e ) {
+            responseObserver.onError( toStatus( e ) );
+        }
+    }
+
+    @Override
+    public void batchRecommend( BatchRecommendRequest request, StreamObserver<BatchRecommendResponse> responseObserver )
+    {
+        if ( request.getRequestsCount() > maxBatchSize ) {
+            responseObserver.onError( Status.INVALID_ARGUMENT
+                    .withDescription( "At most " + maxBatchSize + " requests per batch." )
+                    .asRuntimeException() );
+            return;
+        }
+
+        Deadline deadline = deadline( true );
+        BatchRecommendResponse.Builder response = Observation.createNotStarted( "neurosnap.grpc.batch", observationRegistry )
+                .highCardinalityKeyValue( "batch.size", String.valueOf( request.getRequestsCount() ) )
+                .observe( () -> {
+                    List<CompletableFuture<RecommendResult>> futures = new ArrayList<>( request.getRequestsCount() );
+                    for ( RecommendRequest entry : request.getRequestsList() ) {
+                        futures.add( CompletableFuture.supplyAsync( () -> result( entry, deadline ), batchExecutor ) );
+                    }
+
+                    BatchRecommendResponse.Builder results = BatchRecommendResponse.newBuilder();
+                    for ( CompletableFuture<RecommendResult> future : futures ) {
+                        results.addResults( future.join() );
+                    }
+                    return results;
+                } );
+        responseObserver.onNext( response.build() );
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getPersona( PersonaRequest request, StreamObserver<Persona> responseObserver )
+    {
+        try {
+            responseObserver.onNext( GrpcMapper.toProto( personaReaderService.getPersona( request.getPersonaId() ).get() ) );
+            responseObserver.onCompleted();
+        } catch ( BadRequestException e ) {
+            responseObserver.onError( Status.NOT_FOUND.withDescription( e.getMessage() ).asRuntimeException() );
+        }
+    }
+
+    /**
+     * Deadline of the current call: the client's, else the unary default (batches without one have no time
+     * limit). Cancelling the call, or the call running out of time, cancels it, with or without a time limit.
+     */
+    private Deadline deadline( boolean batch )
+    {
+        Context context = Context.current();
+        io.grpc.Deadline callDeadline = context.getDeadline();
+        Deadline deadline = callDeadline == null && batch
+                ? Deadline.unbounded()
+                : Deadline.afterMillis( callDeadline == null ? defaultTimeoutMillis : callDeadline.timeRemaining( TimeUnit.MILLISECONDS ) );
+        context.addListener( cancelled -> deadline.cancel( callDeadline != null && callDeadline.isExpired()
+                ? Deadline.Reason.DEADLINE_EXCEEDED
+                : Deadline.Reason.CLIENT_DISCONNECTED ), Runnable::run );
+        return deadline;
+    }
+
+    private neurosnap.dto.RecommendOptionsResponse recommendOne( RecommendRequest request, LlmLane lane, Deadline deadline ) throws Exception
+    {
+        neurosnap.dto.RecommendRequest dto = GrpcMapper.toDto( request );
+        List<String> errors = refiInputValidator.validate( dto, request.getPersonaId() );
+        if ( !errors.isEmpty() ) {
+            throw new BadRequestException( String.join( "; ", errors ) );
+        }
+        return recommendationGateway.recommend( dto, request.getPersonaId(), lane, deadline );
+    }
+
+    private RecommendResult result( RecommendRequest request, Deadline deadline )
+    {
+        try {
+            return RecommendResult.newBuilder().setResponse( GrpcMapper.toProto( recommendOne( request, LlmLane.BATCH, deadline ) ) ).build();
+        } catch ( BadRequestException e ) {
+            return error( "VALIDATION_ERROR", e.getMessage() );
+        } catch ( AdmissionRejectedException e ) {
+            return error( e.getReason().name(), e.getMessage() );
+        } catch ( DeadlineExceededException e ) {
+            return error( e.getReason().name(), e.getMessage() );
+        } catch ( LlmRateLimitedException e ) {
+            return error( "UPSTREAM_RATE_LIMITED", e.getMessage() );
+        } catch ( Exception e ) {
+            log.error( "Batch recommend failed for {}", request.getPersonaId(), e );
+            return error( "INTERNAL", String.valueOf( e.getMessage() ) );
+        }
+    }
+
+    private static RecommendResult error( String code, String message )
+    {
+        return RecommendResult.newBuilder()
+                .setError( RecommendError.newBuilder().setCode( code ).setMessage( message == null ? "" : message ) )
+                .build();
+    }
+
+    private StatusRuntimeException toStatus( Exception e )
+    {
+        if ( e instanceof BadRequestException ) {
+            return Status.INVALID_ARGUMENT.withDescription( e.getMessage() ).asRuntimeException();
+        }
+        if ( e instanceof AdmissionRejectedException rejected ) {
+            Metadata trailers = new Metadata();
+            trailers.put( RETRY_AFTER, String.valueOf( rejected.getRetryAfterSeconds() ) );
+            Status status = rejected.getReason() == AdmissionRejectedException.Reason.OVER_CAPACITY
+                    ? Status.UNAVAILABLE
+                    : Status.RESOURCE_EXHAUSTED;
+            return status.withDescription( e.getMessage() ).asRuntimeException( trailers );
+        }
+        if ( e instanceof LlmRateLimitedException limited ) {
+            Metadata trailers = new Metadata();
+            trailers.put( RETRY_AFTER, String.valueOf( limited.getRetryAfterSeconds() ) );
+            return Status.UNAVAILABLE.withDescription( e.getMessage() ).asRuntimeException( trailers );
+        }
+        if ( e instanceof DeadlineExceededException abandoned ) {
+            Status status = abandoned.getReason() == Deadline.Reason.CLIENT_DISCONNECTED ? Status.CANCELLED : Status.DEADLINE_EXCEEDED;
+            return status.withDescription( e.getMessage() ).asRuntimeException();
+        }
+        log.error( "gRPC recommend failed", e );
+        return Status.INTERNAL.withDescription( e.getMessage() ).withCause( e ).asRuntimeException();
+    }
+}
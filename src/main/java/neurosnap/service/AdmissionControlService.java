@@ -0,0 +1,139 @@
+package neurosnap.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import neurosnap.util.AdaptiveConcurrencyLimiter;
+import neurosnap.util.TokenBucket;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Admission control in front of {@link RecommendationService#getRecommendations}.
+ *
+ * A request is admitted only if all three stages agree:
+ *  1. the per persona-id token bucket has a token,
+ *  2. the global token bucket has a token,
+ *  3. the adaptive in-flight limit has room.
+ *
+ * Anything else is rejected immediately with {@link AdmissionRejectedException},
+ * so a spike is shed at the door instead of piling up on Tomcat threads behind slow LLM calls.
+ */
+@Slf4j
+@Service
+public class AdmissionControlService
+{
+    private final double personaRatePerSecond;
+    private final double personaBurst;
+    private final int maxTrackedPersonas;
+
+    private final TokenBucket globalBucket;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final Map<String, TokenBucket> personaBuckets = new ConcurrentHashMap<>();
+
+    public AdmissionControlService(
+            @Value( "${neurosnap.admission.global-rate-per-second:20}" ) double globalRatePerSecond,
+            @Value( "${neurosnap.admission.global-burst:40}" ) double globalBurst,
+            @Value( "${neurosnap.admission.persona-rate-per-second:1}" ) double personaRatePerSecond,
+            @Value( "${neurosnap.admission.persona-burst:5}" ) double personaBurst,
+            @Value( "${neurosnap.admission.max-tracked-personas:10000}" ) int maxTrackedPersonas,
+            @Value( "${neurosnap.admission.concurrency.initial:20}" ) int initialConcurrency,
+            @Value( "${neurosnap.admission.concurrency.min:4}" ) int minConcurrency,
+            @Value( "${neurosnap.admission.concurrency.max:100}" ) int maxConcurrency )
+    {
+        this.personaRatePerSecond = personaRatePerSecond;
+        this.personaBurst = personaBurst;
+        this.maxTrackedPersonas = maxTrackedPersonas;
+        this.globalBucket = new TokenBucket( globalRatePerSecond, globalBurst );
+        this.concurrencyLimiter = new AdaptiveConcurrencyLimiter( initialConcurrency, minConcurrency, maxConcurrency );
+    }
+
+    /**
+     * Admits a request or throws. The returned permit must be closed when the call finishes
+     * so the in-flight slot is released and its latency feeds the adaptive limit.
+     */
+    public Permit acquire( String personaId ) throws AdmissionRejectedException
+    {
+        TokenBucket personaBucket = bucketFor( personaId );
+        if ( !personaBucket.tryAcquire() ) {
+            throw new AdmissionRejectedException( AdmissionRejectedException.Reason.PERSONA_RATE_LIMITED,
+                    toRetryAfterSeconds( personaBucket.millisUntilNextToken() ),
+                    "Too many requests for persona-id: " + personaId );
+        }
+
+        if ( !globalBucket.tryAcquire() ) {
+            personaBucket.refund();
+            throw new AdmissionRejectedException( AdmissionRejectedException.Reason.GLOBAL_RATE_LIMITED,
+                    toRetryAfterSeconds( globalBucket.millisUntilNextToken() ),
+                    "Too many requests, please retry later." );
+        }
+
+        if ( !concurrencyLimiter.tryAcquire() ) {
+            personaBucket.refund();
+            globalBucket.refund();
+            log.warn( "Shedding request for {}: in-flight {} reached limit {}", personaId,
+                    concurrencyLimiter.getInFlight(), concurrencyLimiter.getLimit() );
+            throw new AdmissionRejectedException( AdmissionRejectedException.Reason.OVER_CAPACITY,
+                    toRetryAfterSeconds( concurrencyLimiter.getRecentLatencyMillis() ),
+                    "Service is over capacity, please retry later." );
+        }
+
+        return new Permit( System.nanoTime() );
+    }
+
+    private TokenBucket bucketFor( String personaId )
+    {
+        TokenBucket bucket = personaBuckets.get( personaId );
+        if ( bucket != null ) return bucket;
+
+        // persona-id is caller supplied, so keep the map bounded by dropping buckets nobody is using.
+        if ( personaBuckets.size() >= maxTrackedPersonas ) {
+            personaBuckets.values().removeIf( TokenBucket::isIdle );
+        }
+        return personaBuckets.computeIfAbsent( personaId, id -> new TokenBucket( personaRatePerSecond, personaBurst ) );
+    }
+
+    private long toRetryAfterSeconds( long millis )
+    {
+        return Math.max( 1, ( millis + 999 ) / 1000 );
+    }
+
+    public int getConcurrencyLimit()
+    {
+        return concurrencyLimiter.getLimit();
+    }
+
+    public int getInFlight()
+    {
+        return concurrencyLimiter.getInFlight();
+    }
+
+    /**
+     * Handle for one admitted request. Use with try-with-resources.
+     */
+    public class Permit implements AutoCloseable
+    {
+        private final long startNanos;
+        private boolean sample = true;
+        private boolean closed;
+
+        private Permit( long startNanos )
+        {
+            this.startNanos = startNanos;
+        }
+
+        /** Marks the call as a fast failure (e.g. validation) so it does not skew the latency baseline. */
+        public void ignoreLatency()
+        {
+            this.sample = false;
+        }
+
+        @Override
+        public void close()
+        {
+            if ( closed ) return;
+            closed = true;
+            concurrencyLimiter.release( System.nanoTime() - startNanos, sample );
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package neurosnap.service;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a request is shed by {@link AdmissionControlService} instead of being queued.
+ *
+ * The controller maps this to 429 (rate limited) or 503 (over capacity) with a Retry-After header.
+ */
+@Getter
+public class AdmissionRejectedException extends Exception
+{
+    public enum Reason
+    {
+        PERSONA_RATE_LIMITED,   // one persona-id is sending too fast -> 429
+        GLOBAL_RATE_LIMITED,    // whole service is over its request rate -> 429
+        OVER_CAPACITY           // in-flight limit reached -> 503
+    }
+
+    private final Reason reason;
+
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException( Reason reason, long retryAfterSeconds, String message )
+    {
+        super( message );
+        this.reason = reason;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
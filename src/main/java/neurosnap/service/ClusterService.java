@@ -0,0 +1,199 @@
+package neurosnap.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import neurosnap.client.Deadline;
+import neurosnap.dto.RecommendRequest;
+import neurosnap.util.ConsistentHashRing;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+/**
+ * Persona-affinity sharding across a static set of instances.
+ *
+ * Peers are listed in {@code neurosnap.cluster.peers} (base URLs, identical on every node) and
+ * {@code neurosnap.cluster.self} names this node. A {@link ConsistentHashRing} on persona-id picks
+ * each persona's owner; non-owners forward /recommend to it over HTTP, so repeat work for a persona
+ * (prefetch, idempotency, batching, serving table) stays on one node.
+ *
+ * Notes:
+ * - Forwarded calls carry {@link #FORWARDED_HEADER} and are always served locally (no hop chains).
+ * - The remaining deadline travels as Neurosnap-Timeout-Millis; cancelling the deadline cancels the hop.
+ * - With {@code partitioned-loading} a node only keeps the personas it owns; all nodes must then
+ *   share the same peer list, and bulk imports must be sent to every node (each keeps its share and
+ *   reports the rest as skipped).
+ * - Partitioned loading changes what each endpoint can see:
+ *   - /recommend, /consolidate and /warm are forwarded to the persona's owner (see {@link #shardOwner}),
+ *   - /example and /scenarios do not read the book and are answered anywhere,
+ *   - /personas, /personas/cohort and /portfolio/simulate span the whole book and are rejected
+ *     with 409 PARTITIONED_BOOK rather than answered from one shard,
+ *   - the gRPC server refuses to start, since GetPersona and Recommend would only see the local shard.
+ * - Disabled (single node, everything local) unless {@code neurosnap.cluster.enabled=true}.
+ */
+@Slf4j
+@Service
+public class ClusterService
+{
+    public static final String FORWARDED_HEADER = "Neurosnap-Forwarded-By";
+    public static final String RECOMMEND_PATH = "/neurosnap/api/v1/refi/recommend";
+    public static final String CONSOLIDATE_PATH = "/neurosnap/api/v1/refi/consolidate";
+    public static final String WARM_PATH = "/neurosnap/api/v1/refi/warm";
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final boolean partitionedLoading;
+    private final String self;
+    private final ConsistentHashRing ring;
+    private final OkHttpClient client = new OkHttpClient();
+
+    private final Counter local;
+    private final Counter forwarded;
+    private final Counter forwardFailures;
+
+    public ClusterService( ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value( "${neurosnap.cluster.enabled:false}" ) boolean enabled,
+            @Value( "${neurosnap.cluster.self:}" ) String self,
+            @Value( "${neurosnap.cluster.peers:}" ) String peers,
+            @Value( "${neurosnap.cluster.virtual-nodes:128}" ) int virtualNodes,
+            @Value( "${neurosnap.cluster.partitioned-loading:false}" ) boolean partitionedLoading,
+            @Value( "${neurosnap.cluster.forward-timeout-seconds:130}" ) long forwardTimeoutSeconds )
+    {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.self = self.trim();
+
+        List<String> nodes = Arrays.stream( peers.split( "," ) ).map( String::trim ).filter( p -> !p.isEmpty() ).toList();
+        if ( enabled ) {
+            if ( !nodes.contains( this.self ) ) {
+                throw new IllegalStateException( "neurosnap.cluster.self (" + self + ") must be one of neurosnap.cluster.peers " + nodes );
+            }
+            this.ring = new ConsistentHashRing( nodes, virtualNodes );
+            log.info( "Cluster mode: {} of {} peers, partitioned loading {}", this.self, nodes.size(), partitionedLoading );
+        } else {
+            this.ring = null;
+        }
+        this.partitionedLoading = enabled && partitionedLoading;
+
+        client.setConnectTimeout( 5, TimeUnit.SECONDS );
+        client.setReadTimeout( forwardTimeoutSeconds, TimeUnit.SECONDS );
+        client.setWriteTimeout( 5, TimeUnit.SECONDS );
+
+        this.local = meterRegistry.counter( "neurosnap.cluster.requests", "route", "local" );
+        this.forwarded = meterRegistry.counter( "neurosnap.cluster.requests", "route", "forwarded" );
+        this.forwardFailures = meterRegistry.counter( "neurosnap.cluster.forward.failures" );
+    }
+
+    /** Base URL of the node owning the persona, or null when it is this node (or clustering is off). */
+    public String remoteOwner( String personaId )
+    {
+        if ( ring == null || personaId == null ) return null;
+        String owner = ring.owner( personaId );
+        if ( owner.equals( self ) ) {
+            local.increment();
+            return null;
+        }
+        return owner;
+    }
+
+    /** Whether this node keeps the persona in memory (always true unless partitioned loading is on). */
+    public boolean loadsLocally( String personaId )
+    {
+        return !partitionedLoading || ring.owner( personaId ).equals( self );
+    }
+
+    public boolean isPartitionedLoading()
+    {
+        return partitionedLoading;
+    }
+
+    /** Base URL of the persona's owner for any node, or null when clustering is off. */
+    public String owner( String personaId )
+    {
+        return ring == null || personaId == null ? null : ring.owner( personaId );
+    }
+
+    /**
+     * Base URL of the node holding the persona when this node does not (partitioned loading only), else null.
+     * Endpoints that merely read the persona forward there; /recommend uses {@link #remoteOwner} for affinity.
+     */
+    public String shardOwner( String personaId )
+    {
+        return personaId == null || loadsLocally( personaId ) ? null : ring.owner( personaId );
+    }
+
+    /**
+     * Sends /recommend to the owner and returns its raw answer (status, body and relevant headers).
+     */
+    public Forwarded forward( String owner, RecommendRequest request, String personaId, String idempotencyKey, String lane,
+            Deadline deadline ) throws IOException
+    {
+        Request.Builder builder = request( owner, RECOMMEND_PATH, request, personaId );
+        if ( idempotencyKey != null ) builder.addHeader( "Idempotency-Key", idempotencyKey );
+        if ( lane != null ) builder.addHeader( "Neurosnap-Lane", lane );
+        return execute( builder, owner, deadline );
+    }
+
+    /**
+     * Sends a persona-scoped POST ({@code path} with a JSON body, null for none) to the owner and returns its raw answer.
+     */
+    public Forwarded forward( String owner, String path, Object body, String personaId, Deadline deadline ) throws IOException
+    {
+        return execute( request( owner, path, body, personaId ), owner, deadline );
+    }
+
+    private Request.Builder request( String owner, String path, Object body, String personaId ) throws IOException
+    {
+        byte[] json = body == null ? new byte[0] : objectMapper.writeValueAsBytes( body );
+        return new Request.Builder()
+                .url( owner + path )
+                .post( RequestBody.create( MediaType.parse( "application/json" ), json ) )
+                .addHeader( "persona-id", personaId )
+                .addHeader( FORWARDED_HEADER, self );
+    }
+
+    private Forwarded execute( Request.Builder builder, String owner, Deadline deadline ) throws IOException
+    {
+        deadline.check();
+        if ( !deadline.isUnbounded() ) builder.addHeader( "Neurosnap-Timeout-Millis", String.valueOf( deadline.remainingMillis() ) );
+
+        Call call = client.newCall( builder.build() );
+        try ( Deadline.Registration cancel = deadline.onCancel( call::cancel ) ) {
+            Response response = call.execute();
+            forwarded.increment();
+            return new Forwarded( response.code(), response.body().bytes(), response.header( "Retry-After" ),
+                    response.header( "Idempotent-Replayed" ), owner );
+        } catch ( IOException e ) {
+            deadline.check();
+            forwardFailures.increment();
+            throw e;
+        }
+    }
+
+    public record Forwarded( int status, byte[] body, String retryAfter, String idempotentReplayed, String servedBy )
+    {
+        /** The owner's answer as-is, tagged with Neurosnap-Served-By. */
+        public ResponseEntity<byte[]> toResponseEntity()
+        {
+            ResponseEntity.BodyBuilder response = ResponseEntity.status( status )
+                    .contentType( org.springframework.http.MediaType.APPLICATION_JSON )
+                    .header( "Neurosnap-Served-By", servedBy );
+            if ( retryAfter != null ) response.header( HttpHeaders.RETRY_AFTER, retryAfter );
+            if ( idempotentReplayed != null ) response.header( "Idempotent-Replayed", idempotentReplayed );
+            return response.body( body );
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package neurosnap.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import neurosnap.dto.ConsolidationRequest;
+import neurosnap.dto.ConsolidationResult;
+import neurosnap.dto.ExistingLoan;
+import neurosnap.dto.Persona;
+import neurosnap.util.ConsolidationOptimizer;
+import neurosnap.util.MoneyKernel;
+import neurosnap.util.RefiCalculator;
+import org.apache.coyote.BadRequestException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Multi-loan consolidation: which of a persona's existing loans to roll into one refinance.
+ *
+ * A loan can be consolidated when it has served its minimum tenure (pending at most half of the
+ * original amount, as in /recommend) and its balance plus fees fits the 5000 USD cap. The eligible
+ * loans go through {@link ConsolidationOptimizer}; the new loan is priced at the persona's base APR under
+ * its lender's rule set, the same rate /recommend quotes.
+ *
+ * At most {@code max-loans} loans are searched (highest rate first), which bounds the work per
+ * request; the rest are reported as skipped.
+ */
+@Service
+public class ConsolidationService
+{
+    private final PersonaReaderService personaReaderService;
+    private final RulesReaderService rulesReaderService;
+    private final int maxLoans;
+
+    public ConsolidationService( PersonaReaderService personaReaderService, RulesReaderService rulesReaderService,
+            @Value( "${neurosnap.consolidation.max-loans:32}" ) int maxLoans )
+    {
+        this.personaReaderService = personaReaderService;
+        this.rulesReaderService = rulesReaderService;
+        this.maxLoans = Math.max( 1, Math.min( maxLoans, ConsolidationOptimizer.MAX_LOANS ) );
+    }
+
+    public ConsolidationResult optimize( String personaId, ConsolidationRequest request ) throws BadRequestException
+    {
+        if ( personaId == null || personaId.isEmpty() ) {
+            throw new BadRequestException( "persona-id header is required" );
+        }
+        if ( request.getTenure() < 1 || request.getTenure() > 12 ) {
+            throw new BadRequestException( "Tenure must be between 1 and 12 months." );
+        }
+        ConsolidationRequest.Objective objective = request.getObjective() == null
+                ? ConsolidationRequest.Objective.MIN_INTEREST
+                : request.getObjective();
+        Persona persona = personaReaderService.getPersona( personaId ).get();
+        long start = System.nanoTime();
+
+        List<ExistingLoan> eligible = new ArrayList<>();
+        List<ExistingLoan> kept = new ArrayList<>();
+        List<ConsolidationResult.Skipped> skipped = new ArrayList<>();
+        for ( ExistingLoan loan : obligations( persona ) ) {
+            String reason = ineligibility( loan );
+            if ( reason == null ) {
+                eligible.add( loan );
+            } else {
+                kept.add( loan );
+                skipped.add( new ConsolidationResult.Skipped( loan.getLoanId(), reason ) );
+            }
+        }
+        if ( eligible.size() > maxLoans ) {
+            eligible.sort( Comparator.comparingDouble( ExistingLoan::getInterestRate ).reversed() );
+            for ( ExistingLoan loan : eligible.subList( maxLoans, eligible.size() ) ) {
+                kept.add( loan );
+                skipped.add( new ConsolidationResult.Skipped( loan.getLoanId(), "Over the limit of " + maxLoans + " loans searched." ) );
+            }
+            eligible = new ArrayList<>( eligible.subList( 0, maxLoans ) );
+        }
+
+        ConsolidationOptimizer.Loan[] loans = eligible.stream().map( ConsolidationService::toLoan ).toArray( ConsolidationOptimizer.Loan[]::new );
+        ConsolidationOptimizer.Loan[] others = kept.stream().map( ConsolidationService::toLoan ).toArray( ConsolidationOptimizer.Loan[]::new );
+        double apr = RefiCalculator.baseApr( persona, rulesReaderService.getRuleSet( persona.getBankName() ) );
+        ConsolidationOptimizer.Plan plan = ConsolidationOptimizer.optimize( loans, MoneyKernel.toBps( apr ), request.getTenure(),
+                objective == ConsolidationRequest.Objective.MIN_EMI );
+
+        List<String> consolidated = new ArrayList<>();
+        List<String> keptIds = new ArrayList<>();
+        for ( int i = 0; i < eligible.size(); i++ ) {
+            ( ( plan.mask() & ( 1L << i ) ) != 0 ? consolidated : keptIds ).add( eligible.get( i ).getLoanId() );
+        }
+
+        // Loans that were never eligible stay on the books on both sides of the comparison.
+        long otherInterest = ConsolidationOptimizer.interestBeforeCents( others );
+        long otherPayment = ConsolidationOptimizer.paymentBeforeCents( others );
+        long interestBefore = ConsolidationOptimizer.interestBeforeCents( loans ) + otherInterest;
+        long paymentBefore = ConsolidationOptimizer.paymentBeforeCents( loans ) + otherPayment;
+
+        return ConsolidationResult.builder()
+                .personaId( personaId )
+                .objective( objective )
+                .consolidatedLoanIds( consolidated )
+                .keptLoanIds( keptIds )
+                .skipped( skipped )
+                .loanAmount( plan.loanAmountCents() / 100 )
+                .principal( MoneyKernel.toUsd( plan.principalCents() ) )
+                .interestRate( consolidated.isEmpty() ? 0 : apr )
+                .tenure( consolidated.isEmpty() ? 0 : request.getTenure() )
+                .emi( MoneyKernel.toUsd( plan.emiCents() ) )
+                .monthlyPaymentBefore( MoneyKernel.toUsd( paymentBefore ) )
+                .monthlyPaymentAfter( MoneyKernel.toUsd( plan.paymentAfterCents() + otherPayment ) )
+                .totalInterestBefore( MoneyKernel.toUsd( interestBefore ) )
+                .totalInterestAfter( MoneyKernel.toUsd( plan.interestAfterCents() + otherInterest ) )
+                .beneficial( plan.mask() != 0 )
+                .searchStates( plan.states() )
+                .elapsedMicros( ( System.nanoTime() - start ) / 1_000 )
+                .build();
+    }
+
+    /** The persona's loans; spreadsheet personas have the single loan of their existing* fields. Ids are filled in. */
+    private static List<ExistingLoan> obligations( Persona persona )
+    {
+        List<ExistingLoan> loans = new ArrayList<>();
+        if ( persona.getExistingLoans() == null || persona.getExistingLoans().isEmpty() ) {
+            loans.add( ExistingLoan.builder()
+                    .loanId( "PRIMARY" )
+                    .lender( persona.getBankName() )
+                    .loanAmount( persona.getExistingLoanAmount() )
+                    .pendingAmount( persona.getExistingPendingAmount() )
+                    .interestRate( persona.getExistingInterestRate() )
+                    .emi( persona.getExistingEmi() )
+                    .remainingTenure( persona.getExistingTenure() )
+                    .build() );
+            return loans;
+        }
+        for ( ExistingLoan loan : persona.getExistingLoans() ) {
+            if ( loan == null ) continue;
+            ExistingLoan copy = new ExistingLoan( loan.getLoanId(), loan.getLender(), loan.getLoanAmount(), loan.getPendingAmount(),
+                    loan.getInterestRate(), loan.getEmi(), loan.getRemainingTenure() );
+            if ( copy.getLoanId() == null || copy.getLoanId().isBlank() ) {
+                copy.setLoanId( "LOAN_" + ( loans.size() + 1 ) );
+            }
+            loans.add( copy );
+        }
+        return loans;
+    }
+
+    /** Null when the loan may be consolidated, otherwise why not. */
+    private static String ineligibility( ExistingLoan loan )
+    {
+        if ( loan.getPendingAmount() <= 0 ) {
+            return "Nothing pending.";
+        }
+        if ( loan.getPendingAmount() > loan.getLoanAmount() / 2 ) {
+            return "Minimum tenure not served yet.";
+        }
+        if ( MoneyKernel.toCents( loan.getPendingAmount() ) > ConsolidationOptimizer.maxPendingCents() ) {
+            return "Pending balance plus fees exceeds $5000.";
+        }
+        return null;
+    }
+
+    private static ConsolidationOptimizer.Loan toLoan( ExistingLoan loan )
+    {
+        return new ConsolidationOptimizer.Loan( MoneyKernel.toCents( loan.getPendingAmount() ), MoneyKernel.toCents( loan.getEmi() ),
+                Math.max( 0, loan.getRemainingTenure() ) );
+    }
+}
@@ -0,0 +1,442 @@
+package neurosnap.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import neurosnap.client.Deadline;
+import neurosnap.client.LlmLane;
+import neurosnap.dto.Persona;
+import neurosnap.dto.RecommendOptionsResponse;
+import neurosnap.dto.RecommendRequest;
+import neurosnap.dto.rules.IncomeRule;
+import neurosnap.dto.rules.PaymentHistoryRule;
+import neurosnap.dto.rules.RuleSet;
+import neurosnap.util.PersonaFingerprint;
+import neurosnap.util.TokenBucket;
+import org.apache.coyote.BadRequestException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-memory cache of /recommend results that records what each result was derived from, so a persona
+ * or rules change invalidates only the results that read it.
+ *
+ * Each entry is keyed by (personaId, loanAmount, tenure, frequency) and depends on:
+ * - its persona ({@code persona:<id>}),
+ * - the persona's own Income band and PaymentHistory rows, e.g. {@code default:PaymentHistory/IRREGULAR},
+ * - the PaymentGoal, ConfidenceScore, APR and Formulas sheets as a whole (the tier and plan mix are
+ *   picked from them per request), e.g. {@code default:APR/*}.
+ * A reverse index from dependency to entries turns an update into a lookup of the affected keys.
+ *
+ * Notes:
+ * - On {@link PersonasUpsertedEvent} / {@link PersonasReloadedEvent} only entries whose persona
+ *   fingerprint changed are invalidated; on {@link RulesChangedEvent} only entries that read a changed row.
+ * - Invalidated entries are dropped at once and recomputed in the background on the BATCH lane,
+ *   throttled to {@code recompute-per-second} (0 = drop only). Until then requests take the live path.
+ * - An answer computed against a persona or row that was invalidated while it was in flight is not
+ *   stored ({@code recomputed{result=stale}}).
+ * - Bounded to {@code max-entries}, least recently used first. The per-dependency invalidation epochs
+ *   kept for that check are bounded the same way: the oldest are forgotten, and an answer from a ticket
+ *   taken before a forgotten invalidation is not stored either. An update touching more personas than
+ *   that records one cache-wide epoch instead of one per persona.
+ *
+ * Metrics:
+ * - neurosnap.derived.lookups{result=hit|miss}
+ * - neurosnap.derived.invalidated{cause=persona|rules}, neurosnap.derived.retained{cause=persona|rules}
+ * - neurosnap.derived.recomputed{result=ok|failed|stale}
+ * - neurosnap.derived.entries, neurosnap.derived.pending
+ */
+@Slf4j
+@Service
+public class DerivedResultCache
+{
+    private static final String PERSONA = "persona:";
+
+    private final PersonaReaderService personaReaderService;
+    private final RulesReaderService rulesReaderService;
+    private final RecommendationService recommendationService;
+    private final ObjectMapper objectMapper;
+
+    private final boolean enabled;
+    private final TokenBucket throttle;
+    private final ExecutorService recomputer;
+
+    /** Guarded by {@code this}, as are {@link #dependents}, {@link #invalidatedAt} and {@link #epoch}. */
+    private final LinkedHashMap<String, Entry> entries;
+    /** Dependency -> keys of the entries that read it. */
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+    /**
+     * Dependency -> epoch of its last invalidation, to reject answers computed from an older version.
+     * In invalidation order, oldest first; at most {@link #maxInvalidations}.
+     */
+    private final LinkedHashMap<String, Long> invalidatedAt = new LinkedHashMap<>();
+    private final int maxInvalidations;
+    private long epoch;
+    private long reloadedAt;
+    /** Latest epoch dropped from {@link #invalidatedAt}; tickets older than this may have read a changed dependency. */
+    private long forgottenAt;
+
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter invalidatedByPersona;
+    private final Counter invalidatedByRules;
+    private final Counter retainedByPersona;
+    private final Counter retainedByRules;
+    private final Counter recomputed;
+    private final Counter recomputeFailed;
+    private final Counter recomputeStale;
+
+    /**
+     * What a result is (or will be) filed under, taken before computing it.
+     *
+     * @param fingerprint  persona fingerprint the result is computed for
+     * @param epoch        invalidation epoch when the ticket was taken
+     * @param dependencies persona and rule rows the result reads
+     */
+    public record Ticket( String key, String personaId, RecommendRequest request, long fingerprint, long epoch,
+                          Set<String> dependencies ) {}
+
+    private record Entry( Ticket ticket, byte[] json ) {}
+
+    public DerivedResultCache( PersonaReaderService personaReaderService, RulesReaderService rulesReaderService,
+            RecommendationService recommendationService, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value( "${neurosnap.derived.enabled:true}" ) boolean enabled,
+            @Value( "${neurosnap.derived.max-entries:100000}" ) int maxEntries,
+            @Value( "${neurosnap.derived.recompute-per-second:1}" ) double recomputePerSecond,
+            @Value( "${neurosnap.derived.recompute-threads:2}" ) int recomputeThreads )
+    {
+        this.personaReaderService = personaReaderService;
+        this.rulesReaderService = rulesReaderService;
+        this.recommendationService = recommendationService;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxInvalidations = Math.max( 1, maxEntries );
+        this.throttle = recomputePerSecond > 0 ? new TokenBucket( recomputePerSecond, Math.max( 1, recomputePerSecond ) ) : null;
+        this.recomputer = Executors.newFixedThreadPool( Math.max( 1, recomputeThreads ), r -> {
+            Thread t = new Thread( r, "derived-recompute" );
+            t.setDaemon( true );
+            return t;
+        } );
+        this.entries = new LinkedHashMap<>( 1024, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, Entry> eldest )
+            {
+                if ( size() <= maxEntries ) return false;
+                unindex( eldest.getValue().ticket() );
+                return true;
+            }
+        };
+
+        this.hits = meterRegistry.counter( "neurosnap.derived.lookups", "result", "hit" );
+        this.misses = meterRegistry.counter( "neurosnap.derived.lookups", "result", "miss" );
+        this.invalidatedByPersona = meterRegistry.counter( "neurosnap.derived.invalidated", "cause", "persona" );
+        this.invalidatedByRules = meterRegistry.counter( "neurosnap.derived.invalidated", "cause", "rules" );
+        this.retainedByPersona = meterRegistry.counter( "neurosnap.derived.retained", "cause", "persona" );
+        this.retainedByRules = meterRegistry.counter( "neurosnap.derived.retained", "cause", "rules" );
+        this.recomputed = meterRegistry.counter( "neurosnap.derived.recomputed", "result", "ok" );
+        this.recomputeFailed = meterRegistry.counter( "neurosnap.derived.recomputed", "result", "failed" );
+        this.recomputeStale = meterRegistry.counter( "neurosnap.derived.recomputed", "result", "stale" );
+        meterRegistry.gauge( "neurosnap.derived.entries", this, DerivedResultCache::size );
+        meterRegistry.gauge( "neurosnap.derived.pending", pending, Set::size );
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        recomputer.shutdownNow();
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /** Ticket for the request against the persona and rules as they are now, or null when disabled or the persona is unknown. */
+    public Ticket ticket( RecommendRequest request, String personaId )
+    {
+        if ( !enabled ) return null;
+        // Epoch first: a change between here and the reads below makes put() reject the answer.
+        long taken;
+        synchronized ( this ) {
+            taken = epoch;
+        }
+        Persona persona;
+        try {
+            persona = personaReaderService.getPersona( personaId ).get();
+        } catch ( BadRequestException e ) {
+            return null;
+        }
+        RuleSet ruleSet = rulesReaderService.getRuleSet( persona.getBankName() );
+        RecommendRequest.RepaymentFrequency frequency = request.getFrequency() == null
+                ? RecommendRequest.RepaymentFrequency.MONTHLY : request.getFrequency();
+        String key = personaId + '|' + request.getLoanAmount() + '|' + request.getTenure() + '|' + frequency.name();
+        return new Ticket( key, personaId, request, PersonaFingerprint.of( persona ), taken, dependencies( persona, ruleSet ) );
+    }
+
+    /** Cached answer with a fresh requestId; null on a miss. */
+    public RecommendOptionsResponse lookup( Ticket ticket )
+    {
+        if ( ticket == null ) return null;
+        Entry entry;
+        synchronized ( this ) {
+            entry = entries.get( ticket.key() );
+        }
+        // The fingerprint check covers the moment between a persona write and its event.
+        if ( entry == null || entry.ticket().fingerprint() != ticket.fingerprint() ) {
+            misses.increment();
+            return null;
+        }
+        try {
+            RecommendOptionsResponse response = objectMapper.readValue( entry.json(), RecommendOptionsResponse.class );
+            response.setRequestId( UUID.randomUUID().toString() );
+            hits.increment();
+            return response;
+        } catch ( Exception e ) {
+            log.warn( "Unreadable derived result for {}: {}", ticket.key(), e.getMessage() );
+            misses.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Stores an answer computed for {@code ticket}.
+     *
+     * @return false when something it read was invalidated after the ticket was taken (nothing is stored then)
+     */
+    public boolean put( Ticket ticket, RecommendOptionsResponse response )
+    {
+        if ( ticket == null || response == null || response.getRecommendations() == null ) return false;
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes( response );
+        } catch ( Exception e ) {
+            log.warn( "Could not cache derived result for {}: {}", ticket.key(), e.getMessage() );
+            return false;
+        }
+        synchronized ( this ) {
+            if ( reloadedAt > ticket.epoch() || forgottenAt > ticket.epoch() ) return false;
+            for ( String dependency : ticket.dependencies() ) {
+                if ( invalidatedAt.getOrDefault( dependency, 0L ) > ticket.epoch() ) return false;
+            }
+            Entry previous = entries.remove( ticket.key() );
+            if ( previous != null ) unindex( previous.ticket() );
+            for ( String dependency : ticket.dependencies() ) {
+                dependents.computeIfAbsent( dependency, d -> new HashSet<>() ).add( ticket.key() );
+            }
+            entries.put( ticket.key(), new Entry( ticket, json ) );
+        }
+        return true;
+    }
+
+    @EventListener
+    public void onPersonasUpserted( PersonasUpsertedEvent event )
+    {
+        Map<String, Long> fingerprints = new HashMap<>();
+        for ( int position : event.positions() ) {
+            Persona persona = personaReaderService.view( position ).toPersona();
+            fingerprints.put( persona.getPersonaId(), PersonaFingerprint.of( persona ) );
+        }
+        invalidatePersonas( fingerprints );
+    }
+
+    @EventListener
+    public void onPersonasReloaded( PersonasReloadedEvent event )
+    {
+        List<String> cached = new ArrayList<>();
+        synchronized ( this ) {
+            for ( String dependency : dependents.keySet() ) {
+                if ( dependency.startsWith( PERSONA ) ) cached.add( dependency.substring( PERSONA.length() ) );
+            }
+            reloadedAt = ++epoch;
+        }
+        Map<String, Long> fingerprints = new HashMap<>();
+        for ( String personaId : cached ) {
+            try {
+                fingerprints.put( personaId, PersonaFingerprint.of( personaReaderService.getPersona( personaId ).get() ) );
+            } catch ( BadRequestException e ) {
+                fingerprints.put( personaId, null ); // gone from the new book
+            }
+        }
+        invalidatePersonas( fingerprints );
+    }
+
+    @EventListener
+    public void onRulesChanged( RulesChangedEvent event )
+    {
+        Set<String> touched = new HashSet<>();
+        String scope = event.ruleSet() + ':';
+        touched.add( scope + "*" );
+        for ( String row : event.changedRows() ) {
+            touched.add( scope + row );
+            touched.add( scope + row.substring( 0, row.indexOf( '/' ) + 1 ) + "*" );
+        }
+
+        List<Ticket> stale = new ArrayList<>();
+        int retained;
+        synchronized ( this ) {
+            epoch++;
+            Set<String> keys = new HashSet<>();
+            for ( String dependency : touched ) {
+                recordInvalidation( dependency );
+                keys.addAll( dependents.getOrDefault( dependency, Set.of() ) );
+            }
+            for ( String key : keys ) {
+                stale.add( remove( key ) );
+            }
+            retained = entries.size();
+        }
+        invalidatedByRules.increment( stale.size() );
+        retainedByRules.increment( retained );
+        log.info( "Rules {} changed ({} rows): {} cached results invalidated, {} kept", event.ruleSet(),
+                event.changedRows().size(), stale.size(), retained );
+        stale.forEach( this::scheduleRecompute );
+    }
+
+    /** @param fingerprints personaId -> current fingerprint, null for personas that no longer exist */
+    private void invalidatePersonas( Map<String, Long> fingerprints )
+    {
+        List<Ticket> stale = new ArrayList<>();
+        int unchanged = 0;
+        synchronized ( this ) {
+            epoch++;
+            boolean bulk = fingerprints.size() > maxInvalidations;
+            if ( bulk ) {
+                // Too many to track one by one: every ticket taken before now is treated as stale.
+                forgottenAt = epoch;
+                invalidatedAt.clear();
+            }
+            for ( Map.Entry<String, Long> persona : fingerprints.entrySet() ) {
+                String dependency = PERSONA + persona.getKey();
+                if ( !bulk ) recordInvalidation( dependency );
+                Set<String> keys = dependents.get( dependency );
+                if ( keys == null ) continue;
+                Long fingerprint = persona.getValue();
+                for ( String key : List.copyOf( keys ) ) {
+                    Entry entry = entries.get( key );
+                    if ( fingerprint != null && entry.ticket().fingerprint() == fingerprint ) {
+                        unchanged++;
+                        continue;
+                    }
+                    Ticket ticket = remove( key );
+                    if ( fingerprint != null ) stale.add( ticket );
+                }
+            }
+        }
+        invalidatedByPersona.increment( stale.size() );
+        retainedByPersona.increment( unchanged );
+        stale.forEach( this::scheduleRecompute );
+    }
+
+    /** Marks the dependency invalidated at the current epoch, forgetting the oldest marks over the bound. Caller holds the lock. */
+    private void recordInvalidation( String dependency )
+    {
+        invalidatedAt.remove( dependency );
+        invalidatedAt.put( dependency, epoch );
+        while ( invalidatedAt.size() > maxInvalidations ) {
+            Map.Entry<String, Long> oldest = invalidatedAt.entrySet().iterator().next();
+            forgottenAt = Math.max( forgottenAt, oldest.getValue() );
+            invalidatedAt.remove( oldest.getKey() );
+        }
+    }
+
+    /** Caller holds the lock. */
+    private Ticket remove( String key )
+    {
+        Entry entry = entries.remove( key );
+        unindex( entry.ticket() );
+        return entry.ticket();
+    }
+
+    /** Caller holds the lock. */
+    private void unindex( Ticket ticket )
+    {
+        for ( String dependency : ticket.dependencies() ) {
+            Set<String> keys = dependents.get( dependency );
+            if ( keys == null ) continue;
+            keys.remove( ticket.key() );
+            if ( keys.isEmpty() ) dependents.remove( dependency );
+        }
+    }
+
+    private void scheduleRecompute( Ticket stale )
+    {
+        if ( throttle == null || !pending.add( stale.key() ) ) return;
+        try {
+            recomputer.execute( () -> recompute( stale ) );
+        } catch ( RejectedExecutionException e ) {
+            pending.remove( stale.key() );
+        }
+    }
+
+    private void recompute( Ticket stale )
+    {
+        try {
+            while ( !throttle.tryAcquire() ) {
+                Thread.sleep( Math.max( 1, throttle.millisUntilNextToken() ) );
+            }
+            // Off the pending set before computing, so a change that lands meanwhile queues another pass.
+            pending.remove( stale.key() );
+            Ticket ticket = ticket( stale.request(), stale.personaId() );
+            if ( ticket == null ) return;
+            RecommendOptionsResponse response = recommendationService.getRecommendations( stale.request(), stale.personaId(),
+                    LlmLane.BATCH, Deadline.none() );
+            ( put( ticket, response ) ? recomputed : recomputeStale ).increment();
+        } catch ( InterruptedException e ) {
+            pending.remove( stale.key() );
+            Thread.currentThread().interrupt();
+        } catch ( Exception e ) {
+            // Includes BadRequestException: the updated persona is no longer eligible for this request.
+            log.debug( "Recompute failed for {}: {}", stale.key(), e.getMessage() );
+            recomputeFailed.increment();
+        }
+    }
+
+    private static Set<String> dependencies( Persona persona, RuleSet ruleSet )
+    {
+        String scope = ruleSet.getName() + ':';
+        Set<String> dependencies = new HashSet<>();
+        dependencies.add( PERSONA + persona.getPersonaId() );
+        dependencies.add( scope + "PaymentGoal/*" );
+        dependencies.add( scope + "ConfidenceScore/*" );
+        dependencies.add( scope + "APR/*" );
+        dependencies.add( scope + "Formulas/*" );
+        dependencies.add( scope + "Income/" + row( () -> IncomeRule.IncomeBand.from( persona.getIncome() ) ) );
+        dependencies.add( scope + "PaymentHistory/" + row( () -> PaymentHistoryRule.PaymentHistoryType.from( persona.getPaymentHistory() ) ) );
+        // A bank on the global rules switches to its own as soon as it gets a workbook.
+        String slug = RulesReaderService.slug( persona.getBankName() );
+        if ( !slug.isEmpty() && !slug.equals( ruleSet.getName() ) ) {
+            dependencies.add( slug + ":*" );
+        }
+        return dependencies;
+    }
+
+    /** Row key for the persona's value, or the whole sheet when it does not map to one row. */
+    private static String row( Supplier<Enum<?>> parse )
+    {
+        try {
+            Enum<?> value = parse.get();
+            return value == null ? "*" : value.name();
+        } catch ( IllegalArgumentException e ) {
+            return "*";
+        }
+    }
+}
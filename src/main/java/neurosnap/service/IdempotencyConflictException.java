@@ -0,0 +1,12 @@
+package neurosnap.service;
+
+/**
+ * Thrown when an Idempotency-Key is reused with a different request payload.
+ */
+public class IdempotencyConflictException extends Exception
+{
+    public IdempotencyConflictException( String message )
+    {
+        super( message );
+    }
+}
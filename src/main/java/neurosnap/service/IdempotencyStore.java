@@ -0,0 +1,147 @@
+package neurosnap.service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import neurosnap.util.ResponseBytes;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Short-lived result store backing the Idempotency-Key header on /recommend.
+ *
+ * Behaviour per key:
+ * - first call computes the result and stores it as {@link ResponseBytes} (serialized, gzipped, ETag),
+ * - concurrent duplicates wait on the same future instead of calling the LLM again,
+ * - later duplicates within the TTL get the stored bytes back unchanged, without re-serializing,
+ * - failures are not stored, so a retry after an error computes again.
+ *
+ * Completed results live in an access-ordered LinkedHashMap capped at {@code maxEntries} (LRU
+ * eviction); expired entries are dropped lazily on lookup. In-flight entries are kept in a separate
+ * map until they complete, so eviction can never drop one and let a duplicate call the LLM again.
+ */
+@Service
+public class IdempotencyStore
+{
+    private final long ttlNanos;
+    private final long waitTimeoutMillis;
+    /** Completed results, LRU. Guarded by {@link #inFlight}, like that map. */
+    private final Map<String, Entry> entries;
+    private final Map<String, Entry> inFlight = new HashMap<>();
+
+    public IdempotencyStore(
+            @Value( "${neurosnap.idempotency.ttl-seconds:600}" ) long ttlSeconds,
+            @Value( "${neurosnap.idempotency.max-entries:10000}" ) int maxEntries,
+            @Value( "${neurosnap.idempotency.wait-timeout-seconds:130}" ) long waitTimeoutSeconds )
+    {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos( ttlSeconds );
+        this.waitTimeoutMillis = TimeUnit.SECONDS.toMillis( waitTimeoutSeconds );
+        this.entries = new LinkedHashMap<>( 256, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, Entry> eldest )
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the stored result for {@code key}, or runs {@code compute} exactly once for it.
+     *
+     * @param key         idempotency key (callers should scope it, e.g. by persona-id)
+     * @param fingerprint identifies the request payload; reusing a key with another payload is rejected
+     */
+    public Result execute( String key, String fingerprint, ResultSupplier compute ) throws Exception
+    {
+        Entry entry;
+        boolean owner = false;
+        synchronized ( inFlight ) {
+            entry = inFlight.get( key );
+            if ( entry == null ) {
+                entry = entries.get( key );
+                if ( entry != null && entry.isExpired( System.nanoTime() ) ) {
+                    entries.remove( key );
+                    entry = null;
+                }
+            }
+            if ( entry == null ) {
+                entry = new Entry( fingerprint );
+                inFlight.put( key, entry );
+                owner = true;
+            }
+        }
+
+        if ( !entry.fingerprint.equals( fingerprint ) ) {
+            throw new IdempotencyConflictException( "Idempotency-Key was already used with a different request." );
+        }
+
+        if ( owner ) {
+            try {
+                ResponseBytes body = compute.get();
+                entry.expiresAtNanos = System.nanoTime() + ttlNanos;
+                synchronized ( inFlight ) {
+                    inFlight.remove( key, entry );
+                    entries.put( key, entry );
+                }
+                entry.future.complete( body );
+                return new Result( body, false );
+            } catch ( Exception e ) {
+                synchronized ( inFlight ) {
+                    inFlight.remove( key, entry );
+                }
+                entry.future.completeExceptionally( e );
+                throw e;
+            }
+        }
+
+        try {
+            return new Result( entry.future.get( waitTimeoutMillis, TimeUnit.MILLISECONDS ), true );
+        } catch ( ExecutionException e ) {
+            if ( e.getCause() instanceof Exception cause ) throw cause;
+            throw e;
+        } catch ( TimeoutException e ) {
+            throw new IllegalStateException( "Timed out waiting for the original request with the same Idempotency-Key", e );
+        }
+    }
+
+    public int size()
+    {
+        synchronized ( inFlight ) {
+            return entries.size() + inFlight.size();
+        }
+    }
+
+    @FunctionalInterface
+    public interface ResultSupplier
+    {
+        ResponseBytes get() throws Exception;
+    }
+
+    /**
+     * @param body     serialized response
+     * @param replayed true when the bytes came from an earlier (or concurrent) call with the same key
+     */
+    public record Result( ResponseBytes body, boolean replayed ) {}
+
+    private static final class Entry
+    {
+        private final String fingerprint;
+        private final CompletableFuture<ResponseBytes> future = new CompletableFuture<>();
+        private volatile long expiresAtNanos = Long.MAX_VALUE; // in-flight entries never expire
+
+        private Entry( String fingerprint )
+        {
+            this.fingerprint = fingerprint;
+        }
+
+        private boolean isExpired( long now )
+        {
+            return expiresAtNanos != Long.MAX_VALUE && now - expiresAtNanos > 0;
+        }
+    }
+}
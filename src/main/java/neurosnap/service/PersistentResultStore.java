@@ -0,0 +1,218 @@
+package neurosnap.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import neurosnap.dto.Persona;
+import neurosnap.dto.RecommendOptionsResponse;
+import neurosnap.dto.RecommendRequest;
+import org.apache.coyote.BadRequestException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Disk-backed store of completed /recommend results, so warm answers survive a restart or a deploy.
+ *
+ * Results are appended to a memory-mapped {@link ResultLog} under the same key as the serving table
+ * (personaId, persona fingerprint, rules version, loanAmount, tenure, frequency), so an updated
+ * persona or rules change turns old entries into misses. Hits get a fresh requestId.
+ *
+ * Notes:
+ * - The log is opened and indexed on a background thread once the application is ready; until
+ *   then lookups miss and writes are skipped, so startup never waits on the scan.
+ * - Entries older than {@code ttl-hours} are no longer served. Compaction runs in the background
+ *   when dead bytes (overwritten entries) pass {@code compaction-dead-ratio} of the log, or when the
+ *   log is 90% full and dead plus expired bytes would free at least 10% of it; it drops expired
+ *   entries as well.
+ * - A nearly full log with nothing worth reclaiming is left alone (logged once) rather than copied
+ *   over and over; it stops taking writes when full (neurosnap.results.writes{result=full}) until
+ *   entries expire or are overwritten.
+ *
+ * Metrics:
+ * - neurosnap.results.lookups{result=hit|miss}
+ * - neurosnap.results.writes{result=ok|full}
+ * - neurosnap.results.entries, neurosnap.results.bytes{kind=used|dead}
+ * - neurosnap.results.compactions
+ */
+@Slf4j
+@Service
+public class PersistentResultStore
+{
+    private final PersonaReaderService personaReaderService;
+    private final RulesReaderService rulesReaderService;
+    private final ObjectMapper objectMapper;
+
+    private final boolean enabled;
+    private final Path path;
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final double compactionDeadRatio;
+
+    /** Compaction only pays off on a nearly full log when it frees at least this share of the capacity. */
+    private static final double MIN_RECLAIM_RATIO = 0.1;
+
+    private volatile ResultLog resultLog;
+
+    /** Whether "full, nothing to reclaim" was logged since the last compaction (scheduler thread only). */
+    private boolean fullLogged;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter writes;
+    private final Counter writesFull;
+    private final Counter compactions;
+
+    public PersistentResultStore( PersonaReaderService personaReaderService, RulesReaderService rulesReaderService, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value( "${neurosnap.results.enabled:true}" ) boolean enabled,
+            @Value( "${neurosnap.results.path:data/recommendation-results.log}" ) String path,
+            @Value( "${neurosnap.results.max-bytes:268435456}" ) long maxBytes,
+            @Value( "${neurosnap.results.ttl-hours:168}" ) long ttlHours,
+            @Value( "${neurosnap.results.compaction-dead-ratio:0.5}" ) double compactionDeadRatio )
+    {
+        this.personaReaderService = personaReaderService;
+        this.rulesReaderService = rulesReaderService;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.path = Path.of( path );
+        this.maxBytes = maxBytes;
+        this.ttlMillis = TimeUnit.HOURS.toMillis( ttlHours );
+        this.compactionDeadRatio = compactionDeadRatio;
+
+        this.hits = meterRegistry.counter( "neurosnap.results.lookups", "result", "hit" );
+        this.misses = meterRegistry.counter( "neurosnap.results.lookups", "result", "miss" );
+        this.writes = meterRegistry.counter( "neurosnap.results.writes", "result", "ok" );
+        this.writesFull = meterRegistry.counter( "neurosnap.results.writes", "result", "full" );
+        this.compactions = meterRegistry.counter( "neurosnap.results.compactions" );
+        meterRegistry.gauge( "neurosnap.results.entries", this, s -> s.resultLog == null ? 0 : s.resultLog.size() );
+        meterRegistry.gauge( "neurosnap.results.bytes", Tags.of( "kind", "used" ), this,
+                s -> s.resultLog == null ? 0 : s.resultLog.usedBytes() );
+        meterRegistry.gauge( "neurosnap.results.bytes", Tags.of( "kind", "dead" ), this,
+                s -> s.resultLog == null ? 0 : s.resultLog.deadBytes() );
+    }
+
+    /** Lazy reload: index the log off the startup path. */
+    @EventListener( ApplicationReadyEvent.class )
+    public void openInBackground()
+    {
+        if ( !enabled ) return;
+        Thread loader = new Thread( () -> {
+            long start = System.nanoTime();
+            try {
+                ResultLog opened = ResultLog.open( path, maxBytes );
+                resultLog = opened;
+                log.info( "Opened result log {} with {} entries in {} ms", path, opened.size(),
+                        TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) );
+            } catch ( Exception e ) {
+                log.warn( "Result log {} unavailable, running without it: {}", path, e.getMessage() );
+            }
+        }, "result-log-open" );
+        loader.setDaemon( true );
+        loader.start();
+    }
+
+    /**
+     * Store key for the request against the persona as it is now, or null when the store is not
+     * open yet or the persona is unknown. Taken before computing, so an answer is never filed under
+     * a newer version of the persona than the one it was computed for.
+     */
+    public String key( RecommendRequest request, String personaId )
+    {
+        if ( resultLog == null ) return null;
+        try {
+            Persona persona = personaReaderService.getPersona( personaId ).get();
+            return PrecomputeService.key( persona, rulesReaderService.getRuleSet( persona.getBankName() ).getVersion(),
+                    request.getLoanAmount(), request.getTenure(), request.getFrequency() );
+        } catch ( BadRequestException e ) {
+            return null;
+        }
+    }
+
+    /** Stored answer with a fresh requestId; null on a miss. */
+    public RecommendOptionsResponse lookup( String key )
+    {
+        ResultLog current = resultLog;
+        if ( current == null || key == null ) return null;
+        try {
+            byte[] json = current.get( key, System.currentTimeMillis() - ttlMillis );
+            if ( json == null ) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            RecommendOptionsResponse response = objectMapper.readValue( json, RecommendOptionsResponse.class );
+            response.setRequestId( UUID.randomUUID().toString() );
+            return response;
+        } catch ( Exception e ) {
+            log.warn( "Result log lookup failed for {}: {}", key, e.getMessage() );
+            return null;
+        }
+    }
+
+    /** Appends a freshly computed answer; failures only cost a future miss. */
+    public void remember( String key, RecommendOptionsResponse response )
+    {
+        ResultLog current = resultLog;
+        if ( current == null || key == null || response == null || response.getRecommendations() == null ) return;
+        try {
+            byte[] json = objectMapper.writeValueAsBytes( response );
+            // A log replaced by compaction in the meantime forwards the write to its successor.
+            boolean written = current.put( key, json, System.currentTimeMillis() );
+            ( written ? writes : writesFull ).increment();
+        } catch ( Exception e ) {
+            log.warn( "Result log write failed for {}: {}", key, e.getMessage() );
+        }
+    }
+
+    @Scheduled( fixedDelayString = "${neurosnap.results.compaction-check-millis:60000}" )
+    public void compactIfNeeded()
+    {
+        ResultLog current = resultLog;
+        if ( current == null ) return;
+        long used = current.usedBytes();
+        boolean wasteful = current.deadBytes() > used * compactionDeadRatio;
+        boolean nearlyFull = used > current.capacity() * 0.9;
+        if ( !wasteful && !nearlyFull ) {
+            fullLogged = false;
+            return;
+        }
+        long notBefore = System.currentTimeMillis() - ttlMillis;
+        if ( !wasteful ) {
+            long reclaimable = current.reclaimableBytes( notBefore );
+            if ( reclaimable < current.capacity() * MIN_RECLAIM_RATIO ) {
+                if ( !fullLogged ) {
+                    log.warn( "Result log {} is nearly full ({} of {} bytes) and only {} bytes are dead or expired; "
+                            + "new results are not stored once it is full", path, used, current.capacity(), reclaimable );
+                    fullLogged = true;
+                }
+                return;
+            }
+        }
+        try {
+            long start = System.nanoTime();
+            ResultLog compacted = current.compact( notBefore );
+            resultLog = compacted;
+            fullLogged = false;
+            compactions.increment();
+            log.info( "Compacted result log {}: {} -> {} bytes, {} entries in {} ms", path, used,
+                    compacted.usedBytes(), compacted.size(), TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) );
+        } catch ( Exception e ) {
+            log.warn( "Result log compaction failed, keeping the current log: {}", e.getMessage() );
+        }
+    }
+
+    @PreDestroy
+    public void flush()
+    {
+        ResultLog current = resultLog;
+        if ( current != null ) current.force();
+    }
+}
@@ -0,0 +1,425 @@
+package neurosnap.service;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import neurosnap.dto.ExistingLoan;
+import neurosnap.dto.Persona;
+import neurosnap.util.PersonaFingerprint;
+
+/**
+ * Off-heap, columnar persona book: one direct buffer per field, so the heap holds a few dozen
+ * objects whatever the number of personas and a full GC has nothing to trace.
+ *
+ * Layout:
+ * - every persona version is a row; numbers live in fixed-width primitive columns,
+ * - income, paymentHistory, bankName and refiExperience are dictionary-encoded (2-byte codes,
+ *   0 = null; the few distinct values stay on the heap),
+ * - dob is packed into an int as yyyyMMdd (0 = null); a value that does not round-trip as
+ *   dd-MM-yyyy is kept verbatim in a side map,
+ * - personaId, personaName and paymentBehavior are length-prefixed UTF-8 in a per-column byte heap,
+ * - a position (the dense index used by {@link PersonaIndexService}) maps to its current row, and an
+ *   off-heap open-addressing table maps personaId to position.
+ *
+ * Notes:
+ * - Single writer (the caller serializes mutations), any number of readers without locks. A replaced
+ *   persona gets a new row and its position is re-pointed after the row is complete, so readers see
+ *   either the old or the new version, never a mix. Replaced rows stay dead until the next reload.
+ * - Columns grow by doubling into a new buffer; readers that still hold the old buffer only read
+ *   rows it already contains.
+ * - Multiple existingLoans are rare and stay on the heap, keyed by row.
+ * - About 120 bytes per persona plus the strings; a string column holds at most 2 GB.
+ */
+final class PersonaColumnStore
+{
+    static final int INITIAL_ROWS = 1024;
+    private static final int MAX_DICTIONARY = 0xffff;
+
+    // Fixed-width columns, indexed by row.
+    private final Column creditScore = new Column( Integer.BYTES );
+    private final Column ssn = new Column( Integer.BYTES );
+    private final Column verificationCode = new Column( Integer.BYTES );
+    private final Column existingTenure = new Column( Integer.BYTES );
+    private final Column dob = new Column( Integer.BYTES );
+    private final Column mobileNumber = new Column( Long.BYTES );
+    private final Column cardNumber = new Column( Long.BYTES );
+    private final Column existingLoanAmount = new Column( Double.BYTES );
+    private final Column existingInterestRate = new Column( Double.BYTES );
+    private final Column existingPendingAmount = new Column( Double.BYTES );
+    private final Column existingEmi = new Column( Double.BYTES );
+    private final Column minimumRefinanceAmt = new Column( Double.BYTES );
+    private final Column incomeAmt = new Column( Double.BYTES );
+    private final Column[] numbers = { creditScore, ssn, verificationCode, existingTenure, dob, mobileNumber, cardNumber,
+            existingLoanAmount, existingInterestRate, existingPendingAmount, existingEmi, minimumRefinanceAmt, incomeAmt };
+
+    private final Dictionary income = new Dictionary( "income" );
+    private final Dictionary paymentHistory = new Dictionary( "paymentHistory" );
+    private final Dictionary bankName = new Dictionary( "bankName" );
+    private final Dictionary refiExperience = new Dictionary( "refiExperience" );
+
+    private final Strings personaId = new Strings();
+    private final Strings personaName = new Strings();
+    private final Strings paymentBehavior = new Strings();
+
+    private final Map<Integer, String> irregularDob = new ConcurrentHashMap<>();
+    private final Map<Integer, List<ExistingLoan>> existingLoans = new ConcurrentHashMap<>();
+
+    /** position -> row. */
+    private final Column rowOf = new Column( Integer.BYTES );
+
+    /** personaId hash table: position + 1 per slot, 0 = empty, linear probing. */
+    private volatile ByteBuffer slots = allocate( (long) INITIAL_ROWS * 2 * Integer.BYTES );
+
+    private int rows;
+    private volatile int size;
+
+    /** Number of personas (positions). */
+    int size()
+    {
+        return size;
+    }
+
+    /** Position of the persona, or -1. */
+    int find( String id )
+    {
+        if ( id == null ) return -1;
+        byte[] key = id.getBytes( StandardCharsets.UTF_8 );
+        ByteBuffer table = slots;
+        int mask = table.capacity() / Integer.BYTES - 1;
+        for ( int slot = (int) PersonaFingerprint.hash( key ) & mask; ; slot = ( slot + 1 ) & mask ) {
+            int entry = table.getInt( slot * Integer.BYTES );
+            if ( entry == 0 ) return -1;
+            VarHandle.acquireFence();
+            if ( personaId.equalsAt( row( entry - 1 ), key ) ) return entry - 1;
+        }
+    }
+
+    /**
+     * Inserts the persona or replaces the one with the same personaId.
+     *
+     * @return its position; positions at or beyond the previous {@link #size()} are new
+     */
+    int put( Persona persona )
+    {
+        int position = find( persona.getPersonaId() );
+        int row = write( persona );
+        if ( position < 0 ) {
+            position = size;
+            rowOf.ensure( position + 1 );
+            rowOf.buffer.putInt( position * Integer.BYTES, row );
+            size = position + 1;
+            index( persona.getPersonaId(), position );
+        } else {
+            // The row is complete before any reader can reach it through its position.
+            VarHandle.releaseFence();
+            rowOf.buffer.putInt( position * Integer.BYTES, row );
+        }
+        return position;
+    }
+
+    /** Flyweight positioned on {@code position}. */
+    PersonaView view( int position )
+    {
+        return new PersonaView( this ).moveTo( position );
+    }
+
+    /** Calls {@code action} for every persona with one reused view; do not keep it. */
+    void forEach( Consumer<PersonaView> action )
+    {
+        PersonaView view = new PersonaView( this );
+        for ( int position = 0, end = size; position < end; position++ ) {
+            action.accept( view.moveTo( position ) );
+        }
+    }
+
+    /** Direct memory held by the columns. */
+    long offHeapBytes()
+    {
+        long total = slots.capacity() + rowOf.buffer.capacity();
+        for ( Column column : numbers ) {
+            total += column.buffer.capacity();
+        }
+        for ( Dictionary dictionary : new Dictionary[] { income, paymentHistory, bankName, refiExperience } ) {
+            total += dictionary.codes.buffer.capacity();
+        }
+        for ( Strings strings : new Strings[] { personaId, personaName, paymentBehavior } ) {
+            total += strings.offsets.buffer.capacity();
+        }
+        return total + personaId.heap.capacity() + personaName.heap.capacity() + paymentBehavior.heap.capacity();
+    }
+
+    int row( int position )
+    {
+        if ( position < 0 || position >= size ) throw new IndexOutOfBoundsException( "position " + position );
+        int row = rowOf.buffer.getInt( position * Integer.BYTES );
+        VarHandle.acquireFence();
+        return row;
+    }
+
+    private int write( Persona p )
+    {
+        int row = rows;
+        for ( Column column : numbers ) {
+            column.ensure( row + 1 );
+        }
+        creditScore.buffer.putInt( row * Integer.BYTES, p.getCreditScore() );
+        ssn.buffer.putInt( row * Integer.BYTES, p.getSsn() );
+        verificationCode.buffer.putInt( row * Integer.BYTES, p.getVerificationCode() );
+        existingTenure.buffer.putInt( row * Integer.BYTES, p.getExistingTenure() );
+        dob.buffer.putInt( row * Integer.BYTES, packDob( row, p.getDob() ) );
+        mobileNumber.buffer.putLong( row * Long.BYTES, p.getMobileNumber() );
+        cardNumber.buffer.putLong( row * Long.BYTES, p.getCardNumber() );
+        existingLoanAmount.buffer.putDouble( row * Double.BYTES, p.getExistingLoanAmount() );
+        existingInterestRate.buffer.putDouble( row * Double.BYTES, p.getExistingInterestRate() );
+        existingPendingAmount.buffer.putDouble( row * Double.BYTES, p.getExistingPendingAmount() );
+        existingEmi.buffer.putDouble( row * Double.BYTES, p.getExistingEmi() );
+        minimumRefinanceAmt.buffer.putDouble( row * Double.BYTES, p.getMinimumRefinanceAmt() );
+        incomeAmt.buffer.putDouble( row * Double.BYTES, p.getIncomeAmt() );
+
+        income.put( row, p.getIncome() );
+        paymentHistory.put( row, p.getPaymentHistory() );
+        bankName.put( row, p.getBankName() );
+        refiExperience.put( row, p.getRefiExperience() );
+
+        personaId.put( row, p.getPersonaId() );
+        personaName.put( row, p.getPersonaName() );
+        paymentBehavior.put( row, p.getPaymentBehavior() );
+
+        if ( p.getExistingLoans() != null && !p.getExistingLoans().isEmpty() ) {
+            existingLoans.put( row, copyLoans( p.getExistingLoans() ) );
+        }
+        rows = row + 1;
+        return row;
+    }
+
+    /** Makes the (already counted) position findable by id. */
+    private void index( String id, int position )
+    {
+        ByteBuffer table = slots;
+        if ( (long) size * 2 > table.capacity() / Integer.BYTES ) {
+            slots = rehash( table.capacity() * 2L );
+        } else {
+            // A reader that finds the slot must also see the row and the new size.
+            VarHandle.releaseFence();
+            insert( table, id.getBytes( StandardCharsets.UTF_8 ), position );
+        }
+    }
+
+    /** Builds a bigger table with every position next to the live one; readers switch over on the volatile write. */
+    private ByteBuffer rehash( long bytes )
+    {
+        ByteBuffer table = allocate( bytes );
+        for ( int position = 0; position < size; position++ ) {
+            insert( table, personaId.bytes( row( position ) ), position );
+        }
+        return table;
+    }
+
+    private static void insert( ByteBuffer table, byte[] key, int position )
+    {
+        int mask = table.capacity() / Integer.BYTES - 1;
+        int slot = (int) PersonaFingerprint.hash( key ) & mask;
+        while ( table.getInt( slot * Integer.BYTES ) != 0 ) {
+            slot = ( slot + 1 ) & mask;
+        }
+        table.putInt( slot * Integer.BYTES, position + 1 );
+    }
+
+    /** dd-MM-yyyy -> yyyyMMdd; 0 for null, -1 when kept verbatim. */
+    private int packDob( int row, String value )
+    {
+        if ( value == null ) return 0;
+        if ( value.length() == 10 && value.charAt( 2 ) == '-' && value.charAt( 5 ) == '-' ) {
+            try {
+                int day = Integer.parseInt( value, 0, 2, 10 );
+                int month = Integer.parseInt( value, 3, 5, 10 );
+                int year = Integer.parseInt( value, 6, 10, 10 );
+                int packed = year * 10_000 + month * 100 + day;
+                if ( packed > 0 && value.equals( unpackDob( packed ) ) ) return packed;
+            } catch ( NumberFormatException e ) {
+                // fall through to the verbatim copy
+            }
+        }
+        irregularDob.put( row, value );
+        return -1;
+    }
+
+    private static String unpackDob( int packed )
+    {
+        return String.format( "%02d-%02d-%04d", packed % 100, packed / 100 % 100, packed / 10_000 );
+    }
+
+    // Row accessors for PersonaView.
+
+    String personaId( int row ) { return personaId.get( row ); }
+    String personaName( int row ) { return personaName.get( row ); }
+    String paymentBehavior( int row ) { return paymentBehavior.get( row ); }
+    String income( int row ) { return income.get( row ); }
+    String paymentHistory( int row ) { return paymentHistory.get( row ); }
+    String bankName( int row ) { return bankName.get( row ); }
+    String refiExperience( int row ) { return refiExperience.get( row ); }
+    int creditScore( int row ) { return creditScore.buffer.getInt( row * Integer.BYTES ); }
+    int ssn( int row ) { return ssn.buffer.getInt( row * Integer.BYTES ); }
+    int verificationCode( int row ) { return verificationCode.buffer.getInt( row * Integer.BYTES ); }
+    int existingTenure( int row ) { return existingTenure.buffer.getInt( row * Integer.BYTES ); }
+    long mobileNumber( int row ) { return mobileNumber.buffer.getLong( row * Long.BYTES ); }
+    long cardNumber( int row ) { return cardNumber.buffer.getLong( row * Long.BYTES ); }
+    double existingLoanAmount( int row ) { return existingLoanAmount.buffer.getDouble( row * Double.BYTES ); }
+    double existingInterestRate( int row ) { return existingInterestRate.buffer.getDouble( row * Double.BYTES ); }
+    double existingPendingAmount( int row ) { return existingPendingAmount.buffer.getDouble( row * Double.BYTES ); }
+    double existingEmi( int row ) { return existingEmi.buffer.getDouble( row * Double.BYTES ); }
+    double minimumRefinanceAmt( int row ) { return minimumRefinanceAmt.buffer.getDouble( row * Double.BYTES ); }
+    double incomeAmt( int row ) { return incomeAmt.buffer.getDouble( row * Double.BYTES ); }
+    List<ExistingLoan> existingLoans( int row ) { return existingLoans.get( row ); }
+
+    String dob( int row )
+    {
+        int packed = dob.buffer.getInt( row * Integer.BYTES );
+        if ( packed == 0 ) return null;
+        return packed < 0 ? irregularDob.get( row ) : unpackDob( packed );
+    }
+
+    /** Deep copy; the store never shares mutable loan objects with callers. */
+    static List<ExistingLoan> copyLoans( List<ExistingLoan> loans )
+    {
+        List<ExistingLoan> copies = new ArrayList<>( loans.size() );
+        for ( ExistingLoan loan : loans ) {
+            copies.add( loan == null ? null : new ExistingLoan( loan.getLoanId(), loan.getLender(), loan.getLoanAmount(),
+                    loan.getPendingAmount(), loan.getInterestRate(), loan.getEmi(), loan.getRemainingTenure() ) );
+        }
+        return copies;
+    }
+
+    private static ByteBuffer allocate( long bytes )
+    {
+        if ( bytes > Integer.MAX_VALUE ) throw new IllegalStateException( "Persona column over 2 GB" );
+        return ByteBuffer.allocateDirect( (int) bytes ).order( ByteOrder.nativeOrder() );
+    }
+
+    /** Copy of {@code buffer} with room for at least {@code bytes}. */
+    private static ByteBuffer grow( ByteBuffer buffer, long bytes )
+    {
+        ByteBuffer grown = allocate( Math.min( Integer.MAX_VALUE, Math.max( bytes, buffer.capacity() * 2L ) ) );
+        grown.put( 0, buffer, 0, buffer.capacity() );
+        return grown;
+    }
+
+    /** Fixed-width values, one per row. */
+    private static final class Column
+    {
+        final int width;
+        volatile ByteBuffer buffer;
+
+        Column( int width )
+        {
+            this.width = width;
+            this.buffer = allocate( (long) INITIAL_ROWS * width );
+        }
+
+        void ensure( int rows )
+        {
+            long bytes = (long) rows * width;
+            if ( bytes > buffer.capacity() ) buffer = grow( buffer, bytes );
+        }
+    }
+
+    /** Low-cardinality strings as 2-byte codes into an on-heap value table. */
+    private static final class Dictionary
+    {
+        final String name;
+        final Column codes = new Column( Character.BYTES );
+        final Map<String, Integer> byValue = new HashMap<>();     // writer only
+        volatile String[] values = { null };
+
+        Dictionary( String name )
+        {
+            this.name = name;
+        }
+
+        void put( int row, String value )
+        {
+            int code = 0;
+            if ( value != null ) {
+                Integer known = byValue.get( value );
+                if ( known == null ) {
+                    String[] current = values;
+                    if ( current.length > MAX_DICTIONARY ) {
+                        throw new IllegalStateException( "More than " + MAX_DICTIONARY + " distinct " + name + " values" );
+                    }
+                    String[] extended = Arrays.copyOf( current, current.length + 1 );
+                    extended[current.length] = value;
+                    values = extended;
+                    known = current.length;
+                    byValue.put( value, known );
+                }
+                code = known;
+            }
+            codes.ensure( row + 1 );
+            codes.buffer.putChar( row * Character.BYTES, (char) code );
+        }
+
+        String get( int row )
+        {
+            return values[codes.buffer.getChar( row * Character.BYTES )];
+        }
+    }
+
+    /** Variable-length strings: per-row offset into a byte heap of (int length, UTF-8 bytes); length -1 = null. */
+    private static final class Strings
+    {
+        final Column offsets = new Column( Integer.BYTES );
+        volatile ByteBuffer heap = allocate( (long) INITIAL_ROWS * 32 );
+        int used;
+
+        void put( int row, String value )
+        {
+            byte[] bytes = value == null ? null : value.getBytes( StandardCharsets.UTF_8 );
+            int length = bytes == null ? 0 : bytes.length;
+            if ( (long) used + Integer.BYTES + length > heap.capacity() ) {
+                heap = grow( heap, (long) used + Integer.BYTES + length );
+            }
+            ByteBuffer target = heap;
+            target.putInt( used, bytes == null ? -1 : length );
+            if ( bytes != null ) target.put( used + Integer.BYTES, bytes );
+            offsets.ensure( row + 1 );
+            offsets.buffer.putInt( row * Integer.BYTES, used );
+            used += Integer.BYTES + length;
+        }
+
+        String get( int row )
+        {
+            byte[] bytes = bytes( row );
+            return bytes == null ? null : new String( bytes, StandardCharsets.UTF_8 );
+        }
+
+        byte[] bytes( int row )
+        {
+            ByteBuffer source = heap;
+            int offset = offsets.buffer.getInt( row * Integer.BYTES );
+            int length = source.getInt( offset );
+            if ( length < 0 ) return null;
+            byte[] bytes = new byte[length];
+            source.get( offset + Integer.BYTES, bytes );
+            return bytes;
+        }
+
+        boolean equalsAt( int row, byte[] key )
+        {
+            ByteBuffer source = heap;
+            int offset = offsets.buffer.getInt( row * Integer.BYTES );
+            if ( source.getInt( offset ) != key.length ) return false;
+            for ( int i = 0; i < key.length; i++ ) {
+                if ( source.get( offset + Integer.BYTES + i ) != key[i] ) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package neurosnap.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import neurosnap.dto.Persona;
+import neurosnap.dto.PersonaImportResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Streaming bulk import of personas from CSV or NDJSON.
+ *
+ * CSV uses the persona.xlsx column layout read by {@link PersonaReaderService} (personaId, personaName,
+ * income, paymentBehavior, refiExperience, creditScore, existingLoanAmount, existingInterestRate,
+ * existingPendingAmount, paymentHistory, dob (dd-MM-yyyy), ssn, mobileNumber, verificationCode,
+ * existingTenure, existingEmi, bankName, cardNumber, minimumRefinanceAmt, incomeAmt); a header line is
+ * skipped. NDJSON uses the same names as JSON properties, one persona per line.
+ *
+ * The body is read line by line and valid rows are upserted in batches of {@code batch-size}, so memory
+ * stays constant regardless of file size and indexes are patched per batch rather than rebuilt. A line
+ * longer than {@code max-line-chars} is rejected as a row without being buffered; the import continues
+ * with the next line.
+ */
+@Slf4j
+@Service
+public class PersonaImportService
+{
+    public enum Format { CSV, NDJSON }
+
+    private static final int COLUMNS = 20;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final DateTimeFormatter DOB_FORMAT = DateTimeFormatter.ofPattern( "dd-MM-uuuu" )
+            .withResolverStyle( ResolverStyle.STRICT );
+
+    private final PersonaReaderService personaReaderService;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int maxLineChars;
+
+    public PersonaImportService( PersonaReaderService personaReaderService, ObjectMapper objectMapper,
+            @Value( "${neurosnap.personas.import.batch-size:500}" ) int batchSize,
+            @Value( "${neurosnap.personas.import.max-line-chars:8192}" ) int maxLineChars )
+    {
+        this.personaReaderService = personaReaderService;
+        this.objectMapper = objectMapper;
+        this.batchSize = Math.max( 1, batchSize );
+        this.maxLineChars = Math.max( 1, maxLineChars );
+    }
+
+    public PersonaImportResult importPersonas( InputStream body, Format format ) throws IOException
+    {
+        long start = System.nanoTime();
+        long inserted = 0;
+        long updated = 0;
+        long skipped = 0;
+        long rejected = 0;
+        List<PersonaImportResult.RowError> errors = new ArrayList<>();
+        List<Persona> batch = new ArrayList<>( batchSize );
+
+        LineReader reader = new LineReader( new BufferedReader( new InputStreamReader( body, StandardCharsets.UTF_8 ) ), maxLineChars );
+        String line;
+        long lineNumber = 0;
+        while ( ( line = reader.readLine() ) != null ) {
+            lineNumber++;
+            if ( reader.truncated() ) {
+                rejected++;
+                if ( errors.size() < MAX_REPORTED_ERRORS ) {
+                    errors.add( new PersonaImportResult.RowError( lineNumber, "Line longer than " + maxLineChars + " characters" ) );
+                }
+                continue;
+            }
+            if ( lineNumber == 1 && line.startsWith( "\uFEFF" ) ) {
+                line = line.substring( 1 );
+            }
+            if ( line.isBlank() ) continue;
+
+            try {
+                Persona persona;
+                if ( format == Format.CSV ) {
+                    List<String> cells = splitCsv( line );
+                    if ( lineNumber == 1 && isHeader( cells ) ) continue;
+                    persona = fromCsv( cells );
+                } else {
+                    persona = objectMapper.readValue( line, Persona.class );
+                }
+                validate( persona );
+                batch.add( persona );
+            } catch ( Exception e ) {
+                rejected++;
+                if ( errors.size() < MAX_REPORTED_ERRORS ) {
+                    errors.add( new PersonaImportResult.RowError( lineNumber, e.getMessage() ) );
+                }
+                continue;
+            }
+
+            if ( batch.size() >= batchSize ) {
+                PersonaReaderService.Upserted upserted = personaReaderService.upsert( batch );
+                inserted += upserted.inserted();
+                updated += upserted.updated();
+                skipped += upserted.skipped();
+                batch.clear();
+            }
+        }
+        if ( !batch.isEmpty() ) {
+            PersonaReaderService.Upserted upserted = personaReaderService.upsert( batch );
+            inserted += upserted.inserted();
+            updated += upserted.updated();
+            skipped += upserted.skipped();
+        }
+        long accepted = inserted + updated;
+
+        long elapsedNanos = Math.max( 1, System.nanoTime() - start );
+        double rowsPerSecond = ( accepted + skipped + rejected ) * 1_000_000_000d / elapsedNanos;
+        log.info( "Persona import ({}): {} accepted, {} skipped (other nodes' partition), {} rejected in {} ms ({} rows/s)",
+                format, accepted, skipped, rejected, elapsedNanos / 1_000_000, Math.round( rowsPerSecond ) );
+
+        return PersonaImportResult.builder()
+                .accepted( accepted )
+                .rejected( rejected )
+                .inserted( inserted )
+                .updated( updated )
+                .skipped( skipped )
+                .elapsedMillis( elapsedNanos / 1_000_000 )
+                .rowsPerSecond( Math.round( rowsPerSecond * 10 ) / 10.0 )
+                .errors( errors )
+                .build();
+    }
+
+    private static boolean isHeader( List<String> cells )
+    {
+        // A data row always has a numeric credit score in column 6.
+        return cells.size() > 5 && !cells.get( 5 ).trim().matches( "-?\\d+(\\.\\d+)?" );
+    }
+
+    private static Persona fromCsv( List<String> cells )
+    {
+        if ( cells.size() != COLUMNS ) {
+            throw new IllegalArgumentException( "Expected " + COLUMNS + " columns but found " + cells.size() );
+        }
+        Persona persona = new Persona();
+        persona.setPersonaId( text( cells, 0 ) );
+        persona.setPersonaName( text( cells, 1 ) );
+        persona.setIncome( text( cells, 2 ) );
+        persona.setPaymentBehavior( text( cells, 3 ) );
+        persona.setRefiExperience( text( cells, 4 ) );
+        persona.setCreditScore( (int) integral( cells, 5 ) );
+        persona.setExistingLoanAmount( decimal( cells, 6 ) );
+        persona.setExistingInterestRate( decimal( cells, 7 ) );
+        persona.setExistingPendingAmount( decimal( cells, 8 ) );
+        persona.setPaymentHistory( text( cells, 9 ) );
+        persona.setDob( text( cells, 10 ) );
+        persona.setSsn( (int) integral( cells, 11 ) );
+        persona.setMobileNumber( integral( cells, 12 ) );
+        persona.setVerificationCode( (int) integral( cells, 13 ) );
+        persona.setExistingTenure( (int) integral( cells, 14 ) );
+        persona.setExistingEmi( decimal( cells, 15 ) );
+        persona.setBankName( text( cells, 16 ) );
+        persona.setCardNumber( integral( cells, 17 ) );
+        persona.setMinimumRefinanceAmt( decimal( cells, 18 ) );
+        persona.setIncomeAmt( decimal( cells, 19 ) );
+        return persona;
+    }
+
+    private static void validate( Persona p )
+    {
+        List<String> errors = new ArrayList<>();
+        if ( p.getPersonaId() == null || p.getPersonaId().isBlank() ) errors.add( "personaId is required" );
+        if ( p.getPersonaName() == null || p.getPersonaName().isBlank() ) errors.add( "personaName is required" );
+        if ( p.getPaymentHistory() == null || p.getPaymentHistory().isBlank() ) errors.add( "paymentHistory is required" );
+        if ( p.getCreditScore() < 300 || p.getCreditScore() > 900 ) errors.add( "creditScore must be between 300 and 900" );
+        if ( p.getExistingLoanAmount() <= 0 ) errors.add( "existingLoanAmount must be positive" );
+        if ( p.getExistingInterestRate() < 0 || p.getExistingInterestRate() > 100 ) errors.add( "existingInterestRate must be between 0 and 100" );
+        if ( p.getExistingPendingAmount() < 0 || p.getExistingPendingAmount() > p.getExistingLoanAmount() ) {
+            errors.add( "existingPendingAmount must be between 0 and existingLoanAmount" );
+        }
+        if ( p.getExistingTenure() <= 0 ) errors.add( "existingTenure must be positive" );
+        if ( p.getExistingEmi() < 0 ) errors.add( "existingEmi must not be negative" );
+        if ( p.getMinimumRefinanceAmt() < 0 ) errors.add( "minimumRefinanceAmt must not be negative" );
+        if ( p.getIncomeAmt() < 0 ) errors.add( "incomeAmt must not be negative" );
+        if ( p.getDob() != null ) {
+            try {
+                LocalDate.parse( p.getDob(), DOB_FORMAT );
+            } catch ( Exception e ) {
+                errors.add( "dob must be dd-MM-yyyy" );
+            }
+        }
+        if ( !errors.isEmpty() ) {
+            throw new IllegalArgumentException( String.join( "; ", errors ) );
+        }
+    }
+
+    private static String text( List<String> cells, int column )
+    {
+        String value = cells.get( column ).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static double decimal( List<String> cells, int column )
+    {
+        try {
+            return Double.parseDouble( cells.get( column ).trim() );
+        } catch ( NumberFormatException e ) {
+            throw new IllegalArgumentException( "Column " + ( column + 1 ) + " is not a number: " + cells.get( column ) );
+        }
+    }
+
+    /** Whole number; accepts spreadsheet exports such as "1234.0". */
+    private static long integral( List<String> cells, int column )
+    {
+        try {
+            return new BigDecimal( cells.get( column ).trim() ).longValueExact();
+        } catch ( NumberFormatException | ArithmeticException e ) {
+            throw new IllegalArgumentException( "Column " + ( column + 1 ) + " is not a whole number: " + cells.get( column ) );
+        }
+    }
+
+    /** RFC 4180 field split for one line: quoted fields may contain commas and doubled quotes. */
+    static List<String> splitCsv( String line )
+    {
+        List<String> cells = new ArrayList<>( COLUMNS );
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for ( int i = 0; i < line.length(); i++ ) {
+            char c = line.charAt( i );
+            if ( quoted ) {
+                if ( c == '"' && i + 1 < line.length() && line.charAt( i + 1 ) == '"' ) {
+                    cell.append( '"' );
+                    i++;
+                } else if ( c == '"' ) {
+                    quoted = false;
+                } else {
+                    cell.append( c );
+                }
+            } else if ( c == '"' ) {
+                quoted = true;
+            } else if ( c == ',' ) {
+                cells.add( cell.toString() );
+                cell.setLength( 0 );
+            } else {
+                cell.append( c );
+            }
+        }
+        if ( quoted ) {
+            throw new IllegalArgumentException( "Unterminated quoted field" );
+        }
+        cells.add( cell.toString() );
+        return cells;
+    }
+
+    /**
+     * Line splitter with a length cap: like {@link BufferedReader#readLine()} (\n, \r or \r\n end a line),
+     * but a line over {@code maxChars} is skipped up to its end instead of buffered, and flagged as truncated.
+     */
+    static final class LineReader
+    {
+        private final Reader in;
+        private final int maxChars;
+        private final StringBuilder line = new StringBuilder();
+        private boolean skipLf;
+        private boolean truncated;
+
+        LineReader( Reader in, int maxChars )
+        {
+            this.in = in;
+            this.maxChars = maxChars;
+        }
+
+        /** The next line without its terminator (empty when truncated), or null at end of input. */
+        String readLine() throws IOException
+        {
+            line.setLength( 0 );
+            truncated = false;
+            int c = in.read();
+            if ( skipLf && c == '\n' ) c = in.read();
+            skipLf = false;
+            if ( c < 0 ) return null;
+            while ( c >= 0 && c != '\n' && c != '\r' ) {
+                if ( line.length() < maxChars ) {
+                    line.append( (char) c );
+                } else {
+                    truncated = true;
+                }
+                c = in.read();
+            }
+            skipLf = c == '\r';
+            if ( truncated ) line.setLength( 0 );
+            return line.toString();
+        }
+
+        /** Whether the line last returned exceeded the cap. */
+        boolean truncated()
+        {
+            return truncated;
+        }
+    }
+}
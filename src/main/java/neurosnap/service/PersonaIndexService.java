@@ -0,0 +1,309 @@
+package neurosnap.service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import neurosnap.dto.CohortQuery;
+import neurosnap.dto.CohortQueryResult;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Compressed bitmap (Roaring) secondary indexes over the persona book.
+ *
+ * Each persona gets a dense int position (its position in the off-heap book). Indexed attributes:
+ * - income band, payment history, bank name: one bitmap per distinct value,
+ * - credit score: one bitmap per 10-point bucket; range queries OR whole buckets and
+ *   check the two boundary buckets against the raw score column,
+ * - eligibility (pending <= loan/2, the min-tenure rule in getRecommendations).
+ *
+ * A cohort query is a bitmap intersection, so counting never touches Persona objects.
+ * Indexes are immutable snapshots rebuilt on {@link PersonasReloadedEvent}. On
+ * {@link PersonasUpsertedEvent} only the touched positions are patched: the new snapshot shares
+ * every bitmap it does not modify with the previous one and clones the rest (copy-on-write).
+ *
+ * A snapshot pins the book row (persona version) it indexed for every position, so boundary score
+ * checks and returned ids always match the bitmaps, even while an upsert is replacing personas.
+ */
+@Slf4j
+@Service
+public class PersonaIndexService
+{
+    private static final int SCORE_BUCKET_WIDTH = 10;
+    private static final int MAX_LIMIT = 1000;
+
+    private final PersonaReaderService personaReaderService;
+
+    private volatile Snapshot snapshot = Snapshot.build( new PersonaColumnStore() );
+
+    public PersonaIndexService( PersonaReaderService personaReaderService )
+    {
+        this.personaReaderService = personaReaderService;
+    }
+
+    @PostConstruct
+    public void buildIndexes()
+    {
+        rebuild( personaReaderService.book() );
+    }
+
+    @EventListener
+    public void onPersonasReloaded( PersonasReloadedEvent event )
+    {
+        rebuild( personaReaderService.book() );
+    }
+
+    @EventListener
+    public void onPersonasUpserted( PersonasUpsertedEvent event )
+    {
+        long start = System.nanoTime();
+        snapshot = snapshot.apply( personaReaderService.book(), event.positions() );
+        log.debug( "Patched persona indexes for {} personas in {} µs", event.positions().size(), ( System.nanoTime() - start ) / 1_000 );
+    }
+
+    private void rebuild( PersonaColumnStore book )
+    {
+        long start = System.nanoTime();
+        snapshot = Snapshot.build( book );
+        log.info( "Rebuilt persona indexes for {} personas in {} ms", snapshot.size, ( System.nanoTime() - start ) / 1_000_000 );
+    }
+
+    public CohortQueryResult query( CohortQuery query )
+    {
+        Snapshot s = snapshot;
+        RoaringBitmap result = s.all.clone();
+
+        if ( query.getIncomeBand() != null ) {
+            result.and( s.lookup( s.incomeBand, query.getIncomeBand().trim().toUpperCase() ) );
+        }
+        if ( query.getPaymentHistory() != null ) {
+            result.and( s.lookup( s.paymentHistory, query.getPaymentHistory().trim().toUpperCase().replace( " ", "_" ) ) );
+        }
+        if ( query.getBankName() != null ) {
+            result.and( s.lookup( s.bankName, query.getBankName().trim() ) );
+        }
+        if ( query.getEligible() != null ) {
+            if ( query.getEligible() ) {
+                result.and( s.eligible );
+            } else {
+                result.andNot( s.eligible );
+            }
+        }
+        if ( query.getMinCreditScore() != null || query.getMaxCreditScore() != null ) {
+            int min = query.getMinCreditScore() != null ? query.getMinCreditScore() : Integer.MIN_VALUE;
+            int max = query.getMaxCreditScore() != null ? query.getMaxCreditScore() : Integer.MAX_VALUE;
+            result.and( s.creditScoreRange( min, max ) );
+        }
+
+        int offset = Math.max( 0, query.getOffset() );
+        int limit = Math.max( 0, Math.min( MAX_LIMIT, query.getLimit() ) );
+        long count = result.getLongCardinality();
+
+        List<String> ids = new ArrayList<>( (int) Math.min( limit, Math.max( 0, count - offset ) ) );
+        PersonaView cursor = new PersonaView( s.book );
+        for ( long rank = offset; rank < count && ids.size() < limit; rank++ ) {
+            ids.add( s.view( cursor, result.select( (int) rank ) ).getPersonaId() );
+        }
+
+        return CohortQueryResult.builder()
+                .count( count )
+                .offset( offset )
+                .limit( limit )
+                .personaIds( ids )
+                .build();
+    }
+
+    /**
+     * Immutable set of indexes for one version of the persona book. Ids and raw scores are read
+     * from the (off-heap) book itself rather than copied, at the row recorded per position.
+     */
+    private static final class Snapshot
+    {
+        private static final int PAGE_BITS = 12;
+        private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+        final PersonaColumnStore book;
+        /** position -> book row indexed, in pages shared copy-on-write between snapshots. */
+        int[][] rowPages = new int[0][];
+        /** False while {@link #rowPages} is still the previous snapshot's array. */
+        boolean ownsRowPages = true;
+        final int size;
+        final RoaringBitmap all = new RoaringBitmap();
+        final RoaringBitmap eligible = new RoaringBitmap();
+        final Map<String, RoaringBitmap> incomeBand = new HashMap<>();
+        final Map<String, RoaringBitmap> paymentHistory = new HashMap<>();
+        final Map<String, RoaringBitmap> bankName = new HashMap<>();
+        final Map<Integer, RoaringBitmap> scoreBuckets = new HashMap<>();
+
+        private Snapshot( PersonaColumnStore book, int size )
+        {
+            this.book = book;
+            this.size = size;
+        }
+
+        static Snapshot build( PersonaColumnStore book )
+        {
+            Snapshot s = new Snapshot( book, book.size() );
+            Set<RoaringBitmap> owned = Collections.newSetFromMap( new IdentityHashMap<>() );
+            Set<int[]> ownedPages = Collections.newSetFromMap( new IdentityHashMap<>() );
+            PersonaView view = new PersonaView( book );
+            for ( int i = 0; i < s.size; i++ ) {
+                s.index( view.moveTo( i ), owned );
+                s.pin( i, view.row(), ownedPages );
+            }
+            s.optimize( owned );
+            return s;
+        }
+
+        /**
+         * Copy of this snapshot with the given positions re-indexed from {@code book}.
+         * Positions at or beyond the current size are new personas.
+         */
+        Snapshot apply( PersonaColumnStore book, List<Integer> positions )
+        {
+            Snapshot s = new Snapshot( book, Math.max( size, book.size() ) );
+            s.all.or( all );
+            s.eligible.or( eligible );
+            s.incomeBand.putAll( incomeBand );
+            s.paymentHistory.putAll( paymentHistory );
+            s.bankName.putAll( bankName );
+            s.scoreBuckets.putAll( scoreBuckets );
+            s.rowPages = rowPages;
+            s.ownsRowPages = false;
+
+            Set<RoaringBitmap> owned = Collections.newSetFromMap( new IdentityHashMap<>() );
+            Set<int[]> ownedPages = Collections.newSetFromMap( new IdentityHashMap<>() );
+            PersonaView view = new PersonaView( book );
+            for ( int position : positions ) {
+                if ( position < size ) {
+                    s.eligible.remove( position );
+                    remove( s.incomeBand, position, owned );
+                    remove( s.paymentHistory, position, owned );
+                    remove( s.bankName, position, owned );
+                    remove( s.scoreBuckets, position, owned );
+                }
+                s.index( view.moveTo( position ), owned );
+                s.pin( position, view.row(), ownedPages );
+            }
+            s.optimize( owned );
+            return s;
+        }
+
+        /** Records the row indexed for {@code position}, cloning the page if an older snapshot shares it. */
+        private void pin( int position, int row, Set<int[]> ownedPages )
+        {
+            int page = position >>> PAGE_BITS;
+            if ( page >= rowPages.length ) {
+                rowPages = Arrays.copyOf( rowPages, Math.max( page + 1, rowPages.length * 2 ) );
+                ownsRowPages = true;
+            } else if ( !ownsRowPages ) {
+                rowPages = rowPages.clone();
+                ownsRowPages = true;
+            }
+            int[] rows = rowPages[page];
+            if ( rows == null || !ownedPages.contains( rows ) ) {
+                rows = rows == null ? new int[PAGE_SIZE] : rows.clone();
+                rowPages[page] = rows;
+                ownedPages.add( rows );
+            }
+            rows[position & ( PAGE_SIZE - 1 )] = row;
+        }
+
+        /** {@code cursor} on the persona version this snapshot indexed at {@code position}. */
+        PersonaView view( PersonaView cursor, int position )
+        {
+            return cursor.moveTo( position, rowPages[position >>> PAGE_BITS][position & ( PAGE_SIZE - 1 )] );
+        }
+
+        private void index( PersonaView p, Set<RoaringBitmap> owned )
+        {
+            int position = p.position();
+            all.add( position );
+            if ( p.getExistingPendingAmount() <= p.getExistingLoanAmount() / 2 ) {
+                eligible.add( position );
+            }
+            add( incomeBand, normalize( p.getIncome() ), position, owned );
+            add( paymentHistory, normalize( p.getPaymentHistory() ), position, owned );
+            add( bankName, p.getBankName() == null ? null : p.getBankName().trim(), position, owned );
+            add( scoreBuckets, Math.floorDiv( p.getCreditScore(), SCORE_BUCKET_WIDTH ), position, owned );
+        }
+
+        private void optimize( Set<RoaringBitmap> owned )
+        {
+            all.runOptimize();
+            eligible.runOptimize();
+            owned.forEach( RoaringBitmap::runOptimize );
+        }
+
+        /** Adds position to the key's bitmap, cloning it first if it is still shared with an older snapshot. */
+        private static <K> void add( Map<K, RoaringBitmap> index, K key, int position, Set<RoaringBitmap> owned )
+        {
+            if ( key == null ) return;
+            RoaringBitmap bitmap = index.get( key );
+            if ( bitmap == null || !owned.contains( bitmap ) ) {
+                bitmap = bitmap == null ? new RoaringBitmap() : bitmap.clone();
+                index.put( key, bitmap );
+                owned.add( bitmap );
+            }
+            bitmap.add( position );
+        }
+
+        private static <K> void remove( Map<K, RoaringBitmap> index, int position, Set<RoaringBitmap> owned )
+        {
+            for ( Map.Entry<K, RoaringBitmap> entry : index.entrySet() ) {
+                RoaringBitmap bitmap = entry.getValue();
+                if ( !bitmap.contains( position ) ) continue;
+                if ( !owned.contains( bitmap ) ) {
+                    bitmap = bitmap.clone();
+                    entry.setValue( bitmap );
+                    owned.add( bitmap );
+                }
+                bitmap.remove( position );
+            }
+        }
+
+        private static String normalize( String value )
+        {
+            return value == null ? null : value.trim().toUpperCase().replace( " ", "_" );
+        }
+
+        RoaringBitmap lookup( Map<String, RoaringBitmap> index, String key )
+        {
+            RoaringBitmap bitmap = index.get( key );
+            return bitmap != null ? bitmap : new RoaringBitmap();
+        }
+
+        /** Personas with min <= creditScore <= max. */
+        RoaringBitmap creditScoreRange( int min, int max )
+        {
+            RoaringBitmap range = new RoaringBitmap();
+            if ( min > max ) return range;
+            PersonaView cursor = new PersonaView( book );
+
+            for ( Map.Entry<Integer, RoaringBitmap> bucket : scoreBuckets.entrySet() ) {
+                long bucketMin = (long) bucket.getKey() * SCORE_BUCKET_WIDTH;
+                long bucketMax = bucketMin + SCORE_BUCKET_WIDTH - 1;
+                if ( bucketMax < min || bucketMin > max ) continue;
+
+                if ( bucketMin >= min && bucketMax <= max ) {
+                    range.or( bucket.getValue() );
+                } else {
+                    // Boundary bucket: check the raw scores of its members.
+                    bucket.getValue().forEach( ( int position ) -> {
+                        int score = view( cursor, position ).getCreditScore();
+                        if ( score >= min && score <= max ) range.add( position );
+                    } );
+                }
+            }
+            return range;
+        }
+    }
+}
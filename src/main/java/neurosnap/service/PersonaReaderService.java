@@ -1,10 +1,13 @@
 package neurosnap.service;
 
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import jakarta.annotation.PostConstruct;
 import java.util.Optional;
 import neurosnap.dto.Persona;
 import org.apache.coyote.BadRequestException;
 import org.apache.poi.ss.usermodel.*;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.io.InputStream;
@@ -12,17 +15,95 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 public class PersonaReaderService
 {
 
-    private List<Persona> personas = new ArrayList<>();
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObservationRegistry observationRegistry;
+    private final ClusterService clusterService;
+
+    /** The persona book, off-heap; replaced as a whole on reload, mutated in place (under the instance lock) on upsert. */
+    private volatile PersonaColumnStore store = new PersonaColumnStore();
+
+    /** Bumped after every reload or upsert has been applied; see {@link #bookVersion()}. */
+    private volatile long version;
+
+    public PersonaReaderService( ApplicationEventPublisher eventPublisher, ObservationRegistry observationRegistry,
+            ClusterService clusterService )
+    {
+        this.eventPublisher = eventPublisher;
+        this.observationRegistry = observationRegistry;
+        this.clusterService = clusterService;
+    }
+
     @PostConstruct
-    public void readPersonasFromExcel( )
+    public synchronized void readPersonasFromExcel( )
     {
+        store = loadPersonas();
+    }
 
+    /**
+     * Re-reads persona.xlsx into a new off-heap book, swaps it in one step and notifies listeners
+     * (e.g. the cohort indexes) with a {@link PersonasReloadedEvent}.
+     *
+     * @return number of personas loaded
+     */
+    public synchronized int reload()
+    {
+        PersonaColumnStore reloaded = loadPersonas();
+        store = reloaded;
+        version++;
+        eventPublisher.publishEvent( new PersonasReloadedEvent( reloaded.size() ) );
+        return reloaded.size();
+    }
+
+    /**
+     * Inserts or replaces personas by personaId without re-reading the workbook.
+     * Existing personas keep their position, new ones are appended. Each persona is swapped in
+     * atomically (readers see the old or the new version), the batch as a whole is not. Listeners
+     * get a {@link PersonasUpsertedEvent} with the touched positions only. In partitioned cluster
+     * mode personas owned by other nodes are skipped and counted as such.
+     *
+     * @return how many personas were new, replaced existing entries, or were skipped
+     */
+    public synchronized Upserted upsert( List<Persona> batch )
+    {
+        if ( batch.isEmpty() ) return new Upserted( 0, 0, 0 );
+
+        PersonaColumnStore current = store;
+        Set<Integer> touched = new LinkedHashSet<>();
+        int inserted = 0;
+        int skipped = 0;
+        for ( Persona persona : batch ) {
+            if ( !clusterService.loadsLocally( persona.getPersonaId() ) ) {
+                skipped++;
+                continue;
+            }
+            int size = current.size();
+            int position = current.put( persona );
+            if ( position >= size ) inserted++;
+            touched.add( position );
+        }
+
+        if ( !touched.isEmpty() ) {
+            version++;
+            eventPublisher.publishEvent( new PersonasUpsertedEvent( List.copyOf( touched ) ) );
+        }
+        return new Upserted( inserted, batch.size() - inserted - skipped, skipped );
+    }
+
+    /** Outcome of one {@link #upsert} batch. */
+    public record Upserted( int inserted, int updated, int skipped ) {}
+
+    private PersonaColumnStore loadPersonas()
+    {
+        PersonaColumnStore personas = new PersonaColumnStore();
         String filePath = "persona.xlsx";
         try (InputStream is = PersonaReaderService.class.getClassLoader().getResourceAsStream(filePath);
              Workbook workbook = WorkbookFactory.create(is))
@@ -67,14 +148,17 @@ public class PersonaReaderService
                 persona.setMinimumRefinanceAmt( row.getCell( 18 ).getNumericCellValue());
                 persona.setIncomeAmt( row.getCell( 19 ).getNumericCellValue());
 
-                personas.add( persona );
+                // Partitioned cluster mode: keep only the personas this node owns.
+                if ( clusterService.loadsLocally( persona.getPersonaId() ) ) {
+                    personas.put( persona );
+                }
             }
         }
         catch ( Exception e )
         {
             e.printStackTrace();
         }
-
+        return personas;
     }
 
     private String setDateOfBirth(Cell cell) {
@@ -83,15 +167,71 @@ public class PersonaReaderService
         return sdf.format(dob);
     }
 
-    public List<Persona> getAllPersona() {
+    /**
+     * Personas at positions {@code offset .. offset + limit - 1} as DTOs, in book order (fewer at the end
+     * of the book). Only the page is materialized on the heap.
+     */
+    public List<Persona> getPersonas( int offset, int limit )
+    {
+        PersonaColumnStore current = store;
+        int end = (int) Math.min( current.size(), (long) offset + limit );
+        List<Persona> personas = new ArrayList<>( Math.max( 0, end - offset ) );
+        for ( int position = offset; position < end; position++ ) {
+            personas.add( current.view( position ).toPersona() );
+        }
         return personas;
     }
 
+    /**
+     * Changes whenever the book does, once the change is fully applied. Something derived from the book
+     * is current if the version read before deriving it is still the version afterwards.
+     */
+    public long bookVersion()
+    {
+        return version;
+    }
+
+    /** Number of personas in the book. */
+    public int size()
+    {
+        return store.size();
+    }
+
+    /** Flyweight for the persona at {@code position} (0 ≤ position < {@link #size()}). */
+    public PersonaView view( int position )
+    {
+        return store.view( position );
+    }
+
+    /** Scans the book with a single reused view, in position order; copy what must outlive the call. */
+    public void forEachView( Consumer<PersonaView> action )
+    {
+        store.forEach( action );
+    }
+
+    /** The current book itself, for derived structures that must stay on one version of it. */
+    PersonaColumnStore book()
+    {
+        return store;
+    }
+
+    /** Off-heap bytes held by the current book. */
+    public long offHeapBytes()
+    {
+        return store.offHeapBytes();
+    }
+
     public Optional<Persona> getPersona (String personaId) throws BadRequestException
     {
-        return  Optional.ofNullable( personas.stream()
-                .filter( p -> p.getPersonaId().equals( personaId ) )
-                .findFirst()
-                .orElseThrow( () -> new BadRequestException( "Unknown persona-id: " + personaId ) ) );
+        return Observation.createNotStarted( "neurosnap.persona.lookup", observationRegistry )
+                .highCardinalityKeyValue( "persona.id", String.valueOf( personaId ) )
+                .observeChecked( () -> {
+                    PersonaColumnStore current = store;
+                    int position = current.find( personaId );
+                    if ( position < 0 ) {
+                        throw new BadRequestException( "Unknown persona-id: " + personaId );
+                    }
+                    return Optional.of( current.view( position ).toPersona() );
+                } );
     }
 }
@@ -0,0 +1,107 @@
+package neurosnap.service;
+
+import java.util.List;
+import neurosnap.dto.ExistingLoan;
+import neurosnap.dto.Persona;
+
+/**
+ * Flyweight over one persona in the off-heap book: getters read the columns directly and allocate
+ * nothing but the Strings they return.
+ *
+ * Notes:
+ * - The view is pinned to the persona version it was positioned on; an upsert after that does not
+ *   change what it reads.
+ * - Views handed out by a scan ({@link PersonaReaderService#forEachView}) are reused for the next
+ *   persona; call {@link #toPersona()} (or keep {@link #position()}) to hold on to one.
+ * - {@link #toPersona()} is meant for the API boundary, where a mutable DTO is serialized or passed to
+ *   code that expects one.
+ */
+public final class PersonaView
+{
+    private final PersonaColumnStore store;
+    private int position;
+    private int row;
+
+    PersonaView( PersonaColumnStore store )
+    {
+        this.store = store;
+    }
+
+    PersonaView moveTo( int position )
+    {
+        return moveTo( position, store.row( position ) );
+    }
+
+    /** Positions the view on a specific (possibly since replaced) version of the persona. */
+    PersonaView moveTo( int position, int row )
+    {
+        this.row = row;
+        this.position = position;
+        return this;
+    }
+
+    /** Row of the persona version this view reads. */
+    int row()
+    {
+        return row;
+    }
+
+    /** Dense position in the book, stable across upserts. */
+    public int position()
+    {
+        return position;
+    }
+
+    public String getPersonaId() { return store.personaId( row ); }
+    public String getPersonaName() { return store.personaName( row ); }
+    public String getIncome() { return store.income( row ); }
+    public String getPaymentBehavior() { return store.paymentBehavior( row ); }
+    public String getRefiExperience() { return store.refiExperience( row ); }
+    public int getCreditScore() { return store.creditScore( row ); }
+    public double getExistingLoanAmount() { return store.existingLoanAmount( row ); }
+    public double getExistingInterestRate() { return store.existingInterestRate( row ); }
+    public double getExistingPendingAmount() { return store.existingPendingAmount( row ); }
+    public String getPaymentHistory() { return store.paymentHistory( row ); }
+    public String getDob() { return store.dob( row ); }
+    public int getSsn() { return store.ssn( row ); }
+    public long getMobileNumber() { return store.mobileNumber( row ); }
+    public int getVerificationCode() { return store.verificationCode( row ); }
+    public int getExistingTenure() { return store.existingTenure( row ); }
+    public double getExistingEmi() { return store.existingEmi( row ); }
+    public String getBankName() { return store.bankName( row ); }
+    public long getCardNumber() { return store.cardNumber( row ); }
+    public double getMinimumRefinanceAmt() { return store.minimumRefinanceAmt( row ); }
+    public double getIncomeAmt() { return store.incomeAmt( row ); }
+
+    /** Fresh, independent Persona with this view's values. */
+    public Persona toPersona()
+    {
+        Persona persona = new Persona();
+        persona.setPersonaId( getPersonaId() );
+        persona.setPersonaName( getPersonaName() );
+        persona.setIncome( getIncome() );
+        persona.setPaymentBehavior( getPaymentBehavior() );
+        persona.setRefiExperience( getRefiExperience() );
+        persona.setCreditScore( getCreditScore() );
+        persona.setExistingLoanAmount( getExistingLoanAmount() );
+        persona.setExistingInterestRate( getExistingInterestRate() );
+        persona.setExistingPendingAmount( getExistingPendingAmount() );
+        persona.setPaymentHistory( getPaymentHistory() );
+        persona.setDob( getDob() );
+        persona.setSsn( getSsn() );
+        persona.setMobileNumber( getMobileNumber() );
+        persona.setVerificationCode( getVerificationCode() );
+        persona.setExistingTenure( getExistingTenure() );
+        persona.setExistingEmi( getExistingEmi() );
+        persona.setBankName( getBankName() );
+        persona.setCardNumber( getCardNumber() );
+        persona.setMinimumRefinanceAmt( getMinimumRefinanceAmt() );
+        persona.setIncomeAmt( getIncomeAmt() );
+
+        List<ExistingLoan> loans = store.existingLoans( row );
+        if ( loans != null ) {
+            persona.setExistingLoans( PersonaColumnStore.copyLoans( loans ) );
+        }
+        return persona;
+    }
+}
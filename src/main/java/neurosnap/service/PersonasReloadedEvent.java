@@ -0,0 +1,9 @@
+package neurosnap.service;
+
+/**
+ * Published by {@link PersonaReaderService} after the persona book has been replaced,
+ * so derived structures (indexes, caches) can rebuild from the new snapshot.
+ *
+ * @param size number of personas in the new book (positions 0 .. size - 1)
+ */
+public record PersonasReloadedEvent( int size ) {}
@@ -0,0 +1,12 @@
+package neurosnap.service;
+
+import java.util.List;
+
+/**
+ * Published by {@link PersonaReaderService} after a batch of personas was inserted or replaced,
+ * so derived structures can patch only the touched entries instead of rebuilding.
+ *
+ * @param positions book positions that were inserted or replaced; read them with
+ *                  {@link PersonaReaderService#view(int)}
+ */
+public record PersonasUpsertedEvent( List<Integer> positions ) {}
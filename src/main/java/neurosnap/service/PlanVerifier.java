@@ -0,0 +1,274 @@
+package neurosnap.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.DoubleConsumer;
+import lombok.extern.slf4j.Slf4j;
+import neurosnap.dto.Persona;
+import neurosnap.dto.RecommendOption;
+import neurosnap.dto.RecommendOptionsResponse;
+import neurosnap.dto.RecommendRequest;
+import neurosnap.dto.rules.RuleSet;
+import neurosnap.util.CompiledFormula;
+import neurosnap.util.FormulaContext;
+import neurosnap.util.MoneyKernel;
+import neurosnap.util.RefiCalculator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Verifies the numbers in an LLM generated plan set and repairs them locally.
+ *
+ * For each RecommendOption the verifier recomputes principal, EMI, totalLoanAmount,
+ * disburseAmount, savingsPerMonth, totalSavings and breakEvenMonths in cents with {@link MoneyKernel}
+ * (same formulas as the prompt) and overwrites any value that is off by more than the tolerance.
+ *
+ * Rule set formulas: a broken interest rate falls back to the rule set's "baseApr" formula, and when
+ * the rule set defines a "confidence" formula every plan's confidence is set to its value for the goal.
+ *
+ * Plan-set constraints:
+ * - exactly one option has best = true (picked by the persona rule from the prompt when violated),
+ * - BALANCED tenure lies strictly between FASTER_CLOSURE and LOWER_EMI, and its rate is not above LOWER_EMI.
+ *
+ * Metrics:
+ * - neurosnap.plan.verifier.fields{result=ok|repaired}  : per-field check outcomes (mismatch rate)
+ * - neurosnap.plan.verifier.responses{result=clean|repaired}
+ * - Not recorded for threads marked with {@link #setMetricsSuppressed} (start-up warm-up), so synthetic
+ *   answers do not skew the model's quality numbers.
+ */
+@Slf4j
+@Service
+public class PlanVerifier
+{
+    private final double tolerance;
+
+    private final Counter fieldsOk;
+    private final Counter fieldsRepaired;
+    private final Counter responsesClean;
+    private final Counter responsesRepaired;
+
+    /** Set on threads whose checks must not be counted. */
+    private final ThreadLocal<Boolean> suppressed = new ThreadLocal<>();
+
+    public PlanVerifier( @Value( "${neurosnap.verifier.tolerance:0.05}" ) double tolerance, MeterRegistry meterRegistry )
+    {
+        this.tolerance = tolerance;
+        this.fieldsOk = meterRegistry.counter( "neurosnap.plan.verifier.fields", "result", "ok" );
+        this.fieldsRepaired = meterRegistry.counter( "neurosnap.plan.verifier.fields", "result", "repaired" );
+        this.responsesClean = meterRegistry.counter( "neurosnap.plan.verifier.responses", "result", "clean" );
+        this.responsesRepaired = meterRegistry.counter( "neurosnap.plan.verifier.responses", "result", "repaired" );
+    }
+
+    /** Marks the calling thread as serving synthetic traffic: its responses are still repaired but not counted. */
+    public void setMetricsSuppressed( boolean suppress )
+    {
+        if ( suppress ) {
+            suppressed.set( Boolean.TRUE );
+        } else {
+            suppressed.remove();
+        }
+    }
+
+    /**
+     * Checks and repairs {@code response} in place.
+     *
+     * @return number of values that had to be repaired (0 = the model got everything right)
+     */
+    public int verifyAndRepair( RecommendOptionsResponse response, Persona persona, RecommendRequest request )
+    {
+        return verifyAndRepair( response, persona, request, null );
+    }
+
+    /**
+     * As above, pricing with the lender's rule set formulas.
+     *
+     * @param ruleSet the persona's rule set, or null for the built-in APR tiers and no confidence rule
+     */
+    public int verifyAndRepair( RecommendOptionsResponse response, Persona persona, RecommendRequest request, RuleSet ruleSet )
+    {
+        if ( response == null || response.getRecommendations() == null ) {
+            return 0;
+        }
+
+        Map<RecommendOption.GoalType, RecommendOption> byGoal = new EnumMap<>( RecommendOption.GoalType.class );
+        for ( RecommendOption option : response.getRecommendations() ) {
+            if ( option == null ) continue;
+            if ( option.getGoal() == null ) {
+                option.setGoal( goalFromPlanId( option.getPlanId() ) );
+            }
+            if ( option.getGoal() != null ) {
+                byGoal.putIfAbsent( option.getGoal(), option );
+            }
+        }
+
+        Tally tally = new Tally();
+        int repaired = 0;
+        long loanAmount = request.getLoanAmount() * 100;
+        long principal = MoneyKernel.principalCents( loanAmount );
+        long disburseAmount = MoneyKernel.disburseCents( loanAmount, MoneyKernel.toCents( persona.getExistingPendingAmount() ) );
+        long existingEmi = MoneyKernel.toCents( persona.getExistingEmi() );
+        double apr = RefiCalculator.baseApr( persona, ruleSet );
+
+        repaired += repairTenuresAndRates( byGoal, apr );
+
+        // Amounts per plan.
+        for ( RecommendOption option : byGoal.values() ) {
+            repaired += check( tally, option.getPrincipal(), MoneyKernel.toUsd( principal ), option::setPrincipal );
+            long emi = MoneyKernel.emiCents( principal, MoneyKernel.toBps( option.getInterestRate() ), option.getTenure() );
+            repaired += check( tally, option.getEmi(), MoneyKernel.toUsd( emi ), option::setEmi );
+            repaired += check( tally, option.getTotalLoanAmount(), MoneyKernel.toUsd( MoneyKernel.totalRepaidCents( emi, option.getTenure() ) ),
+                    option::setTotalLoanAmount );
+            repaired += check( tally, option.getDisburseAmount(), MoneyKernel.toUsd( disburseAmount ), option::setDisburseAmount );
+            Integer confidence = confidence( persona, option.getGoal(), ruleSet );
+            if ( confidence != null ) {
+                repaired += check( tally, option.getConfidence(), confidence, option::setConfidence );
+            }
+        }
+
+        // Savings are relative to the LOWER_EMI baseline (see prompt).
+        RecommendOption baseline = byGoal.get( RecommendOption.GoalType.LOWER_EMI );
+        for ( RecommendOption option : byGoal.values() ) {
+            long savingsPerMonth = option == baseline ? 0 : existingEmi - MoneyKernel.toCents( option.getEmi() );
+            long totalSavings = option == baseline || baseline == null ? 0
+                    : MoneyKernel.toCents( baseline.getTotalLoanAmount() ) - MoneyKernel.toCents( option.getTotalLoanAmount() );
+            repaired += check( tally, option.getSavingsPerMonth(), MoneyKernel.toUsd( savingsPerMonth ), option::setSavingsPerMonth );
+            repaired += check( tally, option.getTotalSavings(), MoneyKernel.toUsd( totalSavings ), option::setTotalSavings );
+
+            int breakEven = MoneyKernel.breakEvenMonths( MoneyKernel.FEES_CENTS, savingsPerMonth );
+            if ( option.getBreakEvenMonths() != breakEven ) {
+                option.setBreakEvenMonths( breakEven );
+                repaired++;
+                tally.repaired++;
+            } else {
+                tally.ok++;
+            }
+        }
+
+        repaired += repairBest( response.getRecommendations(), byGoal, persona );
+
+        if ( byGoal.size() != RecommendOption.GoalType.values().length ) {
+            log.warn( "LLM returned {} distinct goals for persona {}, expected 3", byGoal.size(), persona.getPersonaId() );
+        }
+
+        if ( suppressed.get() != null ) {
+            return repaired;
+        }
+        fieldsOk.increment( tally.ok );
+        fieldsRepaired.increment( tally.repaired );
+        if ( repaired > 0 ) {
+            responsesRepaired.increment();
+            log.info( "Repaired {} plan values locally for persona {}", repaired, persona.getPersonaId() );
+        } else {
+            responsesClean.increment();
+        }
+        return repaired;
+    }
+
+    /** Keeps tenures valid and BALANCED between the extremes; BALANCED may not cost more than LOWER_EMI. */
+    private int repairTenuresAndRates( Map<RecommendOption.GoalType, RecommendOption> byGoal, double apr )
+    {
+        int repaired = 0;
+        for ( RecommendOption option : byGoal.values() ) {
+            if ( option.getInterestRate() <= 0 || option.getInterestRate() >= 100 ) {
+                option.setInterestRate( apr );
+                repaired++;
+            }
+            if ( option.getTenure() < 1 || option.getTenure() > 12 ) {
+                option.setTenure( defaultTenure( option.getGoal() ) );
+                repaired++;
+            }
+        }
+
+        RecommendOption lower = byGoal.get( RecommendOption.GoalType.LOWER_EMI );
+        RecommendOption faster = byGoal.get( RecommendOption.GoalType.FASTER_CLOSURE );
+        RecommendOption balanced = byGoal.get( RecommendOption.GoalType.BALANCED );
+        if ( lower != null && faster != null && balanced != null ) {
+            int shortest = Math.min( lower.getTenure(), faster.getTenure() );
+            int longest = Math.max( lower.getTenure(), faster.getTenure() );
+            boolean between = balanced.getTenure() > shortest && balanced.getTenure() < longest;
+            if ( !between && longest - shortest >= 2 ) {
+                balanced.setTenure( ( shortest + longest + 1 ) / 2 );
+                repaired++;
+            }
+            if ( balanced.getInterestRate() > lower.getInterestRate() ) {
+                balanced.setInterestRate( lower.getInterestRate() );
+                repaired++;
+            }
+        }
+        return repaired;
+    }
+
+    /** Exactly one plan must be best; when the model breaks that, fall back to the persona rule from the prompt. */
+    private int repairBest( RecommendOption[] options, Map<RecommendOption.GoalType, RecommendOption> byGoal, Persona persona )
+    {
+        int bestCount = 0;
+        for ( RecommendOption option : options ) {
+            if ( option != null && option.isBest() ) bestCount++;
+        }
+        if ( bestCount == 1 ) return 0;
+
+        RecommendOption preferred = byGoal.get( preferredGoal( persona ) );
+        if ( preferred == null ) preferred = byGoal.get( RecommendOption.GoalType.LOWER_EMI );
+        if ( preferred == null ) return 0;
+
+        for ( RecommendOption option : options ) {
+            if ( option != null ) option.setBest( option == preferred );
+        }
+        return 1;
+    }
+
+    private RecommendOption.GoalType preferredGoal( Persona persona )
+    {
+        String income = persona.getIncome() == null ? "" : persona.getIncome().trim().toUpperCase();
+        String history = persona.getPaymentHistory() == null ? "" : persona.getPaymentHistory().trim().toUpperCase();
+        if ( "HIGH".equals( income ) && "DISCIPLINED".equals( history ) ) return RecommendOption.GoalType.FASTER_CLOSURE;
+        if ( "MEDIUM".equals( income ) && "MOSTLY_DISCIPLINED".equals( history ) ) return RecommendOption.GoalType.BALANCED;
+        return RecommendOption.GoalType.LOWER_EMI;
+    }
+
+    private int defaultTenure( RecommendOption.GoalType goal )
+    {
+        if ( goal == RecommendOption.GoalType.FASTER_CLOSURE ) return 6;
+        if ( goal == RecommendOption.GoalType.BALANCED ) return 9;
+        return 12;
+    }
+
+    private RecommendOption.GoalType goalFromPlanId( String planId )
+    {
+        if ( planId == null ) return null;
+        try {
+            return RecommendOption.GoalType.from( planId.replaceFirst( "^PLAN_", "" ) );
+        } catch ( IllegalArgumentException e ) {
+            return null;
+        }
+    }
+
+    /** Confidence (0-100) from the rule set's "confidence" formula for the goal, or null when it has none. */
+    static Integer confidence( Persona persona, RecommendOption.GoalType goal, RuleSet ruleSet )
+    {
+        CompiledFormula formula = ruleSet == null ? null : ruleSet.getFormula( "confidence" );
+        if ( formula == null || goal == null ) return null;
+        long value = Math.round( formula.evaluate( new FormulaContext( persona, goal.name() ) ) );
+        return (int) Math.max( 0, Math.min( 100, value ) );
+    }
+
+    private int check( Tally tally, double actual, double expected, DoubleConsumer repair )
+    {
+        if ( Math.abs( actual - expected ) > tolerance ) {
+            repair.accept( expected );
+            tally.repaired++;
+            return 1;
+        }
+        tally.ok++;
+        return 0;
+    }
+
+    /** Per-field outcomes of one response, recorded once it is done. */
+    private static final class Tally
+    {
+        int ok;
+        int repaired;
+    }
+}
@@ -0,0 +1,337 @@
+package neurosnap.service;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import neurosnap.dto.Persona;
+import neurosnap.dto.PortfolioSimulationRequest;
+import neurosnap.dto.PortfolioSimulationResult;
+import neurosnap.dto.rules.IncomeRule;
+import neurosnap.dto.rules.RuleSet;
+import neurosnap.util.AprTier;
+import neurosnap.util.MoneyKernel;
+import neurosnap.util.RefiCalculator;
+import org.apache.coyote.BadRequestException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Whole-book refinance simulation: every persona × loan amount × tenure, computed locally
+ * with the same eligibility rules and EMI math as /recommend (no LLM involved).
+ *
+ * Performance notes:
+ * - Persona fields are copied once from the off-heap book into primitive arrays, so the hot loop never touches beans.
+ *   That pass also prices each persona with {@link RefiCalculator#baseApr(Persona, RuleSet)} under its lender's
+ *   rule set, so the simulation quotes the rates /recommend and /consolidate do.
+ * - Money is summed in long cents with {@link MoneyKernel}; each EMI is rounded to the cent like
+ *   /recommend's, so totals are exact and independent of how fork/join splits the work.
+ * - Annuity factors (Q48) are looked up per (distinct APR, tenure); an EMI is a single multiply.
+ * - Segments are (income band, APR); the tier label is the built-in tier with that rate, or CUSTOM.
+ * - The (persona, amount) space is split with fork/join; each leaf sums into its own small
+ *   primitive accumulator, so nothing is allocated per scenario.
+ */
+@Service
+public class PortfolioSimulationService
+{
+    private static final int LEAF_SIZE = 2048;
+
+    private static final String[] INCOME_BANDS = { "LOW", "MEDIUM", "HIGH", "UNKNOWN" };
+
+    private final PersonaReaderService personaReaderService;
+    private final RulesReaderService rulesReaderService;
+
+    private final ForkJoinPool pool = new ForkJoinPool( Runtime.getRuntime().availableProcessors() );
+
+    public PortfolioSimulationService( PersonaReaderService personaReaderService, RulesReaderService rulesReaderService )
+    {
+        this.personaReaderService = personaReaderService;
+        this.rulesReaderService = rulesReaderService;
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        pool.shutdownNow();
+    }
+
+    public PortfolioSimulationResult simulate( PortfolioSimulationRequest request ) throws BadRequestException
+    {
+        validate( request );
+        long start = System.nanoTime();
+
+        Book book = Book.of( personaReaderService, rulesReaderService );
+        Grid grid = Grid.of( request, book.rates );
+
+        Accumulator total = pool.invoke( new SimulationTask( book, grid, 0, (long) book.size * grid.amounts.length ) );
+
+        return toResult( book, total, ( System.nanoTime() - start ) / 1_000_000 );
+    }
+
+    private void validate( PortfolioSimulationRequest request ) throws BadRequestException
+    {
+        if ( request.getMinLoanAmount() < 300 || request.getMaxLoanAmount() > 5000 || request.getMinLoanAmount() > request.getMaxLoanAmount() ) {
+            throw new BadRequestException( "Loan amount range must be within $300 and $5000." );
+        }
+        if ( request.getLoanAmountStep() <= 0 ) {
+            throw new BadRequestException( "loanAmountStep must be greater than 0." );
+        }
+        if ( request.getTenures() == null || request.getTenures().length == 0 ) {
+            throw new BadRequestException( "At least one tenure is required." );
+        }
+        for ( int tenure : request.getTenures() ) {
+            if ( tenure < 1 || tenure > 12 ) {
+                throw new BadRequestException( "Tenure must be between 1 and 12 months." );
+            }
+        }
+    }
+
+    private PortfolioSimulationResult toResult( Book book, Accumulator acc, long elapsedMillis )
+    {
+        List<PortfolioSimulationResult.Segment> segments = new ArrayList<>();
+        long scenarios = 0, eligible = 0;
+        long interest = 0, disbursement = 0, savings = 0;
+        int rateCount = book.rates.length;
+
+        for ( int s = 0; s < acc.scenarios.length; s++ ) {
+            if ( acc.scenarios[s] == 0 ) continue;
+            scenarios += acc.scenarios[s];
+            eligible += acc.eligible[s];
+            interest += acc.interest[s];
+            disbursement += acc.disbursement[s];
+            savings += acc.savings[s];
+
+            segments.add( PortfolioSimulationResult.Segment.builder()
+                    .incomeBand( INCOME_BANDS[s / rateCount] )
+                    .tier( tierName( book.rates[s % rateCount] ) )
+                    .apr( book.rates[s % rateCount] / 100.0 )
+                    .scenarios( acc.scenarios[s] )
+                    .eligibleScenarios( acc.eligible[s] )
+                    .eligibilityRate( ratio( acc.eligible[s], acc.scenarios[s] ) )
+                    .totalInterest( MoneyKernel.toUsd( acc.interest[s] ) )
+                    .totalDisbursement( MoneyKernel.toUsd( acc.disbursement[s] ) )
+                    .totalSavings( MoneyKernel.toUsd( acc.savings[s] ) )
+                    .build() );
+        }
+
+        return PortfolioSimulationResult.builder()
+                .personas( book.size )
+                .scenarios( scenarios )
+                .eligibleScenarios( eligible )
+                .eligibilityRate( ratio( eligible, scenarios ) )
+                .totalInterest( MoneyKernel.toUsd( interest ) )
+                .totalDisbursement( MoneyKernel.toUsd( disbursement ) )
+                .totalSavings( MoneyKernel.toUsd( savings ) )
+                .elapsedMillis( elapsedMillis )
+                .segments( segments )
+                .build();
+    }
+
+    private static double ratio( long part, long whole )
+    {
+        return whole == 0 ? 0 : (double) part / whole;
+    }
+
+    /** Built-in tier quoting this rate, or CUSTOM for a rate only the rule set's formula produces. */
+    private static String tierName( int bps )
+    {
+        for ( AprTier tier : AprTier.values() ) {
+            if ( tier.getAprBps() == bps ) return tier.name();
+        }
+        return "CUSTOM";
+    }
+
+    /** Persona book flattened into primitive columns; money in cents. */
+    private static final class Book
+    {
+        final int size;
+        final long[] pending;
+        final long[] existingTotal;     // existingEmi × existingTenure
+        final boolean[] minTenureServed;
+        final int[] segment;            // incomeBand * rates.length + rate index
+        int[] rates;                    // distinct base APRs in bps, ascending
+
+        private Book( int size )
+        {
+            this.size = size;
+            this.pending = new long[size];
+            this.existingTotal = new long[size];
+            this.minTenureServed = new boolean[size];
+            this.segment = new int[size];
+        }
+
+        static Book of( PersonaReaderService personas, RulesReaderService rules )
+        {
+            Book book = new Book( personas.size() );
+            int[] income = new int[book.size];
+            int[] bps = new int[book.size];
+            Map<String, RuleSet> ruleSets = new HashMap<>();
+            Persona scratch = new Persona();    // the fields a pricing formula can read, refilled per persona
+            personas.forEachView( p -> {
+                int i = p.position();
+                if ( i >= book.size ) return;   // appended after the book was sized
+                book.pending[i] = MoneyKernel.toCents( p.getExistingPendingAmount() );
+                book.existingTotal[i] = MoneyKernel.totalRepaidCents( MoneyKernel.toCents( p.getExistingEmi() ), p.getExistingTenure() );
+                book.minTenureServed[i] = p.getExistingPendingAmount() <= p.getExistingLoanAmount() / 2;
+                income[i] = incomeIndex( p.getIncome() );
+
+                String bankName = p.getBankName();
+                scratch.setCreditScore( p.getCreditScore() );
+                scratch.setIncome( p.getIncome() );
+                scratch.setIncomeAmt( p.getIncomeAmt() );
+                scratch.setPaymentHistory( p.getPaymentHistory() );
+                scratch.setExistingLoanAmount( p.getExistingLoanAmount() );
+                scratch.setExistingPendingAmount( p.getExistingPendingAmount() );
+                scratch.setExistingInterestRate( p.getExistingInterestRate() );
+                scratch.setExistingEmi( p.getExistingEmi() );
+                scratch.setExistingTenure( p.getExistingTenure() );
+                scratch.setBankName( bankName );
+                RuleSet ruleSet = ruleSets.computeIfAbsent( bankName == null ? "" : bankName, rules::getRuleSet );
+                bps[i] = MoneyKernel.toBps( RefiCalculator.baseApr( scratch, ruleSet ) );
+            } );
+
+            book.rates = Arrays.stream( bps ).distinct().sorted().toArray();
+            for ( int i = 0; i < book.size; i++ ) {
+                book.segment[i] = income[i] * book.rates.length + Arrays.binarySearch( book.rates, bps[i] );
+            }
+            return book;
+        }
+
+        private static int incomeIndex( String income )
+        {
+            try {
+                IncomeRule.IncomeBand band = IncomeRule.IncomeBand.from( income );
+                return band == null ? INCOME_BANDS.length - 1 : band.ordinal();
+            } catch ( IllegalArgumentException e ) {
+                return INCOME_BANDS.length - 1;
+            }
+        }
+    }
+
+    /** Loan amounts (cents), tenures and Q48 annuity factors per (rate, tenure). */
+    private static final class Grid
+    {
+        final long[] amounts;
+        final int[] tenures;
+        final int rateCount;
+        final long[] factors;           // [rateIdx * tenures.length + tenureIdx]
+
+        private Grid( long[] amounts, int[] tenures, int[] rates )
+        {
+            this.amounts = amounts;
+            this.tenures = tenures;
+            this.rateCount = rates.length;
+            this.factors = new long[rates.length * tenures.length];
+            for ( int r = 0; r < rates.length; r++ ) {
+                for ( int n = 0; n < tenures.length; n++ ) {
+                    factors[r * tenures.length + n] = MoneyKernel.annuityFactor( rates[r], tenures[n] );
+                }
+            }
+        }
+
+        static Grid of( PortfolioSimulationRequest request, int[] rates )
+        {
+            int count = (int) ( ( request.getMaxLoanAmount() - request.getMinLoanAmount() ) / request.getLoanAmountStep() ) + 1;
+            long[] amounts = new long[count];
+            for ( int i = 0; i < count; i++ ) {
+                amounts[i] = ( request.getMinLoanAmount() + i * request.getLoanAmountStep() ) * 100;
+            }
+            return new Grid( amounts, request.getTenures().clone(), rates );
+        }
+    }
+
+    /** Per-leaf running sums, one slot per (incomeBand, rate) segment; money in cents. */
+    private static final class Accumulator
+    {
+        final long[] scenarios;
+        final long[] eligible;
+        final long[] interest;
+        final long[] disbursement;
+        final long[] savings;
+
+        Accumulator( int segments )
+        {
+            this.scenarios = new long[segments];
+            this.eligible = new long[segments];
+            this.interest = new long[segments];
+            this.disbursement = new long[segments];
+            this.savings = new long[segments];
+        }
+
+        void merge( Accumulator other )
+        {
+            for ( int s = 0; s < scenarios.length; s++ ) {
+                scenarios[s] += other.scenarios[s];
+                eligible[s] += other.eligible[s];
+                interest[s] += other.interest[s];
+                disbursement[s] += other.disbursement[s];
+                savings[s] += other.savings[s];
+            }
+        }
+    }
+
+    /** Covers the flattened (persona, amount) index range [from, to); tenures are the inner loop. */
+    private static final class SimulationTask extends RecursiveTask<Accumulator>
+    {
+        private final Book book;
+        private final Grid grid;
+        private final long from;
+        private final long to;
+
+        SimulationTask( Book book, Grid grid, long from, long to )
+        {
+            this.book = book;
+            this.grid = grid;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Accumulator compute()
+        {
+            if ( to - from <= LEAF_SIZE ) {
+                return computeLeaf();
+            }
+            long mid = ( from + to ) >>> 1;
+            SimulationTask left = new SimulationTask( book, grid, from, mid );
+            left.fork();
+            Accumulator right = new SimulationTask( book, grid, mid, to ).compute();
+            right.merge( left.join() );
+            return right;
+        }
+
+        private Accumulator computeLeaf()
+        {
+            Accumulator acc = new Accumulator( INCOME_BANDS.length * grid.rateCount );
+            int amountCount = grid.amounts.length;
+            int tenureCount = grid.tenures.length;
+
+            for ( long i = from; i < to; i++ ) {
+                int p = (int) ( i / amountCount );
+                long amount = grid.amounts[(int) ( i % amountCount )];
+                int segment = book.segment[p];
+
+                acc.scenarios[segment] += tenureCount;
+                if ( !book.minTenureServed[p] || amount < MoneyKernel.minLoanAmountCents( book.pending[p] ) ) {
+                    continue;
+                }
+                acc.eligible[segment] += tenureCount;
+
+                long principal = MoneyKernel.principalCents( amount );
+                long disbursement = MoneyKernel.disburseCents( amount, book.pending[p] );
+                int factorBase = ( segment % grid.rateCount ) * tenureCount;
+                for ( int n = 0; n < tenureCount; n++ ) {
+                    long emi = MoneyKernel.emiCents( principal, grid.factors[factorBase + n] );
+                    long totalRepaid = MoneyKernel.totalRepaidCents( emi, grid.tenures[n] );
+                    acc.interest[segment] += totalRepaid - principal;
+                    acc.disbursement[segment] += disbursement;
+                    acc.savings[segment] += book.existingTotal[p] - totalRepaid;
+                }
+            }
+            return acc;
+        }
+    }
+}
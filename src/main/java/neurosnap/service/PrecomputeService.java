@@ -0,0 +1,268 @@
+package neurosnap.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+import neurosnap.client.LlmLane;
+import neurosnap.dto.Persona;
+import neurosnap.dto.RecommendOptionsResponse;
+import neurosnap.dto.RecommendRequest;
+import neurosnap.util.PersonaFingerprint;
+import neurosnap.util.TokenBucket;
+import org.apache.coyote.BadRequestException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Offline precompute of /recommend results for the persona book × standard (loanAmount, tenure) grid.
+ *
+ * A scheduled job ({@code neurosnap.precompute.cron}) runs the live pipeline for every pair on the
+ * BATCH LLM lane, {@code threads} at a time and at most {@code max-per-second} starts, and writes the
+ * answers to a memory-mapped {@link ServingTable}. /recommend checks the table first. Off by default
+ * ({@code neurosnap.precompute.enabled}): a run spends upstream LLM budget on the whole book.
+ *
+ * Finished rows are streamed to a spool file next to the table ({@code <table-path>.partial}) rather than
+ * kept on the heap, and the table is built from it when the run ends. A run that fails or is cut short by
+ * a restart leaves the spool behind; the next run resumes from it and only computes the rows it lacks.
+ *
+ * Keys are personaId, persona fingerprint, rules version, loanAmount, tenure and frequency, so a
+ * persona import or a rules change turns old rows into misses rather than stale answers.
+ * Frequency null is stored as MONTHLY, the default schedule.
+ */
+@Slf4j
+@Service
+public class PrecomputeService
+{
+    private final RecommendationService recommendationService;
+    private final PersonaReaderService personaReaderService;
+    private final RulesReaderService rulesReaderService;
+    private final ObjectMapper objectMapper;
+
+    private final boolean enabled;
+    private final Path tablePath;
+    private final Path spoolPath;
+    private final List<Long> loanAmounts;
+    private final List<Integer> tenures;
+    private final int threads;
+    private final double maxPerSecond;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile ServingTable table;
+    private volatile ExecutorService executor;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public PrecomputeService( RecommendationService recommendationService, PersonaReaderService personaReaderService,
+            RulesReaderService rulesReaderService, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value( "${neurosnap.precompute.enabled:false}" ) boolean enabled,
+            @Value( "${neurosnap.precompute.table-path:data/recommendation-table.bin}" ) String tablePath,
+            @Value( "${neurosnap.precompute.loan-amounts:500,1000,2000,3000,5000}" ) List<Long> loanAmounts,
+            @Value( "${neurosnap.precompute.tenures:6,12}" ) List<Integer> tenures,
+            @Value( "${neurosnap.precompute.threads:4}" ) int threads,
+            @Value( "${neurosnap.precompute.max-per-second:2}" ) double maxPerSecond )
+    {
+        this.recommendationService = recommendationService;
+        this.personaReaderService = personaReaderService;
+        this.rulesReaderService = rulesReaderService;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.tablePath = Path.of( tablePath );
+        this.spoolPath = Path.of( tablePath + ".partial" );
+        this.loanAmounts = List.copyOf( loanAmounts );
+        this.tenures = List.copyOf( tenures );
+        this.threads = Math.max( 1, threads );
+        this.maxPerSecond = maxPerSecond;
+
+        this.hits = meterRegistry.counter( "neurosnap.precompute.table.lookups", "result", "hit" );
+        this.misses = meterRegistry.counter( "neurosnap.precompute.table.lookups", "result", "miss" );
+        meterRegistry.gauge( "neurosnap.precompute.table.entries", this, s -> s.table == null ? 0 : s.table.size() );
+    }
+
+    /** Maps the table left by the previous run, if any. */
+    @PostConstruct
+    public void openExisting()
+    {
+        if ( !enabled || !Files.exists( tablePath ) ) return;
+        try {
+            table = ServingTable.open( tablePath );
+            log.info( "Opened serving table {} with {} entries", tablePath, table.size() );
+        } catch ( Exception e ) {
+            log.warn( "Ignoring unreadable serving table {}: {}", tablePath, e.getMessage() );
+        }
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        ExecutorService current = executor;
+        if ( current != null ) current.shutdownNow();
+    }
+
+    /**
+     * Precomputed answer for the request, with a fresh requestId; null when the table has no row.
+     */
+    public RecommendOptionsResponse lookup( RecommendRequest request, String personaId )
+    {
+        ServingTable current = table;
+        if ( current == null ) return null;
+        try {
+            Persona persona = personaReaderService.getPersona( personaId ).get();
+            byte[] json = current.get( key( persona, request.getLoanAmount(), request.getTenure(), request.getFrequency() ) );
+            if ( json == null ) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            RecommendOptionsResponse response = objectMapper.readValue( json, RecommendOptionsResponse.class );
+            response.setRequestId( UUID.randomUUID().toString() );
+            return response;
+        } catch ( BadRequestException e ) {
+            return null;
+        } catch ( Exception e ) {
+            log.warn( "Serving table lookup failed for {}: {}", personaId, e.getMessage() );
+            return null;
+        }
+    }
+
+    @Scheduled( cron = "${neurosnap.precompute.cron:0 0 3 * * *}" )
+    public void scheduledRun()
+    {
+        if ( enabled ) {
+            run();
+        }
+    }
+
+    /**
+     * Recomputes the whole grid and swaps in the new table. Runs at most once at a time.
+     *
+     * @return number of rows written, or -1 when a run is already in progress
+     */
+    public int run()
+    {
+        if ( !running.compareAndSet( false, true ) ) return -1;
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool( threads, r -> {
+            Thread t = new Thread( r, "precompute" );
+            t.setDaemon( true );
+            return t;
+        } );
+        executor = pool;
+        try ( ServingTable.Builder rows = ServingTable.Builder.open( spoolPath ) ) {
+            if ( rows.resumed() > 0 ) {
+                log.info( "Precompute resuming with {} rows from an earlier run in {}", rows.resumed(), spoolPath );
+            }
+            TokenBucket throttle = new TokenBucket( maxPerSecond, Math.max( 1, maxPerSecond ) );
+            AtomicInteger failed = new AtomicInteger();
+
+            // Work is handed out as it can run: a start token, then one of the threads permits. Nothing is
+            // queued ahead, so memory stays flat however large the grid is.
+            Semaphore permits = new Semaphore( threads );
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            for ( int position = 0; position < personaReaderService.size() && error.get() == null; position++ ) {
+                Persona persona = personaReaderService.view( position ).toPersona();
+                for ( long loanAmount : loanAmounts ) {
+                    for ( int tenure : tenures ) {
+                        // Rows a cut-short run already finished cost neither a start token nor an upstream call.
+                        String key = key( persona, loanAmount, tenure, RecommendRequest.RepaymentFrequency.MONTHLY );
+                        if ( rows.contains( key ) ) continue;
+                        awaitToken( throttle );
+                        permits.acquire();
+                        pool.execute( () -> {
+                            try {
+                                compute( persona, loanAmount, tenure, key, rows, failed );
+                            } catch ( Throwable t ) {
+                                error.compareAndSet( null, t );
+                            } finally {
+                                permits.release();
+                            }
+                        } );
+                    }
+                }
+            }
+            permits.acquire( threads );
+            if ( error.get() != null ) {
+                throw new IllegalStateException( "Precompute task failed", error.get() );
+            }
+
+            int written = rows.size();
+            rows.install( tablePath );
+            table = ServingTable.open( tablePath );
+            log.info( "Precompute wrote {} rows ({} skipped) to {} in {} s", written, failed.get(), tablePath,
+                    TimeUnit.NANOSECONDS.toSeconds( System.nanoTime() - start ) );
+            return written;
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } catch ( Exception e ) {
+            log.error( "Precompute run failed; keeping the previous table, finished rows stay in {} for the next run", spoolPath, e );
+            return 0;
+        } finally {
+            pool.shutdownNow();
+            executor = null;
+            running.set( false );
+        }
+    }
+
+    /** Computes one row into the spool; a spool write failure fails the run. */
+    private void compute( Persona persona, long loanAmount, int tenure, String key, ServingTable.Builder rows, AtomicInteger failed )
+            throws IOException
+    {
+        RecommendRequest request = RecommendRequest.builder()
+                .loanAmount( loanAmount )
+                .tenure( tenure )
+                .frequency( RecommendRequest.RepaymentFrequency.MONTHLY )
+                .build();
+        byte[] json;
+        try {
+            RecommendOptionsResponse response = recommendationService.getRecommendations( request, persona.getPersonaId(), LlmLane.BATCH );
+            json = objectMapper.writeValueAsBytes( response );
+        } catch ( BadRequestException e ) {
+            // Not eligible for this amount (min-tenure rule, amount below pending + fees): live path answers with the error.
+            failed.incrementAndGet();
+            return;
+        } catch ( Exception e ) {
+            log.debug( "Precompute failed for {} / {} / {}: {}", persona.getPersonaId(), loanAmount, tenure, e.getMessage() );
+            failed.incrementAndGet();
+            return;
+        }
+        rows.put( key, json );
+    }
+
+    private static void awaitToken( TokenBucket throttle ) throws InterruptedException
+    {
+        while ( !throttle.tryAcquire() ) {
+            Thread.sleep( Math.max( 1, throttle.millisUntilNextToken() ) );
+        }
+    }
+
+    private String key( Persona persona, long loanAmount, int tenure, RecommendRequest.RepaymentFrequency frequency )
+    {
+        return key( persona, rulesReaderService.getRuleSet( persona.getBankName() ).getVersion(), loanAmount, tenure, frequency );
+    }
+
+    /** Result key shared with {@link PersistentResultStore}. */
+    static String key( Persona persona, String rulesVersion, long loanAmount, int tenure, RecommendRequest.RepaymentFrequency frequency )
+    {
+        return persona.getPersonaId() + '|' + PersonaFingerprint.hex( persona ) + '|'
+                + rulesVersion + '|'
+                + loanAmount + '|' + tenure + '|'
+                + ( frequency == null ? RecommendRequest.RepaymentFrequency.MONTHLY : frequency ).name();
+    }
+}
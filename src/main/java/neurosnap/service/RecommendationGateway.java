@@ -0,0 +1,110 @@
+package neurosnap.service;
+
+import neurosnap.client.Deadline;
+import neurosnap.client.DeadlineExceededException;
+import neurosnap.client.LlmLane;
+import neurosnap.dto.RecommendOptionsResponse;
+import neurosnap.dto.RecommendRequest;
+import org.apache.coyote.BadRequestException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Entry point for a validated recommendation request, shared by the REST and gRPC endpoints.
+ *
+ * Order of stages:
+ *  1. precomputed serving table (microseconds when it hits),
+ *  2. dependency-tracked result cache (kept current across persona and rules updates),
+ *  3. persistent result store (answers computed before the last restart),
+ *  4. speculative prefetch store (may wait on a computation that is still running, so it comes
+ *     after the lookups that answer at once),
+ *  5. admission control (may throw {@link AdmissionRejectedException}),
+ *  6. {@link RecommendationService#getRecommendations}.
+ *
+ * Live and prefetched answers are written to the persistent store and the result cache; stored
+ * answers to the result cache.
+ *
+ * The request's {@link Deadline} caps the prefetch wait and is checked before admission, so work
+ * for a client that is already gone never takes an in-flight permit.
+ */
+@Service
+public class RecommendationGateway
+{
+    /** How long a request may wait on a speculative computation that is already running. */
+    private static final long PREFETCH_MAX_WAIT_MILLIS = 60_000;
+
+    private final RecommendationService recommendationService;
+    private final AdmissionControlService admissionControlService;
+    private final SpeculativePrefetchService speculativePrefetchService;
+    private final PrecomputeService precomputeService;
+    private final PersistentResultStore persistentResultStore;
+    private final DerivedResultCache derivedResultCache;
+
+    public RecommendationGateway( RecommendationService recommendationService, AdmissionControlService admissionControlService,
+            SpeculativePrefetchService speculativePrefetchService, PrecomputeService precomputeService,
+            PersistentResultStore persistentResultStore, DerivedResultCache derivedResultCache )
+    {
+        this.recommendationService = recommendationService;
+        this.admissionControlService = admissionControlService;
+        this.speculativePrefetchService = speculativePrefetchService;
+        this.precomputeService = precomputeService;
+        this.persistentResultStore = persistentResultStore;
+        this.derivedResultCache = derivedResultCache;
+    }
+
+    public RecommendOptionsResponse recommend( RecommendRequest request, String personaId ) throws Exception
+    {
+        return recommend( request, personaId, LlmLane.INTERACTIVE );
+    }
+
+    /** @param lane scheduling lane for the upstream LLM call, see {@link neurosnap.client.LlmScheduler} */
+    public RecommendOptionsResponse recommend( RecommendRequest request, String personaId, LlmLane lane ) throws Exception
+    {
+        return recommend( request, personaId, lane, Deadline.none() );
+    }
+
+    /** @param deadline the client's time budget; the LLM call is cancelled when it ends */
+    public RecommendOptionsResponse recommend( RecommendRequest request, String personaId, LlmLane lane, Deadline deadline ) throws Exception
+    {
+        RecommendOptionsResponse precomputed = precomputeService.lookup( request, personaId );
+        if ( precomputed != null ) {
+            return precomputed;
+        }
+
+        String resultKey = persistentResultStore.key( request, personaId );
+        DerivedResultCache.Ticket ticket = derivedResultCache.ticket( request, personaId );
+        RecommendOptionsResponse cached = derivedResultCache.lookup( ticket );
+        if ( cached != null ) {
+            return cached;
+        }
+
+        RecommendOptionsResponse stored = persistentResultStore.lookup( resultKey );
+        if ( stored != null ) {
+            derivedResultCache.put( ticket, stored );
+            return stored;
+        }
+
+        RecommendOptionsResponse prefetched = speculativePrefetchService.take( personaId, request, deadline.clampMillis( PREFETCH_MAX_WAIT_MILLIS ) );
+        if ( prefetched != null ) {
+            persistentResultStore.remember( resultKey, prefetched );
+            derivedResultCache.put( ticket, prefetched );
+            return prefetched;
+        }
+
+        deadline.check();
+
+        try ( AdmissionControlService.Permit permit = admissionControlService.acquire( personaId ) )
+        {
+            try
+            {
+                RecommendOptionsResponse response = recommendationService.getRecommendations( request, personaId, lane, deadline );
+                persistentResultStore.remember( resultKey, response );
+                derivedResultCache.put( ticket, response );
+                return response;
+            } catch ( BadRequestException | DeadlineExceededException e ) {
+                // Neither a validation failure nor a cut-short call says anything about upstream latency.
+                permit.ignoreLatency();
+                throw e;
+            }
+        }
+    }
+}
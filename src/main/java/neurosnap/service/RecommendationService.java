@@ -1,20 +1,22 @@
 package neurosnap.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
-import neurosnap.client.ChatGptClient;
+import neurosnap.client.LlmBatchDispatcher;
+import neurosnap.client.Deadline;
+import neurosnap.client.LlmLane;
 import neurosnap.dto.Persona;
 import neurosnap.dto.RecommendOption;
 import neurosnap.dto.RecommendOptionsResponse;
 import neurosnap.dto.RecommendRequest;
-import neurosnap.dto.rules.AprScoreRule;
-import neurosnap.dto.rules.ConfidenceRule;
-import neurosnap.dto.rules.IncomeRule;
-import neurosnap.dto.rules.PaymentHistoryRule;
+import neurosnap.dto.rules.RuleSet;
+import neurosnap.util.MoneyKernel;
+import neurosnap.util.RefiCalculator;
 import org.apache.coyote.BadRequestException;
 import org.springframework.stereotype.Service;
 
@@ -25,19 +27,35 @@ public class RecommendationService
 
     private final RulesReaderService rulesReaderService;
 
-    private final ChatGptClient chatGptClient;
+    private final PlanVerifier planVerifier;
 
-    private final double processingFee = 100;
-    private final double taxFee = processingFee / 10;
+    private final LlmBatchDispatcher llmBatchDispatcher;
 
-    public RecommendationService( PersonaReaderService personaReaderService, RulesReaderService rulesReaderService, ChatGptClient chatGptClient )
+    private final ObservationRegistry observationRegistry;
+
+    public RecommendationService( PersonaReaderService personaReaderService, RulesReaderService rulesReaderService,
+            PlanVerifier planVerifier, LlmBatchDispatcher llmBatchDispatcher, ObservationRegistry observationRegistry )
     {
         this.personaReaderService = personaReaderService;
         this.rulesReaderService = rulesReaderService;
-        this.chatGptClient = chatGptClient;
+        this.planVerifier = planVerifier;
+        this.llmBatchDispatcher = llmBatchDispatcher;
+        this.observationRegistry = observationRegistry;
     }
 
     public RecommendOptionsResponse getRecommendations(RecommendRequest request, String personaId ) throws Exception
+    {
+        return getRecommendations( request, personaId, LlmLane.INTERACTIVE );
+    }
+
+    /** As {@link #getRecommendations(RecommendRequest, String)}, with the LLM call scheduled on the given lane. */
+    public RecommendOptionsResponse getRecommendations(RecommendRequest request, String personaId, LlmLane lane ) throws Exception
+    {
+        return getRecommendations( request, personaId, lane, Deadline.none() );
+    }
+
+    /** As above, abandoning the LLM call when the request's deadline passes or the client goes away. */
+    public RecommendOptionsResponse getRecommendations(RecommendRequest request, String personaId, LlmLane lane, Deadline deadline ) throws Exception
     {
 
         Optional<Persona> personaResult = personaReaderService.getPersona( personaId );
@@ -47,7 +65,7 @@ public class RecommendationService
             throw new BadRequestException( "You need to serve the minimum tenure on your existing loan before you can apply for refinancing." ) ;
         }
 
-        return generatePlansUsingAI( persona, request);
+        return generatePlansUsingAI( persona, request, lane, deadline );
     }
 
     public RecommendOptionsResponse getExamples(RecommendRequest request, String personaId ) throws Exception
@@ -81,18 +99,41 @@ public class RecommendationService
        return response;
     }
 
+    /** Upstream completion for (shared instructions, persona section); the LLM dispatcher in production. */
+    @FunctionalInterface
+    public interface Completion
+    {
+        String complete( String sharedInstructions, String section ) throws Exception;
+    }
+
     public RecommendOptionsResponse generatePlansUsingAI(Persona persona, RecommendRequest request) throws Exception
     {
+        return generatePlansUsingAI( persona, request, LlmLane.INTERACTIVE );
+    }
 
-        List<RecommendOption> plans = new ArrayList<>();
+    public RecommendOptionsResponse generatePlansUsingAI(Persona persona, RecommendRequest request, LlmLane lane) throws Exception
+    {
+        return generatePlansUsingAI( persona, request, lane, Deadline.none() );
+    }
 
-        // Calculating Fee
-        double fees = processingFee + taxFee;
+    public RecommendOptionsResponse generatePlansUsingAI(Persona persona, RecommendRequest request, LlmLane lane, Deadline deadline) throws Exception
+    {
+        return generatePlans( persona, request, ( shared, section ) -> llmBatchDispatcher.complete( shared, section, lane, deadline ) );
+    }
+
+    /**
+     * The full plan pipeline (rules, APR, prompt, decode, verification) around the given completion.
+     * Start-up warm-up calls this with a canned completion so nothing reaches the model.
+     */
+    public RecommendOptionsResponse generatePlans(Persona persona, RecommendRequest request, Completion completion) throws Exception
+    {
 
-        // Validating user input amount with minRequired amount.
-        double minRequired = persona.getExistingPendingAmount() + fees;
-        if (request.getLoanAmount() < minRequired) {
-            throw new BadRequestException("Requested amount must cover pending balance + fees (min $" + Math.round(minRequired) + ")");
+        List<RecommendOption> plans = new ArrayList<>();
+
+        // Validating user input amount with minRequired amount (pending balance + fees), in cents.
+        long minRequired = MoneyKernel.minLoanAmountCents( MoneyKernel.toCents( persona.getExistingPendingAmount() ) );
+        if (request.getLoanAmount() * 100 < minRequired) {
+            throw new BadRequestException("Requested amount must cover pending balance + fees (min $" + Math.round(MoneyKernel.toUsd(minRequired)) + ")");
         }
 
         double principal = request.getLoanAmount();
@@ -100,115 +141,145 @@ public class RecommendationService
         // normalizeTenure
         int baseTenure = normalizeTenure(request.getTenure());
 
+        // Lender specific rules, already serialized to their prompt form when the rule set was loaded.
+        RuleSet ruleSet = rulesReaderService.getRuleSet( persona.getBankName() );
+
         // Calculate APR
-        double apr = baseApr(persona);
+        double apr = RefiCalculator.baseApr( persona, ruleSet );
 
         ObjectMapper mapper = new ObjectMapper();
-        String personaJson = mapper.writeValueAsString(persona);
-
-        Map<String, IncomeRule> incomerules = rulesReaderService.getIncomeRules();
-        Map<String, ConfidenceRule> confidenceRules = rulesReaderService.getConfidenceRules();
-        Map<String, PaymentHistoryRule> paymentHistoryRules = rulesReaderService.getPaymentHistoryRules();
-        Map<String, AprScoreRule> aprScoreRules = rulesReaderService.getAprScoreRules();
-
-        String incomeRulesJson = mapper.writeValueAsString(incomerules);
-        String paymentHistoryRuleJson = mapper.writeValueAsString(paymentHistoryRules);
-        String confidenceRulesJson = mapper.writeValueAsString(confidenceRules);
-        String aprScoreRulesJson = mapper.writeValueAsString(aprScoreRules);
-
-        String prompt =
-            "You are a financial assistant. Provide exactly 3 refinance options (LOWER_EMI, FASTER_CLOSURE, BALANCED) using strict math and numeric reasoning. " +
-                    "Do not guess. Use the exact formulas with numbers. Follow all instructions exactly.\n\n" +
-                    "GOALS:\n" +
-                    "1. LOWER_EMI: Use the longest tenure (within allowed limits, e.g. 12 months), even if total interest paid is more.\n" +
-                    "2. FASTER_CLOSURE: Use the shortest tenure possible (minimum allowed, e.g. 6 months) to minimize total interest, even if EMI is high.\n" +
-                    "3. BALANCED: Choose a tenure and EMI between LOWER_EMI and FASTER_CLOSURE, balancing monthly payment and interest cost.\n\n" +
-
-                    "INPUT DATA:\n" +
-                    "Principal: " + (principal-110)+ "\n" +
-                    "Allowed tenure range: 6 to 12 months\n\n" +
-                    "input :" + request +
-                    "persona :" + personaJson +
-                    "tenure : " + baseTenure +
-                    // "interestRate :" + apr +
-                    "rules :" +  incomeRulesJson + paymentHistoryRuleJson + confidenceRulesJson + aprScoreRulesJson  +
-                    " Existing emi: "+persona.getExistingEmi()+" and remaining tenure as 6 \n" +
-                    "FORMULAS AND CALCULATIONS (must apply with numbers):\n" +
-                    "- Monthly interest rate R = APR / (12 × 100)\n" +
-                    "- EMI = [P × R × (1 + R)^N] / [(1 + R)^N − 1]  (round to 2 decimals)\n" +
-                    "- TotalLoanAmount = EMI × N  (round to 2 decimals)\n" +
-                    "- TotalInterest = TotalLoanAmount − Principal  (round to 2 decimals)\n" +
-                    "- SavingsPerMonth = ExistingEMI − PlanEMI\n" +
-                    "  -Do NOT compute totalSavings as savingsPerMonth × tenure unless savingsPerMonth > 0.\n" +
-                    "IMPORTANT CONSTRAINTS:\n" +
-                    "- Ensure TotalLoanAmount >= Principal or else correct EMI/tenure so that repayment covers principal + interest.\n" +
-                    "- If SavingsPerMonth is negative (because EMI > ExistingEMI), that's okay, but TotalSavings should reflect interest savings or cost correctly. \n" +
-                    "- Do NOT use placeholders like \"$$\" or \"Computed\". Use real numbers everywhere.\n" +
-                    "- Round all monetary values to 2 decimal places.\n\n" +
-                    " Do not estimate or guess EMI. Use the EMI formula explicitly with math. Calculate using actual values.\n" +
-                    " - DisburseAmount = " + (principal - (persona.getExistingPendingAmount()+110 )) +"\n" +
-                    "- Use LOWER_EMI plan as baseline for savings comparison.\n" +
-                    "- For LOWER_EMI: savingsPerMonth = 0.0, totalSavings = 0.0\n" +
-                    "- For FASTER_CLOSURE and BALANCED: savingsPerMonth = Existing emi - current_plan_emi\n" +
-                    "- totalSavings = LOWER_EMI_totalLoanAmount - current_plan_totalLoanAmount\n" +
-                    "- Don't compute totalSavings as savingsPerMonth × tenure unless it's consistent with interest logic.\n" +
-                    "- Use correct math. Do not guess values.\n" +
-                    "- For PLAN_BALANCED:\n" +
-                    "  - Set tenure to a value between the tenure of PLAN_LOWER_EMI and PLAN_FASTER_CLOSURE (e.g. if LOWER_EMI tenure = 12 months and FASTER_CLOSURE tenure = 6 months, BALANCED tenure = 8 or 9 months).\n" +
-                    "  - Use the same or slightly improved interest rate as LOWER_EMI (do not increase interest rate).\n" +
-                    "  - Calculate EMI accordingly.\n" +
-                    "  - Ensure totalLoanAmount for BALANCED plan is strictly less than the totalLoanAmount of LOWER_EMI plan.\n" +
-                    "  - Calculate savingsPerMonth = LOWER_EMI_EMI - BALANCED_EMI (can be negative if EMI is higher).\n" +
-                    "  - Calculate totalSavings = LOWER_EMI_totalLoanAmount - BALANCED_totalLoanAmount (must be positive).\n" +
-                    "  - If totalLoanAmount for BALANCED plan is greater than LOWER_EMI plan, adjust tenure or EMI to ensure savings.\n" +
-                    "    Determine best plan based on persona characteristics:\n" +
-                    "  - If persona income is high and payment history is DISCIPLINED, recommend PLAN_FASTER_CLOSURE as best for interest savings.\n" +
-                    "  - If persona income is MEDIUM and payment history is MOSTLY_DISCIPLINED, recommend PLAN_BALANCED as best for a balance between affordability and interest savings.\n" +
-                    "  - If persona income is low or payment history is IRREGULAR, recommend PLAN_LOWER_EMI as best to minimize monthly payment stress.\n" +
-                    "  - Also consider aprScore: higher aprScore supports recommending faster closure or balanced plans; lower aprScore favors conservative lower EMI plan.\n" +
-                    "  - Set the best field (true/false) accordingly in each plan's output, only one option can be true.\n" +
-                    "  - Adjust confidence score based on how well the persona fits each plan.\n" +
-                    "OUTPUT FORMAT (JSON only):\n" +
-                    "{\n" +
-                    "  \"modelVersion\": \"v1.0.0\",\n" +
-                    "  \"requestId\": \"" + UUID.randomUUID().toString() + "\",\n" +
-                    "  \"personaId\": \"" + persona.getPersonaId() + "\",\n" +
-                    "  \"demoMode\": true,\n" +
-                    "  \"recommendations\": [\n" +
-                    "    {\n" +
-                    "      \"planId\": \"PLAN_LOWER_EMI\",\n" +
-                    "      \"goal\": \"LOWER_EMI\",\n" +
-                    "      \"emi\": <calculated_emi>,\n" +
-                    "      \"principal\": " +( principal-110) + ",\n" +
-                    "      \"tenure\": <tenure_in_months>,\n" +
-                    "      \"interestRate\": " + apr + ",\n" +
-                    "      \"totalLoanAmount\": <emi × tenure>  in double,\n" +
-                    "      \"disburseAmount\": <computed_disburse_amount>,\n" +
-                    "      \"savingsPerMonth\": <existingEMI − emi>,\n" +
-                    "      \"totalSavings\": <(existingEMI × existingTenure) − totalLoanAmount>,\n" +
-                    "      \"breakEvenMonths\": <computed_integer_months>,\n" +
-                    "      \"confidence\": <0–100>,\n" +
-                    "      \"best\": <true_or_false based on persona income band, payment behaviour and apr rules provided>,\n" +
-                    "      \"reason\": \"<reasoning>\"\n" +
-                    "    },\n" +
-                    "    {\n" +
-                    "      \"planId\": \"PLAN_FASTER_CLOSURE\",\n" +
-                    "      // same fields\n" +
-                    "    },\n" +
-                    "    {\n" +
-                    "      \"planId\": \"PLAN_BALANCED\",\n" +
-                    "      // same fields\n" +
-                    "    }\n" +
-                    "  ]\n" +
-                    "}";
-
-        String response  = chatGptClient.sendPrompt(prompt);
-
-        RecommendOptionsResponse finalResponse = mapper.readValue(response, RecommendOptionsResponse.class);
+
+        Observation promptBuild = Observation.createNotStarted( "neurosnap.prompt.build", observationRegistry )
+                .lowCardinalityKeyValue( "rules.version", ruleSet.getVersion() )
+                .start();
+        String sharedInstructions;
+        String personaSection;
+        try ( Observation.Scope scope = promptBuild.openScope() ) {
+            String personaJson = mapper.writeValueAsString(persona);
+            sharedInstructions = buildSharedInstructions( ruleSet.getRulesJson() );
+            personaSection = buildPersonaSection( persona, request, personaJson, principal, baseTenure, apr, ruleSet );
+            promptBuild.highCardinalityKeyValue( "prompt.chars", String.valueOf( sharedInstructions.length() + personaSection.length() ) );
+        } catch ( Exception e ) {
+            promptBuild.error( e );
+            throw e;
+        } finally {
+            promptBuild.stop();
+        }
+
+        // Requests arriving within a few ms share one upstream completion (rules are sent once).
+        String response  = completion.complete( sharedInstructions, personaSection );
+
+        RecommendOptionsResponse finalResponse = Observation.createNotStarted( "neurosnap.llm.response.decode", observationRegistry )
+                .highCardinalityKeyValue( "response.chars", String.valueOf( response == null ? 0 : response.length() ) )
+                .observeChecked( () -> mapper.readValue(response, RecommendOptionsResponse.class) );
+
+        // Fix the model's arithmetic locally instead of paying for another round trip.
+        planVerifier.verifyAndRepair(finalResponse, persona, request, ruleSet);
 
         return finalResponse;
     }
 
+    /**
+     * Instructions that are identical for every persona under the same rule set:
+     * goals, rules, formulas, constraints and best-plan selection.
+     */
+    private String buildSharedInstructions( String rulesJson )
+    {
+        return "You are a financial assistant. Provide exactly 3 refinance options (LOWER_EMI, FASTER_CLOSURE, BALANCED) using strict math and numeric reasoning. " +
+                "Do not guess. Use the exact formulas with numbers. Follow all instructions exactly.\n\n" +
+                "GOALS:\n" +
+                "1. LOWER_EMI: Use the longest tenure (within allowed limits, e.g. 12 months), even if total interest paid is more.\n" +
+                "2. FASTER_CLOSURE: Use the shortest tenure possible (minimum allowed, e.g. 6 months) to minimize total interest, even if EMI is high.\n" +
+                "3. BALANCED: Choose a tenure and EMI between LOWER_EMI and FASTER_CLOSURE, balancing monthly payment and interest cost.\n\n" +
+                "Allowed tenure range: 6 to 12 months\n\n" +
+                "rules :" + rulesJson + "\n" +
+                "FORMULAS AND CALCULATIONS (must apply with numbers):\n" +
+                "- Monthly interest rate R = APR / (12 × 100)\n" +
+                "- EMI = [P × R × (1 + R)^N] / [(1 + R)^N − 1]  (round to 2 decimals)\n" +
+                "- TotalLoanAmount = EMI × N  (round to 2 decimals)\n" +
+                "- TotalInterest = TotalLoanAmount − Principal  (round to 2 decimals)\n" +
+                "- SavingsPerMonth = ExistingEMI − PlanEMI\n" +
+                "  -Do NOT compute totalSavings as savingsPerMonth × tenure unless savingsPerMonth > 0.\n" +
+                "IMPORTANT CONSTRAINTS:\n" +
+                "- Ensure TotalLoanAmount >= Principal or else correct EMI/tenure so that repayment covers principal + interest.\n" +
+                "- If SavingsPerMonth is negative (because EMI > ExistingEMI), that's okay, but TotalSavings should reflect interest savings or cost correctly. \n" +
+                "- Do NOT use placeholders like \"$$\" or \"Computed\". Use real numbers everywhere.\n" +
+                "- Round all monetary values to 2 decimal places.\n\n" +
+                " Do not estimate or guess EMI. Use the EMI formula explicitly with math. Calculate using actual values.\n" +
+                "- Use LOWER_EMI plan as baseline for savings comparison.\n" +
+                "- For LOWER_EMI: savingsPerMonth = 0.0, totalSavings = 0.0\n" +
+                "- For FASTER_CLOSURE and BALANCED: savingsPerMonth = Existing emi - current_plan_emi\n" +
+                "- totalSavings = LOWER_EMI_totalLoanAmount - current_plan_totalLoanAmount\n" +
+                "- Don't compute totalSavings as savingsPerMonth × tenure unless it's consistent with interest logic.\n" +
+                "- Use correct math. Do not guess values.\n" +
+                "- For PLAN_BALANCED:\n" +
+                "  - Set tenure to a value between the tenure of PLAN_LOWER_EMI and PLAN_FASTER_CLOSURE (e.g. if LOWER_EMI tenure = 12 months and FASTER_CLOSURE tenure = 6 months, BALANCED tenure = 8 or 9 months).\n" +
+                "  - Use the same or slightly improved interest rate as LOWER_EMI (do not increase interest rate).\n" +
+                "  - Calculate EMI accordingly.\n" +
+                "  - Ensure totalLoanAmount for BALANCED plan is strictly less than the totalLoanAmount of LOWER_EMI plan.\n" +
+                "  - Calculate savingsPerMonth = LOWER_EMI_EMI - BALANCED_EMI (can be negative if EMI is higher).\n" +
+                "  - Calculate totalSavings = LOWER_EMI_totalLoanAmount - BALANCED_totalLoanAmount (must be positive).\n" +
+                "  - If totalLoanAmount for BALANCED plan is greater than LOWER_EMI plan, adjust tenure or EMI to ensure savings.\n" +
+                "    Determine best plan based on persona characteristics:\n" +
+                "  - If persona income is high and payment history is DISCIPLINED, recommend PLAN_FASTER_CLOSURE as best for interest savings.\n" +
+                "  - If persona income is MEDIUM and payment history is MOSTLY_DISCIPLINED, recommend PLAN_BALANCED as best for a balance between affordability and interest savings.\n" +
+                "  - If persona income is low or payment history is IRREGULAR, recommend PLAN_LOWER_EMI as best to minimize monthly payment stress.\n" +
+                "  - Also consider aprScore: higher aprScore supports recommending faster closure or balanced plans; lower aprScore favors conservative lower EMI plan.\n" +
+                "  - Set the best field (true/false) accordingly in each plan's output, only one option can be true.\n" +
+                "  - Adjust confidence score based on how well the persona fits each plan.\n\n";
+    }
+
+    /** Per-request part of the prompt: input data for one persona plus its output template. */
+    private String buildPersonaSection( Persona persona, RecommendRequest request, String personaJson, double principal, int baseTenure, double apr,
+            RuleSet ruleSet )
+    {
+        long loanAmount = MoneyKernel.toCents( principal );
+        double financed = MoneyKernel.toUsd( MoneyKernel.principalCents( loanAmount ) );
+        double disburse = MoneyKernel.toUsd( MoneyKernel.disburseCents( loanAmount, MoneyKernel.toCents( persona.getExistingPendingAmount() ) ) );
+        return "INPUT DATA:\n" +
+                "Principal: " + financed + "\n" +
+                "input :" + request +
+                "persona :" + personaJson +
+                "tenure : " + baseTenure +
+                // "interestRate :" + apr +
+                " Existing emi: "+persona.getExistingEmi()+" and remaining tenure as 6 \n" +
+                " - DisburseAmount = " + disburse +"\n" +
+                confidenceInstruction( persona, ruleSet ) +
+                "OUTPUT FORMAT (JSON only):\n" +
+                "{\n" +
+                "  \"modelVersion\": \"v1.0.0\",\n" +
+                "  \"requestId\": \"" + UUID.randomUUID().toString() + "\",\n" +
+                "  \"personaId\": \"" + persona.getPersonaId() + "\",\n" +
+                "  \"demoMode\": true,\n" +
+                "  \"recommendations\": [\n" +
+                "    {\n" +
+                "      \"planId\": \"PLAN_LOWER_EMI\",\n" +
+                "      \"goal\": \"LOWER_EMI\",\n" +
+                "      \"emi\": <calculated_emi>,\n" +
+                "      \"principal\": " + financed + ",\n" +
+                "      \"tenure\": <tenure_in_months>,\n" +
+                "      \"interestRate\": " + apr + ",\n" +
+                "      \"totalLoanAmount\": <emi × tenure>  in double,\n" +
+                "      \"disburseAmount\": <computed_disburse_amount>,\n" +
+                "      \"savingsPerMonth\": <existingEMI − emi>,\n" +
+                "      \"totalSavings\": <(existingEMI × existingTenure) − totalLoanAmount>,\n" +
+                "      \"breakEvenMonths\": <computed_integer_months>,\n" +
+                "      \"confidence\": <0–100>,\n" +
+                "      \"best\": <true_or_false based on persona income band, payment behaviour and apr rules provided>,\n" +
+                "      \"reason\": \"<reasoning>\"\n" +
+                "    },\n" +
+                "    {\n" +
+                "      \"planId\": \"PLAN_FASTER_CLOSURE\",\n" +
+                "      // same fields\n" +
+                "    },\n" +
+                "    {\n" +
+                "      \"planId\": \"PLAN_BALANCED\",\n" +
+                "      // same fields\n" +
+                "    }\n" +
+                "  ]\n" +
+                "}";
+    }
+
     private String reasonTemplate(String goal, String behavior, double savingsPerMonth, int tenure) {
         if ("LOWER_EMI".equals(goal))
             return "Lower EMI saves $" + Math.round(savingsPerMonth) + "/month; fits your " + behavior.toLowerCase() + " history.";
@@ -222,12 +293,16 @@ public class RecommendationService
         return Math.round(apr*100.0)/100.0;
     }
 
-    private double baseApr( Persona persona )
+    /** Fixed per-plan confidence values when the rule set has a "confidence" formula; empty otherwise. */
+    private String confidenceInstruction( Persona persona, RuleSet ruleSet )
     {
-        if (persona.getCreditScore() >= 750 && PaymentHistoryRule.PaymentHistoryType.DISCIPLINED.toString().equals(persona.getPaymentHistory())) return 10.5;
-        if (persona.getCreditScore() >= 650) return 16.0;
-        return 24.0;
-
+        StringBuilder values = new StringBuilder();
+        for ( RecommendOption.GoalType goal : RecommendOption.GoalType.values() ) {
+            Integer confidence = PlanVerifier.confidence( persona, goal, ruleSet );
+            if ( confidence == null ) return "";
+            values.append( values.length() == 0 ? "" : ", " ).append( goal.name() ).append( '=' ).append( confidence );
+        }
+        return " - Confidence per plan (use exactly): " + values + "\n";
     }
 
     private double adjustAprByIncomeBand(String incomeBand) {
@@ -243,23 +318,13 @@ public class RecommendationService
             default -> 0;
         };
     }
-    private int calcConfidence(Persona persona, String goal) {
-        int base = clamp(persona.getCreditScore() / 10, 40, 95);
-        if ("IRREGULAR".equals(persona.getPaymentHistory())) base -= 6;
-        if ("LOWER_EMI".equals(goal) && "LOW".equals( persona.getIncome())) base += 5;
-        if ("FASTER_CLOSURE".equals(goal) && "HIGH".equals( persona.getIncome()) ) base += 5;
-        return clamp(base, 40, 95);
-    }
-
-    private int clamp(int v, int lo, int hi){ return Math.max(lo, Math.min(hi, v)); }
-
     private int normalizeTenure( int tenure )
     {
         return (tenure==6||tenure==12) ? tenure : 12;
     }
 
-    public List<Persona> getPersonas()
+    public List<Persona> getPersonas( int offset, int limit )
     {
-        return personaReaderService.getAllPersona();
+        return personaReaderService.getPersonas( offset, limit );
     }
 }
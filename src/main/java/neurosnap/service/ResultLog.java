@@ -0,0 +1,326 @@
+package neurosnap.service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import neurosnap.util.PersonaFingerprint;
+
+/**
+ * Append-only, memory-mapped key → bytes log behind {@link PersistentResultStore}.
+ *
+ * File layout (big-endian):
+ * <pre>
+ *   header   int magic, int format
+ *   records  int bodyLength, int crc32(body),
+ *            body = long writtenAtMillis, short keyLength, key bytes (UTF-8), value bytes
+ * </pre>
+ * The file is mapped at its full capacity up front (sparse until written). Opening scans the
+ * records into a compact in-memory index (open addressing: 64-bit key hash → record offset);
+ * the scan stops at the first zero, torn or corrupt record, which is where appends continue.
+ *
+ * Notes:
+ * - Writing the same key again appends a new record; the old one becomes dead bytes until
+ *   {@link #compact} copies the live records into a fresh file and swaps it in atomically. The old
+ *   log then forwards reads and writes to the new one, so callers still holding it lose nothing.
+ * - Records go to the page cache on put, so they survive a process restart; {@link #force}
+ *   flushes them to disk (on compaction and shutdown).
+ * - All methods are thread-safe; lookups and appends are short critical sections on the log.
+ */
+final class ResultLog
+{
+    private static final int MAGIC = 0x4e53524c; // "NSRL"
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int BODY_FIXED_BYTES = 10;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+
+    // Index: open addressing over key hashes, offset 0 = empty slot.
+    private long[] hashes;
+    private int[] offsets;
+    private int entries;
+
+    private int end;
+    private long deadBytes;
+    /** Set when compaction replaced this log; every later get and put goes there. */
+    private ResultLog successor;
+
+    private ResultLog( Path path, MappedByteBuffer buffer )
+    {
+        this.path = path;
+        this.buffer = buffer;
+        this.hashes = new long[1024];
+        this.offsets = new int[1024];
+    }
+
+    /** Maps (creating if needed) the log at {@code path} with room for {@code capacity} bytes and indexes it. */
+    static ResultLog open( Path path, long capacity ) throws IOException
+    {
+        ResultLog log = new ResultLog( path, map( path, capacity ) );
+        log.scan();
+        return log;
+    }
+
+    private static MappedByteBuffer map( Path path, long capacity ) throws IOException
+    {
+        if ( capacity > Integer.MAX_VALUE ) throw new IOException( "Result log over 2 GB: " + capacity );
+        Path dir = path.toAbsolutePath().getParent();
+        Files.createDirectories( dir );
+        try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE ) ) {
+            return channel.map( FileChannel.MapMode.READ_WRITE, 0, Math.max( capacity, channel.size() ) );
+        }
+    }
+
+    private void scan()
+    {
+        if ( buffer.getInt( 0 ) == 0 && buffer.getInt( 4 ) == 0 ) {
+            buffer.putInt( 0, MAGIC ).putInt( 4, FORMAT );
+        } else if ( buffer.getInt( 0 ) != MAGIC || buffer.getInt( 4 ) != FORMAT ) {
+            throw new IllegalStateException( "Not a result log (format " + FORMAT + "): " + path );
+        }
+        int position = HEADER_BYTES;
+        while ( true ) {
+            int length = readableLength( position );
+            if ( length < 0 ) break;
+            index( hash( position ), position, length );
+            position += RECORD_HEADER_BYTES + length;
+        }
+        end = position;
+    }
+
+    /** Body length of a complete, intact record at {@code position}, or -1. */
+    private int readableLength( int position )
+    {
+        if ( position + RECORD_HEADER_BYTES + BODY_FIXED_BYTES > buffer.capacity() ) return -1;
+        int length = buffer.getInt( position );
+        if ( length < BODY_FIXED_BYTES || length > buffer.capacity() - position - RECORD_HEADER_BYTES ) return -1;
+        int keyLength = buffer.getShort( position + RECORD_HEADER_BYTES + 8 ) & 0xffff;
+        if ( BODY_FIXED_BYTES + keyLength > length ) return -1;
+        CRC32 crc = new CRC32();
+        crc.update( buffer.slice( position + RECORD_HEADER_BYTES, length ) );
+        return (int) crc.getValue() == buffer.getInt( position + 4 ) ? length : -1;
+    }
+
+    synchronized int size()
+    {
+        return entries;
+    }
+
+    synchronized long usedBytes()
+    {
+        return end;
+    }
+
+    synchronized long deadBytes()
+    {
+        return deadBytes;
+    }
+
+    /** Bytes a {@link #compact} with this cut-off would free: dead records plus live ones written before it. */
+    synchronized long reclaimableBytes( long notBeforeMillis )
+    {
+        long reclaimable = deadBytes;
+        for ( int offset : offsets ) {
+            if ( offset != 0 && writtenAt( offset ) < notBeforeMillis ) {
+                reclaimable += RECORD_HEADER_BYTES + buffer.getInt( offset );
+            }
+        }
+        return reclaimable;
+    }
+
+    long capacity()
+    {
+        return buffer.capacity();
+    }
+
+    /** Value for the key if it was written at or after {@code notBeforeMillis}, else null. */
+    synchronized byte[] get( String key, long notBeforeMillis )
+    {
+        if ( successor != null ) return successor.get( key, notBeforeMillis );
+        byte[] keyBytes = key.getBytes( StandardCharsets.UTF_8 );
+        int offset = find( PersonaFingerprint.hash( keyBytes ), keyBytes );
+        if ( offset == 0 || writtenAt( offset ) < notBeforeMillis ) return null;
+        int keyLength = keyBytes.length;
+        byte[] value = new byte[buffer.getInt( offset ) - BODY_FIXED_BYTES - keyLength];
+        buffer.get( offset + RECORD_HEADER_BYTES + BODY_FIXED_BYTES + keyLength, value );
+        return value;
+    }
+
+    /**
+     * Appends the record and points the key at it.
+     *
+     * @return false when the log is full; nothing is written then
+     */
+    synchronized boolean put( String key, byte[] value, long writtenAtMillis )
+    {
+        if ( successor != null ) return successor.put( key, value, writtenAtMillis );
+        byte[] keyBytes = key.getBytes( StandardCharsets.UTF_8 );
+        if ( keyBytes.length > 0xffff ) throw new IllegalArgumentException( "Key too long: " + key );
+        int length = BODY_FIXED_BYTES + keyBytes.length + value.length;
+        if ( (long) end + RECORD_HEADER_BYTES + length > buffer.capacity() ) return false;
+
+        int position = end;
+        int body = position + RECORD_HEADER_BYTES;
+        buffer.putLong( body, writtenAtMillis );
+        buffer.putShort( body + 8, (short) keyBytes.length );
+        buffer.put( body + BODY_FIXED_BYTES, keyBytes );
+        buffer.put( body + BODY_FIXED_BYTES + keyBytes.length, value );
+        CRC32 crc = new CRC32();
+        crc.update( buffer.slice( body, length ) );
+        buffer.putInt( position + 4, (int) crc.getValue() );
+        // Length last: a crash before this point leaves a record the next scan ignores.
+        buffer.putInt( position, length );
+
+        end = body + length;
+        index( PersonaFingerprint.hash( keyBytes ), position, length );
+        return true;
+    }
+
+    /**
+     * Copies the live records written at or after {@code notBeforeMillis} into a new file and moves it
+     * over this one. Appends keep going during the bulk copy; the ones that arrived meanwhile are
+     * carried over at the end, after which this log forwards to the returned one.
+     */
+    ResultLog compact( long notBeforeMillis ) throws IOException
+    {
+        int snapshotEnd;
+        int[] live;
+        synchronized ( this ) {
+            snapshotEnd = end;
+            live = liveOffsets( 0, snapshotEnd );
+        }
+
+        Path tmp = Files.createTempFile( path.toAbsolutePath().getParent(), path.getFileName().toString(), ".compact" );
+        try {
+            Files.delete( tmp );
+            ResultLog target = new ResultLog( path, map( tmp, buffer.capacity() ) );
+            target.scan();
+            copy( live, notBeforeMillis, target );
+
+            synchronized ( this ) {
+                copy( liveOffsets( snapshotEnd, end ), notBeforeMillis, target );
+                target.buffer.force();
+                Files.move( tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+                successor = target;
+            }
+            return target;
+        } finally {
+            Files.deleteIfExists( tmp );
+        }
+    }
+
+    void force()
+    {
+        buffer.force();
+    }
+
+    private void copy( int[] live, long notBeforeMillis, ResultLog target )
+    {
+        for ( int offset : live ) {
+            if ( writtenAt( offset ) < notBeforeMillis ) continue;
+            int length = buffer.getInt( offset );
+            int keyLength = buffer.getShort( offset + RECORD_HEADER_BYTES + 8 ) & 0xffff;
+            byte[] key = new byte[keyLength];
+            byte[] value = new byte[length - BODY_FIXED_BYTES - keyLength];
+            buffer.get( offset + RECORD_HEADER_BYTES + BODY_FIXED_BYTES, key );
+            buffer.get( offset + RECORD_HEADER_BYTES + BODY_FIXED_BYTES + keyLength, value );
+            target.put( new String( key, StandardCharsets.UTF_8 ), value, writtenAt( offset ) );
+        }
+    }
+
+    /** Offsets the index points at within [from, to), in file order. Caller holds the lock. */
+    private int[] liveOffsets( int from, int to )
+    {
+        int[] live = new int[entries];
+        int count = 0;
+        for ( int offset : offsets ) {
+            if ( offset != 0 && offset >= from && offset < to ) live[count++] = offset;
+        }
+        live = Arrays.copyOf( live, count );
+        Arrays.sort( live );
+        return live;
+    }
+
+    private long writtenAt( int offset )
+    {
+        return buffer.getLong( offset + RECORD_HEADER_BYTES );
+    }
+
+    private long hash( int offset )
+    {
+        int keyLength = buffer.getShort( offset + RECORD_HEADER_BYTES + 8 ) & 0xffff;
+        byte[] key = new byte[keyLength];
+        buffer.get( offset + RECORD_HEADER_BYTES + BODY_FIXED_BYTES, key );
+        return PersonaFingerprint.hash( key );
+    }
+
+    private boolean keyEquals( int offset, byte[] key )
+    {
+        if ( ( buffer.getShort( offset + RECORD_HEADER_BYTES + 8 ) & 0xffff ) != key.length ) return false;
+        int start = offset + RECORD_HEADER_BYTES + BODY_FIXED_BYTES;
+        for ( int i = 0; i < key.length; i++ ) {
+            if ( buffer.get( start + i ) != key[i] ) return false;
+        }
+        return true;
+    }
+
+    private int find( long hash, byte[] key )
+    {
+        int mask = hashes.length - 1;
+        for ( int slot = (int) hash & mask; offsets[slot] != 0; slot = ( slot + 1 ) & mask ) {
+            if ( hashes[slot] == hash && keyEquals( offsets[slot], key ) ) return offsets[slot];
+        }
+        return 0;
+    }
+
+    /** Points the record's key at {@code offset}; a previous record for the key becomes dead. */
+    private void index( long hash, int offset, int length )
+    {
+        int mask = hashes.length - 1;
+        int slot = (int) hash & mask;
+        for ( ; offsets[slot] != 0; slot = ( slot + 1 ) & mask ) {
+            int existing = offsets[slot];
+            if ( hashes[slot] == hash && sameKey( existing, offset ) ) {
+                deadBytes += RECORD_HEADER_BYTES + buffer.getInt( existing );
+                offsets[slot] = offset;
+                return;
+            }
+        }
+        hashes[slot] = hash;
+        offsets[slot] = offset;
+        if ( ++entries * 2 > hashes.length ) grow();
+    }
+
+    private boolean sameKey( int a, int b )
+    {
+        int keyLength = buffer.getShort( b + RECORD_HEADER_BYTES + 8 ) & 0xffff;
+        byte[] key = new byte[keyLength];
+        buffer.get( b + RECORD_HEADER_BYTES + BODY_FIXED_BYTES, key );
+        return keyEquals( a, key );
+    }
+
+    private void grow()
+    {
+        long[] oldHashes = hashes;
+        int[] oldOffsets = offsets;
+        hashes = new long[oldHashes.length * 2];
+        offsets = new int[oldOffsets.length * 2];
+        int mask = hashes.length - 1;
+        for ( int i = 0; i < oldOffsets.length; i++ ) {
+            if ( oldOffsets[i] == 0 ) continue;
+            int slot = (int) oldHashes[i] & mask;
+            while ( offsets[slot] != 0 ) slot = ( slot + 1 ) & mask;
+            hashes[slot] = oldHashes[i];
+            offsets[slot] = oldOffsets[i];
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package neurosnap.service;
+
+import java.util.Set;
+
+/**
+ * Published by {@link RulesReaderService#reload()} for each rule set whose content changed, so derived
+ * results can be invalidated row by row instead of all at once.
+ *
+ * @param ruleSet     rule set name ({@link RulesReaderService#DEFAULT_RULE_SET} or a tenant slug)
+ * @param changedRows rows that were added, removed or edited, as {@code <Sheet>/<key>}
+ *                    (e.g. {@code PaymentHistory/IRREGULAR}, {@code APR/PRIME}, {@code Formulas/baseApr})
+ */
+public record RulesChangedEvent( String ruleSet, Set<String> changedRows ) {}
@@ -1,37 +1,243 @@
 package neurosnap.service;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import lombok.extern.slf4j.Slf4j;
 import neurosnap.dto.rules.AprScoreRule;
 import neurosnap.dto.rules.ConfidenceRule;
 import neurosnap.dto.rules.GoalRule;
 import neurosnap.dto.rules.IncomeRule;
 import neurosnap.dto.rules.PaymentHistoryRule;
+import neurosnap.dto.rules.RuleSet;
+import neurosnap.util.CompiledFormula;
+import neurosnap.util.FormulaCompiler;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+/**
+ * Loads refinance rules from Excel workbooks.
+ *
+ * - The global rule set comes from rules.xlsx and is loaded at startup.
+ * - Tenant (bank) rule sets are resolved by Persona.bankName and loaded lazily on first use
+ *   from {@code <tenant-dir>/<slug>.xlsx} or classpath {@code rules/<slug>.xlsx}, where slug is the
+ *   lower-cased bank name with non-alphanumerics replaced by '-'. Banks without their own
+ *   workbook use the global rule set.
+ * - Loaded rule sets are kept in a bounded LRU cache; each workbook is parsed and compiled once.
+ * - An optional "Formulas" sheet (Name | Expression) holds pricing expressions such as baseApr and
+ *   confidence; see {@link FormulaCompiler} for the syntax. A formula that does not compile fails the load.
+ * - {@link #reload()} re-reads the global and cached tenant workbooks and publishes a
+ *   {@link RulesChangedEvent} per rule set with the rows that differ.
+ */
+@Slf4j
 @Service
 public class RulesReaderService
 {
-    private Map<String, GoalRule> goalRules = new HashMap<>();
-    private Map<String, ConfidenceRule> confidenceRules = new HashMap<>();
-    private Map<String, IncomeRule> incomeRules = new HashMap<>();
+    public static final String DEFAULT_RULE_SET = "default";
 
-    private Map<String, PaymentHistoryRule> paymentHistoryRules = new HashMap<>();
+    private final ObjectMapper mapper = new ObjectMapper();
 
-    private Map<String, AprScoreRule> aprScoreRules = new HashMap<>();
+    private final ApplicationEventPublisher eventPublisher;
+    private final String tenantDir;
+
+    /** Tenant slug -> rule set (possibly still loading). Access-ordered for LRU eviction; guarded by itself. */
+    private final Map<String, CompletableFuture<RuleSet>> tenantRuleSets;
+
+    private volatile RuleSet globalRuleSet;
+
+    public RulesReaderService( ApplicationEventPublisher eventPublisher,
+            @Value( "${neurosnap.rules.tenant-dir:}" ) String tenantDir,
+            @Value( "${neurosnap.rules.tenant-cache-size:32}" ) int tenantCacheSize )
+    {
+        this.eventPublisher = eventPublisher;
+        this.tenantDir = tenantDir;
+        this.tenantRuleSets = new LinkedHashMap<>( 16, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, CompletableFuture<RuleSet>> eldest )
+            {
+                return size() > tenantCacheSize;
+            }
+        };
+    }
 
     @PostConstruct
     public void loadRules() throws Exception {
         String rulesFile = "rules.xlsx";
-        try (InputStream is = PersonaReaderService.class.getClassLoader().getResourceAsStream(rulesFile);
-             Workbook workbook = WorkbookFactory.create(is))
+        try (InputStream is = PersonaReaderService.class.getClassLoader().getResourceAsStream(rulesFile))
+        {
+            globalRuleSet = readRuleSet( DEFAULT_RULE_SET, is );
+        }
+    }
+
+    /**
+     * Re-reads the global workbook and every cached tenant workbook, swaps them in and publishes a
+     * {@link RulesChangedEvent} for each rule set whose rows changed. A workbook that no longer loads
+     * keeps its previous rules.
+     *
+     * @return number of rule sets that changed
+     */
+    public synchronized int reload() throws Exception
+    {
+        int changed = 0;
+        RuleSet previousGlobal = globalRuleSet;
+        try ( InputStream is = PersonaReaderService.class.getClassLoader().getResourceAsStream( "rules.xlsx" ) ) {
+            globalRuleSet = readRuleSet( DEFAULT_RULE_SET, is );
+        }
+        if ( publishChanges( DEFAULT_RULE_SET, previousGlobal, globalRuleSet ) ) changed++;
+
+        Map<String, CompletableFuture<RuleSet>> cached;
+        synchronized ( tenantRuleSets ) {
+            cached = new LinkedHashMap<>( tenantRuleSets );
+        }
+        for ( Map.Entry<String, CompletableFuture<RuleSet>> entry : cached.entrySet() ) {
+            RuleSet previous = entry.getValue().getNow( null );
+            if ( previous == null ) continue; // still loading, it reads the current workbook
+            RuleSet fresh;
+            try {
+                fresh = loadTenant( entry.getKey() );
+            } catch ( Exception e ) {
+                log.error( "Could not reload rules for tenant {}, keeping the loaded ones", entry.getKey(), e );
+                continue;
+            }
+            synchronized ( tenantRuleSets ) {
+                tenantRuleSets.replace( entry.getKey(), entry.getValue(), CompletableFuture.completedFuture( fresh ) );
+            }
+            // Tenants without a workbook resolve to the global rule set, which was diffed above.
+            if ( !entry.getKey().equals( fresh.getName() ) && !entry.getKey().equals( previous.getName() ) ) continue;
+            if ( publishChanges( entry.getKey(), previous, fresh ) ) changed++;
+        }
+        return changed;
+    }
+
+    private boolean publishChanges( String name, RuleSet previous, RuleSet fresh )
+    {
+        if ( previous != null && previous.getVersion().equals( fresh.getVersion() ) && previous.getName().equals( fresh.getName() ) ) {
+            return false;
+        }
+        Map<String, String> before = previous == null ? Map.of() : rows( previous );
+        Map<String, String> after = rows( fresh );
+        Set<String> changedRows = new HashSet<>( before.keySet() );
+        changedRows.addAll( after.keySet() );
+        changedRows.removeIf( row -> before.containsKey( row ) && before.get( row ).equals( after.get( row ) ) );
+        if ( changedRows.isEmpty() ) return false;
+        log.info( "Rule set {} changed: {}", name, changedRows );
+        eventPublisher.publishEvent( new RulesChangedEvent( name, Set.copyOf( changedRows ) ) );
+        return true;
+    }
+
+    /** Row id ({@code <Sheet>/<key>}) -> row content, for diffing two versions of a rule set. */
+    private Map<String, String> rows( RuleSet ruleSet )
+    {
+        Map<String, String> rows = new TreeMap<>();
+        try {
+            for ( Map.Entry<String, GoalRule> e : ruleSet.getGoalRules().entrySet() ) {
+                rows.put( "PaymentGoal/" + e.getKey(), mapper.writeValueAsString( e.getValue() ) );
+            }
+            for ( Map.Entry<String, ConfidenceRule> e : ruleSet.getConfidenceRules().entrySet() ) {
+                rows.put( "ConfidenceScore/" + e.getKey(), mapper.writeValueAsString( e.getValue() ) );
+            }
+            for ( Map.Entry<String, IncomeRule> e : ruleSet.getIncomeRules().entrySet() ) {
+                rows.put( "Income/" + e.getKey(), mapper.writeValueAsString( e.getValue() ) );
+            }
+            for ( Map.Entry<String, PaymentHistoryRule> e : ruleSet.getPaymentHistoryRules().entrySet() ) {
+                rows.put( "PaymentHistory/" + e.getKey(), mapper.writeValueAsString( e.getValue() ) );
+            }
+            for ( Map.Entry<String, AprScoreRule> e : ruleSet.getAprScoreRules().entrySet() ) {
+                rows.put( "APR/" + e.getKey(), mapper.writeValueAsString( e.getValue() ) );
+            }
+        } catch ( Exception e ) {
+            throw new IllegalStateException( "Could not serialize rule set " + ruleSet.getName(), e );
+        }
+        for ( Map.Entry<String, CompiledFormula> e : ruleSet.getFormulas().entrySet() ) {
+            rows.put( "Formulas/" + e.getKey(), e.getValue().getSource() );
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the rule set for a lender, loading and compiling it on first use.
+     * Falls back to the global rule set when the bank has no workbook of its own.
+     */
+    public RuleSet getRuleSet( String bankName )
+    {
+        String slug = slug( bankName );
+        if ( slug.isEmpty() ) {
+            return globalRuleSet;
+        }
+
+        CompletableFuture<RuleSet> future;
+        boolean owner = false;
+        synchronized ( tenantRuleSets ) {
+            future = tenantRuleSets.get( slug );
+            if ( future == null ) {
+                future = new CompletableFuture<>();
+                tenantRuleSets.put( slug, future );
+                owner = true;
+            }
+        }
+
+        if ( owner ) {
+            try {
+                future.complete( loadTenant( slug ) );
+            } catch ( Exception e ) {
+                log.error( "Could not load rules for tenant {}, using global rules", slug, e );
+                synchronized ( tenantRuleSets ) {
+                    tenantRuleSets.remove( slug, future );
+                }
+                future.complete( globalRuleSet );
+            }
+        }
+        return future.join();
+    }
+
+    private RuleSet loadTenant( String slug ) throws Exception
+    {
+        if ( !tenantDir.isBlank() ) {
+            Path file = Path.of( tenantDir, slug + ".xlsx" );
+            if ( Files.isRegularFile( file ) ) {
+                try ( InputStream is = Files.newInputStream( file ) ) {
+                    return readRuleSet( slug, is );
+                }
+            }
+        }
+        try ( InputStream is = PersonaReaderService.class.getClassLoader().getResourceAsStream( "rules/" + slug + ".xlsx" ) ) {
+            if ( is != null ) {
+                return readRuleSet( slug, is );
+            }
+        }
+        return globalRuleSet;
+    }
+
+    private RuleSet readRuleSet( String name, InputStream is ) throws Exception
+    {
+        Map<String, GoalRule> goalRules = new HashMap<>();
+        Map<String, ConfidenceRule> confidenceRules = new HashMap<>();
+        Map<String, IncomeRule> incomeRules = new HashMap<>();
+        Map<String, PaymentHistoryRule> paymentHistoryRules = new HashMap<>();
+        Map<String, AprScoreRule> aprScoreRules = new HashMap<>();
+        Map<String, CompiledFormula> formulas = new HashMap<>();
+        StringBuilder formulaSources = new StringBuilder();
+
+        try (Workbook workbook = WorkbookFactory.create(is))
         {
 
             // Sheet 1: Goal vs Tenure
@@ -85,39 +291,76 @@ public class RulesReaderService
                 rule.setMaxApr(row.getCell(4).getNumericCellValue());
                 aprScoreRules.put( rule.getTier().toString(), rule );
             }
+
+            // Optional Sheet 6: Formulas, compiled to lambdas here so requests never parse them.
+            Sheet formulaSheet = workbook.getSheet("Formulas");
+            if (formulaSheet != null) {
+                for (Row row : formulaSheet) {
+                    if (row.getRowNum() == 0 || row.getCell(0) == null || row.getCell(1) == null) continue;
+                    String formulaName = row.getCell(0).getStringCellValue().trim();
+                    String expression = row.getCell(1).getStringCellValue().trim();
+                    if (formulaName.isEmpty()) continue;
+                    formulas.put(formulaName, FormulaCompiler.compile(expression));
+                    formulaSources.append(formulaName).append('=').append(expression).append('\n');
+                }
+            }
         }
+
+        // Compile once: the prompt form of the rules and a content version.
+        String rulesJson = mapper.writeValueAsString(incomeRules) + mapper.writeValueAsString(paymentHistoryRules)
+                + mapper.writeValueAsString(confidenceRules) + mapper.writeValueAsString(aprScoreRules);
+        log.info( "Loaded rule set {} with formulas {}", name, formulas.keySet() );
+        return new RuleSet( name, goalRules, confidenceRules, incomeRules, paymentHistoryRules, aprScoreRules,
+                formulas, rulesJson, version( rulesJson + formulaSources ) );
+    }
+
+    private static String version( String rulesJson ) throws Exception
+    {
+        byte[] digest = MessageDigest.getInstance( "SHA-256" ).digest( rulesJson.getBytes( StandardCharsets.UTF_8 ) );
+        return HexFormat.of().formatHex( digest, 0, 6 );
+    }
+
+    /** Tenant slug for a bank name (also the name of its rule set, when it has a workbook); empty for none. */
+    static String slug( String bankName )
+    {
+        if ( bankName == null ) return "";
+        return bankName.trim().toLowerCase().replaceAll( "[^a-z0-9]+", "-" ).replaceAll( "(^-|-$)", "" );
+    }
+
+    public RuleSet getGlobalRuleSet() {
+        return globalRuleSet;
     }
 
     public GoalRule getGoalRule(String goal) {
-        return goalRules.get(goal);
+        return globalRuleSet.getGoalRules().get(goal);
     }
 
     public ConfidenceRule getConfidenceRules(String confidence) {
-        return confidenceRules.get( confidence );
+        return globalRuleSet.getConfidenceRules().get( confidence );
     }
 
     public IncomeRule getIncomeRule(String incomeBand) {
-        return incomeRules.get(incomeBand);
+        return globalRuleSet.getIncomeRules().get(incomeBand);
     }
 
     public PaymentHistoryRule getPaymentHistoryRule(String paymentHistory) {
-        return paymentHistoryRules.get( paymentHistory );
+        return globalRuleSet.getPaymentHistoryRules().get( paymentHistory );
     }
 
     public Map<String, IncomeRule> getIncomeRules(){
-        return this.incomeRules;
+        return globalRuleSet.getIncomeRules();
     }
 
     public Map<String, ConfidenceRule> getConfidenceRules(){
-        return this.confidenceRules;
+        return globalRuleSet.getConfidenceRules();
     }
 
     public Map<String, PaymentHistoryRule> getPaymentHistoryRules(){
-        return this.paymentHistoryRules;
+        return globalRuleSet.getPaymentHistoryRules();
     }
 
     public Map<String, AprScoreRule> getAprScoreRules(){
-        return this.aprScoreRules;
+        return globalRuleSet.getAprScoreRules();
     }
 
 }
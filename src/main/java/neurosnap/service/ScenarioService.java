@@ -0,0 +1,137 @@
+package neurosnap.service;
+
+import neurosnap.dto.ScenarioRequest;
+import neurosnap.dto.ScenarioResponse;
+import neurosnap.util.ScenarioCalculator;
+import org.apache.coyote.BadRequestException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Prepayment / what-if analysis for one base plan and many scenarios in a single call.
+ *
+ * Notes:
+ * - Every scenario is validated before any is computed: the resulting tenure must be 1..360 months,
+ *   rate changes and prepayments finite, prepayments non-negative and the prepayment month within the
+ *   resulting tenure (0 = none).
+ * - The work of a call is bounded by the total number of simulated months across scenarios, not only
+ *   by the scenario count.
+ */
+@Service
+public class ScenarioService
+{
+    private static final int MAX_SCENARIOS = 100_000;
+    private static final int MAX_TENURE = 360;
+    /** Upper bound on the sum of resulting tenures over all scenarios of one call. */
+    private static final long MAX_SCENARIO_MONTHS = 10_000_000;
+
+    public ScenarioResponse evaluate( ScenarioRequest request ) throws BadRequestException
+    {
+        if ( request.getPrincipal() <= 0 ) {
+            throw new BadRequestException( "principal must be greater than 0." );
+        }
+        if ( !Double.isFinite( request.getPrincipal() ) ) {
+            throw new BadRequestException( "principal must be a finite number." );
+        }
+        if ( request.getAnnualRate() < 0 || !Double.isFinite( request.getAnnualRate() ) ) {
+            throw new BadRequestException( "annualRate must not be negative." );
+        }
+        if ( request.getTenure() < 1 || request.getTenure() > 360 ) {
+            throw new BadRequestException( "Tenure must be between 1 and 360 months." );
+        }
+
+        int count = scenarioCount( request );
+        double[] rateDeltas = request.getRateDeltas() != null ? request.getRateDeltas() : new double[count];
+        int[] tenureDeltas = request.getTenureDeltas() != null ? request.getTenureDeltas() : new int[count];
+        double[] extraPayments = request.getExtraPayments() != null ? request.getExtraPayments() : new double[count];
+        int[] extraPaymentMonths = request.getExtraPaymentMonths() != null ? request.getExtraPaymentMonths() : new int[count];
+        validateScenarios( request, rateDeltas, tenureDeltas, extraPayments, extraPaymentMonths );
+
+        long start = System.nanoTime();
+
+        // Index 0 of the base run is the unchanged plan.
+        double[] baseEmi = new double[1];
+        double[] baseInterest = new double[1];
+        ScenarioCalculator.compute( request.getPrincipal(), request.getAnnualRate(), request.getTenure(),
+                new double[1], new int[1], new double[1], new int[1], baseEmi, new int[1], baseInterest );
+
+        double[] emi = new double[count];
+        int[] tenure = new int[count];
+        double[] totalInterest = new double[count];
+        ScenarioCalculator.compute( request.getPrincipal(), request.getAnnualRate(), request.getTenure(),
+                rateDeltas, tenureDeltas, extraPayments, extraPaymentMonths, emi, tenure, totalInterest );
+
+        double[] savings = new double[count];
+        for ( int i = 0; i < count; i++ ) {
+            emi[i] = round2( emi[i] );
+            savings[i] = round2( baseInterest[0] - totalInterest[i] );
+            totalInterest[i] = round2( totalInterest[i] );
+        }
+
+        return ScenarioResponse.builder()
+                .baseEmi( round2( baseEmi[0] ) )
+                .baseTotalInterest( round2( baseInterest[0] ) )
+                .count( count )
+                .emi( emi )
+                .tenure( tenure )
+                .totalInterest( totalInterest )
+                .savings( savings )
+                .elapsedMicros( ( System.nanoTime() - start ) / 1_000 )
+                .build();
+    }
+
+    private int scenarioCount( ScenarioRequest request ) throws BadRequestException
+    {
+        int count = -1;
+        int[] lengths = {
+                request.getRateDeltas() != null ? request.getRateDeltas().length : -1,
+                request.getTenureDeltas() != null ? request.getTenureDeltas().length : -1,
+                request.getExtraPayments() != null ? request.getExtraPayments().length : -1,
+                request.getExtraPaymentMonths() != null ? request.getExtraPaymentMonths().length : -1 };
+        for ( int length : lengths ) {
+            if ( length < 0 ) continue;
+            if ( count >= 0 && length != count ) {
+                throw new BadRequestException( "All scenario arrays must have the same length." );
+            }
+            count = length;
+        }
+        if ( count <= 0 ) {
+            throw new BadRequestException( "At least one scenario is required." );
+        }
+        if ( count > MAX_SCENARIOS ) {
+            throw new BadRequestException( "At most " + MAX_SCENARIOS + " scenarios per call." );
+        }
+        return count;
+    }
+
+    private static void validateScenarios( ScenarioRequest request, double[] rateDeltas, int[] tenureDeltas,
+            double[] extraPayments, int[] extraPaymentMonths ) throws BadRequestException
+    {
+        long totalMonths = 0;
+        for ( int i = 0; i < tenureDeltas.length; i++ ) {
+            long months = (long) request.getTenure() + tenureDeltas[i];
+            if ( months < 1 || months > MAX_TENURE ) {
+                throw new BadRequestException( "Scenario " + i + ": tenure + tenureDelta must be between 1 and "
+                        + MAX_TENURE + " months." );
+            }
+            if ( !Double.isFinite( rateDeltas[i] ) ) {
+                throw new BadRequestException( "Scenario " + i + ": rateDelta must be a finite number." );
+            }
+            if ( !Double.isFinite( extraPayments[i] ) || extraPayments[i] < 0 ) {
+                throw new BadRequestException( "Scenario " + i + ": extraPayment must be a finite, non-negative amount." );
+            }
+            if ( extraPaymentMonths[i] < 0 || extraPaymentMonths[i] > months ) {
+                throw new BadRequestException( "Scenario " + i + ": extraPaymentMonth must be between 0 and " + months + "." );
+            }
+            totalMonths += months;
+        }
+        if ( totalMonths > MAX_SCENARIO_MONTHS ) {
+            throw new BadRequestException( "Scenarios cover " + totalMonths + " months in total; at most "
+                    + MAX_SCENARIO_MONTHS + " per call." );
+        }
+    }
+
+    private static double round2( double v )
+    {
+        return Math.round( v * 100.0 ) / 100.0;
+    }
+}
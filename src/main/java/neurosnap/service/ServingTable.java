@@ -0,0 +1,322 @@
+package neurosnap.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import neurosnap.util.PersonaFingerprint;
+
+/**
+ * Read-only, memory-mapped key → bytes table written by {@link PrecomputeService}.
+ *
+ * File layout (big-endian):
+ * <pre>
+ *   header   int magic, int format, int entries, int slots (power of two)
+ *   slots    slots × (long keyHash, int recordOffset); offset -1 = empty, linear probing
+ *   records  short keyLength, key bytes (UTF-8), int valueLength, value bytes
+ * </pre>
+ * A lookup hashes the key, probes the slot array and compares key bytes in place; only the
+ * value is copied out. Tables are built from a {@link Builder} spool into a temp file and moved into
+ * place atomically.
+ */
+final class ServingTable
+{
+    private static final int MAGIC = 0x4e535254; // "NSRT"
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int SLOT_BYTES = 12;
+
+    private final MappedByteBuffer buffer;
+    private final int entries;
+    private final int mask;
+
+    private ServingTable( MappedByteBuffer buffer )
+    {
+        if ( buffer.getInt( 0 ) != MAGIC || buffer.getInt( 4 ) != FORMAT ) {
+            throw new IllegalStateException( "Not a serving table (format " + FORMAT + ")" );
+        }
+        this.buffer = buffer;
+        this.entries = buffer.getInt( 8 );
+        this.mask = buffer.getInt( 12 ) - 1;
+    }
+
+    static ServingTable open( Path path ) throws IOException
+    {
+        try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) ) {
+            return new ServingTable( channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() ) );
+        }
+    }
+
+    int size()
+    {
+        return entries;
+    }
+
+    /** Value bytes for the key, or null. */
+    byte[] get( String key )
+    {
+        byte[] keyBytes = key.getBytes( StandardCharsets.UTF_8 );
+        long hash = PersonaFingerprint.hash( keyBytes );
+        for ( int slot = (int) hash & mask, probes = 0; probes <= mask; slot = ( slot + 1 ) & mask, probes++ ) {
+            int slotPosition = HEADER_BYTES + slot * SLOT_BYTES;
+            int offset = buffer.getInt( slotPosition + 8 );
+            if ( offset < 0 ) return null;
+            if ( buffer.getLong( slotPosition ) != hash || !keyEquals( offset, keyBytes ) ) continue;
+
+            int valuePosition = offset + 2 + keyBytes.length;
+            byte[] value = new byte[buffer.getInt( valuePosition )];
+            buffer.get( valuePosition + 4, value );
+            return value;
+        }
+        return null;
+    }
+
+    private boolean keyEquals( int offset, byte[] keyBytes )
+    {
+        if ( ( buffer.getShort( offset ) & 0xffff ) != keyBytes.length ) return false;
+        for ( int i = 0; i < keyBytes.length; i++ ) {
+            if ( buffer.get( offset + 2 + i ) != keyBytes[i] ) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Spool of finished rows for the next table, so a run never holds its answers on the heap.
+     *
+     * Rows are appended to the spool file in the table's record format as they finish; only each row's
+     * key hash, spool position and length stay in memory. {@link #install} then writes header and slots
+     * and copies the records behind them. The spool outlives a failed or interrupted run: the next
+     * {@link #open} reads it back (dropping a torn last record) and {@link #contains} lets that run skip
+     * rows it already has. Rows the new run neither wrote nor asked for are left out of the table.
+     */
+    static final class Builder implements Closeable
+    {
+        private final Path path;
+        private final FileChannel channel;
+        private final int resumed;
+
+        private long[] hashes = new long[1024];
+        private long[] positions = new long[1024];
+        private int[] lengths = new int[1024];
+        private int rows;
+        private long end;
+
+        /** Row index by key hash, open addressing with linear probing; -1 = empty. */
+        private int[] index = new int[2048];
+
+        /** Rows written or confirmed by the current run; the only ones installed. */
+        private final BitSet current = new BitSet();
+
+        private Builder( Path path, FileChannel channel ) throws IOException
+        {
+            this.path = path;
+            this.channel = channel;
+            Arrays.fill( index, -1 );
+            this.resumed = recover();
+        }
+
+        /** Opens the spool at {@code path}, keeping the rows a previous run left in it. */
+        static Builder open( Path path ) throws IOException
+        {
+            Files.createDirectories( path.toAbsolutePath().getParent() );
+            FileChannel channel = FileChannel.open( path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE );
+            try {
+                return new Builder( path, channel );
+            } catch ( IOException | RuntimeException e ) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /** Rows read back from a previous run's spool. */
+        int resumed()
+        {
+            return resumed;
+        }
+
+        /** Rows that {@link #install} would write. */
+        synchronized int size()
+        {
+            return current.cardinality();
+        }
+
+        /** Whether the spool already holds {@code key}; if so the row is kept for this run. */
+        synchronized boolean contains( String key ) throws IOException
+        {
+            byte[] keyBytes = key.getBytes( StandardCharsets.UTF_8 );
+            long hash = PersonaFingerprint.hash( keyBytes );
+            int mask = index.length - 1;
+            for ( int slot = (int) hash & mask; index[slot] >= 0; slot = ( slot + 1 ) & mask ) {
+                int row = index[slot];
+                if ( hashes[row] == hash && keyEquals( row, keyBytes ) ) {
+                    current.set( row );
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Appends one finished row. */
+        synchronized void put( String key, byte[] value ) throws IOException
+        {
+            byte[] keyBytes = key.getBytes( StandardCharsets.UTF_8 );
+            if ( keyBytes.length > 0xffff ) {
+                throw new IOException( "Key too long: " + key );
+            }
+            ByteBuffer record = ByteBuffer.allocate( 2 + keyBytes.length + 4 + value.length );
+            record.putShort( (short) keyBytes.length ).put( keyBytes ).putInt( value.length ).put( value ).flip();
+            long position = end;
+            while ( record.hasRemaining() ) {
+                position += channel.write( record, position );
+            }
+            current.set( add( PersonaFingerprint.hash( keyBytes ), end, record.capacity() ) );
+            end = position;
+        }
+
+        /**
+         * Writes this run's rows as a table at {@code table} (atomically replacing any existing one) and
+         * deletes the spool.
+         */
+        synchronized void install( Path table ) throws IOException
+        {
+            int entries = current.cardinality();
+            int slots = Integer.highestOneBit( Math.max( 2, entries * 2 ) - 1 ) << 1;
+            long recordsStart = HEADER_BYTES + (long) slots * SLOT_BYTES;
+            long total = recordsStart;
+            for ( int row = current.nextSetBit( 0 ); row >= 0; row = current.nextSetBit( row + 1 ) ) {
+                total += lengths[row];
+            }
+            if ( total > Integer.MAX_VALUE ) {
+                throw new IOException( "Serving table too large: " + total + " bytes" );
+            }
+
+            Path dir = table.toAbsolutePath().getParent();
+            Files.createDirectories( dir );
+            Path tmp = Files.createTempFile( dir, table.getFileName().toString(), ".tmp" );
+            try {
+                try ( FileChannel out = FileChannel.open( tmp, StandardOpenOption.READ, StandardOpenOption.WRITE ) ) {
+                    MappedByteBuffer head = out.map( FileChannel.MapMode.READ_WRITE, 0, recordsStart );
+                    head.putInt( MAGIC ).putInt( FORMAT ).putInt( entries ).putInt( slots );
+                    for ( int i = 0; i < slots; i++ ) {
+                        head.putInt( HEADER_BYTES + i * SLOT_BYTES + 8, -1 );
+                    }
+
+                    int mask = slots - 1;
+                    long offset = recordsStart;
+                    for ( int row = current.nextSetBit( 0 ); row >= 0; row = current.nextSetBit( row + 1 ) ) {
+                        int slot = (int) hashes[row] & mask;
+                        while ( head.getInt( HEADER_BYTES + slot * SLOT_BYTES + 8 ) >= 0 ) {
+                            slot = ( slot + 1 ) & mask;
+                        }
+                        head.putLong( HEADER_BYTES + slot * SLOT_BYTES, hashes[row] );
+                        head.putInt( HEADER_BYTES + slot * SLOT_BYTES + 8, (int) offset );
+
+                        long copied = 0;
+                        while ( copied < lengths[row] ) {
+                            copied += channel.transferTo( positions[row] + copied, lengths[row] - copied, out.position( offset + copied ) );
+                        }
+                        offset += lengths[row];
+                    }
+                    head.force();
+                    out.force( true );
+                }
+                Files.move( tmp, table, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            } finally {
+                Files.deleteIfExists( tmp );
+            }
+            channel.close();
+            Files.deleteIfExists( path );
+        }
+
+        /** Closes the spool and keeps it for the next run (no-op after {@link #install}). */
+        @Override
+        public synchronized void close() throws IOException
+        {
+            channel.close();
+        }
+
+        /** Reads back complete records and cuts off a torn tail; returns the rows found. */
+        private int recover() throws IOException
+        {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate( 4 );
+            while ( end + 2 <= size ) {
+                header.clear().limit( 2 );
+                readFully( header, end );
+                int keyLength = header.getShort( 0 ) & 0xffff;
+                if ( end + 2 + keyLength + 4 > size ) break;
+                ByteBuffer key = ByteBuffer.allocate( keyLength );
+                readFully( key, end + 2 );
+                header.clear();
+                readFully( header, end + 2 + keyLength );
+                long length = 2L + keyLength + 4 + header.getInt( 0 );
+                if ( header.getInt( 0 ) < 0 || end + length > size ) break;
+                add( PersonaFingerprint.hash( key.array() ), end, (int) length );
+                end += length;
+            }
+            if ( end < size ) {
+                channel.truncate( end );
+            }
+            return rows;
+        }
+
+        private boolean keyEquals( int row, byte[] keyBytes ) throws IOException
+        {
+            if ( lengths[row] < 2 + keyBytes.length + 4 ) return false;
+            ByteBuffer stored = ByteBuffer.allocate( 2 + keyBytes.length );
+            readFully( stored, positions[row] );
+            return ( stored.getShort( 0 ) & 0xffff ) == keyBytes.length
+                    && Arrays.equals( stored.array(), 2, stored.capacity(), keyBytes, 0, keyBytes.length );
+        }
+
+        private void readFully( ByteBuffer buffer, long position ) throws IOException
+        {
+            while ( buffer.hasRemaining() ) {
+                if ( channel.read( buffer, position + buffer.position() ) < 0 ) {
+                    throw new IOException( "Unexpected end of spool " + path );
+                }
+            }
+        }
+
+        private int add( long hash, long position, int length )
+        {
+            if ( rows == hashes.length ) {
+                hashes = Arrays.copyOf( hashes, rows * 2 );
+                positions = Arrays.copyOf( positions, rows * 2 );
+                lengths = Arrays.copyOf( lengths, rows * 2 );
+            }
+            int row = rows++;
+            hashes[row] = hash;
+            positions[row] = position;
+            lengths[row] = length;
+            if ( rows * 2 > index.length ) {
+                index = new int[index.length * 2];
+                Arrays.fill( index, -1 );
+                for ( int r = 0; r < rows; r++ ) {
+                    place( r );
+                }
+            } else {
+                place( row );
+            }
+            return row;
+        }
+
+        private void place( int row )
+        {
+            int mask = index.length - 1;
+            int slot = (int) hashes[row] & mask;
+            while ( index[slot] >= 0 ) {
+                slot = ( slot + 1 ) & mask;
+            }
+            index[slot] = row;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package neurosnap.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.context.ContextSnapshotFactory;
+import jakarta.annotation.PreDestroy;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import neurosnap.client.LlmLane;
+import neurosnap.dto.Persona;
+import neurosnap.dto.RecommendOptionsResponse;
+import neurosnap.dto.RecommendRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Speculative precomputation of /recommend results for a persona the UI is about to use.
+ *
+ * A "warm" call for a persona-id schedules background computations for the likely requests
+ * (minimumRefinanceAmt and rounded variants × tenure 6 and 12). Results sit in a short-lived
+ * store that /recommend checks once its result cache and persistent store have missed; a hit is
+ * consumed once.
+ *
+ * Budget rules, so speculation never competes with live traffic:
+ * - a small dedicated pool of low-priority daemon threads with a bounded queue (overflow is dropped),
+ * - a task only starts while live in-flight requests are below {@code live-load-ratio} of the admission limit.
+ *
+ * Runs on platform threads: the service targets Java 17, where virtual threads are not available.
+ */
+@Slf4j
+@Service
+public class SpeculativePrefetchService
+{
+    private static final int[] LIKELY_TENURES = { 6, 12 };
+
+    private final RecommendationService recommendationService;
+    private final PersonaReaderService personaReaderService;
+    private final AdmissionControlService admissionControlService;
+    private final ContextSnapshotFactory contextSnapshotFactory;
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final double liveLoadRatio;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Entry> store = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter tasksCompleted;
+    private final Counter tasksSkipped;
+
+    public SpeculativePrefetchService( RecommendationService recommendationService,
+            PersonaReaderService personaReaderService,
+            AdmissionControlService admissionControlService,
+            MeterRegistry meterRegistry,
+            ContextSnapshotFactory contextSnapshotFactory,
+            @Value( "${neurosnap.prefetch.threads:2}" ) int threads,
+            @Value( "${neurosnap.prefetch.queue-size:32}" ) int queueSize,
+            @Value( "${neurosnap.prefetch.ttl-seconds:300}" ) long ttlSeconds,
+            @Value( "${neurosnap.prefetch.max-entries:2000}" ) int maxEntries,
+            @Value( "${neurosnap.prefetch.live-load-ratio:0.5}" ) double liveLoadRatio )
+    {
+        this.recommendationService = recommendationService;
+        this.personaReaderService = personaReaderService;
+        this.admissionControlService = admissionControlService;
+        this.contextSnapshotFactory = contextSnapshotFactory;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos( ttlSeconds );
+        this.maxEntries = maxEntries;
+        this.liveLoadRatio = liveLoadRatio;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor( threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>( queueSize ),
+                r -> {
+                    Thread t = new Thread( r, "prefetch-" + threadCount.incrementAndGet() );
+                    t.setDaemon( true );
+                    t.setPriority( Thread.MIN_PRIORITY );
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy() );
+        this.executor.allowCoreThreadTimeOut( true );
+
+        this.hits = meterRegistry.counter( "neurosnap.prefetch.lookups", "result", "hit" );
+        this.misses = meterRegistry.counter( "neurosnap.prefetch.lookups", "result", "miss" );
+        this.tasksCompleted = meterRegistry.counter( "neurosnap.prefetch.tasks", "result", "completed" );
+        this.tasksSkipped = meterRegistry.counter( "neurosnap.prefetch.tasks", "result", "skipped" );
+        Gauge.builder( "neurosnap.prefetch.hit.ratio", this, SpeculativePrefetchService::getHitRatio )
+                .description( "Share of /recommend lookups answered from speculative results" )
+                .register( meterRegistry );
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Schedules speculative computations for the persona's likely requests.
+     *
+     * @return number of computations scheduled (0 when the persona is unknown/ineligible or the budget is used up)
+     */
+    public int warm( String personaId ) throws Exception
+    {
+        Persona persona = personaReaderService.getPersona( personaId ).get();
+        if ( persona.getExistingPendingAmount() > persona.getExistingLoanAmount() / 2 ) {
+            return 0; // /recommend would reject it anyway
+        }
+
+        evictExpired();
+        int scheduled = 0;
+        for ( long amount : likelyAmounts( persona ) ) {
+            for ( int tenure : LIKELY_TENURES ) {
+                RecommendRequest request = RecommendRequest.builder()
+                        .loanAmount( amount )
+                        .tenure( tenure )
+                        .frequency( RecommendRequest.RepaymentFrequency.MONTHLY )
+                        .build();
+                if ( schedule( personaId, request ) ) scheduled++;
+            }
+        }
+        return scheduled;
+    }
+
+    /**
+     * Returns a speculative result for this exact request, waiting up to {@code maxWaitMillis}
+     * if the computation is still running. Returns null on a miss.
+     */
+    public RecommendOptionsResponse take( String personaId, RecommendRequest request, long maxWaitMillis )
+    {
+        Entry entry = store.remove( key( personaId, request ) );
+        if ( entry == null || entry.isExpired( System.nanoTime() ) ) {
+            misses.increment();
+            return null;
+        }
+        try {
+            RecommendOptionsResponse response = entry.future.get( maxWaitMillis, TimeUnit.MILLISECONDS );
+            hits.increment();
+            return response;
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        } catch ( ExecutionException | TimeoutException e ) {
+            // Speculation failed or is too slow; the live path computes normally.
+        }
+        misses.increment();
+        return null;
+    }
+
+    public double getHitRatio()
+    {
+        double lookups = hits.count() + misses.count();
+        return lookups == 0 ? 0 : hits.count() / lookups;
+    }
+
+    private boolean schedule( String personaId, RecommendRequest request )
+    {
+        String key = key( personaId, request );
+        if ( store.size() >= maxEntries || store.containsKey( key ) || !hasSpareCapacity() ) {
+            tasksSkipped.increment();
+            return false;
+        }
+
+        Entry entry = new Entry( System.nanoTime() + ttlNanos );
+        if ( store.putIfAbsent( key, entry ) != null ) {
+            return false;
+        }
+        try {
+            // Keep the /warm call's trace so speculative LLM calls show up under it.
+            executor.execute( contextSnapshotFactory.captureAll().wrap( () -> compute( key, entry, personaId, request ) ) );
+            return true;
+        } catch ( RejectedExecutionException e ) {
+            store.remove( key, entry );
+            tasksSkipped.increment();
+            return false;
+        }
+    }
+
+    private void compute( String key, Entry entry, String personaId, RecommendRequest request )
+    {
+        // Re-check at start: the queue may have waited while live traffic picked up.
+        if ( !hasSpareCapacity() ) {
+            store.remove( key, entry );
+            entry.future.cancel( false );
+            tasksSkipped.increment();
+            return;
+        }
+        try {
+            entry.future.complete( recommendationService.getRecommendations( request, personaId, LlmLane.SPECULATIVE ) );
+            tasksCompleted.increment();
+        } catch ( Exception e ) {
+            store.remove( key, entry );
+            entry.future.completeExceptionally( e );
+            log.debug( "Speculative computation failed for {}: {}", key, e.getMessage() );
+        }
+    }
+
+    private boolean hasSpareCapacity()
+    {
+        return admissionControlService.getInFlight() < admissionControlService.getConcurrencyLimit() * liveLoadRatio;
+    }
+
+    private void evictExpired()
+    {
+        long now = System.nanoTime();
+        store.values().removeIf( e -> e.isExpired( now ) );
+    }
+
+    /** minimumRefinanceAmt rounded up to whole dollars, to $100 and to $500, within the 300–5000 range. */
+    private Set<Long> likelyAmounts( Persona persona )
+    {
+        double min = persona.getMinimumRefinanceAmt();
+        Set<Long> amounts = new LinkedHashSet<>();
+        for ( long step : new long[] { 1, 100, 500 } ) {
+            long amount = (long) Math.ceil( min / step ) * step;
+            if ( amount >= 300 && amount <= 5000 ) amounts.add( amount );
+        }
+        return amounts;
+    }
+
+    private static String key( String personaId, RecommendRequest request )
+    {
+        RecommendRequest.RepaymentFrequency frequency = request.getFrequency() != null
+                ? request.getFrequency()
+                : RecommendRequest.RepaymentFrequency.MONTHLY;
+        return personaId + "|" + request.getLoanAmount() + "|" + request.getTenure() + "|" + frequency;
+    }
+
+    private static final class Entry
+    {
+        private final CompletableFuture<RecommendOptionsResponse> future = new CompletableFuture<>();
+        private final long expiresAtNanos;
+
+        private Entry( long expiresAtNanos )
+        {
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private boolean isExpired( long now )
+        {
+            return now - expiresAtNanos > 0;
+        }
+    }
+}
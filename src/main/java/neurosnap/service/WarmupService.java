@@ -0,0 +1,191 @@
+package neurosnap.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import neurosnap.dto.Persona;
+import neurosnap.dto.RecommendOptionsResponse;
+import neurosnap.dto.RecommendRequest;
+import neurosnap.util.MoneyKernel;
+import neurosnap.util.RefiInputValidator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+/**
+ * Start-up JIT warm-up, run before the instance reports ready.
+ *
+ * Each iteration drives the hot paths of a /recommend call with the LLM stubbed out:
+ * validation, persona lookup, rules/APR/prompt build, response decoding, plan verification
+ * and a JSON round trip of the response. Iterations run in rounds; warm-up stops once
+ * {@code stable-rounds} consecutive rounds have a mean latency within {@code tolerance}
+ * of the previous round (the JIT profile has settled), or when {@code max-seconds} is reached.
+ *
+ * Notes:
+ * - Readiness is REFUSING_TRAFFIC during warm-up and flipped to ACCEPTING_TRAFFIC afterwards.
+ * - Observations made by the warm-up thread itself are suppressed so no synthetic spans are exported;
+ *   requests served on other threads meanwhile are observed as usual. Plan verifier metrics are
+ *   suppressed on that thread the same way.
+ * - Each canned model answer is repaired once when the samples are built, so the iterations exercise the
+ *   verifier's clean path (the one real answers mostly take) instead of repairing the same figures every time.
+ * - Cold (first iteration) and warm (last round mean) latency are logged and published as gauges.
+ */
+@Slf4j
+@Service
+public class WarmupService
+{
+    private final RecommendationService recommendationService;
+    private final PersonaReaderService personaReaderService;
+    private final RulesReaderService rulesReaderService;
+    private final PlanVerifier planVerifier;
+    private final RefiInputValidator refiInputValidator;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final boolean enabled;
+    private final long maxNanos;
+    private final int roundSize;
+    private final double tolerance;
+    private final int stableRounds;
+
+    /** Set on the thread running the warm-up iterations only. */
+    private final ThreadLocal<Boolean> warming = new ThreadLocal<>();
+
+    private final AtomicLong durationMillis = new AtomicLong();
+    private final AtomicLong coldMicros = new AtomicLong();
+    private final AtomicLong warmMicros = new AtomicLong();
+
+    public WarmupService( RecommendationService recommendationService, PersonaReaderService personaReaderService,
+            RulesReaderService rulesReaderService, PlanVerifier planVerifier, RefiInputValidator refiInputValidator, ObjectMapper objectMapper, ApplicationEventPublisher eventPublisher,
+            ObservationRegistry observationRegistry, MeterRegistry meterRegistry,
+            @Value( "${neurosnap.warmup.enabled:true}" ) boolean enabled,
+            @Value( "${neurosnap.warmup.max-seconds:30}" ) long maxSeconds,
+            @Value( "${neurosnap.warmup.round-size:200}" ) int roundSize,
+            @Value( "${neurosnap.warmup.tolerance:0.05}" ) double tolerance,
+            @Value( "${neurosnap.warmup.stable-rounds:3}" ) int stableRounds )
+    {
+        this.recommendationService = recommendationService;
+        this.personaReaderService = personaReaderService;
+        this.rulesReaderService = rulesReaderService;
+        this.planVerifier = planVerifier;
+        this.refiInputValidator = refiInputValidator;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.maxNanos = TimeUnit.SECONDS.toNanos( maxSeconds );
+        this.roundSize = Math.max( 1, roundSize );
+        this.tolerance = tolerance;
+        this.stableRounds = Math.max( 1, stableRounds );
+
+        observationRegistry.observationConfig().observationPredicate( ( name, context ) -> warming.get() == null );
+        meterRegistry.gauge( "neurosnap.warmup.duration.millis", durationMillis );
+        meterRegistry.gauge( "neurosnap.warmup.latency.cold.micros", coldMicros );
+        meterRegistry.gauge( "neurosnap.warmup.latency.warm.micros", warmMicros );
+    }
+
+    /**
+     * Runs the warm-up on the calling thread, then marks the application ready.
+     */
+    public void warmUp()
+    {
+        AvailabilityChangeEvent.publish( eventPublisher, this, ReadinessState.REFUSING_TRAFFIC );
+        try {
+            if ( enabled ) {
+                run();
+            }
+        } catch ( Exception e ) {
+            log.warn( "JIT warm-up aborted, starting cold: {}", e.getMessage() );
+        } finally {
+            warming.remove();
+            planVerifier.setMetricsSuppressed( false );
+            AvailabilityChangeEvent.publish( eventPublisher, this, ReadinessState.ACCEPTING_TRAFFIC );
+        }
+    }
+
+    private void run() throws Exception
+    {
+        planVerifier.setMetricsSuppressed( true );
+        List<Sample> samples = samples();
+        if ( samples.isEmpty() ) {
+            log.info( "JIT warm-up skipped: no eligible personas" );
+            return;
+        }
+
+        warming.set( Boolean.TRUE );
+        long start = System.nanoTime();
+        long deadline = start + maxNanos;
+
+        long cold = iterate( samples.get( 0 ) );
+        double previous = Double.NaN;
+        double mean = cold;
+        int stable = 0;
+        int rounds = 0;
+        long iterations = 1;
+
+        while ( stable < stableRounds && System.nanoTime() < deadline ) {
+            long total = 0;
+            for ( int i = 0; i < roundSize; i++ ) {
+                total += iterate( samples.get( (int) ( iterations++ % samples.size() ) ) );
+            }
+            mean = (double) total / roundSize;
+            rounds++;
+            stable = !Double.isNaN( previous ) && Math.abs( mean - previous ) <= previous * tolerance ? stable + 1 : 0;
+            previous = mean;
+        }
+
+        long elapsedMillis = ( System.nanoTime() - start ) / 1_000_000;
+        durationMillis.set( elapsedMillis );
+        coldMicros.set( cold / 1_000 );
+        warmMicros.set( Math.round( mean / 1_000 ) );
+        log.info( "JIT warm-up finished in {} ms: {} iterations over {} rounds ({}), latency {} µs cold -> {} µs warm",
+                elapsedMillis, iterations, rounds, stable >= stableRounds ? "stable" : "time limit reached",
+                cold / 1_000, Math.round( mean / 1_000 ) );
+    }
+
+    /** One synthetic /recommend pass; returns its duration in nanoseconds. */
+    private long iterate( Sample sample ) throws Exception
+    {
+        long start = System.nanoTime();
+        refiInputValidator.validate( sample.request, sample.persona.getPersonaId() );
+        Persona persona = personaReaderService.getPersona( sample.persona.getPersonaId() ).get();
+        RecommendOptionsResponse response = recommendationService.generatePlans( persona, sample.request,
+                ( shared, section ) -> sample.cannedResponse );
+        byte[] json = objectMapper.writeValueAsBytes( response );
+        objectMapper.readValue( json, RecommendOptionsResponse.class );
+        return System.nanoTime() - start;
+    }
+
+    /** Up to 16 eligible personas, each with a request it would accept and a canned, already consistent model answer. */
+    private List<Sample> samples() throws Exception
+    {
+        List<Sample> samples = new ArrayList<>();
+        for ( int position = 0; position < personaReaderService.size() && samples.size() < 16; position++ ) {
+            PersonaView view = personaReaderService.view( position );
+            long minCents = MoneyKernel.minLoanAmountCents( MoneyKernel.toCents( view.getExistingPendingAmount() ) );
+            long loanAmount = Math.max( 300, ( minCents + 99 ) / 100 );
+            if ( view.getExistingPendingAmount() > view.getExistingLoanAmount() / 2 || loanAmount > 5000 ) {
+                continue;
+            }
+            Persona persona = view.toPersona();
+            RecommendRequest request = RecommendRequest.builder()
+                    .loanAmount( loanAmount )
+                    .tenure( samples.size() % 2 == 0 ? 12 : 6 )
+                    .frequency( RecommendRequest.RepaymentFrequency.MONTHLY )
+                    .build();
+            RecommendOptionsResponse canned = recommendationService.getExamples( request, persona.getPersonaId() );
+            canned.setPersonaId( persona.getPersonaId() );
+            planVerifier.verifyAndRepair( canned, persona, request, rulesReaderService.getRuleSet( persona.getBankName() ) );
+            samples.add( new Sample( persona, request, objectMapper.writeValueAsString( canned ) ) );
+        }
+        return samples;
+    }
+
+    private record Sample( Persona persona, RecommendRequest request, String cannedResponse ) {}
+}
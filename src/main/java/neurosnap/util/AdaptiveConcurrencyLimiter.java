@@ -0,0 +1,98 @@
+package neurosnap.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency-driven in-flight limit (gradient style, similar to Netflix concurrency-limits).
+ *
+ * How it works:
+ * - A long-window EWMA of latency approximates the "no queueing" round trip.
+ * - A short-window EWMA tracks what callers are seeing right now.
+ * - gradient = long / short (clamped to 0.5..1.0). When latency rises the limit shrinks,
+ *   when latency is stable the limit grows by roughly sqrt(limit) per sample.
+ *
+ * The limit is always kept within [minLimit, maxLimit].
+ */
+public class AdaptiveConcurrencyLimiter
+{
+    private static final double LONG_WINDOW_WEIGHT = 0.01;
+    private static final double SHORT_WINDOW_WEIGHT = 0.2;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+    private double longRttNanos;
+    private volatile double shortRttNanos;
+
+    public AdaptiveConcurrencyLimiter( int initialLimit, int minLimit, int maxLimit )
+    {
+        if ( minLimit < 1 || maxLimit < minLimit ) throw new IllegalArgumentException( "invalid concurrency bounds" );
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max( minLimit, Math.min( maxLimit, initialLimit ) );
+    }
+
+    /** Reserves an in-flight slot; returns false when the current limit is reached. */
+    public boolean tryAcquire()
+    {
+        while ( true ) {
+            int current = inFlight.get();
+            if ( current >= (int) limit ) return false;
+            if ( inFlight.compareAndSet( current, current + 1 ) ) return true;
+        }
+    }
+
+    /**
+     * Releases a slot taken by {@link #tryAcquire()}.
+     *
+     * @param rttNanos observed latency of the call
+     * @param sample   false for calls that failed fast (validation errors etc.) and should not move the limit
+     */
+    public void release( long rttNanos, boolean sample )
+    {
+        inFlight.decrementAndGet();
+        if ( sample ) {
+            update( rttNanos );
+        }
+    }
+
+    private synchronized void update( long rttNanos )
+    {
+        if ( longRttNanos == 0 ) {
+            longRttNanos = rttNanos;
+            shortRttNanos = rttNanos;
+            return;
+        }
+        longRttNanos = longRttNanos * ( 1 - LONG_WINDOW_WEIGHT ) + rttNanos * LONG_WINDOW_WEIGHT;
+        shortRttNanos = shortRttNanos * ( 1 - SHORT_WINDOW_WEIGHT ) + rttNanos * SHORT_WINDOW_WEIGHT;
+
+        // Let the baseline drift down quickly when things get faster again.
+        if ( shortRttNanos < longRttNanos ) {
+            longRttNanos = shortRttNanos;
+        }
+
+        double gradient = Math.max( 0.5, Math.min( 1.0, longRttNanos / shortRttNanos ) );
+        double newLimit = limit * gradient + Math.sqrt( limit );
+        newLimit = limit * ( 1 - SMOOTHING ) + newLimit * SMOOTHING;
+        limit = Math.max( minLimit, Math.min( maxLimit, newLimit ) );
+    }
+
+    public int getLimit()
+    {
+        return (int) limit;
+    }
+
+    public int getInFlight()
+    {
+        return inFlight.get();
+    }
+
+    /** Short-window latency estimate in milliseconds (0 until the first sample). */
+    public long getRecentLatencyMillis()
+    {
+        return (long) ( shortRttNanos / 1_000_000d );
+    }
+}
@@ -0,0 +1,42 @@
+package neurosnap.util;
+
+import neurosnap.dto.rules.PaymentHistoryRule;
+
+/**
+ * Base APR pricing tiers.
+ *
+ *   PRIME      : creditScore >= 750 and DISCIPLINED history -> 10.5%
+ *   NEAR_PRIME : creditScore >= 650                          -> 16.0%
+ *   SUBPRIME   : everything else                             -> 24.0%
+ */
+public enum AprTier
+{
+    PRIME( 10.5 ),
+    NEAR_PRIME( 16.0 ),
+    SUBPRIME( 24.0 );
+
+    private final double apr;
+
+    AprTier( double apr )
+    {
+        this.apr = apr;
+    }
+
+    public double getApr()
+    {
+        return apr;
+    }
+
+    /** APR in basis points, for {@link MoneyKernel}. */
+    public int getAprBps()
+    {
+        return MoneyKernel.toBps( apr );
+    }
+
+    public static AprTier of( int creditScore, String paymentHistory )
+    {
+        if ( creditScore >= 750 && PaymentHistoryRule.PaymentHistoryType.DISCIPLINED.toString().equals( paymentHistory ) ) return PRIME;
+        if ( creditScore >= 650 ) return NEAR_PRIME;
+        return SUBPRIME;
+    }
+}
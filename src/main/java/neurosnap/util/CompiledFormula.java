@@ -0,0 +1,35 @@
+package neurosnap.util;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A rules.xlsx expression compiled to a tree of lambdas by {@link FormulaCompiler}.
+ * Evaluation is plain method calls; the source text is kept only for logging.
+ */
+public final class CompiledFormula
+{
+    private final String source;
+    private final ToDoubleFunction<FormulaContext> body;
+
+    CompiledFormula( String source, ToDoubleFunction<FormulaContext> body )
+    {
+        this.source = source;
+        this.body = body;
+    }
+
+    public double evaluate( FormulaContext context )
+    {
+        return body.applyAsDouble( context );
+    }
+
+    public String getSource()
+    {
+        return source;
+    }
+
+    @Override
+    public String toString()
+    {
+        return source;
+    }
+}
@@ -0,0 +1,57 @@
+package neurosnap.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent-hash ring mapping keys (persona ids) to nodes.
+ *
+ * Notes:
+ * - Each node is placed {@code virtualNodes} times so ownership spreads evenly; adding or removing
+ *   a node only moves the keys of the arcs it gains or loses (about 1/N of them).
+ * - Hash: FNV-1a followed by the MurmurHash3 64-bit finalizer, because similar ids ("P_001",
+ *   "P_002") must land far apart.
+ * - Immutable and thread-safe once built.
+ */
+public final class ConsistentHashRing
+{
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+    private final List<String> nodes;
+
+    public ConsistentHashRing( List<String> nodes, int virtualNodes )
+    {
+        if ( nodes.isEmpty() ) {
+            throw new IllegalArgumentException( "A hash ring needs at least one node" );
+        }
+        this.nodes = List.copyOf( nodes );
+        for ( String node : this.nodes ) {
+            for ( int v = 0; v < virtualNodes; v++ ) {
+                ring.put( hash( node + "#" + v ), node );
+            }
+        }
+    }
+
+    public String owner( String key )
+    {
+        Map.Entry<Long, String> entry = ring.ceilingEntry( hash( key ) );
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public List<String> getNodes()
+    {
+        return nodes;
+    }
+
+    static long hash( String key )
+    {
+        long h = PersonaFingerprint.hash( key.getBytes( StandardCharsets.UTF_8 ) );
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
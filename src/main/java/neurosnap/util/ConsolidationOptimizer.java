@@ -0,0 +1,182 @@
+package neurosnap.util;
+
+import java.util.Arrays;
+
+/**
+ * Picks the subset of existing loans to roll into one refinance, as a bounded 0/1 knapsack.
+ *
+ * The new loan's cost depends only on how much is consolidated, so the search runs over the exact
+ * consolidated amount: for every reachable amount it keeps the selection that removes the most interest
+ * (MIN_INTEREST) or monthly payment (MIN_EMI) from the existing loans, the other one breaking ties, then
+ * prices the new loan for each amount with {@link MoneyKernel} and takes the overall best. That makes the
+ * result exact: any two selections with the same amount cost the same afterwards.
+ *
+ * Notes:
+ * - Amounts are counted in the largest unit that divides every pending balance and a dollar, so the usual
+ *   whole-dollar balances search 4890 cells (the 5000 USD cap minus fees) and balances with cents up to
+ *   489000; the capacity never exceeds the sum of the balances.
+ * - Below the 300 USD minimum the loan amount is raised to 300 (the rest is disbursed).
+ * - The new loan's interest is counted together with the refinance fees, so consolidating only
+ *   wins when it saves more than it costs.
+ * - Work is loans × capacity cell updates (at most {@value #MAX_LOANS} × 4890 for whole-dollar balances,
+ *   about 0.7 ms) plus one EMI per distinct loan amount.
+ * - All money in cents, rates in basis points.
+ */
+public final class ConsolidationOptimizer
+{
+    /** Loan amount limits of /recommend, see RefiInputValidator. */
+    public static final long MIN_LOAN_CENTS = 30_000;
+    public static final long MAX_LOAN_CENTS = 500_000;
+
+    /** Selections are tracked as a bit mask. */
+    public static final int MAX_LOANS = 63;
+
+    /** Largest consolidated amount: the loan amount cap minus fees (fees are whole dollars). */
+    private static final long CAPACITY_CENTS = MAX_LOAN_CENTS - MoneyKernel.FEES_CENTS;
+
+    private ConsolidationOptimizer()
+    {
+    }
+
+    /** One eligible existing loan. */
+    public record Loan( long pendingCents, long emiCents, int remainingTenure )
+    {
+        long interestCents()
+        {
+            return Math.max( 0, emiCents * remainingTenure - pendingCents );
+        }
+    }
+
+    /**
+     * Best selection; {@code mask} 0 means keep every loan as it is.
+     *
+     * @param interestAfterCents interest still to be paid over kept loans + new loan, fees included
+     * @param paymentAfterCents  monthly payment over kept loans + new loan
+     */
+    public record Plan( long mask, long loanAmountCents, long principalCents, long emiCents,
+            long interestAfterCents, long paymentAfterCents, long states ) {}
+
+    /** Largest pending balance a loan may have to be consolidated at all. */
+    public static long maxPendingCents()
+    {
+        return MAX_LOAN_CENTS - MoneyKernel.FEES_CENTS;
+    }
+
+    public static long interestBeforeCents( Loan[] loans )
+    {
+        long total = 0;
+        for ( Loan loan : loans ) total += loan.interestCents();
+        return total;
+    }
+
+    public static long paymentBeforeCents( Loan[] loans )
+    {
+        long total = 0;
+        for ( Loan loan : loans ) total += loan.emiCents();
+        return total;
+    }
+
+    /**
+     * @param loans        eligible loans, at most {@value #MAX_LOANS}, each with pending at most {@link #maxPendingCents()}
+     * @param bps          APR of the new loan
+     * @param tenureMonths tenure of the new loan
+     * @param minimizeEmi  MIN_EMI when true, MIN_INTEREST otherwise
+     */
+    public static Plan optimize( Loan[] loans, int bps, int tenureMonths, boolean minimizeEmi )
+    {
+        if ( loans.length > MAX_LOANS ) throw new IllegalArgumentException( "At most " + MAX_LOANS + " loans" );
+
+        long interestBefore = interestBeforeCents( loans );
+        long paymentBefore = paymentBeforeCents( loans );
+
+        long unit = 100;
+        long reachable = 0;
+        for ( Loan loan : loans ) {
+            if ( !usable( loan ) ) continue;
+            unit = gcd( unit, loan.pendingCents() );
+            reachable += loan.pendingCents();
+        }
+        int capacity = (int) ( Math.min( CAPACITY_CENTS, reachable ) / unit );
+
+        // Cell s holds the best selection consolidating exactly s × unit cents; primary -1 = unreachable.
+        long[] primary = new long[capacity + 1];
+        long[] secondary = new long[capacity + 1];
+        long[] mask = new long[capacity + 1];
+        Arrays.fill( primary, -1 );
+        primary[0] = 0;
+
+        long states = 0;
+        for ( int i = 0; i < loans.length; i++ ) {
+            Loan loan = loans[i];
+            if ( !usable( loan ) ) continue;
+            int weight = (int) ( loan.pendingCents() / unit );
+            if ( weight > capacity ) continue;
+            long gain = minimizeEmi ? loan.emiCents() : loan.interestCents();
+            long other = minimizeEmi ? loan.interestCents() : loan.emiCents();
+            // Descending so every loan is taken at most once.
+            for ( int s = capacity; s >= weight; s-- ) {
+                long from = primary[s - weight];
+                if ( from < 0 ) continue;
+                long p = from + gain;
+                long q = secondary[s - weight] + other;
+                if ( p > primary[s] || p == primary[s] && q > secondary[s] ) {
+                    primary[s] = p;
+                    secondary[s] = q;
+                    mask[s] = mask[s - weight] | ( 1L << i );
+                }
+            }
+            states += capacity - weight + 1;
+        }
+
+        Plan best = new Plan( 0, 0, 0, 0, interestBefore, paymentBefore, states );
+        long pricedAmount = -1;
+        long principal = 0;
+        long emi = 0;
+        long newInterest = 0;
+        for ( int s = 1; s <= capacity; s++ ) {
+            if ( primary[s] < 0 ) continue;
+            long needed = MoneyKernel.minLoanAmountCents( s * unit );
+            long loanAmount = Math.max( MIN_LOAN_CENTS, ( needed + 99 ) / 100 * 100 );
+            if ( loanAmount != pricedAmount ) {
+                pricedAmount = loanAmount;
+                principal = MoneyKernel.principalCents( loanAmount );
+                emi = MoneyKernel.emiCents( principal, bps, tenureMonths );
+                newInterest = MoneyKernel.interestCents( MoneyKernel.totalRepaidCents( emi, tenureMonths ), principal )
+                        + MoneyKernel.FEES_CENTS;
+            }
+            long removedInterest = minimizeEmi ? secondary[s] : primary[s];
+            long removedPayment = minimizeEmi ? primary[s] : secondary[s];
+
+            Plan candidate = new Plan( mask[s], loanAmount, principal, emi,
+                    interestBefore - removedInterest + newInterest, paymentBefore - removedPayment + emi, states );
+            if ( better( candidate, best, minimizeEmi ) ) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private static boolean usable( Loan loan )
+    {
+        return loan.pendingCents() > 0 && loan.pendingCents() <= CAPACITY_CENTS;
+    }
+
+    private static long gcd( long a, long b )
+    {
+        while ( b != 0 ) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /** Primary objective first, the other one breaks ties. */
+    private static boolean better( Plan a, Plan b, boolean minimizeEmi )
+    {
+        long primary = minimizeEmi ? a.paymentAfterCents() - b.paymentAfterCents() : a.interestAfterCents() - b.interestAfterCents();
+        if ( primary != 0 ) return primary < 0;
+        long secondary = minimizeEmi ? a.interestAfterCents() - b.interestAfterCents() : a.paymentAfterCents() - b.paymentAfterCents();
+        return secondary < 0;
+    }
+}
@@ -0,0 +1,384 @@
+package neurosnap.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Compiles the expression columns of rules.xlsx into lambdas, once, at rule load time.
+ *
+ * Grammar (usual precedence, booleans are 1/0):
+ *   expr    := or ( '?' expr ':' expr )?
+ *   or      := and ( '||' and )*
+ *   and     := cmp ( '&&' cmp )*
+ *   cmp     := add ( ( '==' | '!=' | '<' | '<=' | '>' | '>=' ) add )?
+ *   add     := mul ( ( '+' | '-' ) mul )*
+ *   mul     := unary ( ( '*' | '/' ) unary )*
+ *   unary   := ( '-' | '!' ) unary | primary
+ *   primary := number | "string" | variable | function '(' expr ( ',' expr )* ')' | '(' expr ')'
+ *
+ * Variables: creditScore, incomeAmt, existingLoanAmount, existingPendingAmount, existingInterestRate,
+ * existingEmi, existingTenure (numbers); incomeBand, paymentHistory, goal (strings, compare with == / !=).
+ * Functions: if(c, a, b), min, max, clamp(v, lo, hi), floor, ceil, round, abs.
+ *
+ * Example APR formula:
+ *   creditScore >= 750 && paymentHistory == "DISCIPLINED" ? 10.5 : creditScore >= 650 ? 16 : 24
+ */
+public final class FormulaCompiler
+{
+    private static final Map<String, ToDoubleFunction<FormulaContext>> NUMBER_VARIABLES = Map.of(
+            "creditScore", c -> c.persona().getCreditScore(),
+            "incomeAmt", c -> c.persona().getIncomeAmt(),
+            "existingLoanAmount", c -> c.persona().getExistingLoanAmount(),
+            "existingPendingAmount", c -> c.persona().getExistingPendingAmount(),
+            "existingInterestRate", c -> c.persona().getExistingInterestRate(),
+            "existingEmi", c -> c.persona().getExistingEmi(),
+            "existingTenure", c -> c.persona().getExistingTenure() );
+
+    private static final Map<String, Function<FormulaContext, String>> STRING_VARIABLES = Map.of(
+            "incomeBand", c -> normalize( c.persona().getIncome() ),
+            "paymentHistory", c -> normalize( c.persona().getPaymentHistory() ),
+            "goal", c -> normalize( c.goal() ) );
+
+    private final String source;
+    private int pos;
+
+    private FormulaCompiler( String source )
+    {
+        this.source = source;
+    }
+
+    /**
+     * @throws IllegalArgumentException with the offending position when the expression is invalid
+     */
+    public static CompiledFormula compile( String source )
+    {
+        if ( source == null || source.isBlank() ) throw new IllegalArgumentException( "Empty formula" );
+        FormulaCompiler compiler = new FormulaCompiler( source );
+        Node node = compiler.expr();
+        compiler.skipSpaces();
+        if ( compiler.pos != source.length() ) throw compiler.error( "Unexpected input" );
+        return new CompiledFormula( source, node.number( compiler ) );
+    }
+
+    // ---- parser ------------------------------------------------------------------------------
+
+    private Node expr()
+    {
+        Node condition = or();
+        if ( !accept( "?" ) ) return condition;
+        Node whenTrue = expr();
+        expect( ":" );
+        Node whenFalse = expr();
+        return choose( condition, whenTrue, whenFalse );
+    }
+
+    private Node or()
+    {
+        Node left = and();
+        while ( accept( "||" ) ) {
+            ToDoubleFunction<FormulaContext> a = left.number( this ), b = and().number( this );
+            left = Node.num( c -> a.applyAsDouble( c ) != 0 || b.applyAsDouble( c ) != 0 ? 1 : 0 );
+        }
+        return left;
+    }
+
+    private Node and()
+    {
+        Node left = cmp();
+        while ( accept( "&&" ) ) {
+            ToDoubleFunction<FormulaContext> a = left.number( this ), b = cmp().number( this );
+            left = Node.num( c -> a.applyAsDouble( c ) != 0 && b.applyAsDouble( c ) != 0 ? 1 : 0 );
+        }
+        return left;
+    }
+
+    private Node cmp()
+    {
+        Node left = add();
+        for ( String op : new String[] { "==", "!=", "<=", ">=", "<", ">" } ) {
+            if ( accept( op ) ) return compare( op, left, add() );
+        }
+        return left;
+    }
+
+    private Node add()
+    {
+        Node left = mul();
+        while ( true ) {
+            if ( accept( "+" ) ) {
+                ToDoubleFunction<FormulaContext> a = left.number( this ), b = mul().number( this );
+                left = Node.num( c -> a.applyAsDouble( c ) + b.applyAsDouble( c ) );
+            } else if ( accept( "-" ) ) {
+                ToDoubleFunction<FormulaContext> a = left.number( this ), b = mul().number( this );
+                left = Node.num( c -> a.applyAsDouble( c ) - b.applyAsDouble( c ) );
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Node mul()
+    {
+        Node left = unary();
+        while ( true ) {
+            if ( accept( "*" ) ) {
+                ToDoubleFunction<FormulaContext> a = left.number( this ), b = unary().number( this );
+                left = Node.num( c -> a.applyAsDouble( c ) * b.applyAsDouble( c ) );
+            } else if ( accept( "/" ) ) {
+                ToDoubleFunction<FormulaContext> a = left.number( this ), b = unary().number( this );
+                left = Node.num( c -> a.applyAsDouble( c ) / b.applyAsDouble( c ) );
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Node unary()
+    {
+        if ( accept( "-" ) ) {
+            Node operand = unary();
+            if ( operand.isConstant() ) return Node.constant( -operand.constant );
+            ToDoubleFunction<FormulaContext> a = operand.number( this );
+            return Node.num( c -> -a.applyAsDouble( c ) );
+        }
+        if ( peek( "!=" ) ) throw error( "Unexpected '!='" );
+        if ( accept( "!" ) ) {
+            ToDoubleFunction<FormulaContext> a = unary().number( this );
+            return Node.num( c -> a.applyAsDouble( c ) == 0 ? 1 : 0 );
+        }
+        return primary();
+    }
+
+    private Node primary()
+    {
+        skipSpaces();
+        if ( pos >= source.length() ) throw error( "Unexpected end of formula" );
+        char ch = source.charAt( pos );
+
+        if ( accept( "(" ) ) {
+            Node inner = expr();
+            expect( ")" );
+            return inner;
+        }
+        if ( ch == '"' || ch == '\'' ) {
+            int end = source.indexOf( ch, pos + 1 );
+            if ( end < 0 ) throw error( "Unterminated string" );
+            String literal = normalize( source.substring( pos + 1, end ) );
+            pos = end + 1;
+            return Node.str( c -> literal, literal );
+        }
+        if ( Character.isDigit( ch ) || ch == '.' ) {
+            int start = pos;
+            while ( pos < source.length() && ( Character.isDigit( source.charAt( pos ) ) || source.charAt( pos ) == '.' ) ) pos++;
+            try {
+                return Node.constant( Double.parseDouble( source.substring( start, pos ) ) );
+            } catch ( NumberFormatException e ) {
+                pos = start;
+                throw error( "Invalid number" );
+            }
+        }
+        if ( Character.isLetter( ch ) ) {
+            int start = pos;
+            while ( pos < source.length() && Character.isLetterOrDigit( source.charAt( pos ) ) ) pos++;
+            String name = source.substring( start, pos );
+            if ( accept( "(" ) ) {
+                return function( name, start );
+            }
+            if ( name.equals( "true" ) ) return Node.constant( 1 );
+            if ( name.equals( "false" ) ) return Node.constant( 0 );
+            if ( NUMBER_VARIABLES.containsKey( name ) ) return Node.num( NUMBER_VARIABLES.get( name ) );
+            if ( STRING_VARIABLES.containsKey( name ) ) return Node.str( STRING_VARIABLES.get( name ), null );
+            pos = start;
+            throw error( "Unknown variable '" + name + "'" );
+        }
+        throw error( "Unexpected character '" + ch + "'" );
+    }
+
+    private Node function( String name, int start )
+    {
+        List<Node> args = new ArrayList<>();
+        if ( !accept( ")" ) ) {
+            do {
+                args.add( expr() );
+            } while ( accept( "," ) );
+            expect( ")" );
+        }
+
+        switch ( name ) {
+            case "if":
+                arity( name, args, 3, start );
+                return choose( args.get( 0 ), args.get( 1 ), args.get( 2 ) );
+            case "min": {
+                arity( name, args, 2, start );
+                ToDoubleFunction<FormulaContext> a = args.get( 0 ).number( this ), b = args.get( 1 ).number( this );
+                return Node.num( c -> Math.min( a.applyAsDouble( c ), b.applyAsDouble( c ) ) );
+            }
+            case "max": {
+                arity( name, args, 2, start );
+                ToDoubleFunction<FormulaContext> a = args.get( 0 ).number( this ), b = args.get( 1 ).number( this );
+                return Node.num( c -> Math.max( a.applyAsDouble( c ), b.applyAsDouble( c ) ) );
+            }
+            case "clamp": {
+                arity( name, args, 3, start );
+                ToDoubleFunction<FormulaContext> v = args.get( 0 ).number( this ), lo = args.get( 1 ).number( this ), hi = args.get( 2 ).number( this );
+                return Node.num( c -> Math.max( lo.applyAsDouble( c ), Math.min( hi.applyAsDouble( c ), v.applyAsDouble( c ) ) ) );
+            }
+            case "floor": {
+                arity( name, args, 1, start );
+                ToDoubleFunction<FormulaContext> a = args.get( 0 ).number( this );
+                return Node.num( c -> Math.floor( a.applyAsDouble( c ) ) );
+            }
+            case "ceil": {
+                arity( name, args, 1, start );
+                ToDoubleFunction<FormulaContext> a = args.get( 0 ).number( this );
+                return Node.num( c -> Math.ceil( a.applyAsDouble( c ) ) );
+            }
+            case "round": {
+                arity( name, args, 1, start );
+                ToDoubleFunction<FormulaContext> a = args.get( 0 ).number( this );
+                return Node.num( c -> Math.round( a.applyAsDouble( c ) ) );
+            }
+            case "abs": {
+                arity( name, args, 1, start );
+                ToDoubleFunction<FormulaContext> a = args.get( 0 ).number( this );
+                return Node.num( c -> Math.abs( a.applyAsDouble( c ) ) );
+            }
+            default:
+                pos = start;
+                throw error( "Unknown function '" + name + "'" );
+        }
+    }
+
+    // ---- code generation helpers -------------------------------------------------------------
+
+    private Node choose( Node condition, Node whenTrue, Node whenFalse )
+    {
+        ToDoubleFunction<FormulaContext> cond = condition.number( this );
+        ToDoubleFunction<FormulaContext> a = whenTrue.number( this ), b = whenFalse.number( this );
+        return Node.num( c -> cond.applyAsDouble( c ) != 0 ? a.applyAsDouble( c ) : b.applyAsDouble( c ) );
+    }
+
+    private Node compare( String op, Node left, Node right )
+    {
+        if ( left.isString() || right.isString() ) {
+            if ( !left.isString() || !right.isString() ) throw error( "Cannot compare text with a number" );
+            if ( !op.equals( "==" ) && !op.equals( "!=" ) ) throw error( "Text only supports == and !=" );
+            boolean equal = op.equals( "==" );
+            // Bind the literal side at compile time so evaluation is a single equals().
+            if ( right.literal != null || left.literal != null ) {
+                String literal = right.literal != null ? right.literal : left.literal;
+                Function<FormulaContext, String> other = right.literal != null ? left.text : right.text;
+                return Node.num( c -> literal.equals( other.apply( c ) ) == equal ? 1 : 0 );
+            }
+            Function<FormulaContext, String> a = left.text, b = right.text;
+            return Node.num( c -> Objects.equals( a.apply( c ), b.apply( c ) ) == equal ? 1 : 0 );
+        }
+
+        ToDoubleFunction<FormulaContext> a = left.number( this ), b = right.number( this );
+        switch ( op ) {
+            case "==": return Node.num( c -> a.applyAsDouble( c ) == b.applyAsDouble( c ) ? 1 : 0 );
+            case "!=": return Node.num( c -> a.applyAsDouble( c ) != b.applyAsDouble( c ) ? 1 : 0 );
+            case "<":  return Node.num( c -> a.applyAsDouble( c ) < b.applyAsDouble( c ) ? 1 : 0 );
+            case "<=": return Node.num( c -> a.applyAsDouble( c ) <= b.applyAsDouble( c ) ? 1 : 0 );
+            case ">":  return Node.num( c -> a.applyAsDouble( c ) > b.applyAsDouble( c ) ? 1 : 0 );
+            default:   return Node.num( c -> a.applyAsDouble( c ) >= b.applyAsDouble( c ) ? 1 : 0 );
+        }
+    }
+
+    private void arity( String name, List<Node> args, int expected, int start )
+    {
+        if ( args.size() != expected ) {
+            pos = start;
+            throw error( name + "() takes " + expected + " argument(s)" );
+        }
+    }
+
+    // ---- lexer helpers -----------------------------------------------------------------------
+
+    private void skipSpaces()
+    {
+        while ( pos < source.length() && Character.isWhitespace( source.charAt( pos ) ) ) pos++;
+    }
+
+    private boolean peek( String token )
+    {
+        skipSpaces();
+        return source.startsWith( token, pos );
+    }
+
+    private boolean accept( String token )
+    {
+        if ( !peek( token ) ) return false;
+        pos += token.length();
+        return true;
+    }
+
+    private void expect( String token )
+    {
+        if ( !accept( token ) ) throw error( "Expected '" + token + "'" );
+    }
+
+    private IllegalArgumentException error( String message )
+    {
+        return new IllegalArgumentException( message + " at position " + pos + " in formula: " + source );
+    }
+
+    private static String normalize( String value )
+    {
+        return value == null ? null : value.trim().toUpperCase().replace( ' ', '_' );
+    }
+
+    /** Compile-time value: a number function, or a text function (with its literal when constant). */
+    private static final class Node
+    {
+        final ToDoubleFunction<FormulaContext> num;
+        final Function<FormulaContext, String> text;
+        final String literal;
+        final double constant;
+        final boolean isConstant;
+
+        private Node( ToDoubleFunction<FormulaContext> num, Function<FormulaContext, String> text, String literal, double constant, boolean isConstant )
+        {
+            this.num = num;
+            this.text = text;
+            this.literal = literal;
+            this.constant = constant;
+            this.isConstant = isConstant;
+        }
+
+        static Node num( ToDoubleFunction<FormulaContext> f )
+        {
+            return new Node( f, null, null, 0, false );
+        }
+
+        static Node constant( double value )
+        {
+            return new Node( c -> value, null, null, value, true );
+        }
+
+        static Node str( Function<FormulaContext, String> f, String literal )
+        {
+            return new Node( null, f, literal, 0, false );
+        }
+
+        boolean isString()
+        {
+            return text != null;
+        }
+
+        boolean isConstant()
+        {
+            return isConstant;
+        }
+
+        ToDoubleFunction<FormulaContext> number( FormulaCompiler compiler )
+        {
+            if ( num == null ) throw compiler.error( "Text used where a number is expected" );
+            return num;
+        }
+    }
+}
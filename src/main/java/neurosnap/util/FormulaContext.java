@@ -0,0 +1,11 @@
+package neurosnap.util;
+
+import neurosnap.dto.Persona;
+
+/**
+ * Inputs a compiled rules formula can read.
+ *
+ * @param persona the borrower being priced
+ * @param goal    plan goal (LOWER_EMI, BALANCED, FASTER_CLOSURE) or null when not goal specific
+ */
+public record FormulaContext( Persona persona, String goal ) {}
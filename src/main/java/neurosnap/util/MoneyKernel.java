@@ -0,0 +1,148 @@
+package neurosnap.util;
+
+/**
+ * Fixed-point money and rate math for plan calculations.
+ *
+ * Units:
+ * - money in long cents (USD × 100),
+ * - rates in int basis points (APR % × 100, so 10.5% = 1050),
+ * - annuity factors in unsigned Q16.48 fixed point (EMI per unit of principal × 2^48).
+ *
+ * Every result is rounded half-up to the cent exactly once, so the same inputs always give the
+ * same cents on any JVM. Methods are static and take/return primitives: no boxing, no allocation.
+ *
+ * Annuity factors for tenures 1..{@value #TABLE_MAX_TENURE} and rates 0..{@value #TABLE_MAX_BPS} bps
+ * are precomputed at class load; anything outside the table is computed on the fly.
+ */
+public final class MoneyKernel
+{
+    /** Flat processing fee (USD 100). */
+    public static final long PROCESSING_FEE_CENTS = 10_000;
+
+    /** Tax on the processing fee (10%). */
+    public static final long TAX_FEE_CENTS = PROCESSING_FEE_CENTS / 10;
+
+    /** Fees deducted from every refinance amount (USD 110). */
+    public static final long FEES_CENTS = PROCESSING_FEE_CENTS + TAX_FEE_CENTS;
+
+    static final int FACTOR_SHIFT = 48;
+    private static final double FACTOR_ONE = (double) ( 1L << FACTOR_SHIFT );
+
+    static final int TABLE_MAX_TENURE = 36;
+    static final int TABLE_MAX_BPS = 4000;
+    private static final long[] FACTORS = new long[( TABLE_MAX_BPS + 1 ) * TABLE_MAX_TENURE];
+
+    static {
+        for ( int bps = 0; bps <= TABLE_MAX_BPS; bps++ ) {
+            for ( int n = 1; n <= TABLE_MAX_TENURE; n++ ) {
+                FACTORS[bps * TABLE_MAX_TENURE + n - 1] = computeFactor( bps, n );
+            }
+        }
+    }
+
+    private MoneyKernel()
+    {
+    }
+
+    /** USD → cents, half-up. Use at the boundary only (DTOs, persona book). */
+    public static long toCents( double usd )
+    {
+        return Math.round( usd * 100.0 );
+    }
+
+    /** Cents → USD for DTOs and JSON. */
+    public static double toUsd( long cents )
+    {
+        return cents / 100.0;
+    }
+
+    /** APR percent → basis points, half-up. */
+    public static int toBps( double aprPercent )
+    {
+        return (int) Math.round( aprPercent * 100.0 );
+    }
+
+    /** Q16.48 annuity factor R(1+R)^N / ((1+R)^N − 1), R = bps / 120000; 1/N at zero interest. */
+    public static long annuityFactor( int bps, int tenureMonths )
+    {
+        if ( tenureMonths <= 0 ) throw new IllegalArgumentException( "tenureMonths must be > 0" );
+        if ( bps < 0 ) throw new IllegalArgumentException( "rate must not be negative" );
+        if ( bps <= TABLE_MAX_BPS && tenureMonths <= TABLE_MAX_TENURE ) {
+            return FACTORS[bps * TABLE_MAX_TENURE + tenureMonths - 1];
+        }
+        return computeFactor( bps, tenureMonths );
+    }
+
+    /** EMI in cents: principal × factor, rounded half-up to the cent. */
+    public static long emiCents( long principalCents, long annuityFactor )
+    {
+        if ( principalCents <= 0 ) return 0;
+        // 128-bit product, then shift right by 48 with half-up rounding.
+        long hi = Math.multiplyHigh( principalCents, annuityFactor );
+        long lo = principalCents * annuityFactor;
+        long shifted = ( hi << ( 64 - FACTOR_SHIFT ) ) | ( lo >>> FACTOR_SHIFT );
+        return shifted + ( ( lo >>> ( FACTOR_SHIFT - 1 ) ) & 1 );
+    }
+
+    /**
+     * EMI in cents for a rate and tenure. Zero interest and single-month loans have terminating
+     * decimal results (exact half cents happen), so those use integer arithmetic instead of the factor.
+     */
+    public static long emiCents( long principalCents, int bps, int tenureMonths )
+    {
+        if ( principalCents <= 0 ) return 0;
+        if ( bps == 0 && tenureMonths > 0 ) {
+            return ( principalCents * 2 + tenureMonths ) / ( 2L * tenureMonths );
+        }
+        if ( tenureMonths == 1 && bps > 0 ) {
+            return ( principalCents * ( 120_000L + bps ) * 2 + 120_000 ) / 240_000;
+        }
+        return emiCents( principalCents, annuityFactor( bps, tenureMonths ) );
+    }
+
+    /** Amount financed after fees. */
+    public static long principalCents( long loanAmountCents )
+    {
+        return loanAmountCents - FEES_CENTS;
+    }
+
+    /** Cash to the borrower after paying off the existing loan and fees. */
+    public static long disburseCents( long loanAmountCents, long pendingCents )
+    {
+        return loanAmountCents - ( pendingCents + FEES_CENTS );
+    }
+
+    /** Smallest loan amount that covers the pending balance plus fees. */
+    public static long minLoanAmountCents( long pendingCents )
+    {
+        return pendingCents + FEES_CENTS;
+    }
+
+    public static long totalRepaidCents( long emiCents, int tenureMonths )
+    {
+        return emiCents * tenureMonths;
+    }
+
+    public static long interestCents( long totalRepaidCents, long principalCents )
+    {
+        return totalRepaidCents - principalCents;
+    }
+
+    /** Months of savings needed to recover the fees; 0 when the plan saves nothing per month. */
+    public static int breakEvenMonths( long feesCents, long savingsPerMonthCents )
+    {
+        if ( savingsPerMonthCents <= 0 ) return 0;
+        return (int) ( ( feesCents + savingsPerMonthCents - 1 ) / savingsPerMonthCents );
+    }
+
+    private static long computeFactor( int bps, int tenureMonths )
+    {
+        if ( bps == 0 ) {
+            return Math.round( FACTOR_ONE / tenureMonths );
+        }
+        double r = bps / 120_000.0;
+        // expm1/log1p keep (1+R)^N − 1 accurate for small rates, where pow − 1 would cancel.
+        double growth = Math.expm1( tenureMonths * Math.log1p( r ) );
+        return Math.round( r * ( growth + 1 ) / growth * FACTOR_ONE );
+    }
+}
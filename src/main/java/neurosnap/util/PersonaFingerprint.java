@@ -0,0 +1,46 @@
+package neurosnap.util;
+
+import java.nio.charset.StandardCharsets;
+import neurosnap.dto.Persona;
+
+/**
+ * 64-bit FNV-1a fingerprint over every Persona field.
+ *
+ * Used in cache and serving-table keys so results computed for an older version of a persona
+ * (e.g. before a bulk import replaced it) are never served for the new one.
+ */
+public final class PersonaFingerprint
+{
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private PersonaFingerprint()
+    {
+    }
+
+    public static long of( Persona p )
+    {
+        String fields = p.getPersonaId() + '|' + p.getPersonaName() + '|' + p.getIncome() + '|' + p.getPaymentBehavior() + '|'
+                + p.getRefiExperience() + '|' + p.getCreditScore() + '|' + p.getExistingLoanAmount() + '|'
+                + p.getExistingInterestRate() + '|' + p.getExistingPendingAmount() + '|' + p.getPaymentHistory() + '|'
+                + p.getDob() + '|' + p.getSsn() + '|' + p.getMobileNumber() + '|' + p.getVerificationCode() + '|'
+                + p.getExistingTenure() + '|' + p.getExistingEmi() + '|' + p.getBankName() + '|' + p.getCardNumber() + '|'
+                + p.getMinimumRefinanceAmt() + '|' + p.getIncomeAmt() + '|' + p.getExistingLoans();
+        return hash( fields.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    public static long hash( byte[] bytes )
+    {
+        long h = FNV_OFFSET;
+        for ( byte b : bytes ) {
+            h ^= b & 0xff;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    public static String hex( Persona p )
+    {
+        return Long.toHexString( of( p ) );
+    }
+}
@@ -1,16 +1,51 @@
 package neurosnap.util;
 
+import neurosnap.dto.Persona;
+import neurosnap.dto.rules.RuleSet;
+
 public class RefiCalculator
 {
+    /** Flat processing fee charged on every refinance (USD); see {@link MoneyKernel#PROCESSING_FEE_CENTS}. */
+    public static final double PROCESSING_FEE = MoneyKernel.PROCESSING_FEE_CENTS / 100.0;
+
+    /** Tax on the processing fee (USD). */
+    public static final double TAX_FEE = MoneyKernel.TAX_FEE_CENTS / 100.0;
+
     public static double calculateEMI(double principal, double annualRate, int tenureMonths) {
+        if (tenureMonths <= 0) throw new IllegalArgumentException("tenureMonths must be > 0");
+        return principal * annuityFactor(annualRate, tenureMonths);
+    }
+
+    /**
+     * EMI per unit of principal: R(1+R)^N / ((1+R)^N - 1), or 1/N at zero interest.
+     * Precompute this for repeated (rate, tenure) pairs to avoid Math.pow per plan.
+     */
+    public static double annuityFactor(double annualRate, int tenureMonths) {
         if (tenureMonths <= 0) throw new IllegalArgumentException("tenureMonths must be > 0");
         double monthlyRate = annualRate / 12.0 / 100.0;
         if (monthlyRate == 0) {
-            return principal / tenureMonths;
+            return 1.0 / tenureMonths;
         }
         double pow = Math.pow(1 + monthlyRate, tenureMonths);
-        return (principal * monthlyRate * pow) / (pow - 1);
+        return (monthlyRate * pow) / (pow - 1);
+    }
+
+    public static double baseApr(int creditScore, String paymentHistory) {
+        return AprTier.of(creditScore, paymentHistory).getApr();
     }
 
+    /**
+     * APR from the rule set's "baseApr" formula when it defines one, else the built-in tiers.
+     * Every endpoint that quotes a rate prices through this, so a rules.xlsx change reaches all of them.
+     *
+     * @param ruleSet the persona's rule set, or null for the built-in tiers
+     */
+    public static double baseApr(Persona persona, RuleSet ruleSet) {
+        CompiledFormula formula = ruleSet == null ? null : ruleSet.getFormula("baseApr");
+        if (formula != null) {
+            return formula.evaluate(new FormulaContext(persona, null));
+        }
+        return baseApr(persona.getCreditScore(), persona.getPaymentHistory());
+    }
 
 }
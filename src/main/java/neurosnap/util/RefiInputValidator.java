@@ -1,5 +1,7 @@
 package neurosnap.util;
 
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import neurosnap.dto.RecommendRequest;
@@ -13,7 +15,14 @@ import java.util.Set;
 @AllArgsConstructor
 public class RefiInputValidator {
 
+    private final ObservationRegistry observationRegistry;
+
     public List<String>  validate( RecommendRequest requstObject, String personaId ) {
+        return Observation.createNotStarted( "neurosnap.recommend.validate", observationRegistry )
+                .observe( () -> check( requstObject, personaId ) );
+    }
+
+    private List<String> check( RecommendRequest requstObject, String personaId ) {
         List<String> errors = new ArrayList<>();
 
         if (requstObject.getLoanAmount() < 300 || requstObject.getLoanAmount()>5000 ) {
@@ -0,0 +1,137 @@
+package neurosnap.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * A JSON response body serialized once, with its gzip variant and ETag computed up front.
+ *
+ * Cached and static payloads are kept in this form so serving them is a header check and a byte
+ * copy: no object mapping, no compression on the request path.
+ *
+ * Notes:
+ * - The ETag is a strong validator over the uncompressed bytes (64-bit FNV-1a); a matching
+ *   If-None-Match on GET gets 304.
+ * - gzip is stored only when the body is big enough to gain from it; otherwise identity is served.
+ * - Responses carry Vary: Accept-Encoding so shared caches keep the variants apart.
+ */
+public final class ResponseBytes
+{
+    /** Bodies below this size go out uncompressed; the gzip header alone is ~20 bytes. */
+    private static final int MIN_GZIP_BYTES = 256;
+
+    private final byte[] identity;
+    private final byte[] gzip;
+    private final String etag;
+
+    private ResponseBytes( byte[] identity, byte[] gzip, String etag )
+    {
+        this.identity = identity;
+        this.gzip = gzip;
+        this.etag = etag;
+    }
+
+    /** Precompresses and fingerprints {@code json}; the array is kept as-is, do not modify it afterwards. */
+    public static ResponseBytes of( byte[] json )
+    {
+        byte[] gzip = null;
+        if ( json.length >= MIN_GZIP_BYTES ) {
+            byte[] compressed = gzip( json );
+            if ( compressed.length < json.length ) gzip = compressed;
+        }
+        return new ResponseBytes( json, gzip, '"' + Long.toHexString( PersonaFingerprint.hash( json ) ) + '"' );
+    }
+
+    /** Writes the best variant for the request straight to the servlet output stream (or 304 for a matching GET). */
+    public void writeTo( HttpServletRequest request, HttpServletResponse response ) throws IOException
+    {
+        response.setHeader( HttpHeaders.ETAG, etag );
+        response.setHeader( HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING );
+        boolean safe = "GET".equals( request.getMethod() ) || "HEAD".equals( request.getMethod() );
+        if ( safe && notModified( request.getHeader( HttpHeaders.IF_NONE_MATCH ) ) ) {
+            response.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+            return;
+        }
+        byte[] body = identity;
+        if ( gzip != null && acceptsGzip( request.getHeader( HttpHeaders.ACCEPT_ENCODING ) ) ) {
+            body = gzip;
+            response.setHeader( HttpHeaders.CONTENT_ENCODING, "gzip" );
+        }
+        response.setStatus( HttpServletResponse.SC_OK );
+        response.setContentType( MediaType.APPLICATION_JSON_VALUE );
+        response.setContentLength( body.length );
+        response.getOutputStream().write( body );
+    }
+
+    /**
+     * Same as {@link #writeTo} for handlers that must return a ResponseEntity (async /recommend);
+     * the byte[] body goes out through the byte-array converter, not Jackson. No 304 handling, the
+     * async endpoints are all POSTs.
+     */
+    public ResponseEntity<byte[]> toResponseEntity( ResponseEntity.BodyBuilder builder, String acceptEncoding )
+    {
+        builder.eTag( etag ).header( HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING );
+        if ( gzip != null && acceptsGzip( acceptEncoding ) ) {
+            return builder.contentType( MediaType.APPLICATION_JSON ).header( HttpHeaders.CONTENT_ENCODING, "gzip" ).body( gzip );
+        }
+        return builder.contentType( MediaType.APPLICATION_JSON ).body( identity );
+    }
+
+    private boolean notModified( String ifNoneMatch )
+    {
+        if ( ifNoneMatch == null ) return false;
+        for ( String candidate : ifNoneMatch.split( "," ) ) {
+            String tag = candidate.trim();
+            if ( tag.startsWith( "W/" ) ) tag = tag.substring( 2 );
+            if ( tag.equals( "*" ) || tag.equals( etag ) ) return true;
+        }
+        return false;
+    }
+
+    /** True unless gzip is absent or explicitly refused (q=0). */
+    private static boolean acceptsGzip( String acceptEncoding )
+    {
+        if ( acceptEncoding == null ) return false;
+        for ( String part : acceptEncoding.split( "," ) ) {
+            String[] tokens = part.trim().split( ";" );
+            String coding = tokens[0].trim();
+            if ( !coding.equalsIgnoreCase( "gzip" ) && !coding.equals( "*" ) ) continue;
+            for ( int i = 1; i < tokens.length; i++ ) {
+                String parameter = tokens[i].trim();
+                if ( parameter.startsWith( "q=" ) ) {
+                    try {
+                        if ( Double.parseDouble( parameter.substring( 2 ) ) <= 0 ) return false;
+                    } catch ( NumberFormatException e ) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static byte[] gzip( byte[] bytes )
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream( bytes.length / 4 + 64 );
+        try ( GZIPOutputStream gz = new GZIPOutputStream( out, 8192 )
+        {
+            {
+                def.setLevel( Deflater.BEST_COMPRESSION );
+            }
+        } ) {
+            gz.write( bytes );
+        } catch ( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+        return out.toByteArray();
+    }
+}
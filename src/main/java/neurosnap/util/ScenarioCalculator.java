@@ -0,0 +1,58 @@
+package neurosnap.util;
+
+/**
+ * Structure-of-arrays what-if calculator for one base plan.
+ *
+ * Scenario i changes the base plan by:
+ *   rateDeltas[i]          APR change in percentage points (applied from month 1),
+ *   tenureDeltas[i]        tenure change in months (EMI is recomputed for the new tenure),
+ *   extraPayments[i]       one-off prepayment (USD) made at the end of month extraPaymentMonths[i].
+ * The EMI stays fixed after a prepayment, so the loan closes earlier.
+ *
+ * Inputs and outputs are parallel primitive arrays; the loop allocates nothing per scenario.
+ * Inputs are not validated here; {@code ScenarioService} bounds tenures, amounts and total work.
+ */
+public final class ScenarioCalculator
+{
+    /** Balances below half a cent count as paid off. */
+    private static final double PAID_OFF = 0.005;
+
+    private ScenarioCalculator()
+    {
+    }
+
+    /**
+     * @param emi           out: EMI of each scenario
+     * @param payoffMonths  out: months until the loan is closed
+     * @param totalInterest out: interest paid over the life of the scenario
+     */
+    public static void compute( double principal, double annualRate, int tenure,
+            double[] rateDeltas, int[] tenureDeltas, double[] extraPayments, int[] extraPaymentMonths,
+            double[] emi, int[] payoffMonths, double[] totalInterest )
+    {
+        int count = emi.length;
+        for ( int i = 0; i < count; i++ ) {
+            double rate = Math.max( 0, annualRate + rateDeltas[i] );
+            int months = Math.max( 1, tenure + tenureDeltas[i] );
+            double monthlyRate = rate / 12.0 / 100.0;
+            double payment = principal * RefiCalculator.annuityFactor( rate, months );
+
+            double balance = principal;
+            double interest = 0;
+            int month = 0;
+            while ( balance > PAID_OFF && month < months ) {
+                month++;
+                double accrued = balance * monthlyRate;
+                interest += accrued;
+                balance = balance + accrued - Math.min( payment, balance + accrued );
+                if ( month == extraPaymentMonths[i] ) {
+                    balance -= Math.min( extraPayments[i], balance );
+                }
+            }
+
+            emi[i] = payment;
+            payoffMonths[i] = month;
+            totalInterest[i] = interest;
+        }
+    }
+}
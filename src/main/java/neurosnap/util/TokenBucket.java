@@ -0,0 +1,66 @@
+package neurosnap.util;
+
+/**
+ * Classic token bucket used for request admission.
+ *
+ * Notes:
+ * - Tokens refill continuously at {@code ratePerSecond} up to {@code capacity} (the burst size).
+ * - Refill is computed lazily from System.nanoTime() on each call, so an idle bucket costs nothing.
+ * - Methods are synchronized; a bucket is only ever touched once per admitted request.
+ */
+public class TokenBucket
+{
+    private final double capacity;
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket( double ratePerSecond, double capacity )
+    {
+        if ( ratePerSecond <= 0 || capacity < 1 ) throw new IllegalArgumentException( "rate must be > 0 and capacity >= 1" );
+        this.capacity = capacity;
+        this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /** Takes one token if available. */
+    public synchronized boolean tryAcquire()
+    {
+        refill();
+        if ( tokens >= 1 ) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /** Gives back a token taken by {@link #tryAcquire()} when a later admission stage rejected the request. */
+    public synchronized void refund()
+    {
+        tokens = Math.min( capacity, tokens + 1 );
+    }
+
+    /** Milliseconds until the next token becomes available (0 if one is available now). */
+    public synchronized long millisUntilNextToken()
+    {
+        refill();
+        if ( tokens >= 1 ) return 0;
+        return (long) Math.ceil( ( 1 - tokens ) / tokensPerNano / 1_000_000d );
+    }
+
+    /** True when the bucket has fully refilled, i.e. nobody used it recently. */
+    public synchronized boolean isIdle()
+    {
+        refill();
+        return tokens >= capacity;
+    }
+
+    private void refill()
+    {
+        long now = System.nanoTime();
+        tokens = Math.min( capacity, tokens + ( now - lastRefillNanos ) * tokensPerNano );
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,61 @@
+package neurosnap.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class DeadlineTest
+{
+    @Test
+    void noneCannotBeCancelled()
+    {
+        Deadline none = Deadline.none();
+        AtomicInteger fired = new AtomicInteger();
+        none.onCancel( fired::incrementAndGet );
+
+        assertFalse( none.cancel( Deadline.Reason.CLIENT_DISCONNECTED ) );
+        assertEquals( 0, fired.get() );
+        assertFalse( none.isExpired() );
+        assertEquals( Long.MAX_VALUE, none.remainingMillis() );
+    }
+
+    @Test
+    void unboundedHasNoTimeLimitButCanBeCancelled() throws Exception
+    {
+        Deadline deadline = Deadline.unbounded();
+        AtomicInteger fired = new AtomicInteger();
+        deadline.onCancel( fired::incrementAndGet );
+
+        assertTrue( deadline.isUnbounded() );
+        assertFalse( deadline.isExpired() );
+        assertEquals( Long.MAX_VALUE, deadline.remainingMillis() );
+        deadline.check();
+
+        assertTrue( deadline.cancel( Deadline.Reason.CLIENT_DISCONNECTED ) );
+        assertFalse( deadline.cancel( Deadline.Reason.DEADLINE_EXCEEDED ) );
+        assertEquals( 1, fired.get() );
+        assertTrue( deadline.isExpired() );
+        assertEquals( 0, deadline.remainingMillis() );
+        assertEquals( Deadline.Reason.CLIENT_DISCONNECTED, deadline.reason() );
+        assertThrows( DeadlineExceededException.class, deadline::check );
+    }
+
+    @Test
+    void sharedDeadlineOfUnboundedMembersIsCancelledWithTheLastMember()
+    {
+        Deadline first = Deadline.unbounded();
+        Deadline second = Deadline.afterMillis( 60_000 );
+        Deadline shared = Deadline.latestOf( List.of( first, second ) );
+
+        assertTrue( shared.isUnbounded() );
+        first.cancel( Deadline.Reason.CLIENT_DISCONNECTED );
+        assertFalse( shared.isExpired() );
+        second.cancel( Deadline.Reason.DEADLINE_EXCEEDED );
+        assertTrue( shared.isExpired() );
+    }
+}
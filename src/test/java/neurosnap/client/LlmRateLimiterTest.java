@@ -0,0 +1,68 @@
+package neurosnap.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+
+class LlmRateLimiterTest
+{
+    /** One request per second, no burst: every acquire after the first waits for the next refill. */
+    private static LlmRateLimiter oneRequestPerSecond()
+    {
+        return new LlmRateLimiter( new SimpleMeterRegistry(), true, 60, 1_000_000, 1 );
+    }
+
+    @Test
+    void interactiveCallersGoBeforeQueuedBatchWork() throws Exception
+    {
+        LlmRateLimiter limiter = oneRequestPerSecond();
+        limiter.acquire( LlmLane.SPECULATIVE, 1, Deadline.none() );
+
+        List<LlmLane> granted = new CopyOnWriteArrayList<>();
+        Thread speculative = waiter( limiter, LlmLane.SPECULATIVE, granted );
+        Thread batch = waiter( limiter, LlmLane.BATCH, granted );
+        Thread.sleep( 100 );
+        Thread interactive = waiter( limiter, LlmLane.INTERACTIVE, granted );
+        Thread.sleep( 100 );
+        for ( Thread t : List.of( speculative, batch, interactive ) ) t.join( 5000 );
+
+        assertEquals( List.of( LlmLane.INTERACTIVE, LlmLane.BATCH, LlmLane.SPECULATIVE ), granted );
+    }
+
+    @Test
+    void waiterGivesUpAtItsDeadline() throws Exception
+    {
+        LlmRateLimiter limiter = oneRequestPerSecond();
+        limiter.acquire( LlmLane.INTERACTIVE, 1, Deadline.none() );
+
+        assertThrows( DeadlineExceededException.class, () -> limiter.acquire( LlmLane.INTERACTIVE, 1, Deadline.afterMillis( 50 ) ) );
+    }
+
+    @Test
+    void parsesProviderResetDurations()
+    {
+        assertEquals( 20, LlmRateLimiter.parseDuration( "20ms" ) );
+        assertEquals( 360_000, LlmRateLimiter.parseDuration( "6m0s" ) );
+        assertEquals( 3_723_500, LlmRateLimiter.parseDuration( "1h2m3.5s" ) );
+        assertEquals( -1, LlmRateLimiter.parseDuration( "soon" ) );
+    }
+
+    private static Thread waiter( LlmRateLimiter limiter, LlmLane lane, List<LlmLane> granted ) throws InterruptedException
+    {
+        Thread t = new Thread( () -> {
+            try {
+                limiter.acquire( lane, 1, Deadline.none() );
+                granted.add( lane );
+            } catch ( Exception e ) {
+                throw new RuntimeException( e );
+            }
+        } );
+        t.start();
+        Thread.sleep( 20 );
+        return t;
+    }
+}
@@ -0,0 +1,100 @@
+package neurosnap.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import neurosnap.client.Deadline;
+import neurosnap.service.RecommendationGateway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+/**
+ * What ends an abandoned /recommend on Tomcat: the client hanging up is not noticed while the request is
+ * in flight, so the work runs until its deadline and is then cancelled with reason DEADLINE_EXCEEDED.
+ */
+@SpringBootTest( webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT )
+@ActiveProfiles("test")
+class RecommendDeadlineTest
+{
+    private static final long TIMEOUT_MILLIS = 1500;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockitoBean
+    private RecommendationGateway recommendationGateway;
+
+    @Test
+    void droppedConnectionIsBoundedByTheDeadline() throws Exception
+    {
+        AtomicReference<Deadline.Reason> reason = new AtomicReference<>();
+        AtomicLong cancelledAt = new AtomicLong();
+        CountDownLatch done = new CountDownLatch( 1 );
+        when( recommendationGateway.recommend( any(), any(), any(), any() ) ).thenAnswer( invocation -> {
+            Deadline deadline = invocation.getArgument( 3 );
+            CountDownLatch cancelled = new CountDownLatch( 1 );
+            deadline.onCancel( () -> {
+                cancelledAt.set( System.nanoTime() );
+                reason.set( deadline.reason() );
+                cancelled.countDown();
+            } );
+            try {
+                cancelled.await( 10, TimeUnit.SECONDS );
+                deadline.check();
+                return null;
+            } finally {
+                done.countDown();
+            }
+        } );
+
+        String body = "{\"loanAmount\":1000,\"tenure\":12}";
+        long start = System.nanoTime();
+        try ( Socket socket = new Socket( "localhost", port ) ) {
+            OutputStream out = socket.getOutputStream();
+            out.write( ( "POST /neurosnap/api/v1/refi/recommend HTTP/1.1\r\n"
+                    + "Host: localhost\r\n"
+                    + "Content-Type: application/json\r\n"
+                    + "persona-id: P_TEST\r\n"
+                    + "Neurosnap-Timeout-Millis: " + TIMEOUT_MILLIS + "\r\n"
+                    + "Content-Length: " + body.length() + "\r\n"
+                    + "\r\n" + body ).getBytes( StandardCharsets.US_ASCII ) );
+            out.flush();
+            Thread.sleep( 200 );
+        }
+        // The client is gone from here on.
+
+        assertTrue( done.await( 10, TimeUnit.SECONDS ), "the request was never cancelled" );
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis( cancelledAt.get() - start );
+        assertEquals( Deadline.Reason.DEADLINE_EXCEEDED, reason.get() );
+        assertTrue( elapsedMillis >= TIMEOUT_MILLIS - 100, () -> "cancelled after " + elapsedMillis + " ms" );
+
+        assertEquals( 1.0, counter( "deadline_exceeded" ).count() );
+        assertNull( meterRegistry.find( "neurosnap.recommend.abandoned" ).tag( "reason", "client_disconnected" ).counter() );
+    }
+
+    private Counter counter( String reason )
+    {
+        Counter counter = meterRegistry.find( "neurosnap.recommend.abandoned" ).tag( "reason", reason ).counter();
+        assertTrue( counter != null, () -> "no neurosnap.recommend.abandoned{reason=" + reason + "}" );
+        return counter;
+    }
+}
@@ -0,0 +1,152 @@
+package neurosnap.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import neurosnap.NeurosnapApplication;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Two nodes on random ports sharing one peer list, with partitioned loading.
+ */
+class ClusterPartitioningTest
+{
+    private static String urlA;
+    private static String urlB;
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void startNodes() throws IOException
+    {
+        int portA = freePort();
+        int portB = freePort();
+        urlA = "http://localhost:" + portA;
+        urlB = "http://localhost:" + portB;
+        nodeA = start( portA, urlA );
+        nodeB = start( portB, urlB );
+    }
+
+    @AfterAll
+    static void stopNodes()
+    {
+        if ( nodeB != null ) nodeB.close();
+        if ( nodeA != null ) nodeA.close();
+    }
+
+    private static ConfigurableApplicationContext start( int port, String self )
+    {
+        return new SpringApplicationBuilder( NeurosnapApplication.class )
+                .profiles( "test" )
+                .properties(
+                        "server.port=" + port,
+                        "neurosnap.cluster.enabled=true",
+                        "neurosnap.cluster.self=" + self,
+                        "neurosnap.cluster.peers=" + urlA + "," + urlB,
+                        "neurosnap.cluster.partitioned-loading=true",
+                        "neurosnap.results.enabled=false" )
+                .run();
+    }
+
+    private static int freePort() throws IOException
+    {
+        try ( ServerSocket socket = new ServerSocket( 0 ) ) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /** The whole workbook, read without clustering. */
+    private static List<String> allPersonaIds()
+    {
+        ClusterService single = new ClusterService( new ObjectMapper(), new SimpleMeterRegistry(), false, "", "", 128, false, 130 );
+        PersonaReaderService reader = new PersonaReaderService( event -> {}, ObservationRegistry.NOOP, single );
+        reader.readPersonasFromExcel();
+        return ids( reader );
+    }
+
+    private static List<String> ids( PersonaReaderService reader )
+    {
+        List<String> ids = new ArrayList<>();
+        reader.forEachView( view -> ids.add( view.getPersonaId() ) );
+        return ids;
+    }
+
+    @Test
+    void nodesAgreeOnTheOwnerOfEveryPersona()
+    {
+        ClusterService a = nodeA.getBean( ClusterService.class );
+        ClusterService b = nodeB.getBean( ClusterService.class );
+        for ( String id : allPersonaIds() ) {
+            String owner = a.owner( id );
+            assertEquals( owner, b.owner( id ), id );
+            assertTrue( owner.equals( urlA ) || owner.equals( urlB ), owner );
+            // Exactly one node considers the persona local.
+            assertTrue( a.loadsLocally( id ) ^ b.loadsLocally( id ), id );
+        }
+    }
+
+    @Test
+    void partitionedLoadingSplitsTheBook()
+    {
+        ClusterService cluster = nodeA.getBean( ClusterService.class );
+        List<String> onA = ids( nodeA.getBean( PersonaReaderService.class ) );
+        List<String> onB = ids( nodeB.getBean( PersonaReaderService.class ) );
+
+        Set<String> union = new HashSet<>( onA );
+        union.addAll( onB );
+        assertEquals( new HashSet<>( allPersonaIds() ), union );
+        assertEquals( union.size(), onA.size() + onB.size(), "a persona was loaded on both nodes" );
+        onA.forEach( id -> assertEquals( urlA, cluster.owner( id ), id ) );
+        onB.forEach( id -> assertEquals( urlB, cluster.owner( id ), id ) );
+    }
+
+    @Test
+    void personaCallsAreForwardedToTheOwner() throws Exception
+    {
+        String personaId = allPersonaIds().get( 0 );
+        String owner = nodeA.getBean( ClusterService.class ).owner( personaId );
+        String other = owner.equals( urlA ) ? urlB : urlA;
+
+        HttpResponse<String> response = HttpClient.newHttpClient().send( HttpRequest.newBuilder()
+                        .uri( URI.create( other + ClusterService.CONSOLIDATE_PATH ) )
+                        .header( "Content-Type", "application/json" )
+                        .header( "persona-id", personaId )
+                        .POST( HttpRequest.BodyPublishers.ofString( "{\"tenure\":12}" ) )
+                        .build(),
+                HttpResponse.BodyHandlers.ofString() );
+
+        assertEquals( owner, response.headers().firstValue( "Neurosnap-Served-By" ).orElse( null ), response.body() );
+        assertFalse( response.body().contains( "Unknown persona-id" ), response.body() );
+    }
+
+    @Test
+    void wholeBookEndpointsAreRejected() throws Exception
+    {
+        HttpResponse<String> response = HttpClient.newHttpClient().send( HttpRequest.newBuilder()
+                        .uri( URI.create( urlA + "/neurosnap/api/v1/refi/personas" ) )
+                        .GET()
+                        .build(),
+                HttpResponse.BodyHandlers.ofString() );
+
+        assertEquals( 409, response.statusCode() );
+        assertTrue( response.body().contains( "PARTITIONED_BOOK" ), response.body() );
+    }
+}
@@ -0,0 +1,214 @@
+package neurosnap.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import neurosnap.dto.ExistingLoan;
+import neurosnap.dto.Persona;
+import org.junit.jupiter.api.Test;
+
+class PersonaColumnStoreTest
+{
+    private static Persona persona( String id, int creditScore )
+    {
+        Persona p = new Persona();
+        p.setPersonaId( id );
+        p.setPersonaName( "Name of " + id );
+        p.setIncome( "MEDIUM" );
+        p.setPaymentBehavior( "Pays on the 5th, früh" );
+        p.setRefiExperience( "NONE" );
+        p.setCreditScore( creditScore );
+        p.setExistingLoanAmount( 10_000.5 );
+        p.setExistingInterestRate( 17.25 );
+        p.setExistingPendingAmount( 4_321.09 );
+        p.setPaymentHistory( "DISCIPLINED" );
+        p.setDob( "07-03-1990" );
+        p.setSsn( 123_45_6789 );
+        p.setMobileNumber( 5_551_234_567L );
+        p.setVerificationCode( 4242 );
+        p.setExistingTenure( 36 );
+        p.setExistingEmi( 345.67 );
+        p.setBankName( "First Bank" );
+        p.setCardNumber( 4_111_1111_1111_1111L );
+        p.setMinimumRefinanceAmt( 2_500 );
+        p.setIncomeAmt( 85_000 );
+        return p;
+    }
+
+    private static ExistingLoan loan( String id, double pending )
+    {
+        return new ExistingLoan( id, "Lender " + id, pending * 2, pending, 19.5, pending / 20, 20 );
+    }
+
+    private static void assertSamePersona( Persona expected, Persona actual )
+    {
+        assertEquals( expected.getPersonaId(), actual.getPersonaId() );
+        assertEquals( expected.getPersonaName(), actual.getPersonaName() );
+        assertEquals( expected.getIncome(), actual.getIncome() );
+        assertEquals( expected.getPaymentBehavior(), actual.getPaymentBehavior() );
+        assertEquals( expected.getRefiExperience(), actual.getRefiExperience() );
+        assertEquals( expected.getCreditScore(), actual.getCreditScore() );
+        assertEquals( expected.getExistingLoanAmount(), actual.getExistingLoanAmount() );
+        assertEquals( expected.getExistingInterestRate(), actual.getExistingInterestRate() );
+        assertEquals( expected.getExistingPendingAmount(), actual.getExistingPendingAmount() );
+        assertEquals( expected.getPaymentHistory(), actual.getPaymentHistory() );
+        assertEquals( expected.getDob(), actual.getDob() );
+        assertEquals( expected.getSsn(), actual.getSsn() );
+        assertEquals( expected.getMobileNumber(), actual.getMobileNumber() );
+        assertEquals( expected.getVerificationCode(), actual.getVerificationCode() );
+        assertEquals( expected.getExistingTenure(), actual.getExistingTenure() );
+        assertEquals( expected.getExistingEmi(), actual.getExistingEmi() );
+        assertEquals( expected.getBankName(), actual.getBankName() );
+        assertEquals( expected.getCardNumber(), actual.getCardNumber() );
+        assertEquals( expected.getMinimumRefinanceAmt(), actual.getMinimumRefinanceAmt() );
+        assertEquals( expected.getIncomeAmt(), actual.getIncomeAmt() );
+        if ( expected.getExistingLoans() == null || expected.getExistingLoans().isEmpty() ) {
+            assertNull( actual.getExistingLoans() );
+            return;
+        }
+        assertEquals( expected.getExistingLoans(), actual.getExistingLoans() );
+    }
+
+    @Test
+    void personasRoundTripThroughToPersona()
+    {
+        PersonaColumnStore store = new PersonaColumnStore();
+
+        Persona full = persona( "P-1", 712 );
+        full.setExistingLoans( new ArrayList<>( List.of( loan( "CARD_1", 1_200 ), loan( "AUTO_1", 8_000.75 ) ) ) );
+
+        Persona sparse = persona( "P-2", 0 );
+        sparse.setPersonaName( null );
+        sparse.setIncome( null );
+        sparse.setPaymentBehavior( null );
+        sparse.setRefiExperience( null );
+        sparse.setPaymentHistory( null );
+        sparse.setBankName( null );
+        sparse.setDob( null );
+
+        Persona oddDob = persona( "P-3", 650 );
+        oddDob.setDob( "1990-03-07" );
+        Persona shortDob = persona( "P-4", 650 );
+        shortDob.setDob( "7-3-1990" );
+
+        Persona[] personas = { full, sparse, oddDob, shortDob };
+        for ( int i = 0; i < personas.length; i++ ) {
+            assertEquals( i, store.put( personas[i] ) );
+        }
+        assertEquals( personas.length, store.size() );
+        for ( int i = 0; i < personas.length; i++ ) {
+            assertEquals( i, store.find( personas[i].getPersonaId() ) );
+            assertSamePersona( personas[i], store.view( i ).toPersona() );
+        }
+        assertEquals( -1, store.find( "P-5" ) );
+        assertEquals( -1, store.find( null ) );
+
+        // The store keeps its own copies of the loans, and hands out new ones every time.
+        full.getExistingLoans().get( 0 ).setPendingAmount( 1 );
+        Persona read = store.view( 0 ).toPersona();
+        assertEquals( 1_200, read.getExistingLoans().get( 0 ).getPendingAmount() );
+        read.getExistingLoans().get( 1 ).setEmi( 0 );
+        assertNotSame( read.getExistingLoans(), store.view( 0 ).toPersona().getExistingLoans() );
+        assertEquals( 8_000.75 / 20, store.view( 0 ).toPersona().getExistingLoans().get( 1 ).getEmi() );
+    }
+
+    @Test
+    void upsertKeepsThePositionAndReplacesEveryField()
+    {
+        PersonaColumnStore store = new PersonaColumnStore();
+        Persona original = persona( "P-1", 700 );
+        original.setExistingLoans( List.of( loan( "CARD_1", 900 ) ) );
+        store.put( original );
+        store.put( persona( "P-2", 600 ) );
+
+        Persona replacement = persona( "P-1", 780 );
+        replacement.setPersonaName( null );
+        replacement.setBankName( "Second Bank" );
+        replacement.setDob( "1990/03/07" );
+        assertEquals( 0, store.put( replacement ) );
+
+        assertEquals( 2, store.size() );
+        assertEquals( 0, store.find( "P-1" ) );
+        assertEquals( 1, store.find( "P-2" ) );
+        assertSamePersona( replacement, store.view( 0 ).toPersona() );
+        assertEquals( 600, store.view( 1 ).getCreditScore() );
+    }
+
+    @Test
+    void everyPersonaStaysFindableAcrossRehashes()
+    {
+        PersonaColumnStore store = new PersonaColumnStore();
+        int count = 3 * PersonaColumnStore.INITIAL_ROWS + 1;
+        for ( int i = 0; i < count; i++ ) {
+            assertEquals( i, store.put( persona( "P-" + i, i % 850 ) ) );
+            // The newest and the oldest entry are both reachable right after each table switch.
+            assertEquals( i, store.find( "P-" + i ) );
+            assertEquals( 0, store.find( "P-0" ) );
+        }
+
+        assertEquals( count, store.size() );
+        for ( int i = 0; i < count; i++ ) {
+            assertEquals( i, store.find( "P-" + i ) );
+            assertEquals( "P-" + i, store.view( i ).getPersonaId() );
+            assertEquals( i % 850, store.view( i ).getCreditScore() );
+        }
+        assertEquals( -1, store.find( "P-" + count ) );
+
+        // Upserts after the rehash still land on the original positions.
+        assertEquals( 7, store.put( persona( "P-7", 1 ) ) );
+        assertEquals( count, store.size() );
+        assertEquals( 1, store.view( 7 ).getCreditScore() );
+    }
+
+    @Test
+    void indexBuiltBeforeAnUpsertReadsThePinnedRows()
+    {
+        PersonaColumnStore store = new PersonaColumnStore();
+        int count = 10;
+        for ( int i = 0; i < count; i++ ) {
+            Persona p = persona( "P-" + i, 600 + i );
+            p.setDob( i % 2 == 0 ? "07-03-1990" : "1990-03-07" );
+            p.setExistingLoans( List.of( loan( "CARD_" + i, 100 * ( i + 1 ) ) ) );
+            store.put( p );
+        }
+
+        // What PersonaIndexService's snapshot records: the row it indexed for every position.
+        int[] pinned = new int[count];
+        PersonaView held = store.view( 3 );
+        for ( int i = 0; i < count; i++ ) {
+            pinned[i] = store.row( i );
+        }
+
+        // Replace everything, often enough that every column grows into a new buffer.
+        for ( int round = 0; round < PersonaColumnStore.INITIAL_ROWS / count + 1; round++ ) {
+            for ( int i = 0; i < count; i++ ) {
+                Persona p = persona( "P-" + i, 300 + round );
+                p.setPersonaName( "Renamed " + round );
+                p.setBankName( "Bank " + round );
+                p.setDob( null );
+                store.put( p );
+            }
+        }
+        assertEquals( count, store.size() );
+
+        PersonaView cursor = new PersonaView( store );
+        for ( int i = 0; i < count; i++ ) {
+            Persona old = cursor.moveTo( i, pinned[i] ).toPersona();
+            assertEquals( "P-" + i, old.getPersonaId() );
+            assertEquals( 600 + i, old.getCreditScore() );
+            assertEquals( "Name of P-" + i, old.getPersonaName() );
+            assertEquals( "First Bank", old.getBankName() );
+            assertEquals( i % 2 == 0 ? "07-03-1990" : "1990-03-07", old.getDob() );
+            assertEquals( List.of( loan( "CARD_" + i, 100 * ( i + 1 ) ) ), old.getExistingLoans() );
+
+            assertEquals( 300 + PersonaColumnStore.INITIAL_ROWS / count, store.view( i ).getCreditScore() );
+            assertNull( store.view( i ).getDob() );
+            assertNull( store.view( i ).toPersona().getExistingLoans() );
+        }
+        assertEquals( 603, held.getCreditScore() );
+        assertEquals( "Name of P-3", held.getPersonaName() );
+    }
+}
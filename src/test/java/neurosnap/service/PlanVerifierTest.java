@@ -0,0 +1,193 @@
+package neurosnap.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Map;
+import neurosnap.dto.Persona;
+import neurosnap.dto.RecommendOption;
+import neurosnap.dto.RecommendOptionsResponse;
+import neurosnap.dto.RecommendRequest;
+import neurosnap.dto.rules.RuleSet;
+import neurosnap.util.FormulaCompiler;
+import neurosnap.util.MoneyKernel;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Feeds the verifier a deliberately wrong model answer and checks every repaired figure against
+ * {@link MoneyKernel}.
+ */
+class PlanVerifierTest
+{
+    private static final long LOAN_AMOUNT = 2000;
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final PlanVerifier verifier = new PlanVerifier( 0.05, registry );
+
+    private static Persona persona()
+    {
+        Persona persona = new Persona();
+        persona.setPersonaId( "P_TEST" );
+        persona.setCreditScore( 700 );
+        persona.setIncome( "HIGH" );
+        persona.setPaymentHistory( "DISCIPLINED" );
+        persona.setExistingEmi( 500 );
+        persona.setExistingPendingAmount( 1000 );
+        return persona;
+    }
+
+    private static RecommendRequest request()
+    {
+        RecommendRequest request = new RecommendRequest();
+        request.setLoanAmount( LOAN_AMOUNT );
+        request.setTenure( 12 );
+        return request;
+    }
+
+    private static RuleSet ruleSet()
+    {
+        return new RuleSet( "test", Map.of(), Map.of(), Map.of(), Map.of(), Map.of(),
+                Map.of( "baseApr", FormulaCompiler.compile( "12.5" ),
+                        "confidence", FormulaCompiler.compile( "goal == \"FASTER_CLOSURE\" ? 90 : creditScore / 10" ) ),
+                "{}", "v1" );
+    }
+
+    private static RecommendOption option( RecommendOption.GoalType goal, double rate, int tenure, boolean best )
+    {
+        RecommendOption option = new RecommendOption();
+        option.setPlanId( "PLAN_" + goal.name() );
+        option.setGoal( goal );
+        option.setInterestRate( rate );
+        option.setTenure( tenure );
+        option.setPrincipal( 1000 );
+        option.setEmi( 1 );
+        option.setBest( best );
+        return option;
+    }
+
+    /** LOWER_EMI and BALANCED both claim best, BALANCED is too long and too expensive, FASTER_CLOSURE has no rate. */
+    private static RecommendOptionsResponse wrongAnswer()
+    {
+        RecommendOptionsResponse response = new RecommendOptionsResponse();
+        response.setRecommendations( new RecommendOption[] {
+                option( RecommendOption.GoalType.LOWER_EMI, 16, 12, true ),
+                option( RecommendOption.GoalType.BALANCED, 20, 12, true ),
+                option( RecommendOption.GoalType.FASTER_CLOSURE, 0, 6, false ) } );
+        return response;
+    }
+
+    private static RecommendOption byGoal( RecommendOptionsResponse response, RecommendOption.GoalType goal )
+    {
+        for ( RecommendOption option : response.getRecommendations() ) {
+            if ( option.getGoal() == goal ) return option;
+        }
+        throw new AssertionError( "No " + goal );
+    }
+
+    private double count( String name, String result )
+    {
+        return registry.counter( name, "result", result ).count();
+    }
+
+    @Test
+    void recomputesAmountsFromTheKernel()
+    {
+        RecommendOptionsResponse response = wrongAnswer();
+        assertTrue( verifier.verifyAndRepair( response, persona(), request(), ruleSet() ) > 0 );
+
+        long principal = MoneyKernel.principalCents( LOAN_AMOUNT * 100 );
+        long disburse = MoneyKernel.disburseCents( LOAN_AMOUNT * 100, MoneyKernel.toCents( 1000 ) );
+        long lowerEmiTotal = 0;
+        for ( RecommendOption option : response.getRecommendations() ) {
+            long emi = MoneyKernel.emiCents( principal, MoneyKernel.toBps( option.getInterestRate() ), option.getTenure() );
+            assertEquals( MoneyKernel.toUsd( principal ), option.getPrincipal() );
+            assertEquals( MoneyKernel.toUsd( emi ), option.getEmi() );
+            assertEquals( MoneyKernel.toUsd( MoneyKernel.totalRepaidCents( emi, option.getTenure() ) ), option.getTotalLoanAmount() );
+            assertEquals( MoneyKernel.toUsd( disburse ), option.getDisburseAmount() );
+            if ( option.getGoal() == RecommendOption.GoalType.LOWER_EMI ) {
+                lowerEmiTotal = MoneyKernel.toCents( option.getTotalLoanAmount() );
+            }
+        }
+
+        RecommendOption lower = byGoal( response, RecommendOption.GoalType.LOWER_EMI );
+        RecommendOption faster = byGoal( response, RecommendOption.GoalType.FASTER_CLOSURE );
+        assertEquals( 0, lower.getSavingsPerMonth() );
+        assertEquals( 0, lower.getTotalSavings() );
+        assertEquals( MoneyKernel.toUsd( MoneyKernel.toCents( 500 ) - MoneyKernel.toCents( faster.getEmi() ) ), faster.getSavingsPerMonth() );
+        assertEquals( MoneyKernel.toUsd( lowerEmiTotal - MoneyKernel.toCents( faster.getTotalLoanAmount() ) ), faster.getTotalSavings() );
+        assertEquals( MoneyKernel.breakEvenMonths( MoneyKernel.FEES_CENTS, MoneyKernel.toCents( faster.getSavingsPerMonth() ) ),
+                faster.getBreakEvenMonths() );
+    }
+
+    @Test
+    void keepsBalancedBetweenTheExtremesAndNotDearerThanLowerEmi()
+    {
+        RecommendOptionsResponse response = wrongAnswer();
+        verifier.verifyAndRepair( response, persona(), request(), ruleSet() );
+
+        RecommendOption balanced = byGoal( response, RecommendOption.GoalType.BALANCED );
+        assertEquals( 9, balanced.getTenure() );
+        assertEquals( 16, balanced.getInterestRate() );
+        // A missing rate falls back to the rule set's baseApr formula.
+        assertEquals( 12.5, byGoal( response, RecommendOption.GoalType.FASTER_CLOSURE ).getInterestRate() );
+    }
+
+    @Test
+    void flagsExactlyOneBestByThePersonaRule()
+    {
+        RecommendOptionsResponse response = wrongAnswer();
+        verifier.verifyAndRepair( response, persona(), request(), ruleSet() );
+
+        // HIGH income with a DISCIPLINED history prefers FASTER_CLOSURE.
+        assertTrue( byGoal( response, RecommendOption.GoalType.FASTER_CLOSURE ).isBest() );
+        assertFalse( byGoal( response, RecommendOption.GoalType.LOWER_EMI ).isBest() );
+        assertFalse( byGoal( response, RecommendOption.GoalType.BALANCED ).isBest() );
+    }
+
+    @Test
+    void confidenceComesFromTheRuleSetFormula()
+    {
+        RecommendOptionsResponse response = wrongAnswer();
+        verifier.verifyAndRepair( response, persona(), request(), ruleSet() );
+
+        assertEquals( 90, byGoal( response, RecommendOption.GoalType.FASTER_CLOSURE ).getConfidence() );
+        assertEquals( 70, byGoal( response, RecommendOption.GoalType.LOWER_EMI ).getConfidence() );
+        assertEquals( 70, byGoal( response, RecommendOption.GoalType.BALANCED ).getConfidence() );
+    }
+
+    @Test
+    void countsRepairsAndCleanAnswers()
+    {
+        RecommendOptionsResponse response = wrongAnswer();
+        int repaired = verifier.verifyAndRepair( response, persona(), request(), ruleSet() );
+
+        assertEquals( 1, count( "neurosnap.plan.verifier.responses", "repaired" ) );
+        assertEquals( 0, count( "neurosnap.plan.verifier.responses", "clean" ) );
+        assertTrue( count( "neurosnap.plan.verifier.fields", "repaired" ) > 0 );
+        assertTrue( count( "neurosnap.plan.verifier.fields", "repaired" ) <= repaired );
+
+        // The repaired answer is now consistent: a second pass changes nothing.
+        assertEquals( 0, verifier.verifyAndRepair( response, persona(), request(), ruleSet() ) );
+        assertEquals( 1, count( "neurosnap.plan.verifier.responses", "clean" ) );
+    }
+
+    @Test
+    void suppressedThreadsRepairWithoutCounting()
+    {
+        RecommendOptionsResponse response = wrongAnswer();
+        verifier.setMetricsSuppressed( true );
+        try {
+            assertTrue( verifier.verifyAndRepair( response, persona(), request(), ruleSet() ) > 0 );
+        } finally {
+            verifier.setMetricsSuppressed( false );
+        }
+
+        assertTrue( byGoal( response, RecommendOption.GoalType.FASTER_CLOSURE ).isBest() );
+        assertEquals( 0, count( "neurosnap.plan.verifier.responses", "repaired" ) );
+        assertEquals( 0, count( "neurosnap.plan.verifier.fields", "repaired" ) );
+        assertEquals( 0, count( "neurosnap.plan.verifier.fields", "ok" ) );
+    }
+}
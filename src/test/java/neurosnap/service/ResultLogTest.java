@@ -0,0 +1,183 @@
+package neurosnap.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class ResultLogTest
+{
+    private static final long CAPACITY = 8L << 20;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int BODY_FIXED_BYTES = 10;
+
+    private static byte[] bytes( String s )
+    {
+        return s.getBytes( StandardCharsets.UTF_8 );
+    }
+
+    private static Path file() throws IOException
+    {
+        return Files.createTempDirectory( "result-log" ).resolve( "results.log" );
+    }
+
+    /** Bytes one record takes in the file. */
+    private static long recordBytes( String key, String value )
+    {
+        return RECORD_HEADER_BYTES + BODY_FIXED_BYTES + bytes( key ).length + bytes( value ).length;
+    }
+
+    private static void overwrite( Path path, long position, byte[] data ) throws IOException
+    {
+        try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.WRITE ) ) {
+            channel.write( ByteBuffer.wrap( data ), position );
+        }
+    }
+
+    @Test
+    void damagedTailIsDroppedOnReopenAndAppendsContinueThere() throws Exception
+    {
+        // Flipped value byte (CRC mismatch), zeroed second half (torn write), length past the capacity.
+        for ( int damage = 0; damage < 3; damage++ ) {
+            Path path = file();
+            ResultLog log = ResultLog.open( path, CAPACITY );
+            assertTrue( log.put( "a", bytes( "first" ), 1 ) );
+            assertTrue( log.put( "b", bytes( "second" ), 2 ) );
+            long tail = log.usedBytes();
+            assertTrue( log.put( "c", bytes( "third value" ), 3 ) );
+            log.force();
+
+            long record = recordBytes( "c", "third value" );
+            switch ( damage ) {
+                case 0 -> overwrite( path, tail + record - 1, new byte[] { 'X' } );
+                case 1 -> overwrite( path, tail + record / 2, new byte[(int) ( record - record / 2 )] );
+                default -> overwrite( path, tail, ByteBuffer.allocate( 4 ).putInt( Integer.MAX_VALUE ).array() );
+            }
+
+            ResultLog reopened = ResultLog.open( path, CAPACITY );
+            assertEquals( 2, reopened.size() );
+            assertEquals( tail, reopened.usedBytes() );
+            assertArrayEquals( bytes( "first" ), reopened.get( "a", 0 ) );
+            assertArrayEquals( bytes( "second" ), reopened.get( "b", 0 ) );
+            assertNull( reopened.get( "c", 0 ) );
+
+            // The next append overwrites the damaged record, and a later scan reads past it.
+            assertTrue( reopened.put( "d", bytes( "fourth" ), 4 ) );
+            reopened.force();
+            ResultLog again = ResultLog.open( path, CAPACITY );
+            assertEquals( 3, again.size() );
+            assertEquals( tail + recordBytes( "d", "fourth" ), again.usedBytes() );
+            assertArrayEquals( bytes( "fourth" ), again.get( "d", 0 ) );
+            assertNull( again.get( "c", 0 ) );
+        }
+    }
+
+    @Test
+    void overwritesAreCountedAsDeadBytes() throws Exception
+    {
+        Path path = file();
+        ResultLog log = ResultLog.open( path, CAPACITY );
+        assertEquals( HEADER_BYTES, log.usedBytes() );
+        assertEquals( 0, log.deadBytes() );
+
+        log.put( "key", bytes( "v1" ), 10 );
+        log.put( "other", bytes( "o1" ), 10 );
+        assertEquals( 0, log.deadBytes() );
+        log.put( "key", bytes( "version two" ), 20 );
+        assertEquals( recordBytes( "key", "v1" ), log.deadBytes() );
+        log.put( "key", bytes( "v3" ), 30 );
+        assertEquals( recordBytes( "key", "v1" ) + recordBytes( "key", "version two" ), log.deadBytes() );
+
+        assertEquals( 2, log.size() );
+        assertEquals( HEADER_BYTES + log.deadBytes() + recordBytes( "key", "v3" ) + recordBytes( "other", "o1" ), log.usedBytes() );
+        assertArrayEquals( bytes( "v3" ), log.get( "key", 0 ) );
+        assertNull( log.get( "key", 31 ) );
+        assertEquals( log.deadBytes() + recordBytes( "other", "o1" ), log.reclaimableBytes( 20 ) );
+
+        // The scan on reopen arrives at the same accounting.
+        log.force();
+        ResultLog reopened = ResultLog.open( path, CAPACITY );
+        assertEquals( log.deadBytes(), reopened.deadBytes() );
+        assertEquals( log.usedBytes(), reopened.usedBytes() );
+        assertArrayEquals( bytes( "v3" ), reopened.get( "key", 0 ) );
+    }
+
+    @Test
+    void compactionKeepsLiveRecordsAndConcurrentAppends() throws Exception
+    {
+        Path path = file();
+        ResultLog log = ResultLog.open( path, CAPACITY );
+        for ( int i = 0; i < 2000; i++ ) {
+            log.put( "old-" + i, bytes( "expired" ), 100 );
+            log.put( "key-" + i, bytes( "stale " + i ), 1_000 );
+            log.put( "key-" + i, bytes( "value " + i ), 1_000 );
+        }
+
+        // Writers keep using the log they started with, like PersistentResultStore.remember does.
+        int writers = 4;
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch( writers );
+        List<List<String>> written = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for ( int w = 0; w < writers; w++ ) {
+            List<String> keys = new ArrayList<>();
+            written.add( keys );
+            String prefix = "w" + w + "-";
+            Thread thread = new Thread( () -> {
+                started.countDown();
+                for ( int i = 0; i < 2000 || !stop.get() && i < 20_000; i++ ) {
+                    String key = prefix + i;
+                    if ( !log.put( key, bytes( "fresh " + key ), 2_000 ) ) rejected.incrementAndGet();
+                    keys.add( key );
+                }
+            } );
+            threads.add( thread );
+            thread.start();
+        }
+        started.await();
+
+        ResultLog compacted = log.compact( 1_000 );
+        stop.set( true );
+        for ( Thread thread : threads ) thread.join();
+
+        assertEquals( 0, rejected.get() );
+        assertEquals( 0, compacted.deadBytes() );
+        for ( int i = 0; i < 2000; i++ ) {
+            assertNull( compacted.get( "old-" + i, 0 ) );
+            assertArrayEquals( bytes( "value " + i ), compacted.get( "key-" + i, 0 ) );
+        }
+        int total = 0;
+        for ( List<String> keys : written ) {
+            for ( String key : keys ) {
+                assertArrayEquals( bytes( "fresh " + key ), compacted.get( key, 0 ) );
+                // The replaced log forwards reads as well.
+                assertArrayEquals( bytes( "fresh " + key ), log.get( key, 0 ) );
+            }
+            total += keys.size();
+        }
+        assertEquals( 2000 + total, compacted.size() );
+
+        // The compacted file replaced the original on disk.
+        compacted.force();
+        ResultLog reopened = ResultLog.open( path, CAPACITY );
+        assertEquals( compacted.size(), reopened.size() );
+        assertEquals( compacted.usedBytes(), reopened.usedBytes() );
+        assertArrayEquals( bytes( "value 7" ), reopened.get( "key-7", 0 ) );
+    }
+}
@@ -0,0 +1,106 @@
+package neurosnap.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+
+class ServingTableTest
+{
+    private static byte[] bytes( String s )
+    {
+        return s.getBytes( StandardCharsets.UTF_8 );
+    }
+
+    private static Path dir() throws IOException
+    {
+        return Files.createTempDirectory( "serving-table" );
+    }
+
+    @Test
+    void spooledRowsAreInstalledAsATable() throws Exception
+    {
+        Path dir = dir();
+        Path spool = dir.resolve( "table.bin.partial" );
+        Path table = dir.resolve( "table.bin" );
+
+        try ( ServingTable.Builder builder = ServingTable.Builder.open( spool ) ) {
+            for ( int i = 0; i < 3000; i++ ) {
+                builder.put( "key-" + i, bytes( "value-" + i ) );
+            }
+            assertEquals( 3000, builder.size() );
+            builder.install( table );
+        }
+
+        assertFalse( Files.exists( spool ) );
+        ServingTable read = ServingTable.open( table );
+        assertEquals( 3000, read.size() );
+        for ( int i = 0; i < 3000; i++ ) {
+            assertArrayEquals( bytes( "value-" + i ), read.get( "key-" + i ) );
+        }
+        assertNull( read.get( "key-3000" ) );
+    }
+
+    @Test
+    void aCutShortRunResumesFromItsSpool() throws Exception
+    {
+        Path dir = dir();
+        Path spool = dir.resolve( "table.bin.partial" );
+        Path table = dir.resolve( "table.bin" );
+
+        try ( ServingTable.Builder first = ServingTable.Builder.open( spool ) ) {
+            first.put( "kept", bytes( "kept-value" ) );
+            first.put( "stale", bytes( "stale-value" ) );
+            first.put( "torn", bytes( "torn-value" ) );
+        }
+        // Crash in the middle of the last record.
+        try ( FileChannel channel = FileChannel.open( spool, StandardOpenOption.WRITE ) ) {
+            channel.truncate( channel.size() - 3 );
+        }
+
+        try ( ServingTable.Builder second = ServingTable.Builder.open( spool ) ) {
+            assertEquals( 2, second.resumed() );
+            assertTrue( second.contains( "kept" ) );
+            assertFalse( second.contains( "torn" ) );
+            second.put( "torn", bytes( "torn-value" ) );
+            second.put( "fresh", bytes( "fresh-value" ) );
+            second.install( table );
+        }
+
+        // "stale" was neither asked for nor written by the second run, so it is left out.
+        ServingTable read = ServingTable.open( table );
+        assertEquals( 3, read.size() );
+        assertArrayEquals( bytes( "kept-value" ), read.get( "kept" ) );
+        assertArrayEquals( bytes( "torn-value" ), read.get( "torn" ) );
+        assertArrayEquals( bytes( "fresh-value" ), read.get( "fresh" ) );
+        assertNull( read.get( "stale" ) );
+    }
+
+    @Test
+    void aGarbageLengthEndsRecovery() throws Exception
+    {
+        Path spool = dir().resolve( "table.bin.partial" );
+        try ( ServingTable.Builder builder = ServingTable.Builder.open( spool ) ) {
+            builder.put( "a", bytes( "1" ) );
+        }
+        long good = Files.size( spool );
+        try ( FileChannel channel = FileChannel.open( spool, StandardOpenOption.WRITE, StandardOpenOption.APPEND ) ) {
+            channel.write( ByteBuffer.allocate( 7 ).putShort( (short) 1 ).put( (byte) 'b' ).putInt( -5 ).flip() );
+        }
+
+        try ( ServingTable.Builder builder = ServingTable.Builder.open( spool ) ) {
+            assertEquals( 1, builder.resumed() );
+        }
+        assertEquals( good, Files.size( spool ) );
+    }
+}
@@ -0,0 +1,94 @@
+package neurosnap.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class ConsistentHashRingTest
+{
+    private static final int KEYS = 100_000;
+    private static final List<String> NODES = List.of( "http://node-a:8080", "http://node-b:8080",
+            "http://node-c:8080", "http://node-d:8080" );
+
+    private static List<String> keys()
+    {
+        List<String> keys = new ArrayList<>( KEYS );
+        for ( int i = 0; i < KEYS; i++ ) {
+            keys.add( String.format( "P_%06d", i ) );
+        }
+        return keys;
+    }
+
+    @Test
+    void similarKeysSpreadEvenlyOverNodes()
+    {
+        ConsistentHashRing ring = new ConsistentHashRing( NODES, 128 );
+        Map<String, Integer> owned = new HashMap<>();
+        for ( String key : keys() ) {
+            owned.merge( ring.owner( key ), 1, Integer::sum );
+        }
+
+        assertEquals( NODES.size(), owned.size() );
+        double fair = (double) KEYS / NODES.size();
+        for ( Map.Entry<String, Integer> entry : owned.entrySet() ) {
+            double share = entry.getValue() / fair;
+            assertTrue( share > 0.8 && share < 1.2, () -> entry.getKey() + " owns " + entry.getValue() + " of " + KEYS );
+        }
+    }
+
+    @Test
+    void ownerDoesNotDependOnPeerOrder()
+    {
+        ConsistentHashRing ring = new ConsistentHashRing( NODES, 128 );
+        ConsistentHashRing reversed = new ConsistentHashRing( List.of( NODES.get( 3 ), NODES.get( 2 ), NODES.get( 1 ), NODES.get( 0 ) ), 128 );
+        for ( String key : keys() ) {
+            assertEquals( ring.owner( key ), reversed.owner( key ), key );
+        }
+    }
+
+    @Test
+    void addingANodeOnlyMovesKeysToIt()
+    {
+        ConsistentHashRing before = new ConsistentHashRing( NODES, 128 );
+        List<String> grown = new ArrayList<>( NODES );
+        grown.add( "http://node-e:8080" );
+        ConsistentHashRing after = new ConsistentHashRing( grown, 128 );
+
+        int moved = 0;
+        for ( String key : keys() ) {
+            String owner = after.owner( key );
+            if ( !owner.equals( before.owner( key ) ) ) {
+                assertEquals( "http://node-e:8080", owner, key );
+                moved++;
+            }
+        }
+        // About 1/5 of the keys move to the new node.
+        double share = (double) moved / KEYS;
+        assertTrue( share > 0.15 && share < 0.25, () -> "moved share " + share );
+    }
+
+    @Test
+    void removingANodeOnlyMovesItsKeys()
+    {
+        ConsistentHashRing before = new ConsistentHashRing( NODES, 128 );
+        ConsistentHashRing after = new ConsistentHashRing( NODES.subList( 0, 3 ), 128 );
+        for ( String key : keys() ) {
+            String owner = before.owner( key );
+            if ( !owner.equals( NODES.get( 3 ) ) ) {
+                assertEquals( owner, after.owner( key ), key );
+            }
+        }
+    }
+
+    @Test
+    void emptyRingIsRejected()
+    {
+        assertThrows( IllegalArgumentException.class, () -> new ConsistentHashRing( List.of(), 128 ) );
+    }
+}
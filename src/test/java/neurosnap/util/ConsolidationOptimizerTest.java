@@ -0,0 +1,127 @@
+package neurosnap.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import neurosnap.util.ConsolidationOptimizer.Loan;
+import neurosnap.util.ConsolidationOptimizer.Plan;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Cross-checks the knapsack against every subset of small random books, priced the same way
+ * (loan amount rounded up to the dollar, at least 300 USD, fees counted as interest).
+ */
+class ConsolidationOptimizerTest
+{
+    private static final int BOOKS = 300;
+    private static final int MAX_BOOK = 12;
+    private static final long CAPACITY_CENTS = ConsolidationOptimizer.maxPendingCents();
+
+    /** Interest and payment after consolidating {@code mask}, or null when it breaks the cap. */
+    private static long[] price( Loan[] loans, long mask, int bps, int tenureMonths )
+    {
+        long interest = ConsolidationOptimizer.interestBeforeCents( loans );
+        long payment = ConsolidationOptimizer.paymentBeforeCents( loans );
+        if ( mask == 0 ) return new long[] { interest, payment };
+
+        long pending = 0;
+        for ( int i = 0; i < loans.length; i++ ) {
+            if ( ( mask & ( 1L << i ) ) == 0 ) continue;
+            if ( loans[i].pendingCents() <= 0 ) return null;
+            pending += loans[i].pendingCents();
+            interest -= loans[i].interestCents();
+            payment -= loans[i].emiCents();
+        }
+        if ( pending > CAPACITY_CENTS ) return null;
+
+        long needed = MoneyKernel.minLoanAmountCents( pending );
+        long loanAmount = Math.max( ConsolidationOptimizer.MIN_LOAN_CENTS, ( needed + 99 ) / 100 * 100 );
+        long principal = MoneyKernel.principalCents( loanAmount );
+        long emi = MoneyKernel.emiCents( principal, bps, tenureMonths );
+        interest += MoneyKernel.interestCents( MoneyKernel.totalRepaidCents( emi, tenureMonths ), principal )
+                + MoneyKernel.FEES_CENTS;
+        return new long[] { interest, payment + emi };
+    }
+
+    /** Best (primary, secondary) over every subset. */
+    private static long[] bruteForce( Loan[] loans, int bps, int tenureMonths, boolean minimizeEmi )
+    {
+        long[] best = null;
+        for ( long mask = 0; mask < 1L << loans.length; mask++ ) {
+            long[] after = price( loans, mask, bps, tenureMonths );
+            if ( after == null ) continue;
+            long[] key = minimizeEmi ? new long[] { after[1], after[0] } : after;
+            if ( best == null || key[0] < best[0] || key[0] == best[0] && key[1] < best[1] ) best = key;
+        }
+        return best;
+    }
+
+    private static Loan randomLoan( Random random, boolean wholeDollars )
+    {
+        long pending = 1 + random.nextInt( 250_000 );
+        if ( wholeDollars ) pending = ( pending + 99 ) / 100 * 100;
+        if ( random.nextInt( 20 ) == 0 ) pending = CAPACITY_CENTS + 1 + random.nextInt( 100_000 );
+        int remaining = 1 + random.nextInt( 60 );
+        long emi = pending / remaining + random.nextInt( 5_000 );
+        return new Loan( pending, emi, remaining );
+    }
+
+    private static void assertOptimal( Loan[] loans, int bps, int tenureMonths, boolean minimizeEmi )
+    {
+        Plan plan = ConsolidationOptimizer.optimize( loans, bps, tenureMonths, minimizeEmi );
+        long[] after = price( loans, plan.mask(), bps, tenureMonths );
+        assertEquals( after[0], plan.interestAfterCents(), "interest of the returned mask" );
+        assertEquals( after[1], plan.paymentAfterCents(), "payment of the returned mask" );
+
+        long[] expected = bruteForce( loans, bps, tenureMonths, minimizeEmi );
+        long[] actual = minimizeEmi
+                ? new long[] { plan.paymentAfterCents(), plan.interestAfterCents() }
+                : new long[] { plan.interestAfterCents(), plan.paymentAfterCents() };
+        assertEquals( expected[0], actual[0], () -> "primary, " + loans.length + " loans at " + bps + " bps" );
+        assertEquals( expected[1], actual[1], () -> "secondary, " + loans.length + " loans at " + bps + " bps" );
+    }
+
+    @Test
+    void matchesBruteForceOnRandomBooks()
+    {
+        Random random = new Random( 7 );
+        for ( int book = 0; book < BOOKS; book++ ) {
+            boolean wholeDollars = random.nextBoolean();
+            Loan[] loans = new Loan[1 + random.nextInt( MAX_BOOK )];
+            for ( int i = 0; i < loans.length; i++ ) loans[i] = randomLoan( random, wholeDollars );
+            int bps = random.nextInt( 3_000 );
+            int tenure = 3 + random.nextInt( 58 );
+            assertOptimal( loans, bps, tenure, false );
+            assertOptimal( loans, bps, tenure, true );
+        }
+    }
+
+    @Test
+    void tiesOnThePrimaryObjectiveGoToTheSecondary()
+    {
+        Random random = new Random( 11 );
+        for ( int book = 0; book < BOOKS; book++ ) {
+            // Same balance and interest, different payment: 6000 × 24, 7200 × 20 and 8000 × 18 all repay
+            // 144000 on 100000, and only four fit under the cap, so which four is left to the secondary.
+            Loan[] loans = new Loan[2 + random.nextInt( MAX_BOOK - 1 )];
+            for ( int i = 0; i < loans.length; i++ ) {
+                int variant = random.nextInt( 3 );
+                loans[i] = new Loan( 100_000, new long[] { 6_000, 7_200, 8_000 }[variant], new int[] { 24, 20, 18 }[variant] );
+            }
+            assertOptimal( loans, 1_200, 24, false );
+            assertOptimal( loans, 1_200, 24, true );
+        }
+    }
+
+    @Test
+    void balancesWithCentsThatFitTogetherAreNotRoundedOut()
+    {
+        Loan[] loans = {
+                new Loan( 244_501, 30_000, 12 ),
+                new Loan( 244_499, 30_000, 12 )
+        };
+        Plan plan = ConsolidationOptimizer.optimize( loans, 500, 24, true );
+        assertEquals( 0b11, plan.mask() );
+        assertEquals( ConsolidationOptimizer.MAX_LOAN_CENTS, plan.loanAmountCents() );
+    }
+}
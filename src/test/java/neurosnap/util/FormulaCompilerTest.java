@@ -0,0 +1,115 @@
+package neurosnap.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import neurosnap.dto.Persona;
+import org.junit.jupiter.api.Test;
+
+class FormulaCompilerTest
+{
+    private static double eval( String formula )
+    {
+        return eval( formula, persona( 700, "HIGH", "DISCIPLINED" ), null );
+    }
+
+    private static double eval( String formula, Persona persona, String goal )
+    {
+        return FormulaCompiler.compile( formula ).evaluate( new FormulaContext( persona, goal ) );
+    }
+
+    private static Persona persona( int creditScore, String income, String paymentHistory )
+    {
+        Persona persona = new Persona();
+        persona.setCreditScore( creditScore );
+        persona.setIncome( income );
+        persona.setPaymentHistory( paymentHistory );
+        persona.setExistingEmi( 1200.5 );
+        return persona;
+    }
+
+    @Test
+    void arithmeticFollowsUsualPrecedence()
+    {
+        assertEquals( 14, eval( "2 + 3 * 4" ) );
+        assertEquals( 20, eval( "(2 + 3) * 4" ) );
+        assertEquals( -5, eval( "2 - 3 - 4" ) );
+        assertEquals( 2, eval( "16 / 4 / 2" ) );
+        assertEquals( 1, eval( "1 + 2 > 2 && 3 < 4" ) );
+        assertEquals( 1, eval( "0 && 1 || 1" ) );
+        assertEquals( 7, eval( "1 > 2 ? 5 : 3 > 2 ? 7 : 9" ) );
+    }
+
+    @Test
+    void unaryOperators()
+    {
+        assertEquals( -3, eval( "-3" ) );
+        assertEquals( 3, eval( "--3" ) );
+        assertEquals( -6, eval( "-2 * 3" ) );
+        assertEquals( 5, eval( "2 - -3" ) );
+        assertEquals( -700, eval( "-creditScore" ) );
+        assertEquals( 0, eval( "!1" ) );
+        assertEquals( 1, eval( "!(creditScore < 600)" ) );
+    }
+
+    @Test
+    void functions()
+    {
+        assertEquals( 2, eval( "min(2, 3)" ) );
+        assertEquals( 3, eval( "max(2, 3)" ) );
+        assertEquals( 10, eval( "clamp(15, 0, 10)" ) );
+        assertEquals( 0, eval( "clamp(-5, 0, 10)" ) );
+        assertEquals( 1, eval( "floor(1.9)" ) );
+        assertEquals( 2, eval( "ceil(1.1)" ) );
+        assertEquals( 3, eval( "round(2.5)" ) );
+        assertEquals( 4, eval( "abs(-4)" ) );
+        assertEquals( 8, eval( "if(creditScore >= 700, 8, 9)" ) );
+        assertEquals( 1201, eval( "ceil(existingEmi)" ) );
+    }
+
+    @Test
+    void variablesAndTextComparisons()
+    {
+        String apr = "creditScore >= 750 && paymentHistory == \"DISCIPLINED\" ? 10.5 : creditScore >= 650 ? 16 : 24";
+        assertEquals( 10.5, eval( apr, persona( 780, "HIGH", "DISCIPLINED" ), null ) );
+        assertEquals( 16, eval( apr, persona( 780, "HIGH", "IRREGULAR" ), null ) );
+        assertEquals( 24, eval( apr, persona( 600, "LOW", "DISCIPLINED" ), null ) );
+
+        // Text is normalized: case and spaces do not matter.
+        assertEquals( 1, eval( "paymentHistory == 'mostly disciplined'", persona( 700, "MEDIUM", "Mostly Disciplined" ), null ) );
+        assertEquals( 1, eval( "incomeBand != \"LOW\"", persona( 700, "high", "DISCIPLINED" ), null ) );
+        assertEquals( 1, eval( "goal == \"FASTER_CLOSURE\"", persona( 700, "HIGH", "DISCIPLINED" ), "FASTER_CLOSURE" ) );
+        assertEquals( 1, eval( "true && !false" ) );
+    }
+
+    @Test
+    void unknownNamesAreRejectedAtCompileTime()
+    {
+        assertRejected( "creditScroe + 1", "Unknown variable 'creditScroe'" );
+        assertRejected( "sqrt(4)", "Unknown function 'sqrt'" );
+    }
+
+    @Test
+    void malformedInputIsRejected()
+    {
+        assertRejected( "", "Empty formula" );
+        assertRejected( "   ", "Empty formula" );
+        assertRejected( "1 +", "Unexpected end of formula" );
+        assertRejected( "(1 + 2", "Expected ')'" );
+        assertRejected( "1 2", "Unexpected input" );
+        assertRejected( "1 ? 2", "Expected ':'" );
+        assertRejected( "1.2.3", "Invalid number" );
+        assertRejected( "\"open", "Unterminated string" );
+        assertRejected( "1 # 2", "Unexpected input" );
+        assertRejected( "min(1)", "min() takes 2 argument(s)" );
+        assertRejected( "incomeBand > \"LOW\"", "Text only supports == and !=" );
+        assertRejected( "incomeBand == 3", "Cannot compare text with a number" );
+    }
+
+    private static void assertRejected( String formula, String message )
+    {
+        IllegalArgumentException e = assertThrows( IllegalArgumentException.class, () -> FormulaCompiler.compile( formula ) );
+        assertTrue( e.getMessage().startsWith( message ), () -> "'" + formula + "' failed with: " + e.getMessage() );
+    }
+}
@@ -0,0 +1,139 @@
+package neurosnap.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Cross-checks the fixed-point kernel against the same formulas in BigDecimal (40 significant digits),
+ * rounded half-up to the cent.
+ */
+class MoneyKernelTest
+{
+    private static final MathContext MC = new MathContext( 40 );
+    private static final int SAMPLES = 20_000;
+
+    /** Exact EMI in cents (unrounded): P × R(1+R)^N / ((1+R)^N − 1), R = bps / 120000; P / N at zero interest. */
+    private static BigDecimal exactEmiCents( long principalCents, int bps, int tenureMonths )
+    {
+        BigDecimal principal = BigDecimal.valueOf( principalCents );
+        if ( bps == 0 ) {
+            return principal.divide( BigDecimal.valueOf( tenureMonths ), MC );
+        }
+        BigDecimal r = BigDecimal.valueOf( bps ).divide( BigDecimal.valueOf( 120_000 ), MC );
+        BigDecimal growth = BigDecimal.ONE.add( r ).pow( tenureMonths, MC );
+        return principal.multiply( r ).multiply( growth ).divide( growth.subtract( BigDecimal.ONE ), MC );
+    }
+
+    private static long halfUp( BigDecimal cents )
+    {
+        return cents.setScale( 0, RoundingMode.HALF_UP ).longValueExact();
+    }
+
+    /**
+     * The factor path is exact to well under a thousandth of a cent, so it must match the reference
+     * unless the exact value sits on a half cent, where either neighbour is acceptable.
+     */
+    private static void assertFactorPathMatches( long principalCents, int bps, int tenureMonths )
+    {
+        BigDecimal exact = exactEmiCents( principalCents, bps, tenureMonths );
+        long actual = MoneyKernel.emiCents( principalCents, bps, tenureMonths );
+        long expected = halfUp( exact );
+        if ( actual == expected ) return;
+
+        BigDecimal distanceToHalf = exact.subtract( new BigDecimal( exact.toBigInteger() ) ).subtract( new BigDecimal( "0.5" ) ).abs();
+        assertTrue( distanceToHalf.compareTo( new BigDecimal( "0.001" ) ) < 0 && Math.abs( actual - expected ) == 1,
+                () -> "emiCents(" + principalCents + ", " + bps + " bps, " + tenureMonths + " m) = " + actual
+                        + ", exact " + exact.round( new MathContext( 12 ) ) );
+    }
+
+    @Test
+    void tablePathMatchesBigDecimal()
+    {
+        Random random = new Random( 42 );
+        for ( int i = 0; i < SAMPLES; i++ ) {
+            long principal = 1 + random.nextInt( 100_000_000 );
+            int bps = 1 + random.nextInt( MoneyKernel.TABLE_MAX_BPS );
+            int tenure = 2 + random.nextInt( MoneyKernel.TABLE_MAX_TENURE - 1 );
+            assertFactorPathMatches( principal, bps, tenure );
+        }
+        // Corners of the table.
+        assertFactorPathMatches( 1_000_000, 1, 2 );
+        assertFactorPathMatches( 1_000_000, MoneyKernel.TABLE_MAX_BPS, MoneyKernel.TABLE_MAX_TENURE );
+        assertFactorPathMatches( Integer.MAX_VALUE, MoneyKernel.TABLE_MAX_BPS, 2 );
+    }
+
+    @Test
+    void computedFactorPathMatchesBigDecimal()
+    {
+        Random random = new Random( 7 );
+        for ( int i = 0; i < SAMPLES; i++ ) {
+            long principal = 1 + random.nextInt( 100_000_000 );
+            boolean longTenure = random.nextBoolean();
+            int tenure = longTenure ? MoneyKernel.TABLE_MAX_TENURE + 1 + random.nextInt( 360 - MoneyKernel.TABLE_MAX_TENURE )
+                    : 2 + random.nextInt( MoneyKernel.TABLE_MAX_TENURE - 1 );
+            int bps = longTenure ? 1 + random.nextInt( 10_000 ) : MoneyKernel.TABLE_MAX_BPS + 1 + random.nextInt( 6_000 );
+            assertFactorPathMatches( principal, bps, tenure );
+        }
+        assertFactorPathMatches( 1_000_000, 1, 360 );
+        assertFactorPathMatches( 1_000_000, MoneyKernel.TABLE_MAX_BPS + 1, MoneyKernel.TABLE_MAX_TENURE );
+    }
+
+    @Test
+    void zeroRateIsExact()
+    {
+        Random random = new Random( 1 );
+        for ( int i = 0; i < SAMPLES; i++ ) {
+            long principal = 1 + random.nextInt( 100_000_000 );
+            int tenure = 1 + random.nextInt( 360 );
+            assertEquals( halfUp( exactEmiCents( principal, 0, tenure ) ), MoneyKernel.emiCents( principal, 0, tenure ),
+                    () -> principal + " over " + tenure + " months at 0%" );
+        }
+        // Exact half cents round up: 1 cent over 2 months, 3 cents over 2 months.
+        assertEquals( 1, MoneyKernel.emiCents( 1, 0, 2 ) );
+        assertEquals( 2, MoneyKernel.emiCents( 3, 0, 2 ) );
+    }
+
+    @Test
+    void singleMonthIsExact()
+    {
+        Random random = new Random( 2 );
+        for ( int i = 0; i < SAMPLES; i++ ) {
+            long principal = 1 + random.nextInt( 100_000_000 );
+            int bps = 1 + random.nextInt( 10_000 );
+            assertEquals( halfUp( exactEmiCents( principal, bps, 1 ) ), MoneyKernel.emiCents( principal, bps, 1 ),
+                    () -> principal + " over 1 month at " + bps + " bps" );
+        }
+        // 1000 cents at 12% for one month is 1010 cents; 50 cents at 12% is 50.5 cents, which rounds up.
+        assertEquals( 1010, MoneyKernel.emiCents( 1000, 1200, 1 ) );
+        assertEquals( 51, MoneyKernel.emiCents( 50, 1200, 1 ) );
+    }
+
+    @Test
+    void nonPositivePrincipalHasNoEmi()
+    {
+        assertEquals( 0, MoneyKernel.emiCents( 0, 1200, 12 ) );
+        assertEquals( 0, MoneyKernel.emiCents( -100, 0, 12 ) );
+    }
+
+    @Test
+    void breakEvenMonthsRoundsUp()
+    {
+        Random random = new Random( 3 );
+        for ( int i = 0; i < SAMPLES; i++ ) {
+            long fees = random.nextInt( 1_000_000 );
+            long savings = 1 + random.nextInt( 100_000 );
+            long expected = BigDecimal.valueOf( fees ).divide( BigDecimal.valueOf( savings ), 0, RoundingMode.CEILING ).longValueExact();
+            assertEquals( expected, MoneyKernel.breakEvenMonths( fees, savings ), () -> fees + " / " + savings );
+        }
+        assertEquals( 1, MoneyKernel.breakEvenMonths( 11_000, 11_000 ) );
+        assertEquals( 2, MoneyKernel.breakEvenMonths( 11_000, 10_999 ) );
+        assertEquals( 0, MoneyKernel.breakEvenMonths( 11_000, 0 ) );
+        assertEquals( 0, MoneyKernel.breakEvenMonths( 11_000, -5 ) );
+    }
+}